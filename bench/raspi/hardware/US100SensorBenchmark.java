@@ -0,0 +1,54 @@
+/**
+ *
+ */
+package raspi.hardware;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * US100SensorBenchmark - Auswertung der Echo-Laufzeit (Laufzeit in ms und
+ * Abstand in cm), wie sie im Listener bei fallender Flanke erfolgt.
+ * @author Detlef Tribius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class US100SensorBenchmark
+{
+    /**
+     * deltaNanoTime - Laufzeit in ns (ca. 2 cm ... 4,5 m)
+     */
+    private long deltaNanoTime;
+
+    @Setup
+    public void setUp()
+    {
+        this.deltaNanoTime = 100000L;
+    }
+
+    @Benchmark
+    public void echo(Blackhole blackhole)
+    {
+        this.deltaNanoTime = (this.deltaNanoTime > 26000000L)? 100000L : this.deltaNanoTime + 1013L;
+        final BigDecimal deltaTime = US100Sensor.getDeltaTime(this.deltaNanoTime);
+        final BigDecimal distance = US100Sensor.getDistance(this.deltaNanoTime);
+        blackhole.consume(deltaTime);
+        blackhole.consume(distance);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raspi.hardware.i2c.sim.ArduinoI2CSimulator;
+
+/**
+ * ArduinoI2CBenchmark - Auswertung der Arduino-Antwort (decode()) und
+ * kompletter Anfrage-/Antwortzyklus gegen den ArduinoI2CSimulator.
+ * @author Detlef Tribius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArduinoI2CBenchmark
+{
+    /**
+     * arduino - Treiber auf simuliertem Slave
+     */
+    private ArduinoI2C arduino;
+
+    /**
+     * buffer - Antwort (16 Byte)
+     */
+    private final byte[] buffer = {(byte)0x98, (byte)0xba, (byte)0xdc, (byte)0xfe, (byte)'S',
+                                   (byte)0x37, (byte)0x02, (byte)0xd2, (byte)0x04,
+                                   0, 0, 0, 0, 0, 0, 0};
+
+    /**
+     * token - fortlaufendes Token
+     */
+    private long token;
+
+    @Setup
+    public void setUp()
+    {
+        final ArduinoI2CSimulator simulator = new ArduinoI2CSimulator();
+        simulator.setNumbers(1234, 567);
+        this.arduino = new ArduinoI2C(simulator);
+        this.token = 0L;
+    }
+
+    @Benchmark
+    public ArduinoI2C.DataRequest decode()
+    {
+        this.buffer[0]++;
+        return ArduinoI2C.decode(this.buffer);
+    }
+
+    @Benchmark
+    public ArduinoI2C.DataRequest writeRead() throws IOException
+    {
+        this.arduino.write(this.token++, ArduinoI2C.Status.SUCCESS);
+        return this.arduino.read();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raspi.hardware.i2c.sim.DRV8830Simulator;
+
+/**
+ * DRV8830Benchmark - DRV8830.drive() gegen den DRV8830Simulator.
+ * @author Detlef Tribius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DRV8830Benchmark
+{
+    /**
+     * drv8830 - Treiber auf simuliertem Baustein
+     */
+    private DRV8830 drv8830;
+
+    /**
+     * speed - Sollwert -MAX_VALUE ... MAX_VALUE
+     */
+    private int speed;
+
+    @Setup
+    public void setUp()
+    {
+        this.drv8830 = new DRV8830(new DRV8830Simulator());
+        this.speed = 0;
+    }
+
+    @Benchmark
+    public void drive() throws IOException
+    {
+        this.speed = (this.speed >= DRV8830.Direction.MAX_VALUE)? -DRV8830.Direction.MAX_VALUE : this.speed + 1;
+        this.drv8830.drive(this.speed);
+    }
+}
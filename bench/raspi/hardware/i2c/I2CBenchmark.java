@@ -0,0 +1,65 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raspi.hardware.i2c.sim.PCA9685Simulator;
+
+/**
+ * I2CBenchmark - Bitoperationen I2C.setBit()/getBit() (ohne Buszugriff).
+ * <p>
+ * Aufruf: <code>ant bench</code>
+ * </p>
+ * @author Detlef Tribius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class I2CBenchmark
+{
+    /**
+     * i2c - I2C auf simuliertem Baustein
+     */
+    private I2C i2c;
+
+    /**
+     * reg - Registerinhalt, wird in jedem Durchlauf veraendert
+     */
+    private int reg;
+
+    @Setup
+    public void setUp()
+    {
+        this.i2c = new I2C(new PCA9685Simulator());
+        this.reg = 0x5a;
+    }
+
+    @Benchmark
+    public int setBit()
+    {
+        this.reg = this.i2c.setBit(this.reg, 0b0001_0000, (this.reg & 0x01));
+        return this.reg++;
+    }
+
+    @Benchmark
+    public int getBit()
+    {
+        return this.i2c.getBit(this.reg++, 0b0001_0000);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raspi.hardware.i2c.sim.MCP9808Simulator;
+
+/**
+ * MCP9808Benchmark - Temperaturwandlung convertTemp()/convertTempToReg()
+ * und getAmbientTemp() gegen den MCP9808Simulator.
+ * @author Detlef Tribius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MCP9808Benchmark
+{
+    /**
+     * mcp9808 - Treiber auf simuliertem Baustein
+     */
+    private MCP9808 mcp9808;
+
+    /**
+     * reg - Temperatur im MCP9808-Format
+     */
+    private final byte[] reg = {(byte)0x01, (byte)0x94};
+
+    /**
+     * temperature - wechselnde Temperatur
+     */
+    private double temperature;
+
+    @Setup
+    public void setUp()
+    {
+        this.mcp9808 = new MCP9808(new MCP9808Simulator());
+        this.temperature = 0.0;
+    }
+
+    @Benchmark
+    public double convertTemp()
+    {
+        this.reg[1]++;
+        return this.mcp9808.convertTemp(this.reg);
+    }
+
+    @Benchmark
+    public byte[] convertTempToReg()
+    {
+        this.temperature = (this.temperature >= 125.0)? -40.0 : this.temperature + 0.0625;
+        return MCP9808.convertTempToReg(this.temperature);
+    }
+
+    @Benchmark
+    public double getAmbientTemp() throws IOException
+    {
+        return this.mcp9808.getAmbientTemp();
+    }
+}
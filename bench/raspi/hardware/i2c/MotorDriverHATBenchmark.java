@@ -0,0 +1,80 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raspi.hardware.i2c.sim.PCA9685Simulator;
+
+/**
+ * MotorDriverHATBenchmark - MotorDriverHAT.setPwm() gegen den PCA9685Simulator.
+ * @author Detlef Tribius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotorDriverHATBenchmark
+{
+    /**
+     * autoIncrement - mit/ohne Auto-Increment
+     */
+    @Param({"false", "true"})
+    public boolean autoIncrement;
+
+    /**
+     * motorDriverHAT - Treiber auf simuliertem Baustein
+     */
+    private MotorDriverHAT motorDriverHAT;
+
+    /**
+     * step - Sollwertfolge -1.0f ... 1.0f
+     */
+    private int step;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        this.motorDriverHAT = new MotorDriverHAT(new PCA9685Simulator(), 100, this.autoIncrement);
+        this.step = 0;
+    }
+
+    /**
+     * speed() - naechster Sollwert
+     * @return Sollwert -1.0f ... 1.0f
+     */
+    private float speed()
+    {
+        this.step = (this.step + 1) % 201;
+        return (this.step - 100) / 100.0f;
+    }
+
+    @Benchmark
+    public void setPwmMA() throws IOException
+    {
+        this.motorDriverHAT.setPwmMA(speed());
+    }
+
+    @Benchmark
+    public void setPwmBoth() throws IOException
+    {
+        final float speed = speed();
+        this.motorDriverHAT.setPwm(speed, -speed);
+    }
+}
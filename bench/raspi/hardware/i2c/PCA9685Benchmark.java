@@ -0,0 +1,94 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import raspi.hardware.i2c.sim.PCA9685Simulator;
+
+/**
+ * PCA9685Benchmark - PCA9685.Channel.setPWM() und flush() gegen den PCA9685Simulator.
+ * <p>
+ * Der Wert wechselt in jedem Durchlauf, damit jeder Aufruf zum Bus durchgeht.
+ * </p>
+ * @author Detlef Tribius
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PCA9685Benchmark
+{
+    /**
+     * autoIncrement - mit/ohne Auto-Increment
+     */
+    @Param({"false", "true"})
+    public boolean autoIncrement;
+
+    /**
+     * pca9685 - Treiber auf simuliertem Baustein
+     */
+    private PCA9685 pca9685;
+
+    /**
+     * servo - Servo an Channel 0
+     */
+    private PCA9685.Servo servo;
+
+    /**
+     * value - wechselnder PWM-Wert
+     */
+    private int value;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        this.pca9685 = PCA9685.getInstance(new PCA9685Simulator());
+        this.pca9685.initialize();
+        this.pca9685.setAutoIncrement(this.autoIncrement);
+        this.servo = this.pca9685.getServo(0);
+        this.value = 0;
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        // Naechster Durchlauf mit neuem Simulator...
+        PCA9685.remove(this.pca9685);
+    }
+
+    @Benchmark
+    public void channelSetPWM() throws IOException
+    {
+        this.value = (this.value + 1) & 0x3ff;
+        this.servo.setPWM(0, PCA9685.Servo.SERVO_MIN_LIMIT + this.value);
+    }
+
+    @Benchmark
+    public int flushAllChannels() throws IOException
+    {
+        this.value = (this.value + 1) & 0x3ff;
+        for (int channel = 0; channel < PCA9685.NUMBER_CHANNELS; channel++)
+        {
+            this.pca9685.setChannel(channel, 0, this.value + channel);
+        }
+        return this.pca9685.flush();
+    }
+}
@@ -0,0 +1,366 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LinuxI2CTransport - direkter Zugriff ueber die Geraetedatei /dev/i2c-N (i2c-dev).
+ * <p>
+ * Die Systemaufrufe open(), ioctl() und close() werden ueber die FFM-API
+ * (java.lang.foreign, ab Java 22) ohne JNI-Zwischenschicht aufgerufen. Jede
+ * Transaktion ist genau ein ioctl(I2C_RDWR): beim Lesen eines Registers werden die
+ * Nachricht mit der Registeradresse und die Lese-Nachricht in einem Aufruf (mit
+ * Repeated-Start) uebertragen, beim Schreiben Registeradresse und Daten in einer
+ * Nachricht. Die Puffer (struct i2c_msg[2], struct i2c_rdwr_ioctl_data, Daten) werden
+ * einmalig angelegt und wiederverwendet, eine Transaktion erzeugt damit keinen Muell.
+ * </p>
+ * <p>
+ * Instanziierung ueber I2CTransports.openLinux(busNumber, address).
+ * </p>
+ * @author Detlef Tribius
+ */
+public class LinuxI2CTransport implements I2CTransport, Closeable
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(LinuxI2CTransport.class);
+
+    /**
+     * I2C_RDWR = 0x0707 - kombinierte Transaktion (linux/i2c-dev.h)
+     */
+    public final static long I2C_RDWR = 0x0707L;
+
+    /**
+     * I2C_M_RD = 0x0001 - Lese-Nachricht (linux/i2c.h)
+     */
+    public final static short I2C_M_RD = 0x0001;
+
+    /**
+     * O_RDWR = 2 (fcntl.h)
+     */
+    private final static int O_RDWR = 2;
+
+    /**
+     * MAX_LENGTH = 256 - max. Laenge einer Nachricht (Registeradresse + Daten)
+     */
+    private final static int MAX_LENGTH = I2C.REGISTER_COUNT + 1;
+
+    /**
+     * I2C_MSG - struct i2c_msg { __u16 addr; __u16 flags; __u16 len; __u8 *buf; }
+     */
+    private final static StructLayout I2C_MSG = MemoryLayout.structLayout(ValueLayout.JAVA_SHORT.withName("addr"),
+                                                                         ValueLayout.JAVA_SHORT.withName("flags"),
+                                                                         ValueLayout.JAVA_SHORT.withName("len"),
+                                                                         MemoryLayout.paddingLayout(2),
+                                                                         ValueLayout.ADDRESS.withName("buf"));
+
+    /**
+     * I2C_RDWR_IOCTL_DATA - struct i2c_rdwr_ioctl_data { struct i2c_msg *msgs; __u32 nmsgs; }
+     */
+    private final static StructLayout I2C_RDWR_IOCTL_DATA = MemoryLayout.structLayout(ValueLayout.ADDRESS.withName("msgs"),
+                                                                                     ValueLayout.JAVA_INT.withName("nmsgs"),
+                                                                                     MemoryLayout.paddingLayout(ValueLayout.ADDRESS.byteSize() - 4));
+
+    private final static long MSG_SIZE = I2C_MSG.byteSize();
+    private final static long ADDR_OFFSET = I2C_MSG.byteOffset(MemoryLayout.PathElement.groupElement("addr"));
+    private final static long FLAGS_OFFSET = I2C_MSG.byteOffset(MemoryLayout.PathElement.groupElement("flags"));
+    private final static long LEN_OFFSET = I2C_MSG.byteOffset(MemoryLayout.PathElement.groupElement("len"));
+    private final static long BUF_OFFSET = I2C_MSG.byteOffset(MemoryLayout.PathElement.groupElement("buf"));
+    private final static long NMSGS_OFFSET = I2C_RDWR_IOCTL_DATA.byteOffset(MemoryLayout.PathElement.groupElement("nmsgs"));
+
+    /**
+     * CALL_STATE - Layout zur Uebernahme von errno
+     */
+    private final static StructLayout CALL_STATE = Linker.Option.captureStateLayout();
+
+    /**
+     * ERRNO_OFFSET - Lage von errno im CALL_STATE
+     */
+    private final static long ERRNO_OFFSET = CALL_STATE.byteOffset(MemoryLayout.PathElement.groupElement("errno"));
+
+    /**
+     * OPEN, IOCTL, CLOSE - Systemaufrufe (libc)
+     */
+    private final static MethodHandle OPEN;
+    private final static MethodHandle IOCTL;
+    private final static MethodHandle CLOSE;
+
+    static
+    {
+        final Linker linker = Linker.nativeLinker();
+        final Linker.Option errno = Linker.Option.captureCallState("errno");
+        OPEN = linker.downcallHandle(linker.defaultLookup().find("open").orElseThrow(),
+                                     FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT),
+                                     errno, Linker.Option.firstVariadicArg(2));
+        IOCTL = linker.downcallHandle(linker.defaultLookup().find("ioctl").orElseThrow(),
+                                      FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG, ValueLayout.ADDRESS),
+                                      errno, Linker.Option.firstVariadicArg(2));
+        CLOSE = linker.downcallHandle(linker.defaultLookup().find("close").orElseThrow(),
+                                      FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+    }
+
+    /**
+     * busNumber - Bus-Nummer (/dev/i2c-busNumber)
+     */
+    private final int busNumber;
+
+    /**
+     * address - Bus-Adresse
+     */
+    private final int address;
+
+    /**
+     * arena - Lebensdauer der nativen Puffer (bis close())
+     */
+    private final Arena arena;
+
+    /**
+     * messages - struct i2c_msg[2]
+     */
+    private final MemorySegment messages;
+
+    /**
+     * ioctlData - struct i2c_rdwr_ioctl_data
+     */
+    private final MemorySegment ioctlData;
+
+    /**
+     * writeBuffer - Daten der Schreib-Nachricht (Registeradresse + Daten)
+     */
+    private final MemorySegment writeBuffer;
+
+    /**
+     * readBuffer - Daten der Lese-Nachricht
+     */
+    private final MemorySegment readBuffer;
+
+    /**
+     * callState - errno des letzten Systemaufrufes
+     */
+    private final MemorySegment callState;
+
+    /**
+     * fd - Dateideskriptor, -1 nach close()
+     */
+    private int fd;
+
+    /**
+     * LinuxI2CTransport(int busNumber, int address) - oeffnet /dev/i2c-busNumber
+     * @param busNumber Bus-Nummer
+     * @param address Bus-Adresse
+     * @throws IOException Geraetedatei nicht zu oeffnen
+     */
+    public LinuxI2CTransport(int busNumber, int address) throws IOException
+    {
+        this.busNumber = busNumber;
+        this.address = address;
+        this.arena = Arena.ofShared();
+        this.messages = this.arena.allocate(MSG_SIZE * 2, I2C_MSG.byteAlignment());
+        this.ioctlData = this.arena.allocate(I2C_RDWR_IOCTL_DATA);
+        this.writeBuffer = this.arena.allocate(MAX_LENGTH);
+        this.readBuffer = this.arena.allocate(MAX_LENGTH);
+        this.callState = this.arena.allocate(CALL_STATE);
+        this.ioctlData.set(ValueLayout.ADDRESS, 0, this.messages);
+        final byte[] name = ("/dev/i2c-" + busNumber).getBytes();
+        final MemorySegment path = this.arena.allocate(name.length + 1);
+        MemorySegment.copy(name, 0, path, ValueLayout.JAVA_BYTE, 0, name.length);
+        final int fd;
+        try
+        {
+            fd = (int)OPEN.invokeExact(this.callState, path, O_RDWR);
+        }
+        catch (Throwable throwable)
+        {
+            this.arena.close();
+            throw new IOException("LinuxI2CTransport: open(/dev/i2c-" + busNumber + ")", throwable);
+        }
+        if (fd < 0)
+        {
+            final int errno = errno();
+            this.arena.close();
+            throw new IOException("LinuxI2CTransport: open(/dev/i2c-" + busNumber + ") errno=" + errno);
+        }
+        this.fd = fd;
+        logger.debug("LinuxI2CTransport: /dev/i2c-" + busNumber + " geoeffnet, Adresse 0x" + Integer.toHexString(address));
+    }
+
+    @Override
+    public int getAddress()
+    {
+        return this.address;
+    }
+
+    @Override
+    public int getBusNumber()
+    {
+        return this.busNumber;
+    }
+
+    @Override
+    synchronized public int read(int reg) throws IOException
+    {
+        this.writeBuffer.set(ValueLayout.JAVA_BYTE, 0, (byte)reg);
+        transfer(1, 1);
+        return this.readBuffer.get(ValueLayout.JAVA_BYTE, 0) & 0xff;
+    }
+
+    @Override
+    synchronized public int read(int reg, byte[] buffer, int offset, int size) throws IOException
+    {
+        checkSize(size);
+        this.writeBuffer.set(ValueLayout.JAVA_BYTE, 0, (byte)reg);
+        transfer(1, size);
+        MemorySegment.copy(this.readBuffer, ValueLayout.JAVA_BYTE, 0, buffer, offset, size);
+        return size;
+    }
+
+    @Override
+    synchronized public void write(int reg, byte value) throws IOException
+    {
+        this.writeBuffer.set(ValueLayout.JAVA_BYTE, 0, (byte)reg);
+        this.writeBuffer.set(ValueLayout.JAVA_BYTE, 1, value);
+        transfer(2, 0);
+    }
+
+    @Override
+    synchronized public void write(int reg, byte[] buffer, int offset, int size) throws IOException
+    {
+        checkSize(size);
+        this.writeBuffer.set(ValueLayout.JAVA_BYTE, 0, (byte)reg);
+        MemorySegment.copy(buffer, offset, this.writeBuffer, ValueLayout.JAVA_BYTE, 1, size);
+        transfer(1 + size, 0);
+    }
+
+    @Override
+    synchronized public int read(byte[] buffer, int offset, int size) throws IOException
+    {
+        checkSize(size);
+        transfer(0, size);
+        MemorySegment.copy(this.readBuffer, ValueLayout.JAVA_BYTE, 0, buffer, offset, size);
+        return size;
+    }
+
+    @Override
+    synchronized public void write(byte[] buffer, int offset, int size) throws IOException
+    {
+        checkSize(size);
+        MemorySegment.copy(buffer, offset, this.writeBuffer, ValueLayout.JAVA_BYTE, 0, size);
+        transfer(size, 0);
+    }
+
+    /**
+     * close() - schliesst die Geraetedatei und gibt die nativen Puffer frei
+     */
+    @Override
+    synchronized public void close() throws IOException
+    {
+        if (this.fd < 0)
+        {
+            return;
+        }
+        try
+        {
+            final int result = (int)CLOSE.invokeExact(this.fd);
+            if (result < 0)
+            {
+                logger.warn("LinuxI2CTransport: close(/dev/i2c-" + this.busNumber + ") fehlgeschlagen!");
+            }
+        }
+        catch (Throwable throwable)
+        {
+            throw new IOException("LinuxI2CTransport: close(/dev/i2c-" + this.busNumber + ")", throwable);
+        }
+        finally
+        {
+            this.fd = -1;
+            this.arena.close();
+        }
+    }
+
+    /**
+     * transfer(int writeLength, int readLength) - eine Transaktion mit ioctl(I2C_RDWR),
+     * bestehend aus der Schreib-Nachricht (writeLength > 0) und/oder der
+     * Lese-Nachricht (readLength > 0)
+     * @param writeLength Anzahl der Bytes aus writeBuffer
+     * @param readLength Anzahl der Bytes nach readBuffer
+     * @throws IOException ioctl() fehlgeschlagen
+     */
+    private void transfer(int writeLength, int readLength) throws IOException
+    {
+        if (this.fd < 0)
+        {
+            throw new IOException("LinuxI2CTransport: /dev/i2c-" + this.busNumber + " ist geschlossen!");
+        }
+        int count = 0;
+        if (writeLength > 0)
+        {
+            message(count++, (short)0, writeLength, this.writeBuffer);
+        }
+        if (readLength > 0)
+        {
+            message(count++, I2C_M_RD, readLength, this.readBuffer);
+        }
+        this.ioctlData.set(ValueLayout.JAVA_INT, NMSGS_OFFSET, count);
+        final int result;
+        try
+        {
+            result = (int)IOCTL.invokeExact(this.callState, this.fd, I2C_RDWR, this.ioctlData);
+        }
+        catch (Throwable throwable)
+        {
+            throw new IOException("LinuxI2CTransport: ioctl(I2C_RDWR)", throwable);
+        }
+        if (result < 0)
+        {
+            throw new IOException("LinuxI2CTransport: ioctl(I2C_RDWR) Adresse 0x" + Integer.toHexString(this.address)
+                                + " errno=" + errno());
+        }
+    }
+
+    /**
+     * message(int index, short flags, int length, MemorySegment data) - belegt messages[index]
+     */
+    private void message(int index, short flags, int length, MemorySegment data)
+    {
+        final long base = index * MSG_SIZE;
+        this.messages.set(ValueLayout.JAVA_SHORT, base + ADDR_OFFSET, (short)this.address);
+        this.messages.set(ValueLayout.JAVA_SHORT, base + FLAGS_OFFSET, flags);
+        this.messages.set(ValueLayout.JAVA_SHORT, base + LEN_OFFSET, (short)length);
+        this.messages.set(ValueLayout.ADDRESS, base + BUF_OFFSET, data);
+    }
+
+    /**
+     * errno() - errno des letzten Systemaufrufes
+     */
+    private int errno()
+    {
+        return this.callState.get(ValueLayout.JAVA_INT, ERRNO_OFFSET);
+    }
+
+    /**
+     * checkSize(int size) - prueft die Laenge einer Nachricht
+     * @throws IOException bei size > 255
+     */
+    private static void checkSize(int size) throws IOException
+    {
+        if ((size < 0) || (size >= MAX_LENGTH))
+        {
+            throw new IOException("LinuxI2CTransport: unzulaessige Laenge " + size);
+        }
+    }
+}
@@ -218,16 +218,14 @@ public abstract class US100Sensor
                         US100Sensor.this.deltaNanoTime = US100Sensor.this.nanoTimeFalling - US100Sensor.this.nanoTimeRising;
 
                         // Laufzeit in ms...
-                        US100Sensor.this.deltaTime = BigDecimal.valueOf(US100Sensor.this.deltaNanoTime).movePointLeft(NANO_TO_MILLIS)
-                                                                                                       .setScale(SCALE_DELTA_TIME, BigDecimal.ROUND_HALF_UP);
+                        US100Sensor.this.deltaTime = US100Sensor.getDeltaTime(US100Sensor.this.deltaNanoTime);
 
                         /////////////////////////////////////////////////////////////////////////////////////
                         // => Weniger Ausgaben...
                         // logger.debug("deltaTime: " + US100Sensor.this.deltaTime.toString());
                         
                         // Distance in cm...
-                        US100Sensor.this.distance = BigDecimal.valueOf(US100Sensor.this.deltaNanoTime * FACTOR).movePointLeft(BENCHMARK_DISTANCE)
-                                                                                                               .setScale(SCALE_DISTANCE, BigDecimal.ROUND_HALF_UP);
+                        US100Sensor.this.distance = US100Sensor.getDistance(US100Sensor.this.deltaNanoTime);
 
                         /////////////////////////////////////////////////////////////////////////////////////
                         // => Weniger Ausgaben...
@@ -247,6 +245,28 @@ public abstract class US100Sensor
         logger.debug("US100Sensor instanziiert.");
     }
 
+    /**
+     * getDeltaTime(long deltaNanoTime) - Laufzeit des Schalls in ms
+     * @param deltaNanoTime Laufzeit in ns
+     * @return Laufzeit in ms (SCALE_DELTA_TIME Nachkommastellen)
+     */
+    public static BigDecimal getDeltaTime(long deltaNanoTime)
+    {
+        return BigDecimal.valueOf(deltaNanoTime).movePointLeft(NANO_TO_MILLIS)
+                                                .setScale(SCALE_DELTA_TIME, BigDecimal.ROUND_HALF_UP);
+    }
+
+    /**
+     * getDistance(long deltaNanoTime) - Abstand aus der Laufzeit des Schalls
+     * @param deltaNanoTime Laufzeit in ns
+     * @return Abstand in cm (SCALE_DISTANCE Nachkommastellen)
+     */
+    public static BigDecimal getDistance(long deltaNanoTime)
+    {
+        return BigDecimal.valueOf(deltaNanoTime * FACTOR).movePointLeft(BENCHMARK_DISTANCE)
+                                                         .setScale(SCALE_DISTANCE, BigDecimal.ROUND_HALF_UP);
+    }
+
     /**
      * startMeasuring() - Starten des Messvorganges...
      * @throws InterruptedException 
@@ -1,9 +1,12 @@
 package raspi.hardware.i2c;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import com.pi4j.io.i2c.I2CDevice;
 
+import raspi.hardware.i2c.I2CBusScheduler.Priority;
+
 /**
  * Klasse ArduinoI2C 
  * <p>
@@ -20,7 +23,16 @@ public class ArduinoI2C extends I2C
      */
     public ArduinoI2C(I2CDevice dev)
     {
-        super(dev);
+        super(dev, Priority.TELEMETRY);
+    }
+
+    /**
+     * Konstruktor mit Vorgabe des Transports, vgl. I2CTransports
+     * @param transport I2CTransport
+     */
+    public ArduinoI2C(I2CTransport transport)
+    {
+        super(transport, Priority.TELEMETRY);
     }
     
     /**
@@ -41,7 +53,7 @@ public class ArduinoI2C extends I2C
         token >>= 8;
         buffer[3] = (byte) (token & 0xff);
         buffer[4] = status.getStatus();
-        dev.write(buffer);
+        writeBuffer(buffer, buffer.length);
     }
     
     /**
@@ -56,7 +68,7 @@ public class ArduinoI2C extends I2C
                                0,0,0,0,0,0,0,0};
         
         // number - number of bytes read
-        final int numberRead = dev.read(buffer, 0, buffer.length);
+        final int numberRead = readBuffer(buffer, buffer.length);
         // Es sollten 16 Bytes vom Arduino gelesen werden.
         // Es wurden zumindestens 16 Bytes gesendet.
         // Notwendig sind mindestens 4 + 1 + 4 = 9 Bytes.
@@ -66,6 +78,17 @@ public class ArduinoI2C extends I2C
         {
             throw new RuntimeException("Fehler beim Lesen der Arduino-Daten!");
         }
+        return ArduinoI2C.decode(buffer);
+    }
+    
+    /**
+     * decode(byte[] buffer) - Auswertung der Antwort vom Arduino 
+     * (mindestens 9 Byte: Token, Status, Daten).
+     * @param buffer vom Arduino gelesene Bytes
+     * @return ArduinoI2C-Struktur mit der Antwort vom Arduino
+     */
+    public static ArduinoI2C.DataRequest decode(byte[] buffer)
+    {
         ///////////////////////////////////////////////////////////////////////////
         // buffer[0] ... buffer[3] gebildet aus einer 4 Byte FK Zahl ohne VZ,
         // => max. +4.294.967.295, Abbildung in Java als long-Zahl 
@@ -118,6 +141,32 @@ public class ArduinoI2C extends I2C
         return new ArduinoI2C.DataRequest(token, status, value, numberMA, numberMB);
     }
     
+    /**
+     * writeAsync(long token, Status status) - asynchrones Uebertragen der Parameter
+     * zum Arduino (vgl. write(long token, Status status)).
+     * @param token long Parameter
+     * @param status Status
+     * @return CompletableFuture, abgeschlossen nach dem Schreiben
+     */
+    public CompletableFuture<Void> writeAsync(long token, Status status)
+    {
+        return submit(() ->
+        {
+            write(token, status);
+            return null;
+        });
+    }
+    
+    /**
+     * readAsync() - asynchrones Lesen der Antwort vom Arduino (vgl. read()),
+     * der Aufrufer wird nicht blockiert.
+     * @return CompletableFuture mit der Antwort vom Arduino
+     */
+    public CompletableFuture<ArduinoI2C.DataRequest> readAsync()
+    {
+        return submit(() -> read());
+    }
+    
     /**
      * Status - Status der Raspberry-Arduino-Kommunikation
      * <p>
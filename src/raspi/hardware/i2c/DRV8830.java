@@ -4,9 +4,12 @@
 package raspi.hardware.i2c;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import com.pi4j.io.i2c.I2CDevice;
 
+import raspi.hardware.i2c.I2CBusScheduler.Priority;
+
 
 /**
  * Als Muster diente u.a. auch https://ladvien.com/porting-drv8830-nodejs/...
@@ -86,7 +89,16 @@ public class DRV8830  extends I2C
      */
     public DRV8830 (final I2CDevice dev)
     {
-        super(dev);
+        super(dev, Priority.ACTUATOR);
+    }
+
+    /**
+     * Konstruktor mit Vorgabe des Transports, vgl. I2CTransports
+     * @param transport I2CTransport
+     */
+    public DRV8830 (final I2CTransport transport)
+    {
+        super(transport, Priority.ACTUATOR);
     }
   
     /**
@@ -117,6 +129,21 @@ public class DRV8830  extends I2C
         write(DRV8830.CONTROL_REGISTER, desiredValue);
     }
     
+    /**
+     * driveAsync(int speed) - asynchrone Ausgabe des Sollwertes (vgl. drive()),
+     * der Aufrufer wird nicht blockiert.
+     * @param speed
+     * @return CompletableFuture, abgeschlossen nach dem Schreiben
+     */
+    public CompletableFuture<Void> driveAsync(int speed)
+    {
+        return submit(() ->
+        {
+            drive(speed);
+            return null;
+        });
+    }
+    
     /**
      * standBy() - Stand by => Direction.FREEWHEEL!
      * <p>
@@ -156,23 +183,31 @@ public class DRV8830  extends I2C
      */
     public int getFault() throws IOException
     {
-        // int fault - Fehlerkennung als int-Wert mit der Bedeutung:
-        // Bit 0: ...wird gesetzt, wenn eines der andren Fehlerbits gesetzt wurde (?),
-        // Bit 1: Der Maximalstrom von 1 A ist uebertreten worden,
-        // Bit 2: Bit zeigt an, dass Unterspannung aufgetreten ist,
-        // Bit 3: Ist die Temperatur des DRV8830 zu hoch, wird das Bit gesetzt,
-        // Bit 4: Signalisiert, dass ueber den INSENSE-Eingang ein zu hoher Strom geflossen ist,
-        // Bit 5+6: Keine Funktion,
-        // Bit 7: Setzt im Register gespeicherte Fehler zurueck (bei write()...).
-        final int fault = read(DRV8830.FAULT_REGISTER); 
+        acquireBus();
+        try
+        {
+            // int fault - Fehlerkennung als int-Wert mit der Bedeutung:
+            // Bit 0: ...wird gesetzt, wenn eines der andren Fehlerbits gesetzt wurde (?),
+            // Bit 1: Der Maximalstrom von 1 A ist uebertreten worden,
+            // Bit 2: Bit zeigt an, dass Unterspannung aufgetreten ist,
+            // Bit 3: Ist die Temperatur des DRV8830 zu hoch, wird das Bit gesetzt,
+            // Bit 4: Signalisiert, dass ueber den INSENSE-Eingang ein zu hoher Strom geflossen ist,
+            // Bit 5+6: Keine Funktion,
+            // Bit 7: Setzt im Register gespeicherte Fehler zurueck (bei write()...).
+            final int fault = read(DRV8830.FAULT_REGISTER); 
         
-        if (fault != 0)
+            if (fault != 0)
+            {
+                // Wenn Fehler, dann auch Zuruecksetzen der Fehlerkennung...
+                write(DRV8830.FAULT_REGISTER, DRV8830.FAULT_CLEAR);
+            }
+            
+            return fault;
+        }
+        finally
         {
-            // Wenn Fehler, dann auch Zuruecksetzen der Fehlerkennung...
-            write(DRV8830.FAULT_REGISTER, DRV8830.FAULT_CLEAR);
+            releaseBus();
         }
-            
-        return fault;
     }
     
     /**
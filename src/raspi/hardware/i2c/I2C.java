@@ -6,9 +6,15 @@ package raspi.hardware.i2c;
 import  com.pi4j.io.i2c.*;
 
 import  java.io.IOException;
+import  java.util.Arrays;
+import  java.util.concurrent.CompletableFuture;
+import  java.util.concurrent.atomic.AtomicLong;
+import  java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+
+import raspi.hardware.i2c.I2CBusScheduler.Priority;
 /**
  * I2C ist eine Klasse, die grundlegende Schreib-, Lese- und Bitoperationen fuer das 
  * I2C-Hardware-Interface unterstuetzt. Sie ist als Elternklasse für I2C-Geraete gedacht.
@@ -30,10 +36,64 @@ public class I2C
     private final static Logger logger = LoggerFactory.getLogger(I2C.class);
     
     /**
-     * I2CDevice
+     * I2CDevice - nur bei Instanziierung ueber pi4j (I2CDevice bzw. Pi4jTransport) 
+     * gesetzt, bei jedem anderen I2CTransport (InMemoryTransport, LinuxI2CTransport,
+     * Simulationen ohne pi4j) <b>null</b>.
+     * @deprecated Zugriff ueber getTransport() (bzw. Pi4jTransport.getDevice()),
+     * das Feld ist nicht bei jedem Transport gesetzt.
      */
+     @Deprecated
      public final I2CDevice dev;
      
+    /**
+     * transport - Zugriff auf das Geraet (pi4j, im Speicher, /dev/i2c-N)
+     */
+    private final I2CTransport transport;
+     
+    /**
+     * transactionCount - Anzahl der Bus-Transaktionen (read, readArray, write, writeArray)
+     * dieser Instanz seit der Instanziierung.
+     */
+    private final AtomicLong transactionCount = new AtomicLong();
+    
+    /**
+     * scheduler - Vergabe des Buszugriffes an alle Geraete am selben Bus
+     */
+    private final I2CBusScheduler scheduler;
+    
+    /**
+     * priority - Prioritaetsklasse der Transaktionen dieses Geraetes
+     */
+    private final Priority priority;
+    
+    /**
+     * address - Bus-Adresse des Geraetes (Schluessel der Laufzeitstatistik)
+     */
+    private final int address;
+    
+    /**
+     * latencyStatistics - Laufzeitstatistik des Busses (vgl. I2CBusScheduler.getLatencyStatistics())
+     */
+    private final I2CLatencyStatistics latencyStatistics;
+    
+    /**
+     * REGISTER_COUNT = 256 - Anzahl der adressierbaren Register (0x00 ... 0xff)
+     */
+    public final static int REGISTER_COUNT = 256;
+    
+    /**
+     * cacheable - Kennung je Register, ob der Registerinhalt im Schattenregister
+     * gehalten werden darf (cacheable) oder immer vom Geraet gelesen wird (volatile, 
+     * Voreinstellung).
+     */
+    private final boolean[] cacheable = new boolean[REGISTER_COUNT];
+    
+    /**
+     * cache - Schattenregister (write-through) der cacheable-Register,
+     * null bedeutet: Inhalt unbekannt.
+     */
+    private final byte[][] cache = new byte[REGISTER_COUNT][];
+     
     /**
      * Constructor for objects of class I2C
      * <p>
@@ -51,7 +111,61 @@ public class I2C
      */
     public I2C(final I2CDevice dev)
     {
-        this.dev = dev;
+        this(dev, Priority.TELEMETRY);
+    }
+
+    /**
+     * Constructor mit Vorgabe der Prioritaetsklasse, der Buszugriff erfolgt
+     * ueber den Scheduler zum Standard-Bus (I2CBusScheduler.getInstance()).
+     * 
+     * @param dev I2CDevice
+     * @param priority Prioritaetsklasse der Transaktionen
+     */
+    public I2C(final I2CDevice dev, final Priority priority)
+    {
+        this(dev, I2CBusScheduler.getInstance(), priority);
+    }
+
+    /**
+     * Constructor mit Vorgabe des Bus-Schedulers und der Prioritaetsklasse.
+     * 
+     * @param dev I2CDevice
+     * @param scheduler Scheduler des Busses, an dem das Geraet haengt
+     * @param priority Prioritaetsklasse der Transaktionen
+     */
+    public I2C(final I2CDevice dev, final I2CBusScheduler scheduler, final Priority priority)
+    {
+        this(new Pi4jTransport(dev), scheduler, priority);
+    }
+
+    /**
+     * Constructor mit Vorgabe des Transports (z.B. I2CTransports.openLinux()) und 
+     * der Prioritaetsklasse, der Buszugriff erfolgt ueber den Scheduler zum 
+     * Bus des Transports (I2CBusScheduler.getInstance(transport.getBusNumber())).
+     * 
+     * @param transport Zugriff auf das Geraet
+     * @param priority Prioritaetsklasse der Transaktionen
+     */
+    public I2C(final I2CTransport transport, final Priority priority)
+    {
+        this(transport, I2CBusScheduler.getInstance(transport.getBusNumber()), priority);
+    }
+
+    /**
+     * Constructor mit Vorgabe des Transports, des Bus-Schedulers und der Prioritaetsklasse.
+     * 
+     * @param transport Zugriff auf das Geraet
+     * @param scheduler Scheduler des Busses, an dem das Geraet haengt
+     * @param priority Prioritaetsklasse der Transaktionen
+     */
+    public I2C(final I2CTransport transport, final I2CBusScheduler scheduler, final Priority priority)
+    {
+        this.transport = transport;
+        this.dev = (transport instanceof Pi4jTransport)? ((Pi4jTransport)transport).getDevice() : null;
+        this.scheduler = scheduler;
+        this.priority = priority;
+        this.address = transport.getAddress();
+        this.latencyStatistics = scheduler.getLatencyStatistics();
         logger.debug("I2C instanziiert...");
     }
 
@@ -114,23 +228,236 @@ public class I2C
         return (val == 1);
     }
 
+    /**
+     * readRegister() liest ein Register mit 1 oder 2 Byte als Zahlenwert
+     * (2 Byte: byte[0] ist das hoeherwertige Byte). Cacheable-Register werden
+     * aus dem Schattenregister geliefert.
+     *
+     * @param reg Register
+     * @param size Registerbreite in Byte (1 oder 2)
+     * @return Registerwert
+     * @throws IOException
+     */
+    public int readRegister(int reg, int size) throws IOException
+    {
+        if (size == 1)
+        {
+            return read(reg);
+        }
+        final byte[] array = readArray(reg, new byte[2], 2);
+        return ((array[0] & 0xff) << 8) | (array[1] & 0xff);
+    }
+
+    /**
+     * writeRegister() schreibt ein Register mit 1 oder 2 Byte
+     * (2 Byte: byte[0] ist das hoeherwertige Byte).
+     *
+     * @param reg Register
+     * @param size Registerbreite in Byte (1 oder 2)
+     * @param value Registerwert
+     * @throws IOException
+     */
+    public void writeRegister(int reg, int size, int value) throws IOException
+    {
+        if (size == 1)
+        {
+            write(reg, (byte)value);
+        }
+        else
+        {
+            writeArray(reg, new byte[] {(byte)(value >> 8), (byte)value}, 2);
+        }
+    }
+
+    /**
+     * getField() liest das Register zum Feld und liefert den Feldwert.
+     * Mehrere Felder eines Registers: readRegister() und RegisterField.decode().
+     *
+     * @param field Feld
+     * @return Feldwert
+     * @throws IOException
+     */
+    public int getField(RegisterField field) throws IOException
+    {
+        return field.decode(readRegister(field.getRegister(), field.getSize()));
+    }
+
+    /**
+     * update() liefert eine neue Aenderung von Bitfeldern, die Ausgabe erfolgt mit
+     * RegisterUpdate.apply() (ein Schreibzugriff je Register).
+     *
+     * @return RegisterUpdate
+     */
+    public RegisterUpdate update()
+    {
+        return new RegisterUpdate(this);
+    }
+
+    /**
+     * isAutoIncrement() liefert, ob der Registerzeiger des I2C-Gerätes bei
+     * Blockzugriffen weiterzaehlt (Voreinstellung true). Bausteine ohne
+     * Auto-Increment (z.B. MCP9808) bzw. mit abschaltbarem Auto-Increment
+     * (PCA9685) ueberschreiben die Methode, vgl. planRead().
+     *
+     * @return true, wenn benachbarte Register mit einem readArray() gelesen werden koennen
+     */
+    public boolean isAutoIncrement()
+    {
+        return true;
+    }
+
+    /**
+     * planRead() erstellt einen Plan zum Lesen der Register mit moeglichst wenigen
+     * Transaktionen (1-Byte-Register, Auto-Increment gemaess isAutoIncrement()).
+     *
+     * @param registers zu lesende Register
+     * @return ReadPlan
+     */
+    public ReadPlan planRead(int... registers)
+    {
+        return new ReadPlan(1, isAutoIncrement(), ReadPlan.DEFAULT_MAX_GAP, registers);
+    }
+
+    /**
+     * readRegisters() liest die Register gemaess Plan, alle Transaktionen als eine
+     * Transaktion am Bus. Bloecke, deren Register vollstaendig im Schattenregister
+     * vorliegen, verursachen keinen Busverkehr.
+     *
+     * @param plan ReadPlan (vgl. planRead())
+     * @return Momentaufnahme, die Werte werden ohne weiteren Buszugriff geliefert
+     * @throws IOException
+     */
+    public RegisterSnapshot readRegisters(ReadPlan plan) throws IOException
+    {
+        final RegisterSnapshot snapshot = new RegisterSnapshot(plan);
+        final byte[] data = snapshot.data();
+        final int registerSize = plan.getRegisterSize();
+        acquireBus();
+        try
+        {
+            for (int block = 0; block < plan.getBlockCount(); block++)
+            {
+                final int start = plan.getBlockStart(block);
+                final int size = plan.getBlockSize(block);
+                if (!fromCache(plan, block, snapshot))
+                {
+                    readBlock(start, data, snapshot.offset(start), size);
+                    snapshot.addTransaction();
+                    if (plan.getBlockRegisterCount(block) == 1)
+                    {
+                        putCached(start, Arrays.copyOfRange(data, snapshot.offset(start), snapshot.offset(start) + registerSize), registerSize);
+                    }
+                }
+                snapshot.setValid(start, size);
+            }
+        }
+        finally
+        {
+            releaseBus();
+        }
+        return snapshot;
+    }
+
+    /**
+     * fromCache() uebernimmt die Register eines Blocks aus dem Schattenregister,
+     * wenn alle angeforderten Register des Blocks dort vorliegen.
+     *
+     * @return true, wenn der Block nicht gelesen werden muss
+     */
+    private boolean fromCache(ReadPlan plan, int block, RegisterSnapshot snapshot)
+    {
+        final int registerSize = plan.getRegisterSize();
+        final int count = plan.getBlockRegisterCount(block);
+        if (count != plan.getBlockSize(block) / registerSize)
+        {
+            // Block mit mitgelesenen Luecken...
+            return false;
+        }
+        final byte[][] cached = new byte[count][];
+        for (int index = 0; index < count; index++)
+        {
+            cached[index] = getCached(plan.getBlockRegister(block, index), registerSize);
+            if (cached[index] == null)
+            {
+                return false;
+            }
+        }
+        for (int index = 0; index < count; index++)
+        {
+            final int reg = plan.getBlockRegister(block, index);
+            System.arraycopy(cached[index], 0, snapshot.data(), snapshot.offset(reg), registerSize);
+        }
+        return true;
+    }
+
+    /**
+     * readBlock() liest size Bytes ab Register reg nach array[offset...], ohne
+     * Schattenregister (ein Block umfasst mehrere Register).
+     *
+     * @throws IOException
+     */
+    private void readBlock(int reg, byte[] array, int offset, int size) throws IOException
+    {
+        final long start = System.nanoTime();
+        int count = -1;
+        try
+        {
+            transactionCount.incrementAndGet();
+            count = transport.read(reg, array, offset, size);
+            record(reg, start, count, count != size);
+        }
+        catch(IOException exception)
+        {
+            record(reg, start, 0, true);
+            final String msg = new StringBuilder().append("Lesefehler bei I2C aus Register ")
+                                                  .append(reg)
+                                                  .toString();
+            logger.error(msg, exception);
+
+            throw new IOException(msg);
+        }
+        if (count != size)
+        {
+            final String msg = new StringBuilder().append("Lesefehler bei I2C aus Register ")
+                                                  .append(reg)
+                                                  .append(": Es wurden nicht so viele Bytes gelesen, wie angeforder wurden!")
+                                                  .toString();
+            logger.error(msg);
+            throw new IOException(msg);
+        }
+    }
+
     
     /**
      * read() liest das Register reg eines I2C-Gerätes und gibt den Inhalt zurück.
      * Die Methode kann bis zu 3 Byte lange Register auslesen. 
+     * Cacheable-Register werden aus dem Schattenregister geliefert (vgl. setCacheable()).
      * 
      * @param reg Register
      * @return Inhalt des Registers reg
-     * @throws IOException Fehler bei dev.read(reg)
+     * @throws IOException Fehler bei transport.read(reg)
      */
     public int read(int reg) throws IOException
     {
+        final byte[] cached = getCached(reg, 1);
+        if (cached != null)
+        {
+            return cached[0] & 0xff;
+        }
+        acquireBus();
+        final long start = System.nanoTime();
         try
         {
-            return dev.read(reg);
+            transactionCount.incrementAndGet();
+            final int value = transport.read(reg);
+            record(reg, start, 1, false);
+            putCached(reg, new byte[] {(byte)value}, 1);
+            return value;
         }
         catch(IOException exception)
         {
+            record(reg, start, 0, true);
+            invalidate(reg);
             final String msg = new StringBuilder().append("Lesefehler bei I2C aus Register ")
                                                   .append(reg)
                                                   .toString();
@@ -138,11 +465,16 @@ public class I2C
             
             throw new IOException(msg);
         }
+        finally
+        {
+            releaseBus();
+        }
     }    
 
     /**
      * readArray() liest aus dem Register reg  eines I2C-Gerätes die Anzahl Bytes, 
      * die durch size angegeben wird und speichert diese in das Byte-Array array. 
+     * Cacheable-Register werden aus dem Schattenregister geliefert (vgl. setCacheable()).
      *
      * @param reg Register
      * @param array Byte-Array
@@ -152,14 +484,26 @@ public class I2C
      */
     public byte[] readArray(int reg, byte[] array, int size) throws IOException
     {
+        final byte[] cached = getCached(reg, size);
+        if (cached != null)
+        {
+            System.arraycopy(cached, 0, array, 0, size);
+            return array;
+        }
         boolean success = false;
+        acquireBus();
+        final long start = System.nanoTime();
         try
         {
-            final int count = dev.read(reg, array, 0, size);
+            transactionCount.incrementAndGet();
+            final int count = transport.read(reg, array, 0, size);
             success = (count == size);
+            record(reg, start, count, !success);
         }
         catch(IOException exception)
         {
+            record(reg, start, 0, true);
+            invalidate(reg);
             final String msg = new StringBuilder().append("Lesefehler bei I2C aus Register ")
                                                   .append(reg)
                                                   .toString();
@@ -167,6 +511,10 @@ public class I2C
 
             throw new IOException(msg);
         }
+        finally
+        {
+            releaseBus();
+        }
         if (!success)
         {
             final String msg = new StringBuilder().append("Lesefehler bei I2C aus Register ")
@@ -175,8 +523,10 @@ public class I2C
                                                   .toString();
             logger.error(msg);
             
+            invalidate(reg);
             throw new IOException(msg);
         }
+        putCached(reg, array, size);
         return array;
     }    
 
@@ -193,12 +543,19 @@ public class I2C
      */
     public void writeArray(int reg, byte[] array, int size) throws IOException
     {
+        acquireBus();
+        final long start = System.nanoTime();
         try
         {
-            dev.write(reg, array, 0, size);
+            transactionCount.incrementAndGet();
+            transport.write(reg, array, 0, size);
+            record(reg, start, size, false);
+            putCached(reg, array, size);
         }
         catch(IOException exception)
         {
+            record(reg, start, 0, true);
+            invalidate(reg, size);
             final String msg = new StringBuilder().append("Schreibfehler bei I2C-Gerät nach Register: ")
                                                   .append(reg)
                                                   .toString();
@@ -206,6 +563,76 @@ public class I2C
 
             throw new IOException(msg);
         }
+        finally
+        {
+            releaseBus();
+        }
+    }    
+    
+    /**
+     * readBuffer() liest ohne Registeradresse direkt vom I2C-Gerät bis zu size Bytes
+     * in das Byte-Array array (z.B. Antwort eines Arduino als I2C-Slave).
+     *
+     * @param array Byte-Array
+     * @param size max. Anzahl Byte, die gelesen werden sollen
+     * @return Anzahl der gelesenen Bytes
+     * @throws IOException 
+     */
+    public int readBuffer(byte[] array, int size) throws IOException
+    {
+        acquireBus();
+        final long start = System.nanoTime();
+        try
+        {
+            transactionCount.incrementAndGet();
+            final int count = transport.read(array, 0, size);
+            record(I2CLatencyStatistics.NO_REGISTER, start, count, false);
+            return count;
+        }
+        catch(IOException exception)
+        {
+            record(I2CLatencyStatistics.NO_REGISTER, start, 0, true);
+            final String msg = "Lesefehler bei I2C (ohne Register)";
+            logger.error(msg, exception);
+
+            throw new IOException(msg);
+        }
+        finally
+        {
+            releaseBus();
+        }
+    }    
+    
+    /**
+     * writeBuffer() schreibt ohne Registeradresse size Bytes aus dem Byte-Array 
+     * array direkt zum I2C-Gerät (z.B. Auftrag an einen Arduino als I2C-Slave).
+     *
+     * @param array Byte-Array
+     * @param size Anzahl zu schreibender Bytes
+     * @throws IOException 
+     */
+    public void writeBuffer(byte[] array, int size) throws IOException
+    {
+        acquireBus();
+        final long start = System.nanoTime();
+        try
+        {
+            transactionCount.incrementAndGet();
+            transport.write(array, 0, size);
+            record(I2CLatencyStatistics.NO_REGISTER, start, size, false);
+        }
+        catch(IOException exception)
+        {
+            record(I2CLatencyStatistics.NO_REGISTER, start, 0, true);
+            final String msg = "Schreibfehler bei I2C-Gerät (ohne Register)";
+            logger.error(msg, exception);
+
+            throw new IOException(msg);
+        }
+        finally
+        {
+            releaseBus();
+        }
     }    
     
     /**
@@ -268,12 +695,19 @@ public class I2C
      */
     public void write(int reg, byte val) throws IOException
     {
+        acquireBus();
+        final long start = System.nanoTime();
         try
         {
-            dev.write(reg, val);
+            transactionCount.incrementAndGet();
+            transport.write(reg, val);
+            record(reg, start, 1, false);
+            putCached(reg, new byte[] {val}, 1);
         }
         catch(IOException exception)
         {
+            record(reg, start, 0, true);
+            invalidate(reg);
             final String msg = new StringBuilder().append("Schreibfehler bei I2C-Gerät nach Register: ")
                                                   .append(reg)
                                                   .append(" und Wert ")
@@ -283,8 +717,368 @@ public class I2C
 
             throw new IOException(msg);
         }
+        finally
+        {
+            releaseBus();
+        }
     }    
 
+    /**
+     * readAsync() liest das Register reg asynchron ueber den Bus-Thread 
+     * (vgl. read()), der Aufrufer wird nicht blockiert.
+     * <p>
+     * Belegt der Aufrufer den Bus bereits (acquireBus(), z.B. innerhalb einer 
+     * Treibermethode), wird der Zugriff sofort im aufrufenden Thread ausgefuehrt,
+     * ein get() auf das Ergebnis fuehrt damit nicht zum Deadlock mit dem Bus-Thread
+     * (gilt fuer alle ...Async()-Methoden, vgl. I2CBusScheduler.submit()).
+     * </p>
+     *
+     * @param reg Register
+     * @return CompletableFuture mit dem Inhalt des Registers reg
+     */
+    public CompletableFuture<Integer> readAsync(int reg)
+    {
+        return submit(() -> Integer.valueOf(read(reg)));
+    }
+
+    /**
+     * readArrayAsync() liest asynchron size Bytes aus dem Register reg 
+     * (vgl. readArray()) in ein neues Byte-Array.
+     *
+     * @param reg Register
+     * @param size Anzahl Byte, die gelesen werden sollen
+     * @return CompletableFuture mit dem gelesenen Byte-Array
+     */
+    public CompletableFuture<byte[]> readArrayAsync(int reg, int size)
+    {
+        return submit(() -> readArray(reg, new byte[size], size));
+    }
+
+    /**
+     * writeAsync() schreibt asynchron den Wert val in das Register reg (vgl. write()).
+     *
+     * @param reg Register
+     * @param val Wert
+     * @return CompletableFuture, abgeschlossen nach dem Schreiben
+     */
+    public CompletableFuture<Void> writeAsync(int reg, byte val)
+    {
+        return submit(() ->
+        {
+            write(reg, val);
+            return null;
+        });
+    }
+
+    /**
+     * writeArrayAsync() schreibt asynchron size Bytes aus array in das Register reg 
+     * (vgl. writeArray()). Die Daten werden beim Aufruf kopiert, array kann danach
+     * wiederverwendet werden.
+     *
+     * @param reg Register
+     * @param array Byte-Array
+     * @param size Anzahl zu schreibender Bytes
+     * @return CompletableFuture, abgeschlossen nach dem Schreiben
+     */
+    public CompletableFuture<Void> writeArrayAsync(int reg, byte[] array, int size)
+    {
+        final byte[] copy = Arrays.copyOf(array, size);
+        return submit(() ->
+        {
+            writeArray(reg, copy, size);
+            return null;
+        });
+    }
+
+    /**
+     * submit() uebergibt eine Transaktion dieses Geraetes (mit dessen Prioritaetsklasse)
+     * an den Bus-Thread des Schedulers.
+     * Mit bereits belegtem Bus wird sie sofort im aufrufenden Thread ausgefuehrt.
+     *
+     * @param transaction Transaktion
+     * @return CompletableFuture zum Ergebnis der Transaktion
+     */
+    protected final <T> CompletableFuture<T> submit(I2CBusScheduler.Transaction<T> transaction)
+    {
+        return this.scheduler.submit(this.priority, transaction);
+    }
+
+    /**
+     * acquireBus() belegt den Bus ueber den Scheduler fuer den aktuellen Thread. 
+     * Damit werden mehrere Zugriffe (z.B. Read-Modify-Write) zu einer atomaren 
+     * Transaktion zusammengefasst. Jedes acquireBus() muss in einem finally-Block
+     * durch releaseBus() aufgehoben werden.
+     *
+     * @throws IOException Unterbrechung beim Warten auf den Bus
+     */
+    protected final void acquireBus() throws IOException
+    {
+        this.scheduler.acquire(this.priority);
+    }
+
+    /**
+     * releaseBus() gibt den mit acquireBus() belegten Bus wieder frei.
+     */
+    protected final void releaseBus()
+    {
+        this.scheduler.release();
+    }
+
+    /**
+     * SPIN_NANOS = 50000 - Restzeit (50 us), die delayNanos() aktiv wartet
+     */
+    private final static long SPIN_NANOS = 50000L;
+
+    /**
+     * delayNanos() wartet praezise nanos Nanosekunden (z.B. Einschwingzeit eines
+     * Oszillators im Bereich einiger 100 us).
+     * <p>
+     * Thread.sleep() wartet mindestens eine Millisekunde (und meist einen 
+     * Scheduler-Takt mehr), daher wird bis auf SPIN_NANOS mit parkNanos() 
+     * gewartet und der Rest aktiv bis zum Ablauf von System.nanoTime().
+     * </p>
+     *
+     * @param nanos Wartezeit in Nanosekunden
+     */
+    protected static void delayNanos(long nanos)
+    {
+        final long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > SPIN_NANOS)
+        {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+            remaining = deadline - System.nanoTime();
+        }
+        while (deadline - System.nanoTime() > 0L)
+        {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * getScheduler()
+     *
+     * @return Scheduler des Busses
+     */
+    public final I2CBusScheduler getScheduler()
+    {
+        return this.scheduler;
+    }
+
+    /**
+     * getPriority()
+     *
+     * @return Prioritaetsklasse der Transaktionen dieses Geraetes
+     */
+    public final Priority getPriority()
+    {
+        return this.priority;
+    }
+
+    /**
+     * getTransport()
+     * @return Zugriff auf das Geraet
+     */
+    public final I2CTransport getTransport()
+    {
+        return this.transport;
+    }
+
+    /**
+     * getTransactionCount() liefert die Anzahl der Bus-Transaktionen, die ueber
+     * diese Instanz seit der Instanziierung beauftragt wurden. Jeder Aufruf von
+     * read(), readArray(), write() und writeArray() zaehlt als eine Transaktion.
+     * 
+     * @return Anzahl der Bus-Transaktionen
+     */
+    public final long getTransactionCount()
+    {
+        return transactionCount.get();
+    }
+
+    /**
+     * getLatencyStatistics() liefert die Laufzeitstatistik dieses Geraetes fuer das 
+     * Register reg (bzw. I2CLatencyStatistics.NO_REGISTER fuer readBuffer()/writeBuffer()).
+     * 
+     * @param reg Register
+     * @return Momentaufnahme oder null, wenn noch kein Zugriff erfolgte
+     */
+    public I2CLatencyStatistics.Snapshot getLatencyStatistics(int reg)
+    {
+        return this.latencyStatistics.getSnapshot(this.address, reg);
+    }
+
+    /**
+     * record() - Erfassung einer Transaktion in der Laufzeitstatistik
+     * 
+     * @param reg Register bzw. I2CLatencyStatistics.NO_REGISTER
+     * @param start Beginn (System.nanoTime())
+     * @param bytes Anzahl der uebertragenen Bytes
+     * @param error true bei Fehler
+     */
+    private void record(int reg, long start, int bytes, boolean error)
+    {
+        this.latencyStatistics.record(this.address, reg, System.nanoTime() - start, bytes, error);
+    }
+
+    /**
+     * setCacheable() legt fest, ob das Register reg im Schattenregister gehalten
+     * wird (cacheable == true) oder immer vom I2C-Gerät gelesen wird (volatile, 
+     * cacheable == false, Voreinstellung).
+     * <p>
+     * Cacheable-Register duerfen sich nur durch Schreibzugriffe ueber diese Instanz
+     * aendern. Lesezugriffe (read(), readArray(), readPin(), configPin()...) werden 
+     * dann aus dem Schattenregister bedient, Schreibzugriffe werden durchgeschrieben
+     * (write-through). Ein Read-Modify-Write kostet damit nur noch einen Schreibzugriff.
+     * </p>
+     *
+     * @param reg Register
+     * @param cacheable true => cacheable, false => volatile
+     */
+    public void setCacheable(int reg, boolean cacheable)
+    {
+        synchronized(this.cache)
+        {
+            this.cacheable[reg] = cacheable;
+            this.cache[reg] = null;
+        }
+    }
+
+    /**
+     * isCacheable() 
+     *
+     * @param reg Register
+     * @return true, wenn das Register im Schattenregister gehalten wird
+     */
+    public boolean isCacheable(int reg)
+    {
+        synchronized(this.cache)
+        {
+            return this.cacheable[reg];
+        }
+    }
+
+    /**
+     * invalidate() verwirft den Inhalt des Schattenregisters zum Register reg,
+     * der naechste Lesezugriff erfolgt wieder auf das I2C-Gerät.
+     *
+     * @param reg Register
+     */
+    public void invalidate(int reg)
+    {
+        synchronized(this.cache)
+        {
+            this.cache[reg] = null;
+        }
+    }
+
+    /**
+     * invalidateAll() verwirft den Inhalt aller Schattenregister (z.B. nach 
+     * einem Reset des I2C-Gerätes).
+     */
+    public void invalidateAll()
+    {
+        synchronized(this.cache)
+        {
+            Arrays.fill(this.cache, null);
+        }
+    }
+
+    /**
+     * invalidate(int reg, int size) verwirft die Schattenregister aller Register, 
+     * die ein Blockzugriff von size Bytes ab reg ueberdeckt (mit Auto-Increment
+     * reg ... reg+size-1, sonst nur reg).
+     *
+     * @param reg erstes Register
+     * @param size Anzahl Bytes
+     */
+    private void invalidate(int reg, int size)
+    {
+        final int last = isAutoIncrement()? Math.min(reg + size, REGISTER_COUNT) : reg + 1;
+        synchronized(this.cache)
+        {
+            Arrays.fill(this.cache, reg, last, null);
+        }
+    }
+
+    /**
+     * getCached() liefert den Inhalt des Schattenregisters zum Register reg, wenn 
+     * das Register cacheable ist und mindestens size Bytes bekannt sind, sonst null.
+     * <p>
+     * Mit Auto-Increment ueberdeckt ein Blockzugriff die Register reg ... reg+size-1 
+     * (je ein Byte, vgl. putCached()), geliefert wird nur, wenn alle bekannt sind.
+     * </p>
+     *
+     * @param reg Register
+     * @param size Anzahl der benötigten Bytes
+     * @return Inhalt des Schattenregisters oder null
+     */
+    private byte[] getCached(int reg, int size)
+    {
+        final boolean autoIncrement = (size > 1) && isAutoIncrement();
+        synchronized(this.cache)
+        {
+            if (!autoIncrement)
+            {
+                final byte[] cached = this.cache[reg];
+                return ((cached != null) && (cached.length >= size))? cached : null;
+            }
+            if (reg + size > REGISTER_COUNT)
+            {
+                return null;
+            }
+            final byte[] block = new byte[size];
+            for (int index = 0; index < size; index++)
+            {
+                final byte[] cached = this.cache[reg + index];
+                if (cached == null)
+                {
+                    return null;
+                }
+                block[index] = cached[0];
+            }
+            return block;
+        }
+    }
+
+    /**
+     * putCached() legt die ersten size Bytes aus array im Schattenregister 
+     * zum Register reg ab, wenn das Register cacheable ist.
+     * <p>
+     * Mit Auto-Increment (isAutoIncrement()) ist ein Blockzugriff eine Folge von 
+     * 1-Byte-Registern: jedes cacheable Register reg ... reg+size-1 erhaelt sein 
+     * Byte, so bleibt z.B. MODE2 nach einem Block ab MODE1 aktuell. Ohne 
+     * Auto-Increment ist es ein Register mit size Bytes (z.B. MCP9808).
+     * </p>
+     *
+     * @param reg Register
+     * @param array Inhalt
+     * @param size Anzahl Bytes
+     */
+    private void putCached(int reg, byte[] array, int size)
+    {
+        final boolean autoIncrement = (size > 1) && isAutoIncrement();
+        synchronized(this.cache)
+        {
+            if (!autoIncrement)
+            {
+                if (this.cacheable[reg])
+                {
+                    this.cache[reg] = Arrays.copyOf(array, size);
+                }
+                return;
+            }
+            final int count = Math.min(size, REGISTER_COUNT - reg);
+            for (int index = 0; index < count; index++)
+            {
+                if (this.cacheable[reg + index])
+                {
+                    this.cache[reg + index] = new byte[] {array[index]};
+                }
+            }
+        }
+    }
+
     /**
      * configPin liest von dem I2C-Gerät das Register reg und ändert
      * an der Stelle bitpos den Bitwert auf level und schreibt die
@@ -300,9 +1094,17 @@ public class I2C
      */
     public void configPin(int reg, int level, int bitpos) throws IOException
     {
-        int regVal = read(reg);
-        regVal = setBit(regVal, bitpos, level);
-        write(reg, (byte)regVal);        
+        acquireBus();
+        try
+        {
+            int regVal = read(reg);
+            regVal = setBit(regVal, bitpos, level);
+            write(reg, (byte)regVal);        
+        }
+        finally
+        {
+            releaseBus();
+        }
     }    
 
     /**
@@ -321,9 +1123,17 @@ public class I2C
      */
     public void configPin(int regRead, int regWrite, int level, int bitpos) throws IOException
     {
-        int regVal = read(regRead);
-        regVal = setBit(regVal, bitpos, level);
-        write(regWrite, (byte)regVal);
+        acquireBus();
+        try
+        {
+            int regVal = read(regRead);
+            regVal = setBit(regVal, bitpos, level);
+            write(regWrite, (byte)regVal);
+        }
+        finally
+        {
+            releaseBus();
+        }
     }    
 
     /**
@@ -341,11 +1151,19 @@ public class I2C
      */
     public void configPinToggle(int regRead, int regWrite, int bitpos) throws IOException
     {
-        int regVal = read(regRead);
-        final int bitValue = getBit(regVal, bitpos);
-        // Wenn bitValue 0 ist, dann auf 1 setzen und umgekehrt...
-        regVal = setBit(regVal, bitpos, ((bitValue == 1)? 0 : 1));
-        write(regWrite, (byte)regVal);
+        acquireBus();
+        try
+        {
+            int regVal = read(regRead);
+            final int bitValue = getBit(regVal, bitpos);
+            // Wenn bitValue 0 ist, dann auf 1 setzen und umgekehrt...
+            regVal = setBit(regVal, bitpos, ((bitValue == 1)? 0 : 1));
+            write(regWrite, (byte)regVal);
+        }
+        finally
+        {
+            releaseBus();
+        }
     }    
 
 }
\ No newline at end of file
@@ -0,0 +1,585 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.pi4j.io.i2c.I2CBus;
+
+/**
+ * I2CBusScheduler vergibt den Zugriff auf einen physikalischen I2C-Bus an die
+ * I2C-Geraete (Unterklassen von I2C), die an diesem Bus haengen.
+ * <p>
+ * Jede Transaktion (Einzelzugriff oder zusammengesetzter Zugriff wie Read-Modify-Write
+ * oder die vier Schreibzugriffe eines PCA9685-Channels) wird ueber den Scheduler
+ * des Busses abgewickelt und ist damit atomar gegenueber allen anderen Geraeten am Bus.
+ * Der Zugriff ist reentrant, d.h. ein Thread, der den Bus bereits belegt, kann
+ * weitere (geschachtelte) Transaktionen ausfuehren.
+ * </p>
+ * <p>
+ * Warten mehrere Threads, erhaelt eine Transaktion der hoeheren Prioritaetsklasse
+ * (z.B. Priority.ACTUATOR fuer Motor-/Servo-Kommandos) den Bus vor einer Transaktion
+ * der niedrigeren Klasse (z.B. Priority.TELEMETRY fuer Temperaturabfragen). Die
+ * Wartezeit auf den Bus wird je Prioritaetsklasse erfasst (getStatistics()).
+ * </p>
+ * <p>
+ * Mit submit() werden Transaktionen asynchron an einen eigenen Bus-Thread uebergeben,
+ * der Aufrufer erhaelt sofort ein CompletableFuture. Der Bus-Thread arbeitet die
+ * Auftraege nach Prioritaetsklasse und innerhalb einer Klasse in der Reihenfolge 
+ * der Beauftragung ab.
+ * </p>
+ * @author Detlef Tribius
+ */
+public class I2CBusScheduler
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(I2CBusScheduler.class);
+
+    /**
+     * schedulers - ein Scheduler je Bus-Nummer...
+     */
+    private final static Map<Integer, I2CBusScheduler> schedulers = new HashMap<>();
+
+    /**
+     * busNumber - Nummer des Busses (z.B. I2CBus.BUS_1)
+     */
+    private final int busNumber;
+
+    /**
+     * monitor - Synchronisation der Busvergabe
+     */
+    private final Object monitor = new Object();
+
+    /**
+     * owner - Thread, der den Bus aktuell belegt (oder null)
+     */
+    private Thread owner = null;
+
+    /**
+     * holdCount - Schachtelungstiefe der Belegung durch owner
+     */
+    private int holdCount = 0;
+
+    /**
+     * waiting - Anzahl wartender Threads je Prioritaetsklasse
+     */
+    private final int[] waiting = new int[Priority.values().length];
+
+    /**
+     * count - Anzahl der Busbelegungen je Prioritaetsklasse
+     */
+    private final long[] count = new long[Priority.values().length];
+
+    /**
+     * totalWaitNanos - Summe der Wartezeiten je Prioritaetsklasse
+     */
+    private final long[] totalWaitNanos = new long[Priority.values().length];
+
+    /**
+     * maxWaitNanos - max. Wartezeit je Prioritaetsklasse
+     */
+    private final long[] maxWaitNanos = new long[Priority.values().length];
+
+    /**
+     * latencyStatistics - Laufzeit der Geraetezugriffe je Adresse und Register
+     */
+    private final I2CLatencyStatistics latencyStatistics = new I2CLatencyStatistics();
+
+    /**
+     * queue - asynchrone Auftraege fuer den Bus-Thread
+     */
+    private final PriorityBlockingQueue<AsyncTask<?>> queue = new PriorityBlockingQueue<>();
+
+    /**
+     * sequence - laufende Nummer der asynchronen Auftraege (Reihenfolge innerhalb einer Klasse)
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * busThread - Bus-Thread zur Abarbeitung der asynchronen Auftraege,
+     * wird beim ersten submit() gestartet.
+     */
+    private Thread busThread = null;
+
+    /**
+     * I2CBusScheduler(int busNumber) - Konstruktor, Instanzen nur ueber getInstance()
+     * @param busNumber
+     */
+    private I2CBusScheduler(int busNumber)
+    {
+        this.busNumber = busNumber;
+        logger.debug("I2CBusScheduler fuer Bus " + busNumber + " instanziiert...");
+    }
+
+    /**
+     * getInstance() - liefert den Scheduler zum Standard-Bus I2CBus.BUS_1
+     * @return Scheduler zu I2CBus.BUS_1
+     */
+    public static I2CBusScheduler getInstance()
+    {
+        return getInstance(I2CBus.BUS_1);
+    }
+
+    /**
+     * getInstance(int busNumber) - liefert den Scheduler zum Bus busNumber,
+     * je Bus gibt es genau einen Scheduler.
+     * @param busNumber Bus-Nummer (z.B. I2CBus.BUS_1)
+     * @return Scheduler zum Bus
+     */
+    synchronized public static I2CBusScheduler getInstance(int busNumber)
+    {
+        I2CBusScheduler scheduler = schedulers.get(busNumber);
+        if (scheduler == null)
+        {
+            scheduler = new I2CBusScheduler(busNumber);
+            schedulers.put(busNumber, scheduler);
+        }
+        return scheduler;
+    }
+
+    /**
+     * execute(Priority priority, Transaction&lt;T&gt; transaction) - fuehrt die
+     * Transaktion mit exklusivem Buszugriff aus.
+     * @param priority Prioritaetsklasse
+     * @param transaction Transaktion
+     * @return Ergebnis der Transaktion
+     * @throws IOException Fehler in der Transaktion bzw. Unterbrechung beim Warten
+     */
+    public <T> T execute(Priority priority, Transaction<T> transaction) throws IOException
+    {
+        acquire(priority);
+        try
+        {
+            return transaction.execute();
+        }
+        finally
+        {
+            release();
+        }
+    }
+
+    /**
+     * submit(Priority priority, Transaction&lt;T&gt; transaction) - uebergibt die 
+     * Transaktion an den Bus-Thread und kehrt sofort zurueck.
+     * <p>
+     * Das CompletableFuture wird mit dem Ergebnis der Transaktion bzw. mit der
+     * aufgetretenen Exception abgeschlossen.
+     * </p>
+     * <p>
+     * Belegt der aufrufende Thread den Bus bereits (acquire(), z.B. innerhalb einer
+     * Treibermethode), wird die Transaktion sofort in diesem Thread ausgefuehrt und
+     * ein abgeschlossenes CompletableFuture geliefert. Der Bus-Thread wuerde sonst 
+     * auf den Bus warten, der Aufrufer mit get() auf den Bus-Thread (Deadlock).
+     * </p>
+     * @param priority Prioritaetsklasse
+     * @param transaction Transaktion
+     * @return CompletableFuture zum Ergebnis der Transaktion
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Transaction<T> transaction)
+    {
+        if (isOwner())
+        {
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            try
+            {
+                future.complete(transaction.execute());
+            }
+            catch (Throwable throwable)
+            {
+                future.completeExceptionally(throwable);
+            }
+            return future;
+        }
+        final AsyncTask<T> task = new AsyncTask<>(priority, this.sequence.getAndIncrement(), transaction);
+        startBusThread();
+        this.queue.put(task);
+        return task.future;
+    }
+
+    /**
+     * isOwner()
+     * @return true, wenn der aktuelle Thread den Bus belegt
+     */
+    public boolean isOwner()
+    {
+        synchronized(this.monitor)
+        {
+            return this.owner == Thread.currentThread();
+        }
+    }
+
+    /**
+     * startBusThread() - startet (einmalig) den Bus-Thread...
+     */
+    synchronized private void startBusThread()
+    {
+        if (this.busThread != null)
+        {
+            return;
+        }
+        this.busThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while (true)
+                {
+                    final AsyncTask<?> task;
+                    try
+                    {
+                        task = I2CBusScheduler.this.queue.take();
+                    }
+                    catch (InterruptedException exception)
+                    {
+                        logger.debug("Bus-Thread " + I2CBusScheduler.this.busNumber + " beendet.");
+                        return;
+                    }
+                    task.run(I2CBusScheduler.this);
+                }
+            }
+        }, "I2C-Bus-" + this.busNumber);
+        this.busThread.setDaemon(true);
+        this.busThread.start();
+    }
+
+    /**
+     * acquire(Priority priority) - belegt den Bus fuer den aktuellen Thread.
+     * Jedes acquire() muss durch ein release() (in einem finally-Block)
+     * aufgehoben werden.
+     * @param priority Prioritaetsklasse
+     * @throws InterruptedIOException Unterbrechung waehrend des Wartens
+     */
+    public void acquire(Priority priority) throws InterruptedIOException
+    {
+        final Thread current = Thread.currentThread();
+        synchronized(this.monitor)
+        {
+            if (this.owner == current)
+            {
+                // Geschachtelte Transaktion...
+                this.holdCount++;
+                return;
+            }
+            final int index = priority.ordinal();
+            final long start = System.nanoTime();
+            this.waiting[index]++;
+            try
+            {
+                while ((this.owner != null) || isHigherWaiting(priority))
+                {
+                    this.monitor.wait();
+                }
+            }
+            catch (InterruptedException exception)
+            {
+                current.interrupt();
+                // Ggf. wartet ein anderer Thread auf diesen...
+                this.monitor.notifyAll();
+                throw new InterruptedIOException("Unterbrechung beim Warten auf Bus " + this.busNumber);
+            }
+            finally
+            {
+                this.waiting[index]--;
+            }
+            this.owner = current;
+            this.holdCount = 1;
+
+            final long waitNanos = System.nanoTime() - start;
+            this.count[index]++;
+            this.totalWaitNanos[index] += waitNanos;
+            if (waitNanos > this.maxWaitNanos[index])
+            {
+                this.maxWaitNanos[index] = waitNanos;
+            }
+        }
+    }
+
+    /**
+     * release() - gibt den Bus (bei der letzten geschachtelten Belegung) wieder frei.
+     */
+    public void release()
+    {
+        synchronized(this.monitor)
+        {
+            if (this.owner != Thread.currentThread())
+            {
+                throw new IllegalStateException("release() ohne acquire()!");
+            }
+            if (--this.holdCount == 0)
+            {
+                this.owner = null;
+                this.monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * isHigherWaiting(Priority priority)
+     * @param priority
+     * @return true, wenn ein Thread einer hoeheren Prioritaetsklasse wartet
+     */
+    private boolean isHigherWaiting(Priority priority)
+    {
+        for (int index = 0; index < priority.ordinal(); index++)
+        {
+            if (this.waiting[index] > 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * getBusNumber()
+     * @return Nummer des Busses
+     */
+    public final int getBusNumber()
+    {
+        return this.busNumber;
+    }
+
+    /**
+     * getStatistics(Priority priority) - liefert die Wartezeiten auf den Bus
+     * fuer die Prioritaetsklasse priority.
+     * @param priority Prioritaetsklasse
+     * @return Statistics (Momentaufnahme)
+     */
+    public Statistics getStatistics(Priority priority)
+    {
+        final int index = priority.ordinal();
+        synchronized(this.monitor)
+        {
+            return new Statistics(priority,
+                                  this.count[index],
+                                  this.totalWaitNanos[index],
+                                  this.maxWaitNanos[index]);
+        }
+    }
+
+    /**
+     * getLatencyStatistics() - liefert die Laufzeit-, Fehler- und Bytestatistik
+     * der Geraetezugriffe an diesem Bus (je Adresse und Register).
+     * @return I2CLatencyStatistics
+     */
+    public final I2CLatencyStatistics getLatencyStatistics()
+    {
+        return this.latencyStatistics;
+    }
+
+    /**
+     * resetStatistics() - setzt die Wartezeit-Statistik zurueck
+     */
+    public void resetStatistics()
+    {
+        synchronized(this.monitor)
+        {
+            for (int index = 0; index < this.count.length; index++)
+            {
+                this.count[index] = 0L;
+                this.totalWaitNanos[index] = 0L;
+                this.maxWaitNanos[index] = 0L;
+            }
+        }
+    }
+
+    /**
+     * Transaktion, die mit exklusivem Buszugriff ausgefuehrt wird...
+     * @param <T> Ergebnistyp
+     */
+    public static interface Transaction<T>
+    {
+        /**
+         * execute() - Ausfuehrung der Buszugriffe
+         * @return Ergebnis
+         * @throws IOException
+         */
+        T execute() throws IOException;
+    }
+
+    /**
+     * AsyncTask - asynchroner Auftrag fuer den Bus-Thread, geordnet nach
+     * Prioritaetsklasse und laufender Nummer.
+     * @param <T> Ergebnistyp
+     */
+    private static class AsyncTask<T> implements Comparable<AsyncTask<?>>
+    {
+        /**
+         * priority - Prioritaetsklasse
+         */
+        private final Priority priority;
+        /**
+         * number - laufende Nummer
+         */
+        private final long number;
+        /**
+         * transaction - auszufuehrende Transaktion
+         */
+        private final Transaction<T> transaction;
+        /**
+         * future - Ergebnis
+         */
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        /**
+         * AsyncTask(...) - Konstruktor
+         * @param priority
+         * @param number
+         * @param transaction
+         */
+        private AsyncTask(Priority priority, long number, Transaction<T> transaction)
+        {
+            this.priority = priority;
+            this.number = number;
+            this.transaction = transaction;
+        }
+
+        /**
+         * run(I2CBusScheduler scheduler) - Ausfuehrung im Bus-Thread
+         * @param scheduler
+         */
+        private void run(I2CBusScheduler scheduler)
+        {
+            try
+            {
+                this.future.complete(scheduler.execute(this.priority, this.transaction));
+            }
+            catch (Throwable throwable)
+            {
+                this.future.completeExceptionally(throwable);
+            }
+        }
+
+        @Override
+        public int compareTo(AsyncTask<?> other)
+        {
+            final int result = this.priority.compareTo(other.priority);
+            return (result != 0)? result : Long.compare(this.number, other.number);
+        }
+    }
+
+    /**
+     * Prioritaetsklassen, in der Reihenfolge absteigender Prioritaet.
+     * @author Detlef Tribius
+     */
+    public static enum Priority
+    {
+        /**
+         * ACTUATOR - Kommandos an Motoren und Servos (PCA9685, DRV8830...)
+         */
+        ACTUATOR,
+        /**
+         * TELEMETRY - Abfragen im Hintergrund (Temperatur, Zaehlerstaende...)
+         */
+        TELEMETRY;
+    }
+
+    /**
+     * Statistics - Momentaufnahme der Wartezeiten einer Prioritaetsklasse
+     * @author Detlef Tribius
+     */
+    public static class Statistics
+    {
+        /**
+         * priority - Prioritaetsklasse
+         */
+        private final Priority priority;
+        /**
+         * count - Anzahl der Busbelegungen
+         */
+        private final long count;
+        /**
+         * totalWaitNanos - Summe der Wartezeiten in ns
+         */
+        private final long totalWaitNanos;
+        /**
+         * maxWaitNanos - max. Wartezeit in ns
+         */
+        private final long maxWaitNanos;
+
+        /**
+         * Statistics(...) - Konstruktor
+         * @param priority
+         * @param count
+         * @param totalWaitNanos
+         * @param maxWaitNanos
+         */
+        public Statistics(Priority priority, long count, long totalWaitNanos, long maxWaitNanos)
+        {
+            this.priority = priority;
+            this.count = count;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        /**
+         * @return the priority
+         */
+        public final Priority getPriority()
+        {
+            return this.priority;
+        }
+
+        /**
+         * @return Anzahl der Busbelegungen
+         */
+        public final long getCount()
+        {
+            return this.count;
+        }
+
+        /**
+         * @return Summe der Wartezeiten in ns
+         */
+        public final long getTotalWaitNanos()
+        {
+            return this.totalWaitNanos;
+        }
+
+        /**
+         * @return max. Wartezeit in ns
+         */
+        public final long getMaxWaitNanos()
+        {
+            return this.maxWaitNanos;
+        }
+
+        /**
+         * @return mittlere Wartezeit in ns
+         */
+        public final long getAverageWaitNanos()
+        {
+            return (this.count > 0)? this.totalWaitNanos / this.count : 0L;
+        }
+
+        /**
+         * toString() - zu Protokollzwecken...
+         */
+        @Override
+        public String toString()
+        {
+            return new StringBuilder().append("[")
+                                      .append(this.priority)
+                                      .append(" ")
+                                      .append(this.count)
+                                      .append(" ")
+                                      .append(getAverageWaitNanos())
+                                      .append(" ")
+                                      .append(this.maxWaitNanos)
+                                      .append("]")
+                                      .toString();
+        }
+    }
+}
@@ -0,0 +1,431 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * I2CLatencyStatistics - Laufzeit-, Fehler- und Bytestatistik der Bus-Transaktionen
+ * je Geraeteadresse und Register.
+ * <p>
+ * Gemessen wird die Dauer des eigentlichen Geraetezugriffs (I2CTransport.read()/write()),
+ * die Wartezeit auf den Bus erfasst der I2CBusScheduler getrennt davon
+ * (vgl. I2CBusScheduler.getStatistics()). Damit laesst sich unterscheiden, ob der
+ * Bus (Wartezeit) oder das Geraet (Laufzeit) langsam ist.
+ * </p>
+ * <p>
+ * Die Erfassung ist lock-frei: je Adresse und Register wird beim ersten Zugriff
+ * ein Histogramm mit logarithmischen Klassen (2^i ns ... 2^(i+1) ns) angelegt
+ * (compareAndSet), danach kostet eine Erfassung zwei System.nanoTime() und einige
+ * atomare Additionen. Die Statistik kann daher im Betrieb eingeschaltet bleiben.
+ * </p>
+ * @author Detlef Tribius
+ */
+public class I2CLatencyStatistics
+{
+    /**
+     * ADDRESS_COUNT = 128 - 7-Bit-Adressen
+     */
+    public final static int ADDRESS_COUNT = 128;
+
+    /**
+     * NO_REGISTER = 256 - Kennung fuer Zugriffe ohne Register (readBuffer()/writeBuffer())
+     */
+    public final static int NO_REGISTER = I2C.REGISTER_COUNT;
+
+    /**
+     * SLOTS_PER_ADDRESS = 257 - Register 0x00...0xff und NO_REGISTER
+     */
+    private final static int SLOTS_PER_ADDRESS = I2C.REGISTER_COUNT + 1;
+
+    /**
+     * BUCKET_COUNT = 64 - Klassen 2^0 ... 2^63 ns
+     */
+    public final static int BUCKET_COUNT = 64;
+
+    /**
+     * histograms - Histogramme je (Adresse, Register), null = noch kein Zugriff
+     */
+    private final AtomicReferenceArray<Histogram> histograms = new AtomicReferenceArray<>(ADDRESS_COUNT * SLOTS_PER_ADDRESS);
+
+    /**
+     * startNanos - Beginn der Erfassung (Instanziierung bzw. reset())
+     */
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * enabled - Erfassung ein-/ausgeschaltet
+     */
+    private volatile boolean enabled = true;
+
+    /**
+     * record(...) - Erfassung einer Transaktion
+     * @param address Geraeteadresse
+     * @param reg Register bzw. NO_REGISTER
+     * @param nanos Dauer in ns
+     * @param bytes Anzahl der uebertragenen Bytes
+     * @param error true, wenn die Transaktion fehlgeschlagen ist
+     */
+    public void record(int address, int reg, long nanos, int bytes, boolean error)
+    {
+        if (!this.enabled)
+        {
+            return;
+        }
+        final int index = (address & (ADDRESS_COUNT - 1)) * SLOTS_PER_ADDRESS + Math.min(reg & 0x1ff, NO_REGISTER);
+        Histogram histogram = this.histograms.get(index);
+        if (histogram == null)
+        {
+            this.histograms.compareAndSet(index, null, new Histogram());
+            histogram = this.histograms.get(index);
+        }
+        histogram.record(nanos, bytes, error);
+    }
+
+    /**
+     * isEnabled()
+     * @return true, wenn die Erfassung eingeschaltet ist
+     */
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    /**
+     * setEnabled(boolean enabled) - Erfassung ein-/ausschalten
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * reset() - verwirft alle Histogramme und beginnt die Erfassung neu
+     */
+    public void reset()
+    {
+        for (int index = 0; index < this.histograms.length(); index++)
+        {
+            this.histograms.set(index, null);
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * getSnapshot(int address, int reg)
+     * @param address Geraeteadresse
+     * @param reg Register bzw. NO_REGISTER
+     * @return Momentaufnahme, null wenn noch keine Transaktion erfasst wurde
+     */
+    public Snapshot getSnapshot(int address, int reg)
+    {
+        final int index = (address & (ADDRESS_COUNT - 1)) * SLOTS_PER_ADDRESS + Math.min(reg & 0x1ff, NO_REGISTER);
+        final Histogram histogram = this.histograms.get(index);
+        return (histogram != null)? histogram.snapshot(address, reg, System.nanoTime() - this.startNanos) : null;
+    }
+
+    /**
+     * getSnapshots() - Momentaufnahmen aller erfassten (Adresse, Register)
+     * @return Liste, sortiert nach Adresse und Register
+     */
+    public List<Snapshot> getSnapshots()
+    {
+        final long elapsedNanos = System.nanoTime() - this.startNanos;
+        final List<Snapshot> snapshots = new ArrayList<>();
+        for (int index = 0; index < this.histograms.length(); index++)
+        {
+            final Histogram histogram = this.histograms.get(index);
+            if (histogram != null)
+            {
+                snapshots.add(histogram.snapshot(index / SLOTS_PER_ADDRESS, index % SLOTS_PER_ADDRESS, elapsedNanos));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * bucket(long nanos) - Klasse zur Dauer
+     * @param nanos Dauer in ns
+     * @return Klasse i mit 2^i <= nanos < 2^(i+1)
+     */
+    private static int bucket(long nanos)
+    {
+        return 63 - Long.numberOfLeadingZeros(Math.max(nanos, 1L));
+    }
+
+    /**
+     * Histogram - lock-freies Histogramm einer (Adresse, Register)
+     */
+    private final static class Histogram
+    {
+        /**
+         * buckets - Haeufigkeit je Klasse
+         */
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        /**
+         * count - Anzahl der Transaktionen
+         */
+        private final LongAdder count = new LongAdder();
+        /**
+         * errors - Anzahl der fehlgeschlagenen Transaktionen
+         */
+        private final LongAdder errors = new LongAdder();
+        /**
+         * bytes - Anzahl der uebertragenen Bytes
+         */
+        private final LongAdder bytes = new LongAdder();
+        /**
+         * totalNanos - Summe der Dauer in ns
+         */
+        private final LongAdder totalNanos = new LongAdder();
+        /**
+         * maxNanos - max. Dauer in ns
+         */
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * record(...) - Erfassung einer Transaktion
+         * @param nanos
+         * @param bytes
+         * @param error
+         */
+        void record(long nanos, int bytes, boolean error)
+        {
+            this.buckets.incrementAndGet(bucket(nanos));
+            this.count.increment();
+            this.totalNanos.add(nanos);
+            if (error)
+            {
+                this.errors.increment();
+            }
+            else
+            {
+                this.bytes.add(bytes);
+            }
+            long max = this.maxNanos.get();
+            while ((nanos > max) && !this.maxNanos.compareAndSet(max, nanos))
+            {
+                max = this.maxNanos.get();
+            }
+        }
+
+        /**
+         * snapshot(...) - Momentaufnahme
+         * @param address
+         * @param reg
+         * @param elapsedNanos Dauer der Erfassung
+         * @return Snapshot
+         */
+        Snapshot snapshot(int address, int reg, long elapsedNanos)
+        {
+            final long[] buckets = new long[BUCKET_COUNT];
+            for (int index = 0; index < BUCKET_COUNT; index++)
+            {
+                buckets[index] = this.buckets.get(index);
+            }
+            return new Snapshot(address,
+                                reg,
+                                this.count.sum(),
+                                this.errors.sum(),
+                                this.bytes.sum(),
+                                this.totalNanos.sum(),
+                                this.maxNanos.get(),
+                                buckets,
+                                elapsedNanos);
+        }
+    }
+
+    /**
+     * Snapshot - Momentaufnahme der Statistik einer (Adresse, Register)
+     */
+    public static class Snapshot
+    {
+        /**
+         * address - Geraeteadresse
+         */
+        private final int address;
+        /**
+         * reg - Register bzw. NO_REGISTER
+         */
+        private final int reg;
+        /**
+         * count - Anzahl der Transaktionen
+         */
+        private final long count;
+        /**
+         * errors - Anzahl der fehlgeschlagenen Transaktionen
+         */
+        private final long errors;
+        /**
+         * bytes - Anzahl der uebertragenen Bytes
+         */
+        private final long bytes;
+        /**
+         * totalNanos - Summe der Dauer in ns
+         */
+        private final long totalNanos;
+        /**
+         * maxNanos - max. Dauer in ns
+         */
+        private final long maxNanos;
+        /**
+         * buckets - Haeufigkeit je Klasse
+         */
+        private final long[] buckets;
+        /**
+         * elapsedNanos - Dauer der Erfassung in ns
+         */
+        private final long elapsedNanos;
+
+        /**
+         * Snapshot(...) - Konstruktor
+         */
+        public Snapshot(int address, int reg, long count, long errors, long bytes,
+                        long totalNanos, long maxNanos, long[] buckets, long elapsedNanos)
+        {
+            this.address = address;
+            this.reg = reg;
+            this.count = count;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return Geraeteadresse
+         */
+        public final int getAddress()
+        {
+            return this.address;
+        }
+
+        /**
+         * @return Register bzw. NO_REGISTER
+         */
+        public final int getRegister()
+        {
+            return this.reg;
+        }
+
+        /**
+         * @return Anzahl der Transaktionen
+         */
+        public final long getCount()
+        {
+            return this.count;
+        }
+
+        /**
+         * @return Anzahl der fehlgeschlagenen Transaktionen
+         */
+        public final long getErrors()
+        {
+            return this.errors;
+        }
+
+        /**
+         * @return Anzahl der uebertragenen Bytes
+         */
+        public final long getBytes()
+        {
+            return this.bytes;
+        }
+
+        /**
+         * @return max. Dauer in ns
+         */
+        public final long getMaxNanos()
+        {
+            return this.maxNanos;
+        }
+
+        /**
+         * @return mittlere Dauer in ns
+         */
+        public final long getAverageNanos()
+        {
+            return (this.count > 0)? this.totalNanos / this.count : 0L;
+        }
+
+        /**
+         * getPercentileNanos(double percentile) - Perzentil der Dauer
+         * <p>
+         * Geliefert wird die Obergrenze der Klasse, in die das Perzentil faellt
+         * (begrenzt auf die max. Dauer), der Fehler ist damit hoechstens Faktor 2.
+         * </p>
+         * @param percentile Perzentil (0.0 ... 100.0), z.B. 99.0
+         * @return Dauer in ns
+         */
+        public final long getPercentileNanos(double percentile)
+        {
+            if (this.count == 0)
+            {
+                return 0L;
+            }
+            final long rank = Math.max(1L, (long)Math.ceil(this.count * percentile / 100.0));
+            long sum = 0L;
+            for (int index = 0; index < BUCKET_COUNT; index++)
+            {
+                sum += this.buckets[index];
+                if (sum >= rank)
+                {
+                    final long upper = (index < 62)? (1L << (index + 1)) - 1 : Long.MAX_VALUE;
+                    return Math.min(upper, this.maxNanos);
+                }
+            }
+            return this.maxNanos;
+        }
+
+        /**
+         * @return Transaktionen je Sekunde seit Beginn der Erfassung
+         */
+        public final double getTransactionsPerSecond()
+        {
+            return (this.elapsedNanos > 0)? this.count * 1.0E9 / this.elapsedNanos : 0.0;
+        }
+
+        /**
+         * @return Bytes je Sekunde seit Beginn der Erfassung
+         */
+        public final double getBytesPerSecond()
+        {
+            return (this.elapsedNanos > 0)? this.bytes * 1.0E9 / this.elapsedNanos : 0.0;
+        }
+
+        /**
+         * toString() - zu Protokollzwecken...
+         */
+        @Override
+        public String toString()
+        {
+            return new StringBuilder().append("[0x")
+                                      .append(Integer.toHexString(this.address))
+                                      .append(" ")
+                                      .append((this.reg == NO_REGISTER)? "-" : "0x" + Integer.toHexString(this.reg))
+                                      .append(" ")
+                                      .append(this.count)
+                                      .append(" ")
+                                      .append(this.errors)
+                                      .append(" ")
+                                      .append(this.bytes)
+                                      .append(" ")
+                                      .append(getPercentileNanos(50.0))
+                                      .append(" ")
+                                      .append(getPercentileNanos(99.0))
+                                      .append(" ")
+                                      .append(this.maxNanos)
+                                      .append("]")
+                                      .toString();
+        }
+    }
+}
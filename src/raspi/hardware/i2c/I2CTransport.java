@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+
+import com.pi4j.io.i2c.I2CBus;
+
+/**
+ * I2CTransport - Zugriff auf ein Geraet am I2C-Bus, wie ihn die Klasse I2C benoetigt.
+ * <p>
+ * Implementierungen:
+ * </p>
+ * <ul>
+ * <li>Pi4jTransport - ueber pi4j (<code>I2CDevice</code>, auch Simulationen und
+ * Record/Replay aus raspi.hardware.i2c.sim bzw. raspi.hardware.i2c.trace)</li>
+ * <li>InMemoryTransport - Registerdatei im Speicher (Tests ohne Hardware)</li>
+ * <li>LinuxI2CTransport - direkt ueber /dev/i2c-N (I2C_RDWR), vgl. I2CTransports.openLinux()</li>
+ * </ul>
+ * <p>
+ * Die Auswahl erfolgt bei der Instanziierung der Treiber, z.B.
+ * <code>new MCP9808(I2CTransports.openLinux(1, 0x18))</code>.
+ * </p>
+ * @author Detlef Tribius
+ */
+public interface I2CTransport
+{
+    /**
+     * getAddress()
+     * @return Bus-Adresse des Geraetes
+     */
+    int getAddress();
+
+    /**
+     * getBusNumber() - Bus, an dem das Geraet haengt (Auswahl des I2CBusScheduler,
+     * Schluessel der PCA9685-Registry)
+     * @return Bus-Nummer, Voreinstellung I2CBus.BUS_1
+     */
+    default int getBusNumber()
+    {
+        return I2CBus.BUS_1;
+    }
+
+    /**
+     * read(int reg) - liest ein Byte aus dem Register reg
+     * @param reg Register
+     * @return Inhalt (0...255)
+     * @throws IOException
+     */
+    int read(int reg) throws IOException;
+
+    /**
+     * read(int reg, byte[] buffer, int offset, int size) - liest size Bytes ab Register reg
+     * @param reg Register
+     * @param buffer Ziel
+     * @param offset Index in buffer
+     * @param size Anzahl der Bytes
+     * @return Anzahl der gelesenen Bytes
+     * @throws IOException
+     */
+    int read(int reg, byte[] buffer, int offset, int size) throws IOException;
+
+    /**
+     * write(int reg, byte value) - schreibt ein Byte in das Register reg
+     * @param reg Register
+     * @param value Wert
+     * @throws IOException
+     */
+    void write(int reg, byte value) throws IOException;
+
+    /**
+     * write(int reg, byte[] buffer, int offset, int size) - schreibt size Bytes ab Register reg
+     * @param reg Register
+     * @param buffer Daten
+     * @param offset Index in buffer
+     * @param size Anzahl der Bytes
+     * @throws IOException
+     */
+    void write(int reg, byte[] buffer, int offset, int size) throws IOException;
+
+    /**
+     * read(byte[] buffer, int offset, int size) - liest ohne Register bis zu size Bytes
+     * @param buffer Ziel
+     * @param offset Index in buffer
+     * @param size max. Anzahl der Bytes
+     * @return Anzahl der gelesenen Bytes
+     * @throws IOException
+     */
+    int read(byte[] buffer, int offset, int size) throws IOException;
+
+    /**
+     * write(byte[] buffer, int offset, int size) - schreibt ohne Register size Bytes
+     * @param buffer Daten
+     * @param offset Index in buffer
+     * @param size Anzahl der Bytes
+     * @throws IOException
+     */
+    void write(byte[] buffer, int offset, int size) throws IOException;
+}
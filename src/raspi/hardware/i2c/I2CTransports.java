@@ -0,0 +1,104 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+/**
+ * I2CTransports - Erzeugung der I2CTransport-Implementierungen.
+ * <p>
+ * Der direkte Zugriff ueber /dev/i2c-N (LinuxI2CTransport) verwendet die FFM-API
+ * (java.lang.foreign, ab Java 22) und liegt daher in einem eigenen Quellverzeichnis
+ * (src-ffm, Target <code>ant compile-ffm</code>). Er wird hier per Reflection
+ * geladen, damit der Rest der Bibliothek weiterhin mit aelteren JDKs uebersetzt
+ * und betrieben werden kann.
+ * </p>
+ * @author Detlef Tribius
+ */
+public final class I2CTransports
+{
+    /**
+     * LINUX_TRANSPORT - Klassenname des i2c-dev-Transports
+     */
+    public final static String LINUX_TRANSPORT = "raspi.hardware.i2c.LinuxI2CTransport";
+
+    /**
+     * I2CTransports() - keine Instanzen
+     */
+    private I2CTransports()
+    {
+    }
+
+    /**
+     * pi4j(I2CDevice dev)
+     * @param dev pi4j-Geraet (oder Simulation, Record/Replay)
+     * @return Pi4jTransport
+     */
+    public static I2CTransport pi4j(I2CDevice dev)
+    {
+        return new Pi4jTransport(dev);
+    }
+
+    /**
+     * inMemory(int address)
+     * @param address Bus-Adresse
+     * @return InMemoryTransport
+     */
+    public static I2CTransport inMemory(int address)
+    {
+        return new InMemoryTransport(address);
+    }
+
+    /**
+     * isLinuxAvailable()
+     * @return true, wenn der i2c-dev-Transport geladen werden kann (src-ffm
+     * uebersetzt, Java 22 oder neuer)
+     */
+    public static boolean isLinuxAvailable()
+    {
+        try
+        {
+            Class.forName(LINUX_TRANSPORT);
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError exception)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * openLinux(int busNumber, int address) - direkter Zugriff ueber /dev/i2c-busNumber
+     * @param busNumber Bus-Nummer (z.B. I2CBus.BUS_1)
+     * @param address Bus-Adresse
+     * @return LinuxI2CTransport
+     * @throws IOException Geraetedatei nicht zu oeffnen bzw. Transport nicht verfuegbar
+     */
+    public static I2CTransport openLinux(int busNumber, int address) throws IOException
+    {
+        try
+        {
+            final Class<?> type = Class.forName(LINUX_TRANSPORT);
+            final Constructor<?> constructor = type.getConstructor(int.class, int.class);
+            return (I2CTransport)constructor.newInstance(busNumber, address);
+        }
+        catch (InvocationTargetException exception)
+        {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException)cause;
+            }
+            throw new IOException("LinuxI2CTransport: Fehler beim Oeffnen von /dev/i2c-" + busNumber, cause);
+        }
+        catch (ReflectiveOperationException | LinkageError exception)
+        {
+            throw new IOException("LinuxI2CTransport nicht verfuegbar (src-ffm, Java 22 erforderlich)!", exception);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+
+/**
+ * InMemoryTransport - I2CTransport auf eine Registerdatei im Speicher.
+ * <p>
+ * 256 Byte-Register mit Auto-Increment bei Blockzugriffen, Zugriffe ohne Register
+ * beginnen beim zuletzt adressierten Register. Bausteinspezifisches Verhalten bilden
+ * die Simulationen aus raspi.hardware.i2c.sim nach (ueber Pi4jTransport), der
+ * InMemoryTransport dient als einfache Attrappe fuer Tests und Benchmarks.
+ * </p>
+ * @author Detlef Tribius
+ */
+public class InMemoryTransport implements I2CTransport
+{
+    /**
+     * address - Bus-Adresse
+     */
+    private final int address;
+
+    /**
+     * registers - Registerdatei
+     */
+    private final byte[] registers = new byte[I2C.REGISTER_COUNT];
+
+    /**
+     * pointer - zuletzt adressiertes Register
+     */
+    private int pointer = 0;
+
+    /**
+     * InMemoryTransport(int address) - Konstruktor
+     * @param address Bus-Adresse
+     */
+    public InMemoryTransport(int address)
+    {
+        this.address = address;
+    }
+
+    /**
+     * peek(int reg) - Registerinhalt (fuer Tests)
+     * @param reg Register
+     * @return Inhalt (0...255)
+     */
+    synchronized public int peek(int reg)
+    {
+        return this.registers[reg & 0xff] & 0xff;
+    }
+
+    /**
+     * poke(int reg, int value) - Registerinhalt vorgeben (fuer Tests)
+     * @param reg Register
+     * @param value Inhalt (0...255)
+     */
+    synchronized public void poke(int reg, int value)
+    {
+        this.registers[reg & 0xff] = (byte)value;
+    }
+
+    @Override
+    public int getAddress()
+    {
+        return this.address;
+    }
+
+    @Override
+    synchronized public int read(int reg) throws IOException
+    {
+        this.pointer = reg & 0xff;
+        return this.registers[this.pointer] & 0xff;
+    }
+
+    @Override
+    synchronized public int read(int reg, byte[] buffer, int offset, int size) throws IOException
+    {
+        this.pointer = reg & 0xff;
+        return read(buffer, offset, size);
+    }
+
+    @Override
+    synchronized public void write(int reg, byte value) throws IOException
+    {
+        this.pointer = reg & 0xff;
+        this.registers[this.pointer] = value;
+    }
+
+    @Override
+    synchronized public void write(int reg, byte[] buffer, int offset, int size) throws IOException
+    {
+        this.pointer = reg & 0xff;
+        for (int index = 0; index < size; index++)
+        {
+            this.registers[(this.pointer + index) & 0xff] = buffer[offset + index];
+        }
+    }
+
+    @Override
+    synchronized public int read(byte[] buffer, int offset, int size) throws IOException
+    {
+        for (int index = 0; index < size; index++)
+        {
+            buffer[offset + index] = this.registers[(this.pointer + index) & 0xff];
+        }
+        return size;
+    }
+
+    @Override
+    synchronized public void write(byte[] buffer, int offset, int size) throws IOException
+    {
+        if (size > 0)
+        {
+            write(buffer[offset] & 0xff, buffer, offset + 1, size - 1);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * KeyframeTimeline - Keyframes (Zeit, Channel, Wert) einer Choreographie in einer
+ * kompakten Binaerdatei, gelesen ueber Memory-Mapping (vgl. TimelinePlayer).
+ * <p>
+ * Die Keyframes bleiben in der Datei, der Speicherbedarf ist damit unabhaengig von
+ * der Laenge der Choreographie (bis 2 GByte Dateigroesse).
+ * </p>
+ * <p>
+ * Format (big-endian):
+ * </p>
+ * <ul>
+ *  <li>Kopf: int MAGIC ("PCKF"), int Anzahl der Keyframes, je Channel 0 ... 15 
+ *  int Index des ersten Keyframes (NONE = -1: keiner)</li>
+ *  <li>je Keyframe (RECORD_SIZE = 12 Byte): int Zeit (ms), short Channel (0 ... 15),
+ *  short Wert (Off-Zeitpunkt 0 ... 4095), int Index des naechsten Keyframes 
+ *  desselben Channels (NONE = -1: keiner)</li>
+ * </ul>
+ * <p>
+ * Die Keyframes sind nach der Zeit aufsteigend sortiert. Ueber die Verkettung je
+ * Channel (getFirst(), getNext()) findet der TimelinePlayer den naechsten Keyframe
+ * eines Channels ohne Suche, der Aufwand je Takt haengt damit nur von der Anzahl 
+ * der faelligen Keyframes ab.
+ * </p>
+ * @author Detlef Tribius
+ */
+public final class KeyframeTimeline implements Closeable
+{
+    /**
+     * MAGIC = 0x50434B46 ("PCKF")
+     */
+    public final static int MAGIC = 0x50434B46;
+
+    /**
+     * NONE = -1 - kein (weiterer) Keyframe
+     */
+    public final static int NONE = -1;
+
+    /**
+     * HEADER_SIZE = 72 - Kopf (MAGIC, Anzahl, erster Keyframe je Channel)
+     */
+    public final static int HEADER_SIZE = 8 + 4 * PCA9685.NUMBER_CHANNELS;
+
+    /**
+     * RECORD_SIZE = 12 - Groesse eines Keyframes in Byte
+     */
+    public final static int RECORD_SIZE = 12;
+
+    /**
+     * channel - Datei
+     */
+    private final FileChannel channel;
+
+    /**
+     * buffer - abgebildete Datei
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * size - Anzahl der Keyframes
+     */
+    private final int size;
+
+    /**
+     * KeyframeTimeline(Path file) - oeffnet die Datei und bildet sie in den Speicher ab
+     * @param file Binaerdatei (vgl. write())
+     * @throws IOException - Problem beim Oeffnen bzw. unzulaessiges Format
+     */
+    public KeyframeTimeline(Path file) throws IOException
+    {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try
+        {
+            final long length = this.channel.size();
+            if ((length < HEADER_SIZE) || (length > Integer.MAX_VALUE))
+            {
+                throw new IOException("KeyframeTimeline: unzulaessige Dateigroesse " + length);
+            }
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0L, length);
+            if (this.buffer.getInt(0) != MAGIC)
+            {
+                throw new IOException("KeyframeTimeline: " + file + " ist keine Keyframe-Datei!");
+            }
+            this.size = this.buffer.getInt(4);
+            if ((this.size < 0) || ((long)HEADER_SIZE + (long)this.size * RECORD_SIZE != length))
+            {
+                throw new IOException("KeyframeTimeline: Anzahl " + this.size + " passt nicht zur Dateigroesse " + length);
+            }
+        }
+        catch (IOException | RuntimeException exception)
+        {
+            this.channel.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * write(Path file, int[] times, int[] channels, int[] values) - legt eine
+     * Keyframe-Datei an
+     * @param file Binaerdatei
+     * @param times Zeit je Keyframe (ms, aufsteigend)
+     * @param channels Channel je Keyframe (0 ... 15)
+     * @param values Wert je Keyframe (0 ... 4095)
+     * @throws IOException - Problem beim Schreiben
+     */
+    public static void write(Path file, int[] times, int[] channels, int[] values) throws IOException
+    {
+        final int size = times.length;
+        if ((channels.length != size) || (values.length != size))
+        {
+            throw new IllegalArgumentException("KeyframeTimeline: times, channels und values muessen gleich lang sein!");
+        }
+        for (int index = 0; index < size; index++)
+        {
+            if ((index > 0) && (times[index] < times[index - 1]))
+            {
+                throw new IllegalArgumentException("KeyframeTimeline: Zeiten nicht aufsteigend bei Index " + index);
+            }
+            checkKeyframe(times[index], channels[index], values[index]);
+        }
+        // Verkettung je Channel, von hinten: next[index] ist der folgende Keyframe
+        // desselben Channels, first[channel] danach der erste...
+        final int[] first = new int[PCA9685.NUMBER_CHANNELS];
+        Arrays.fill(first, NONE);
+        final int[] next = new int[size];
+        for (int index = size - 1; index >= 0; index--)
+        {
+            next[index] = first[channels[index]];
+            first[channels[index]] = index;
+        }
+        final ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + size * RECORD_SIZE);
+        data.putInt(MAGIC).putInt(size);
+        for (int channel = 0; channel < PCA9685.NUMBER_CHANNELS; channel++)
+        {
+            data.putInt(first[channel]);
+        }
+        for (int index = 0; index < size; index++)
+        {
+            data.putInt(times[index]).putShort((short)channels[index]).putShort((short)values[index]).putInt(next[index]);
+        }
+        data.flip();
+        try (FileChannel output = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                         StandardOpenOption.TRUNCATE_EXISTING,
+                                                         StandardOpenOption.WRITE))
+        {
+            while (data.hasRemaining())
+            {
+                output.write(data);
+            }
+        }
+    }
+
+    /**
+     * checkKeyframe(int time, int channel, int value)
+     * @throws IllegalArgumentException unzulaessiger Keyframe
+     */
+    private static void checkKeyframe(int time, int channel, int value)
+    {
+        if ((time < 0) || (channel < 0) || (channel >= PCA9685.NUMBER_CHANNELS)
+            || (value < 0) || (value >= PCA9685.RESOLUTION))
+        {
+            final String message = new StringBuilder().append("KeyframeTimeline: unzulaessiger Keyframe time=")
+                                                      .append(time)
+                                                      .append(", channel=")
+                                                      .append(channel)
+                                                      .append(", value=")
+                                                      .append(value)
+                                                      .toString();
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    /**
+     * size()
+     * @return Anzahl der Keyframes
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * getTime(int index)
+     * @param index Keyframe
+     * @return Zeit (ms)
+     */
+    public int getTime(int index)
+    {
+        return this.buffer.getInt(offset(index));
+    }
+
+    /**
+     * getChannel(int index)
+     * @param index Keyframe
+     * @return Channel (0 ... 15)
+     */
+    public int getChannel(int index)
+    {
+        final int channel = this.buffer.getShort(offset(index) + 4);
+        if ((channel < 0) || (channel >= PCA9685.NUMBER_CHANNELS))
+        {
+            throw new IllegalArgumentException("KeyframeTimeline: unzulaessiger Channel " + channel + " bei Index " + index);
+        }
+        return channel;
+    }
+
+    /**
+     * getValue(int index)
+     * @param index Keyframe
+     * @return Wert (0 ... 4095)
+     */
+    public int getValue(int index)
+    {
+        return Math.max(0, Math.min(PCA9685.RESOLUTION - 1, this.buffer.getShort(offset(index) + 6)));
+    }
+
+    /**
+     * getFirst(int channel)
+     * @param channel Channel (0 ... 15)
+     * @return Index des ersten Keyframes des Channels bzw. NONE
+     */
+    public int getFirst(int channel)
+    {
+        if ((channel < 0) || (channel >= PCA9685.NUMBER_CHANNELS))
+        {
+            throw new IllegalArgumentException("KeyframeTimeline: unzulaessiger Channel " + channel);
+        }
+        return checkLink(this.buffer.getInt(8 + 4 * channel), NONE);
+    }
+
+    /**
+     * getNext(int index)
+     * @param index Keyframe
+     * @return Index des naechsten Keyframes desselben Channels bzw. NONE
+     */
+    public int getNext(int index)
+    {
+        return checkLink(this.buffer.getInt(offset(index) + 8), index);
+    }
+
+    /**
+     * checkLink(int link, int index) - Verkettung nur vorwaerts (link > index) 
+     * innerhalb der Datei, sonst waere die Datei fehlerhaft (Endlosschleife)
+     * @return link
+     */
+    private int checkLink(int link, int index)
+    {
+        if ((link != NONE) && ((link <= index) || (link >= this.size)))
+        {
+            throw new IllegalArgumentException("KeyframeTimeline: unzulaessige Verkettung " + link + " bei Index " + index);
+        }
+        return link;
+    }
+
+    /**
+     * getDuration()
+     * @return Zeit des letzten Keyframes (ms), 0 ohne Keyframes
+     */
+    public int getDuration()
+    {
+        return (this.size > 0)? getTime(this.size - 1) : 0;
+    }
+
+    /**
+     * offset(int index)
+     */
+    private int offset(int index)
+    {
+        if ((index < 0) || (index >= this.size))
+        {
+            throw new IndexOutOfBoundsException("KeyframeTimeline: Index " + index + ", Anzahl " + this.size);
+        }
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.channel.close();
+    }
+}
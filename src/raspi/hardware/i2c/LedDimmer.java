@@ -0,0 +1,368 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LedDimmer - Dimmen von LEDs an einem PCA9685 (Helligkeit, Fade, Blinken).
+ * <p>
+ * Die Helligkeit (0 ... 4095, linear fuer das Auge) wird ueber eine vorberechnete
+ * Gamma-Tabelle (GAMMA = 2.2) auf den Off-Zeitpunkt (12 Bit) abgebildet. Ein Thread
+ * mit festem Takt (periodMillis) berechnet alle laufenden Effekte, je Takt werden
+ * nur die geaenderten Channel mit einer Transaktion geschrieben (PCA9685.flushBlock()).
+ * Die Anwendung setzt lediglich die Effekte, ohne selbst auf den Bus zuzugreifen.
+ * </p>
+ * <p><code>
+ * final LedDimmer dimmer = new LedDimmer(pca9685, LedDimmer.DEFAULT_PERIOD_MILLIS);<br>
+ * dimmer.start();<br>
+ * dimmer.fade(4, LedDimmer.MAX_BRIGHTNESS, 500);<br>
+ * dimmer.blink(5, 0, LedDimmer.MAX_BRIGHTNESS, 250, 750);<br>
+ * </code></p>
+ * @author Detlef Tribius
+ */
+public class LedDimmer implements Closeable
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(LedDimmer.class);
+
+    /**
+     * DEFAULT_PERIOD_MILLIS = 20 - Takt (50 Hz, fuer das Auge fliessend)
+     */
+    public final static int DEFAULT_PERIOD_MILLIS = 20;
+
+    /**
+     * MAX_BRIGHTNESS = 4095 - groesste Helligkeit
+     */
+    public final static int MAX_BRIGHTNESS = PCA9685.RESOLUTION - 1;
+
+    /**
+     * GAMMA = 2.2 - Gamma-Korrektur
+     */
+    public final static double GAMMA = 2.2;
+
+    /**
+     * GAMMA_TABLE - Helligkeit 0 ... 4095 => Off-Zeitpunkt 0 ... 4095 (einmalig berechnet)
+     */
+    private final static short[] GAMMA_TABLE = new short[PCA9685.RESOLUTION];
+
+    static
+    {
+        for (int brightness = 0; brightness < GAMMA_TABLE.length; brightness++)
+        {
+            final double relative = (double)brightness / MAX_BRIGHTNESS;
+            GAMMA_TABLE[brightness] = (short)Math.round(Math.pow(relative, GAMMA) * MAX_BRIGHTNESS);
+        }
+    }
+
+    /**
+     * Effekte je Channel
+     */
+    private final static int NONE = 0;
+    private final static int FADE = 1;
+    private final static int BLINK = 2;
+
+    /**
+     * board - Baustein
+     */
+    private final PCA9685 board;
+
+    /**
+     * periodMillis - Takt in ms
+     */
+    private final int periodMillis;
+
+    /**
+     * tick - Anzahl der Takte
+     */
+    private long tick = 0L;
+
+    /**
+     * effect - Effekt je Channel (NONE, FADE, BLINK)
+     */
+    private final int[] effect = new int[PCA9685.NUMBER_CHANNELS];
+
+    /**
+     * brightness - aktuelle Helligkeit je Channel (-1 => nicht vom LedDimmer gesetzt)
+     */
+    private final int[] brightness = new int[PCA9685.NUMBER_CHANNELS];
+
+    /**
+     * from, to - Helligkeit zu Beginn/Ende (FADE) bzw. aus/an (BLINK)
+     */
+    private final int[] from = new int[PCA9685.NUMBER_CHANNELS];
+    private final int[] to = new int[PCA9685.NUMBER_CHANNELS];
+
+    /**
+     * startTick - Takt zu Beginn des Effekts
+     */
+    private final long[] startTick = new long[PCA9685.NUMBER_CHANNELS];
+
+    /**
+     * firstTicks, secondTicks - Dauer (FADE) bzw. an/aus (BLINK) in Takten
+     */
+    private final int[] firstTicks = new int[PCA9685.NUMBER_CHANNELS];
+    private final int[] secondTicks = new int[PCA9685.NUMBER_CHANNELS];
+
+    /**
+     * dirty - Helligkeit seit dem letzten Takt geaendert
+     */
+    private final boolean[] dirty = new boolean[PCA9685.NUMBER_CHANNELS];
+
+    /**
+     * executor - Thread mit festem Takt (start())
+     */
+    private ScheduledExecutorService executor = null;
+
+    /**
+     * LedDimmer(PCA9685 board, int periodMillis) - Konstruktor
+     * @param board Baustein
+     * @param periodMillis Takt in ms (> 0)
+     */
+    public LedDimmer(PCA9685 board, int periodMillis)
+    {
+        if (periodMillis <= 0)
+        {
+            throw new IllegalArgumentException("LedDimmer: periodMillis=" + periodMillis);
+        }
+        this.board = board;
+        this.periodMillis = periodMillis;
+        Arrays.fill(this.brightness, -1);
+    }
+
+    /**
+     * getGammaValue(int brightness) - Off-Zeitpunkt zur Helligkeit (Tabelle)
+     * @param brightness Helligkeit, begrenzt auf 0 ... 4095
+     * @return Off-Zeitpunkt 0 ... 4095
+     */
+    public static int getGammaValue(int brightness)
+    {
+        return GAMMA_TABLE[Math.max(0, Math.min(MAX_BRIGHTNESS, brightness))];
+    }
+
+    /**
+     * start() - startet den Takt-Thread (einmalig)
+     */
+    synchronized public void start()
+    {
+        if (this.executor != null)
+        {
+            return;
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            final Thread thread = new Thread(runnable, "LedDimmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleAtFixedRate(() ->
+        {
+            try
+            {
+                step();
+            }
+            catch (IOException | RuntimeException exception)
+            {
+                logger.error("LedDimmer: " + exception.getMessage(), exception);
+            }
+        }, this.periodMillis, this.periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * close() - beendet den Takt-Thread, die LEDs behalten ihre Helligkeit
+     */
+    @Override
+    synchronized public void close()
+    {
+        if (this.executor != null)
+        {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * setBrightness(int channel, int brightness) - Helligkeit (beendet einen Effekt),
+     * geschrieben im naechsten Takt
+     * @param channel Channel
+     * @param brightness Helligkeit 0 ... 4095
+     */
+    synchronized public void setBrightness(int channel, int brightness)
+    {
+        checkChannel(channel);
+        this.effect[channel] = NONE;
+        setCurrent(channel, clamp(brightness));
+    }
+
+    /**
+     * getBrightness(int channel)
+     * @param channel Channel
+     * @return aktuelle Helligkeit, -1 => nicht vom LedDimmer gesetzt
+     */
+    synchronized public int getBrightness(int channel)
+    {
+        checkChannel(channel);
+        return this.brightness[channel];
+    }
+
+    /**
+     * fade(int channel, int target, int durationMillis) - linearer Uebergang von der
+     * aktuellen Helligkeit (unbekannt => 0) zum Ziel
+     * @param channel Channel
+     * @param target Helligkeit 0 ... 4095
+     * @param durationMillis Dauer in ms
+     */
+    synchronized public void fade(int channel, int target, int durationMillis)
+    {
+        checkChannel(channel);
+        if (durationMillis < 0)
+        {
+            throw new IllegalArgumentException("LedDimmer: durationMillis=" + durationMillis);
+        }
+        this.effect[channel] = FADE;
+        this.from[channel] = Math.max(0, this.brightness[channel]);
+        this.to[channel] = clamp(target);
+        this.startTick[channel] = this.tick;
+        this.firstTicks[channel] = Math.max(1, toTicks(durationMillis));
+    }
+
+    /**
+     * blink(int channel, int low, int high, int onMillis, int offMillis) - Blinken,
+     * beginnend mit high
+     * @param channel Channel
+     * @param low Helligkeit aus
+     * @param high Helligkeit an
+     * @param onMillis Dauer an (ms)
+     * @param offMillis Dauer aus (ms)
+     */
+    synchronized public void blink(int channel, int low, int high, int onMillis, int offMillis)
+    {
+        checkChannel(channel);
+        if ((onMillis <= 0) || (offMillis <= 0))
+        {
+            throw new IllegalArgumentException("LedDimmer: onMillis=" + onMillis + ", offMillis=" + offMillis);
+        }
+        this.effect[channel] = BLINK;
+        this.from[channel] = clamp(low);
+        this.to[channel] = clamp(high);
+        this.startTick[channel] = this.tick;
+        this.firstTicks[channel] = Math.max(1, toTicks(onMillis));
+        this.secondTicks[channel] = Math.max(1, toTicks(offMillis));
+    }
+
+    /**
+     * stop(int channel) - beendet den Effekt, die aktuelle Helligkeit bleibt
+     * @param channel Channel
+     */
+    synchronized public void stop(int channel)
+    {
+        checkChannel(channel);
+        this.effect[channel] = NONE;
+    }
+
+    /**
+     * isActive(int channel)
+     * @param channel Channel
+     * @return true, wenn ein Effekt laeuft
+     */
+    synchronized public boolean isActive(int channel)
+    {
+        checkChannel(channel);
+        return this.effect[channel] != NONE;
+    }
+
+    /**
+     * step() - ein Takt: alle Effekte berechnen, geaenderte Channel mit einer
+     * Transaktion schreiben
+     * @return Anzahl der Bus-Transaktionen
+     * @throws IOException
+     */
+    synchronized int step() throws IOException
+    {
+        boolean changed = false;
+        for (int channel = 0; channel < PCA9685.NUMBER_CHANNELS; channel++)
+        {
+            final long elapsed = this.tick - this.startTick[channel];
+            switch (this.effect[channel])
+            {
+                case FADE:
+                    if (elapsed >= this.firstTicks[channel])
+                    {
+                        setCurrent(channel, this.to[channel]);
+                        this.effect[channel] = NONE;
+                    }
+                    else
+                    {
+                        final long delta = this.to[channel] - this.from[channel];
+                        setCurrent(channel, (int)(this.from[channel] + delta * elapsed / this.firstTicks[channel]));
+                    }
+                    break;
+                case BLINK:
+                    final long phase = elapsed % (this.firstTicks[channel] + this.secondTicks[channel]);
+                    setCurrent(channel, (phase < this.firstTicks[channel])? this.to[channel] : this.from[channel]);
+                    break;
+                default:
+                    break;
+            }
+            if (this.dirty[channel])
+            {
+                this.board.setChannel(channel, 0, GAMMA_TABLE[this.brightness[channel]]);
+                this.dirty[channel] = false;
+                changed = true;
+            }
+        }
+        this.tick++;
+        return changed? this.board.flushBlock() : 0;
+    }
+
+    /**
+     * setCurrent(int channel, int value) - Helligkeit, bei Aenderung zum Schreiben markiert
+     */
+    private void setCurrent(int channel, int value)
+    {
+        if (this.brightness[channel] != value)
+        {
+            this.brightness[channel] = value;
+            this.dirty[channel] = true;
+        }
+    }
+
+    /**
+     * toTicks(int millis) - Dauer in Takten (gerundet)
+     */
+    private int toTicks(int millis)
+    {
+        return (millis + this.periodMillis / 2) / this.periodMillis;
+    }
+
+    /**
+     * clamp(int brightness) - begrenzt auf 0 ... 4095
+     */
+    private static int clamp(int brightness)
+    {
+        return Math.max(0, Math.min(MAX_BRIGHTNESS, brightness));
+    }
+
+    /**
+     * checkChannel(int channel)
+     * @throws IllegalArgumentException unzulaessiger Channel
+     */
+    private static void checkChannel(int channel)
+    {
+        if ((channel < 0) || (channel >= PCA9685.NUMBER_CHANNELS))
+        {
+            throw new IllegalArgumentException("LedDimmer: channel=" + channel);
+        }
+    }
+}
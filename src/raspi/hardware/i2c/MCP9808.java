@@ -3,9 +3,12 @@
  */
 package raspi.hardware.i2c;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import com.pi4j.io.i2c.I2CDevice;
 
+import raspi.hardware.i2c.I2CBusScheduler.Priority;
+
 /**
  * I2C-Treiber für den Temperatursensor MCP9808.
  * 
@@ -93,10 +96,105 @@ public class MCP9808  extends I2C
 
     public static final int  ShutdownModeBit        = 0b0000_0001; //byte[0]
 
+    // *** Bitfelder (CONFIG als 16-Bit-Wert, byte[0] hoeherwertig) ***
+    /**
+     * HYSTERESIS - CONFIG Bit 10:9, Werte HYST00...HYST60
+     */
+    public static final RegisterField HYSTERESIS     = new RegisterField(CONFIG, 2, 9, 2);
+    /**
+     * SHUTDOWN_MODE - CONFIG Bit 8
+     */
+    public static final RegisterField SHUTDOWN_MODE  = new RegisterField(CONFIG, 2, 8, 1);
+    /**
+     * CRIT_LOCK - CONFIG Bit 7
+     */
+    public static final RegisterField CRIT_LOCK      = new RegisterField(CONFIG, 2, 7, 1);
+    /**
+     * WINDOW_LOCK - CONFIG Bit 6
+     */
+    public static final RegisterField WINDOW_LOCK    = new RegisterField(CONFIG, 2, 6, 1);
+    /**
+     * INTERRUPT_CLEAR - CONFIG Bit 5
+     */
+    public static final RegisterField INTERRUPT_CLEAR = new RegisterField(CONFIG, 2, 5, 1);
+    /**
+     * ALERT_STATUS - CONFIG Bit 4 (setzt der Baustein)
+     */
+    public static final RegisterField ALERT_STATUS   = new RegisterField(CONFIG, 2, 4, 1);
+    /**
+     * ALERT_CONTROL - CONFIG Bit 3, Alert-Ausgang aktiv
+     */
+    public static final RegisterField ALERT_CONTROL  = new RegisterField(CONFIG, 2, 3, 1);
+    /**
+     * ALERT_SELECT - CONFIG Bit 2, Alert nur bei TCRIT
+     */
+    public static final RegisterField ALERT_SELECT   = new RegisterField(CONFIG, 2, 2, 1);
+    /**
+     * ALERT_POLARITY - CONFIG Bit 1, Alert-Ausgang activ-high
+     */
+    public static final RegisterField ALERT_POLARITY = new RegisterField(CONFIG, 2, 1, 1);
+    /**
+     * ALERT_MODE - CONFIG Bit 0, 0 = Komparator, 1 = Interrupt
+     */
+    public static final RegisterField ALERT_MODE     = new RegisterField(CONFIG, 2, 0, 1);
+    /**
+     * RESOLUTION - RESOL Bit 1:0, Werte 0 (0,5°C) ... 3 (0,0625°C)
+     */
+    public static final RegisterField RESOLUTION     = RegisterField.of(RESOL, 0, 2);
+
+    /**
+     * TEMPERATURE_PLAN - TUPPER, TLOWER, TCRIT und TEMPER (16 Bit, ohne Auto-Increment)
+     */
+    public static final ReadPlan TEMPERATURE_PLAN = new ReadPlan(2, false, 0, TUPPER, TLOWER, TCRIT, TEMPER);
+
 
     public MCP9808(final I2CDevice dev)
     {
-        super(dev);
+        this(new Pi4jTransport(dev));
+    }
+
+    /**
+     * Konstruktor mit Vorgabe des Transports, vgl. I2CTransports
+     * @param transport I2CTransport
+     */
+    public MCP9808(final I2CTransport transport)
+    {
+        super(transport, Priority.TELEMETRY);
+        // Konfiguration und Aufloesung werden nur ueber diese Instanz geaendert,
+        // Read-Modify-Write daher aus dem Schattenregister...
+        // (TEMPER bleibt volatile, ebenso TUPPER, TLOWER und TCRIT: der Baustein
+        // haelt nur Bit 12:2 und ignoriert Schreibzugriffe bei WINDOW_LOCK/CRIT_LOCK!)
+        // CONFIG nur bis zum ersten Lock-Bit, vgl. writeRegister()...
+        setCacheable(CONFIG, true);
+        setCacheable(RESOL, true);
+    }
+
+    /**
+     * writeRegister() - wie I2C.writeRegister(), zusaetzlich fuer CONFIG: 
+     * <ul>
+     * <li>Mit gesetztem CRIT_LOCK bzw. WINDOW_LOCK ignoriert der Baustein Aenderungen
+     * einzelner Bits (Lock-Bits bleiben bis zum Power-On erhalten), CONFIG wird
+     * daher nicht mehr im Schattenregister gehalten.</li>
+     * <li>INTERRUPT_CLEAR wird vom Baustein als 0 gelesen, das Schattenregister
+     * wird verworfen.</li>
+     * </ul>
+     */
+    @Override
+    public void writeRegister(int reg, int size, int value) throws IOException
+    {
+        super.writeRegister(reg, size, value);
+        if (reg != CONFIG)
+        {
+            return;
+        }
+        if (CRIT_LOCK.isSet(value) || WINDOW_LOCK.isSet(value))
+        {
+            setCacheable(CONFIG, false);
+        }
+        else if (INTERRUPT_CLEAR.isSet(value))
+        {
+            invalidate(CONFIG);
+        }
     }
 
     /**
@@ -163,6 +261,29 @@ public class MCP9808  extends I2C
         return reg;
     }
 
+    /**
+     * isAutoIncrement() - der Registerzeiger des MCP9808 zaehlt nicht weiter,
+     * jedes Register wird einzeln gelesen.
+     */
+    @Override
+    public boolean isAutoIncrement()
+    {
+        return false;
+    }
+
+    /**
+     * readTemperatures() liest die Grenzwerte und die Umgebungstemperatur als eine
+     * Transaktion am Bus (ohne Auto-Increment je Register ein Zugriff). Die Werte liefert
+     * convertTemp(snapshot.getArray(TEMPER, 2)) usw.
+     *
+     * @return Momentaufnahme von TUPPER, TLOWER, TCRIT und TEMPER
+     * @throws IOException
+     */
+    public RegisterSnapshot readTemperatures() throws IOException
+    {
+        return readRegisters(TEMPERATURE_PLAN);
+    }
+
     /**
      * getAmbientTemp fragt die Umgebungstemperatur ab.
      *
@@ -176,6 +297,17 @@ public class MCP9808  extends I2C
         return convertTemp(temp);
     }
 
+    /**
+     * getAmbientTempAsync fragt die Umgebungstemperatur asynchron ab, 
+     * der Aufrufer wird nicht blockiert.
+     *
+     * @return CompletableFuture mit der Temperatur in °C
+     */
+    public CompletableFuture<Double> getAmbientTempAsync()
+    {
+        return readArrayAsync(TEMPER, 2).thenApply(temp -> Double.valueOf(convertTemp(temp)));
+    }
+
     /**
      * isAmbientGreaterEqualCrit erfragt, ob die Umgebungstemperatur 
      * größer/gleich der kritischen Temperatur ist.
@@ -310,24 +442,15 @@ public class MCP9808  extends I2C
      */
     public void configComparatorMode(boolean activeHigh, boolean alertOnlyCrit) throws IOException
     {
-        byte[] config = {0,0};
-        readArray(CONFIG, config, 2);
-        
-        int conf = config[1];                           //Bit 1...8
-        conf = setBit(conf, AlertOutputControlBit, 1);  //Alert Output enabled
-        conf = setBit(conf, AlertOutputModeBit, 0);     //Mode = Comparator
-        
-        // activeHigh gesetzt => Alert Output = activ-high
-        //     sonst          => Alert Output = activ-low
-        conf = setBit(conf, AlertOutputPolarityBit, (activeHigh? 1 : 0));
-        
+        // Alert Output enabled, Mode = Comparator,
+        // activeHigh gesetzt => Alert Output = activ-high, sonst activ-low
         // alertOnlyCrit gesetzt => Alarmmeldung nur wenn Umgebungstemperatur > kritische Temparatur /
         //      sonst            => Alarmmeldung bei TUpper, TLower and TCrit
-        conf = setBit(conf, AlertOutputSelectBit, (alertOnlyCrit? 1 : 0));
-        
-        config[1] = (byte)conf;
-        
-        writeArray(CONFIG, config, 2);
+        update().set(ALERT_CONTROL, true)
+                .set(ALERT_MODE, false)
+                .set(ALERT_POLARITY, activeHigh)
+                .set(ALERT_SELECT, alertOnlyCrit)
+                .apply();
     }
 
     /**
@@ -337,14 +460,7 @@ public class MCP9808  extends I2C
      */
     public void alertOutputDisable() throws IOException
     {
-        final byte[] config = {0,0};
-        readArray(CONFIG, config, 2);
-        // Bit 1...8
-        int conf = config[1];
-        // Alert Output disabled
-        conf = setBit(conf, AlertOutputControlBit, 0); 
-        config[1] = (byte)conf;
-        writeArray(CONFIG, config, 2);
+        update().set(ALERT_CONTROL, false).apply();
     }
 
     /**
@@ -356,10 +472,9 @@ public class MCP9808  extends I2C
      */
     public boolean isAlertOutputStatus() throws IOException
     {
-        final byte[] config = {0,0};
-        readArray(CONFIG, config, 2);
-        int conf = config[1];
-        return isHigh(conf, AlertOutputStatusBit);
+        // Das Statusbit setzt der Baustein selbst => Schattenregister verwerfen...
+        invalidate(CONFIG);
+        return getField(ALERT_STATUS) == 1;
     }
 
     /**
@@ -381,44 +496,23 @@ public class MCP9808  extends I2C
      */
     public void setHysteresis(int hyst) throws IOException
     {
-        final byte[] config = {0,0};
-        readArray(CONFIG, config, 2);
-        int conf = config[0];
-        switch(hyst)
+        if ((hyst < HYST00) || (hyst > HYST60))
         {
-            case HYST00:
-            {  //Hysterese = 0°C
-                conf = setBit(conf, 0b0000_0010, 0); 
-                conf = setBit(conf, 0b0000_0100, 0); 
-                break;
-            }
-            case HYST15:
-            {  //Hysterese = 1,5°C
-                conf = setBit(conf, 0b0000_0010, 1); 
-                conf = setBit(conf, 0b0000_0100, 0); 
-                break;
-            }
-            case HYST30:
-            {  //Hysterese = 3,0°C
-                conf = setBit(conf, 0b0000_0010, 0); 
-                conf = setBit(conf, 0b0000_0100, 1); 
-                break;
-            }
-            case HYST60:
-            {  //Hysterese = 6,0°C
-                conf = setBit(conf, 0b0000_0010, 1); 
-                conf = setBit(conf, 0b0000_0100, 1); 
-                break;
-            }
-            default:
-            {
-                // Runtimeexception?
-                return;
-            }
-
+            // Runtimeexception?
+            return;
         }
-        config[0] = (byte)conf;
-        writeArray(CONFIG, config, 2);
+        update().set(HYSTERESIS, hyst).apply();
+    }
+
+    /**
+     * getHysteresis() liefert die eingestellte Hysterese (HYST00...HYST60).
+     *
+     * @return Wert für Hysterese
+     * @throws IOException
+     */
+    public int getHysteresis() throws IOException
+    {
+        return getField(HYSTERESIS);
     }
 
     /**
@@ -440,41 +534,20 @@ public class MCP9808  extends I2C
      */
     public void setResultion(int res) throws IOException
     {
-        int conf = read(RESOL);
+        final int value;
         switch(res)
         {
-            case RES05:
-            {  //Auflösung = 0,5°C
-                conf = setBit(conf, 0b0000_0001, 0); 
-                conf = setBit(conf, 0b0000_0010, 0); 
-                break;
-            }
-            case RES025:
-            {  //Auflösung = 0,25°C
-                conf = setBit(conf, 0b0000_0001, 1); 
-                conf = setBit(conf, 0b0000_0010, 0); 
-                break;
-            }
-            case RES0125:
-            {  //Auflösung = 0,125°C
-                conf = setBit(conf, 0b0000_0001, 0); 
-                conf = setBit(conf, 0b0000_0010, 1); 
-                break;
-            }
-            case RES00625:
-            {  //Auflösung = 0,0625°C
-                conf = setBit(conf, 0b0000_0001, 1); 
-                conf = setBit(conf, 0b0000_0010, 1); 
-                break;
-            }
+            case RES05:    value = 0; break;  //Auflösung = 0,5°C
+            case RES025:   value = 1; break;  //Auflösung = 0,25°C
+            case RES0125:  value = 2; break;  //Auflösung = 0,125°C
+            case RES00625: value = 3; break;  //Auflösung = 0,0625°C
             default:
             {
                 // RuntimeException??
                 return;
             }
-
         }
-        write(RESOL, (byte)conf);
+        update().set(RESOLUTION, value).apply();
     }
 
     /**
@@ -483,11 +556,7 @@ public class MCP9808  extends I2C
      */
     public void setShutdownMode() throws IOException
     {
-        final byte[] config = {0,0};
-        readArray(CONFIG, config, 2);
-        int conf = config[0];
-        config[0] = (byte)setBit(conf, ShutdownModeBit, 1); 
-        writeArray(CONFIG, config, 2);
+        update().set(SHUTDOWN_MODE, true).apply();
     }
 
     /**
@@ -496,11 +565,17 @@ public class MCP9808  extends I2C
      */
     public void setActiveMode() throws IOException
     {
-        final byte[] config = {0,0};
-        readArray(CONFIG, config, 2);
-        int conf = config[0];
-        config[0] = (byte)setBit(conf, ShutdownModeBit, 0); 
-        writeArray(CONFIG, config, 2);
+        update().set(SHUTDOWN_MODE, false).apply();
+    }
+
+    /**
+     * isShutdownMode() erfragt, ob der MCP9808 im Shutdown Modus ist.
+     * @return true im Shutdown Modus
+     * @throws IOException 
+     */
+    public boolean isShutdownMode() throws IOException
+    {
+        return getField(SHUTDOWN_MODE) == 1;
     }
 
 
@@ -512,6 +587,8 @@ public class MCP9808  extends I2C
     {
         final byte[] config = {0,0};
         writeArray(CONFIG, config, 2);
+        // Lock-Bits bleiben im Baustein bis zum Power-On gesetzt...
+        invalidate(CONFIG);
     }
 
 }
\ No newline at end of file
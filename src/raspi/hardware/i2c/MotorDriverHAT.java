@@ -4,9 +4,20 @@
 package raspi.hardware.i2c;
 
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.pi4j.io.i2c.I2CDevice;
 
+import raspi.hardware.i2c.I2CBusScheduler.Priority;
+
 /**
  * 
  * <p>
@@ -23,17 +34,65 @@ import com.pi4j.io.i2c.I2CDevice;
  *     - The PRE_SCALE register can only be set when the SLEEP bit of MODE1 register is set to logic 1.
  * </li>    
  * </ul>
+ * <p>
+ * Statt mit setPwm() direkt zu springen (Stromspitzen), kann der Sollwert mit
+ * rampTo() ueber einen Rampengenerator mit begrenzter Beschleunigung angefahren
+ * werden (vgl. setAcceleration(), startRamp()). Alle MotorDriverHAT teilen sich
+ * dafuer einen Thread, geschrieben wird nur, wenn sich der 12-Bit-Wert eines
+ * Motors aendert, und dann beide Motoren gemeinsam.
+ * </p>
+ * <p>
+ * Je Channel wird der zuletzt gesendete Zustand gemerkt, geschrieben werden nur
+ * Aenderungen (Sollwert bzw. Drehrichtung). Wurde der Baustein von aussen 
+ * zurueckgesetzt, gleicht resync() den gemerkten Zustand mit den LED-Registern ab.
+ * </p>
  * 
  * @author Detlef Tribius
  *
  */
 public class MotorDriverHAT
 {
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(MotorDriverHAT.class);
+    
+    /**
+     * RAMP_PERIOD_MILLIS = 10 - Takt des Rampengenerators in ms
+     */
+    public final static int RAMP_PERIOD_MILLIS = 10;
+    
+    /**
+     * DEFAULT_ACCELERATION = 2.0f - max. Aenderung des Sollwerts je Sekunde
+     * (0.0 => 1.0 in 0.5 s)
+     */
+    public final static float DEFAULT_ACCELERATION = 2.0f;
+    
+    /**
+     * RAMP_SCHEDULER - gemeinsamer Thread der Rampengeneratoren aller MotorDriverHAT
+     */
+    private final static ScheduledExecutorService RAMP_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        final Thread thread = new Thread(runnable, "MotorRamp");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
     /**
      * pca9685
      */
     private final MotorDriverHAT.PCA9685 pca9685;
     
+    /**
+     * ramps - Rampengenerator je Motor
+     */
+    private final Map<Motor, Ramp> ramps = new EnumMap<>(Motor.class);
+    
+    /**
+     * rampTask - Takt des Rampengenerators (startRamp()), null => gestoppt
+     */
+    private ScheduledFuture<?> rampTask = null;
+    
     /**
      * 
      * @param dev I2CDevice
@@ -41,7 +100,19 @@ public class MotorDriverHAT
      */
     public MotorDriverHAT(I2CDevice dev) throws IOException
     {
-        this.pca9685 = new PCA9685(dev);
+        this(new Pi4jTransport(dev));
+    }
+    
+    /**
+     * 
+     * @param transport I2CTransport, vgl. I2CTransports
+     * @throws IOException 
+     */
+    public MotorDriverHAT(I2CTransport transport) throws IOException
+    {
+        this.pca9685 = new PCA9685(transport);
+        this.ramps.put(Motor.MOTOR_A, new Ramp());
+        this.ramps.put(Motor.MOTOR_B, new Ramp());
     }
     
     /**
@@ -63,6 +134,40 @@ public class MotorDriverHAT
         initialize(frequency);
     }
     
+    /**
+     * MotorDriverHAT(I2CDevice dev, int frequency, boolean autoIncrement) - Intanziierung 
+     * und Initialisierung, wahlweise mit Auto-Increment.
+     * <p>
+     * Mit autoIncrement == true wird im MODE1-Register das AI-Bit gesetzt. Die drei 
+     * Channel eines Motors (PWM, IN1, IN2) liegen in zusammenhaengenden LED-Registern 
+     * (Channel 0...2 bzw. 3...5) und werden dann mit einer Transaktion (12 Byte)
+     * statt mit 12 Einzel-Transaktionen geschrieben.
+     * </p>
+     * @param dev
+     * @param frequency
+     * @param autoIncrement true => Block-Ausgabe mit Auto-Increment
+     * @throws IOException
+     */
+    public MotorDriverHAT(I2CDevice dev, int frequency, boolean autoIncrement) throws IOException
+    {
+        this(new Pi4jTransport(dev), frequency, autoIncrement);
+    }
+    
+    /**
+     * MotorDriverHAT(I2CTransport transport, int frequency, boolean autoIncrement) - 
+     * wie zuvor, jedoch mit Vorgabe des Transports (vgl. I2CTransports)
+     * @param transport
+     * @param frequency
+     * @param autoIncrement true => Block-Ausgabe mit Auto-Increment
+     * @throws IOException
+     */
+    public MotorDriverHAT(I2CTransport transport, int frequency, boolean autoIncrement) throws IOException
+    {
+        this(transport);
+        getPca9685().autoIncrement = autoIncrement;
+        initialize(frequency);
+    }
+    
     /**
      * initialize(int frequency) - Initialisierung des PCA9685
      * 
@@ -77,6 +182,14 @@ public class MotorDriverHAT
         // Weitere Initialisierung mit dem Setzen der Fequenz.
         // Vgl. Muster PCA9685_SetPWMFreq(UWORD freq)...
         getPca9685().setPwmFrequency(frequency);
+        // Nach der Initialisierung stehen beide Motoren (alle Channel 0)...
+        synchronized(this)
+        {
+            for (Ramp ramp : this.ramps.values())
+            {
+                ramp.set(0.0f);
+            }
+        }
     }
     
     /**
@@ -84,13 +197,14 @@ public class MotorDriverHAT
      * @param speed Vorgabe Sollwert (-1.0f <= speed <= 1.0f)
      * @throws IOException
      */
-    public void setPwmMA(float speed) throws IOException
+    synchronized public void setPwmMA(float speed) throws IOException
     {
         if (((this.pca9685 == null) || (this.pca9685.pwm_A == null)))
         {
             throw new RuntimeException("Initialization failed!");
         }
-        this.pca9685.pwm_A.setPwm(speed);        
+        this.pca9685.pwm_A.setPwm(speed);
+        setRamp(Motor.MOTOR_A, speed);
     }
     
     /**
@@ -98,13 +212,14 @@ public class MotorDriverHAT
      * @param speed Vorgabe Sollwert (-1.0f <= speed <= 1.0f)
      * @throws IOException
      */
-    public void setPwmMB(float speed) throws IOException
+    synchronized public void setPwmMB(float speed) throws IOException
     {
         if (((this.pca9685 == null) || (this.pca9685.pwm_B == null)))
         {
             throw new RuntimeException("Initialization failed!");
         }
         this.pca9685.pwm_B.setPwm(speed);
+        setRamp(Motor.MOTOR_B, speed);
     }
 
     /**
@@ -113,13 +228,187 @@ public class MotorDriverHAT
      * @param speed Vorgabe Sollwert (-1.0f <= speed <= 1.0f)
      * @throws IOException 
      */
-    public void setPwm(Motor motor, float speed) throws IOException
+    synchronized public void setPwm(Motor motor, float speed) throws IOException
     {
         if (((getPca9685() == null) || (getPca9685().getPwm(motor) == null)))
         {
             throw new RuntimeException("Initialization failed!");
         }
         getPca9685().getPwm(motor).setPwm(speed);
+        setRamp(motor, speed);
+    }
+    
+    /**
+     * setPwm(float speedA, float speedB) - Vorgabe der Sollwerte beider Motoren
+     * <p>
+     * Mit Auto-Increment werden die Channel 0...5 beider Motoren in einer
+     * Transaktion (24 Byte) geschrieben, sonst nacheinander wie setPwmMA()/setPwmMB().
+     * </p>
+     * @param speedA Vorgabe Sollwert MOTOR_A (-1.0f <= speedA <= 1.0f)
+     * @param speedB Vorgabe Sollwert MOTOR_B (-1.0f <= speedB <= 1.0f)
+     * @throws IOException
+     */
+    synchronized public void setPwm(float speedA, float speedB) throws IOException
+    {
+        if (((getPca9685() == null) || (getPca9685().pwm_A == null) || (getPca9685().pwm_B == null)))
+        {
+            throw new RuntimeException("Initialization failed!");
+        }
+        getPca9685().setPwm(speedA, speedB);
+        setRamp(Motor.MOTOR_A, speedA);
+        setRamp(Motor.MOTOR_B, speedB);
+    }
+    
+    /**
+     * setAcceleration(Motor motor, float acceleration) - Beschleunigung des
+     * Rampengenerators
+     * @param motor MOTOR_A oder MOTOR_B
+     * @param acceleration max. Aenderung des Sollwerts je Sekunde (> 0.0f)
+     */
+    synchronized public void setAcceleration(Motor motor, float acceleration)
+    {
+        if (!(acceleration > 0.0f))
+        {
+            throw new IllegalArgumentException("MotorDriverHAT: acceleration=" + acceleration);
+        }
+        this.ramps.get(motor).acceleration = acceleration;
+    }
+    
+    /**
+     * getAcceleration(Motor motor)
+     * @param motor MOTOR_A oder MOTOR_B
+     * @return max. Aenderung des Sollwerts je Sekunde
+     */
+    synchronized public float getAcceleration(Motor motor)
+    {
+        return this.ramps.get(motor).acceleration;
+    }
+    
+    /**
+     * rampTo(Motor motor, float speed) - Sollwert ueber den Rampengenerator
+     * (ausgegeben im Takt, vgl. startRamp())
+     * @param motor MOTOR_A oder MOTOR_B
+     * @param speed Vorgabe Sollwert (-1.0f <= speed <= 1.0f)
+     */
+    synchronized public void rampTo(Motor motor, float speed)
+    {
+        this.ramps.get(motor).target = Math.max(-1.0f, Math.min(1.0f, speed));
+    }
+    
+    /**
+     * rampTo(float speedA, float speedB) - Sollwerte beider Motoren ueber den
+     * Rampengenerator
+     * @param speedA Vorgabe Sollwert MOTOR_A (-1.0f <= speedA <= 1.0f)
+     * @param speedB Vorgabe Sollwert MOTOR_B (-1.0f <= speedB <= 1.0f)
+     */
+    synchronized public void rampTo(float speedA, float speedB)
+    {
+        rampTo(Motor.MOTOR_A, speedA);
+        rampTo(Motor.MOTOR_B, speedB);
+    }
+    
+    /**
+     * isRamping()
+     * @return true, wenn mindestens ein Motor seinen Sollwert noch nicht erreicht hat
+     */
+    synchronized public boolean isRamping()
+    {
+        for (Ramp ramp : this.ramps.values())
+        {
+            if (ramp.current != ramp.target)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * startRamp() - meldet den Rampengenerator beim gemeinsamen Thread an (einmalig)
+     */
+    synchronized public void startRamp()
+    {
+        if (this.rampTask != null)
+        {
+            return;
+        }
+        this.rampTask = RAMP_SCHEDULER.scheduleAtFixedRate(() ->
+        {
+            try
+            {
+                stepRamp();
+            }
+            catch (IOException | RuntimeException exception)
+            {
+                // Der Takt muss weiterlaufen (gemeinsamer Thread)...
+                logger.error("MotorDriverHAT: " + exception.getMessage(), exception);
+            }
+        }, RAMP_PERIOD_MILLIS, RAMP_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * stopRamp() - meldet den Rampengenerator ab, die Motoren behalten den
+     * zuletzt ausgegebenen Sollwert
+     */
+    synchronized public void stopRamp()
+    {
+        if (this.rampTask != null)
+        {
+            this.rampTask.cancel(false);
+            this.rampTask = null;
+        }
+        for (Ramp ramp : this.ramps.values())
+        {
+            ramp.target = ramp.current;
+        }
+    }
+    
+    /**
+     * stepRamp() - ein Takt des Rampengenerators: beide Motoren werden gemeinsam
+     * geschrieben, wenn sich der 12-Bit-Wert (mit Drehrichtung) eines Motors aendert
+     * @return 1, wenn geschrieben wurde, sonst 0
+     * @throws IOException
+     */
+    synchronized int stepRamp() throws IOException
+    {
+        final Ramp rampA = this.ramps.get(Motor.MOTOR_A);
+        final Ramp rampB = this.ramps.get(Motor.MOTOR_B);
+        rampA.advance();
+        rampB.advance();
+        if ((Ramp.getDuty(rampA.current) == rampA.sentDuty) && (Ramp.getDuty(rampB.current) == rampB.sentDuty))
+        {
+            return 0;
+        }
+        getPca9685().setPwm(rampA.current, rampB.current);
+        rampA.sentDuty = Ramp.getDuty(rampA.current);
+        rampB.sentDuty = Ramp.getDuty(rampB.current);
+        return 1;
+    }
+    
+    /**
+     * setRamp(Motor motor, float speed) - direkt ausgegebener Sollwert beendet die
+     * Rampe des Motors (Aufruf mit der Ausgabe unter derselben Sperre, sonst kann 
+     * ein Takt dazwischen den direkt ausgegebenen Sollwert ueberschreiben)
+     */
+    synchronized private void setRamp(Motor motor, float speed)
+    {
+        this.ramps.get(motor).set(speed);
+    }
+    
+    /**
+     * resync() - weckt den Baustein ggf. auf (nach einem Reset: SLEEP, ohne 
+     * Auto-Increment), liest die LED-Register der Motoren und uebernimmt sie als
+     * zuletzt gesendeten Zustand (z.B. nachdem der Baustein von aussen 
+     * zurueckgesetzt wurde). Danach werden wieder nur Aenderungen geschrieben.
+     * @throws IOException
+     */
+    synchronized public void resync() throws IOException
+    {
+        getPca9685().resync();
+        for (Motor motor : Motor.values())
+        {
+            this.ramps.get(motor).sentDuty = getPca9685().getSentDuty(motor);
+        }
     }
     
     /**
@@ -223,6 +512,15 @@ public class MotorDriverHAT
          * IN2B_CHANNEL = 4
          */
         public final static int IN2B_CHANNEL = 4;
+        /**
+         * USED_CHANNELS = 6 - Anzahl der genutzten Channel (0...5)
+         */
+        public final static int USED_CHANNELS = 6;
+        
+        /** LED0_ON_L_REGISTER = 0x06; erstes LED-Register (Channel 0, ON_L) */
+        public final static int LED0_ON_L_REGISTER = 0x06;
+        /** LED_REGISTER_SIZE = 4; Anzahl der Register (ON_L, ON_H, OFF_L, OFF_H) je Channel */
+        public final static int LED_REGISTER_SIZE = 4;
 
         ////////////////////////////////////////////////////////////////
         // Konstanten fuer das MODE1_REGISTER...
@@ -234,6 +532,13 @@ public class MotorDriverHAT
          */
         public final static int SLEEP = 0x10;
 
+        /**
+         * AI Bit 5, daher Wert 0x20
+         * wenn Bit gleich 0, dann 'Register Auto-Increment disabled'
+         * wenn Bit gleich 1, dann 'Register Auto-Increment enabled'
+         */
+        public final static int AI = 0x20;
+
         /**
          * ALLCALL Bit 0, daher Wert 0x01
          * wenn Bit gleich 0, dann 'PCA9685 does not respond to LED All Call I 2 C-bus address.'
@@ -290,6 +595,18 @@ public class MotorDriverHAT
          */
         public final static int PWM_MAX = 4095;
         
+        /**
+         * FULL = 0x1000 - FULL_ON- bzw. FULL_OFF-Bit (Bit 4 in LEDn_ON_H bzw. LEDn_OFF_H)
+         * im On- bzw. Off-Wert, FULL_OFF hat Vorrang vor FULL_ON. Die InChannel
+         * werden darueber statisch geschaltet (vgl. InChannel.setLevel()).
+         */
+        public final static int FULL = 0x1000;
+        
+        /**
+         * UNKNOWN = -1 - Kennung fuer unbekannten Registerinhalt
+         */
+        private final static int UNKNOWN = -1;
+        
         /**
          * pwm_A - Channel zur Steuerung des Motor A
          */
@@ -301,18 +618,41 @@ public class MotorDriverHAT
         private final PwmChannel pwm_B;
         
         /**
-         * DELAY = 5 Pausenzeit (5 ms) fuer zeitl. Pausen 
-         * waehrend der Konfiguration...
+         * OSCILLATOR_DELAY_NANOS = 500000 - Einschwingzeit des Oszillators nach dem
+         * Loeschen des SLEEP-Bits (Datenblatt: max. 500 us)
+         */
+        public final static long OSCILLATOR_DELAY_NANOS = 500000L;
+        
+        /**
+         * channels - Channel 0...5 (PWM- und InChannel), Index ist die Channel-Nummer
+         */
+        private final Channel[] channels = new Channel[USED_CHANNELS];
+        
+        /**
+         * onValues, offValues - Puffer der On-/Off-Zeitpunkte (Index ist die Channel-Nummer),
+         * frame - Puffer der LED-Register fuer writeFrame(); nur unter der Sperre des 
+         * Busses verwendet (vgl. setPwm(), PwmChannel.setPwm())
          */
-        public final static int DELAY = 5;        
+        private final int[] onValues = new int[USED_CHANNELS];
+        private final int[] offValues = new int[USED_CHANNELS];
+        private final byte[] frame = new byte[USED_CHANNELS * LED_REGISTER_SIZE];
+        
+        /**
+         * autoIncrement - Kennung, ob die Channel eines Motors als ein Block 
+         * (Auto-Increment) geschrieben werden...
+         */
+        private boolean autoIncrement = false;
         
         /**
          * Konstruktor zum Baustein PCA9685...
-         * @param dev - Referenz auf I2CDevice (zuvor angelegt)
+         * @param transport - Zugriff auf den Baustein (zuvor angelegt)
          */
-        private PCA9685(I2CDevice dev)
+        private PCA9685(I2CTransport transport)
         {
-            super(dev);
+            super(transport, Priority.ACTUATOR);
+            // MODE1 wird nur ueber diese Instanz geaendert, Read-Modify-Write
+            // in setPwmFrequency() daher aus dem Schattenregister...
+            setCacheable(MODE1_REGISTER, true);
             // Zum Motor A geheoeren ein PWM-Channel und zwei In-Channel...
             // (Anm.: gesteuert wird ueber den PWM-Channel) 
             this.pwm_A = new PwmChannel(PWMA_CHANNEL, IN1A_CHANNEL, IN2A_CHANNEL);
@@ -322,6 +662,16 @@ public class MotorDriverHAT
             this.pwm_B = new PwmChannel(PMWB_CHANNEL, IN1B_CHANNEL, IN2B_CHANNEL);
         }
         
+        /**
+         * isAutoIncrement()
+         * @return true, wenn die Channel eines Motors als ein Block geschrieben werden
+         */
+        @Override
+        public boolean isAutoIncrement()
+        {
+            return this.autoIncrement;
+        }
+        
         /**
          * getPwmMA()
          * @return PwmChannel zu MOTOR_A
@@ -363,108 +713,263 @@ public class MotorDriverHAT
          */
         private void initialize() throws IOException
         {
-            // 1.)
-            write(MODE1_REGISTER, (byte)0x00);
+            // 1.) ggf. mit Auto-Increment...
+            write(MODE1_REGISTER, (byte)(this.autoIncrement? AI : 0x00));
             // 2.)
             write(ALL_LED_ON_L_REGISTER, (byte)0x00);
             write(ALL_LED_ON_H_REGISTER, (byte)0x00);
             write(ALL_LED_OFF_L_REGISTER, (byte)0x00);
             write(ALL_LED_OFF_H_REGISTER, (byte)0x00);
+            // ALL_LED: On- und Off-Wert aller Channel jetzt 0...
+            for (Channel channel : this.channels)
+            {
+                channel.setSent(0, 0);
+            }
         }
 
         /**
-         * setPwmFrequency(int frequency) - Puls-Frequenz setzen...
-         * @param frequency Frequenz in Hz (z.B. 50, 100...)
-         * @throws IOException 
+         * setPwm(float speedA, float speedB) - beide Motoren, mit Auto-Increment 
+         * in einer Transaktion ueber die Channel 0...5.
+         * @param speedA
+         * @param speedB
+         * @throws IOException
          */
-        private void setPwmFrequency(int frequency) throws IOException
+        private void setPwm(float speedA, float speedB) throws IOException
         {
-            // Vorteiler prescale bestimmen...
-            final byte prescale = getPrescaleValue(frequency);
-            
-            // oldMode auslesen...
-            final byte oldMode = (byte)(read(MODE1_REGISTER) & 0xff);
-            // setMode: Zum Seten das Sleep-Bit setzen...
-            final byte setMode = (byte)(oldMode | SLEEP); 
-            // newMode: Aus oldMode mit Restart enabled...
-            final byte newMode = (byte)(oldMode | RESTART);
-            // Konfigurieren...
-            write(MODE1_REGISTER, setMode);
-            sleep(DELAY);
-            write(PRE_SCALE_REGISTER, prescale);
-            sleep(DELAY);
-            write(MODE1_REGISTER, newMode);
-            sleep(DELAY);
+            // Beide Motoren als eine Transaktion am Bus...
+            acquireBus();
+            try
+            {
+                if (!this.autoIncrement)
+                {
+                    this.pwm_A.setPwm(speedA);
+                    this.pwm_B.setPwm(speedB);
+                    return;
+                }
+                this.pwm_A.fillFrame(speedA, this.onValues, this.offValues);
+                this.pwm_B.fillFrame(speedB, this.onValues, this.offValues);
+                writeChanged(0, USED_CHANNELS, this.onValues, this.offValues);
+            }
+            finally
+            {
+                releaseBus();
+            }
         }
         
         /**
-         * getPrescaleValue(int frequency) - liefert den Wert
-         * fuer den Vorteiler zum Einstellen einer bestimmten Frequenz.
-         * <p>
-         * Achtung: Es wird z.T. mit einem Koorekturwert gearbeitet 
-         * (wird hier vernachlaessigt!).
-         * <br>
-         * <code>
-         * freq *= 0.9;  // Correct for overshoot in the frequency setting
-         * </code>
-         * </p>
+         * writeChanged(int firstChannel, int number, int[] onValues, int[] offValues) - 
+         * schreibt von den number Channel ab firstChannel nur den Block vom ersten bis
+         * zum letzten geaenderten Channel (eine Transaktion, vgl. writeFrame()).
          * <p>
-         * Anm.:
-         * The maximum PWM frequency is 1526 Hz if the PRE_SCALE register is set "0x03h".
-         * The minimum PWM frequency is 24 Hz if the PRE_SCALE register is set "0xFFh".
+         * Vergleich, Ausgabe und Merken des gesendeten Zustands unter der Sperre des
+         * Busses (wie Channel.setPwm()), sonst kann ein zweiter Thread dazwischen 
+         * schreiben und der gemerkte Zustand weicht vom Registerinhalt ab.
          * </p>
+         * @param firstChannel erster Channel
+         * @param number Anzahl der Channel
+         * @param onValues On-Zeitpunkte, Index ist die Channel-Nummer
+         * @param offValues Off-Zeitpunkte, Index ist die Channel-Nummer
+         * @return Anzahl der geschriebenen Channel
+         * @throws IOException
+         */
+        private int writeChanged(int firstChannel, int number, int[] onValues, int[] offValues) throws IOException
+        {
+            acquireBus();
+            try
+            {
+                int first = -1;
+                int last = -1;
+                for (int channel = firstChannel; channel < firstChannel + number; channel++)
+                {
+                    if (!this.channels[channel].isSent(onValues[channel], offValues[channel]))
+                    {
+                        first = (first < 0)? channel : first;
+                        last = channel;
+                    }
+                }
+                if (first < 0)
+                {
+                    return 0;
+                }
+                try
+                {
+                    writeFrame(first, last - first + 1, onValues, offValues);
+                }
+                catch (IOException exception)
+                {
+                    for (int channel = first; channel <= last; channel++)
+                    {
+                        this.channels[channel].reset();
+                    }
+                    throw exception;
+                }
+                for (int channel = first; channel <= last; channel++)
+                {
+                    this.channels[channel].setSent(onValues[channel], offValues[channel]);
+                }
+                return last - first + 1;
+            }
+            finally
+            {
+                releaseBus();
+            }
+        }
+        
+        /**
+         * readLedRegisters() - liest die LED-Register der Channel 0...5, mit 
+         * Auto-Increment als eine Transaktion (24 Byte).
+         * @return Momentaufnahme der LED-Register
+         * @throws IOException
+         */
+        public RegisterSnapshot readLedRegisters() throws IOException
+        {
+            final int[] registers = new int[USED_CHANNELS * LED_REGISTER_SIZE];
+            for (int index = 0; index < registers.length; index++)
+            {
+                registers[index] = LED0_ON_L_REGISTER + index;
+            }
+            return readRegisters(planRead(registers));
+        }
+        
+        /**
+         * resync() - liest die LED-Register (vgl. readLedRegisters()) und uebernimmt
+         * sie als zuletzt gesendeten Zustand aller Channel, z.B. nachdem der Baustein 
+         * von aussen zurueckgesetzt wurde.
          * <p>
-         * C-Muster:
-         * <code>
-         *     double prescaleval = 25000000.0;<br>
-         *     prescaleval /= 4096.0;<br>
-         *     prescaleval /= freq;<br>
-         *     prescaleval -= 1;<br>
-         *     UBYTE prescale = floor(prescaleval + 0.5);<br>
-         * </code>
+         * MODE1 wird zuvor vom Baustein gelesen: Nach einem Reset (MODE1 = 0x11) schlaeft
+         * der Oszillator und Auto-Increment ist aus. Weicht MODE1 von der Konfiguration 
+         * ab (SLEEP bzw. AI), wird der Baustein wie in setPwmFrequency() aufgeweckt 
+         * (AI gemaess autoIncrement, Einschwingzeit, RESTART). Erst danach werden die
+         * LED-Register gelesen, ohne Auto-Increment einzeln.
          * </p>
-         * @param int frequency (...50 Hz...60 Hz...)
-         * @return prescaleValue (byte)
+         * @throws IOException
          */
-        private byte getPrescaleValue(int frequency)
+        private void resync() throws IOException
         {
-            // Am Ende -1+0.5 => -0.5 (Anm.: +0.5 zum Runden...) 
-            final double value =  Math.floor(((double)INTERNAL_FREQUENCY)/(double)(4096*frequency)-0.5);
-            
-            final int prescaleValue = (int)value; 
-            if (prescaleValue < 0x03)
+            // Die gesamte Sequenz als eine Transaktion am Bus...
+            acquireBus();
+            try
             {
-                // Begrenzung nach unten...
-                return (byte)0x03;
+                invalidate(MODE1_REGISTER);
+                final int mode1 = read(MODE1_REGISTER) & 0xff;
+                final int ai = this.autoIncrement? AI : 0x00;
+                if (((mode1 & SLEEP) != 0) || ((mode1 & AI) != ai))
+                {
+                    final byte wakeMode = (byte)((mode1 & ~(SLEEP | RESTART | AI)) | ai);
+                    write(MODE1_REGISTER, wakeMode);
+                    delayNanos(OSCILLATOR_DELAY_NANOS);
+                    write(MODE1_REGISTER, (byte)(wakeMode | RESTART));
+                    // RESTART wird vom Baustein selbst geloescht...
+                    invalidate(MODE1_REGISTER);
+                }
+                final RegisterSnapshot snapshot = readLedRegisters();
+                for (int channel = 0; channel < USED_CHANNELS; channel++)
+                {
+                    final int reg = LED0_ON_L_REGISTER + channel * LED_REGISTER_SIZE;
+                    this.channels[channel].setSent(snapshot.getWordLE(reg), snapshot.getWordLE(reg + 2));
+                }
             }
-            if (prescaleValue > 0xff)
+            finally
             {
-                // Begrenzung nach oben...
-                return (byte)0xff;
+                releaseBus();
             }
-            return (byte)prescaleValue;
         }
         
         /**
-         * sleep(int millis)
-         * @param millis
+         * getSentDuty(Motor motor) - zuletzt gesendeter 12-Bit-Wert mit Vorzeichen 
+         * (Drehrichtung), vgl. PwmChannel.fillFrame()
+         * @param motor
+         * @return 12-Bit-Wert, negativ rueckwaerts
+         */
+        private int getSentDuty(Motor motor)
+        {
+            final PwmChannel pwm = getPwm(motor);
+            final int offValue = pwm.getSentOff();
+            if ((offValue == UNKNOWN) || ((offValue & FULL) != 0))
+            {
+                return 0;
+            }
+            final int duty = Math.min(offValue, PWM_MAX);
+            return (pwm.getIn1Channel().isHighLevel() && !pwm.getIn2Channel().isHighLevel())? -duty : duty;
+        }
+        
+        /**
+         * writeFrame(int firstChannel, int number, int[] onValues, int[] offValues) - schreibt
+         * number Channel ab firstChannel (onValue aus onValues[channel], offValue aus 
+         * offValues[channel]) in einer Transaktion (Auto-Increment), ueber den Puffer
+         * frame (Aufruf nur unter der Sperre des Busses, vgl. writeChanged()).
+         * @param firstChannel erster Channel
+         * @param number Anzahl der Channel
+         * @param onValues On-Zeitpunkte, Index ist die Channel-Nummer
+         * @param offValues Off-Zeitpunkte, Index ist die Channel-Nummer
+         * @throws IOException
+         */
+        private void writeFrame(int firstChannel, int number, int[] onValues, int[] offValues) throws IOException
+        {
+            final byte[] buffer = this.frame;
+            for (int index = 0; index < number; index++)
+            {
+                final int onValue = onValues[firstChannel + index];
+                final int offValue = offValues[firstChannel + index];
+                final int pos = index * LED_REGISTER_SIZE;
+                buffer[pos]   = (byte)(onValue & 0xff);
+                buffer[pos+1] = (byte)((onValue >> 8) & 0xff);
+                buffer[pos+2] = (byte)(offValue & 0xff);
+                buffer[pos+3] = (byte)((offValue >> 8) & 0xff);
+            }
+            writeArray(LED0_ON_L_REGISTER + firstChannel * LED_REGISTER_SIZE, buffer, number * LED_REGISTER_SIZE);
+        }
+        
+        /**
+         * setPwmFrequency(int frequency) - Puls-Frequenz setzen...
+         * @param frequency Frequenz in Hz (z.B. 50, 100...)
+         * @throws IOException 
          */
-        private final void sleep(int millis)
+        private void setPwmFrequency(int frequency) throws IOException
         {
+            // Vorteiler prescale bestimmen...
+            final byte prescale = getPrescaleValue(frequency);
+            
+            // Die gesamte Sequenz als eine Transaktion am Bus (kein Zugriff 
+            // eines anderen Threads waehrend SLEEP bzw. vor dem RESTART)...
+            acquireBus();
             try
             {
-                Thread.sleep(millis);
-            } 
-            catch (InterruptedException exception)
+                // oldMode auslesen (ohne SLEEP und RESTART)...
+                final byte oldMode = (byte)(read(MODE1_REGISTER) & 0xff & ~(SLEEP | RESTART));
+                // setMode: Zum Seten das Sleep-Bit setzen...
+                final byte setMode = (byte)(oldMode | SLEEP); 
+                // newMode: Aus oldMode mit Restart enabled...
+                final byte newMode = (byte)(oldMode | RESTART);
+                // Konfigurieren: SLEEP wirkt sofort, nach dem Aufwecken nur die
+                // Einschwingzeit des Oszillators abwarten, dann RESTART...
+                write(MODE1_REGISTER, setMode);
+                write(PRE_SCALE_REGISTER, prescale);
+                write(MODE1_REGISTER, oldMode);
+                delayNanos(OSCILLATOR_DELAY_NANOS);
+                write(MODE1_REGISTER, newMode);
+                // RESTART wird vom Baustein selbst geloescht, das Schattenregister
+                // entspricht damit nicht mehr dem Registerinhalt...
+                invalidate(MODE1_REGISTER);
+            }
+            finally
             {
-                final String message = new StringBuilder().append("Exception Thread.sleep(): ")
-                                                          .append(exception.getMessage())
-                                                          .toString();
-                
-                throw new RuntimeException(message);
+                releaseBus();
             }
         }
-       
+        
+        /**
+         * getPrescaleValue(int frequency) - liefert den Wert
+         * fuer den Vorteiler zum Einstellen einer bestimmten Frequenz
+         * (Tabelle, vgl. raspi.hardware.i2c.PCA9685.getPrescaleValue()).
+         * @param int frequency (...50 Hz...60 Hz...)
+         * @return prescaleValue (byte)
+         */
+        private byte getPrescaleValue(int frequency)
+        {
+            return raspi.hardware.i2c.PCA9685.getPrescaleValue(frequency);
+        }
+        
         /**
          * Die abstrakte Klasse Channel beschreibt einen (der 16)
          * Channel des PWM-Bausteins PCA9685.
@@ -496,6 +1001,13 @@ public class MotorDriverHAT
              */
             private final int channel;
             
+            /**
+             * sentOn, sentOff - zuletzt gesendeter On-/Off-Wert (UNKNOWN => 
+             * Registerinhalt unbekannt)
+             */
+            private int sentOn = UNKNOWN;
+            private int sentOff = UNKNOWN;
+            
             /**
              * Channel(int channel) - Konstruktor eines Channels
              * @param channel - Nummer des Channels
@@ -503,20 +1015,100 @@ public class MotorDriverHAT
             public Channel(int channel)
             {
                 this.channel = channel;
+                channels[channel] = this;
+            }
+            
+            /**
+             * getChannel()
+             * @return Nummer des Channels
+             */
+            public final int getChannel()
+            {
+                return this.channel;
             }
 
             /**
-             * setPwm(int onValue, int offValue) 
+             * setPwm(int onValue, int offValue) - schreibt nur die Register, die sich
+             * gegenueber dem zuletzt gesendeten Wert aendern (unbekannt => alle vier)
              * @param onValue
              * @param offValue
              * @throws IOException
              */
             public void setPwm(int onValue, int offValue) throws IOException
             {
-                write(getOnLowByteReg(), (byte)(onValue & 0xff));
-                write(getOnHighByteReg(), (byte)((onValue >> 8) & 0xff));
-                write(getOffLowByteReg(), (byte)(offValue & 0xff));
-                write(getOffHighByteReg(), (byte)((offValue >> 8) & 0xff));
+                // Vergleich und Einzelzugriffe als eine Transaktion am Bus...
+                acquireBus();
+                try
+                {
+                    if (isSent(onValue, offValue))
+                    {
+                        return;
+                    }
+                    final boolean known = (this.sentOn != UNKNOWN) && (this.sentOff != UNKNOWN);
+                    if (!known || ((onValue ^ this.sentOn) & 0xff) != 0)
+                    {
+                        write(getOnLowByteReg(), (byte)(onValue & 0xff));
+                    }
+                    if (!known || ((onValue ^ this.sentOn) & 0xff00) != 0)
+                    {
+                        write(getOnHighByteReg(), (byte)((onValue >> 8) & 0xff));
+                    }
+                    if (!known || ((offValue ^ this.sentOff) & 0xff) != 0)
+                    {
+                        write(getOffLowByteReg(), (byte)(offValue & 0xff));
+                    }
+                    if (!known || ((offValue ^ this.sentOff) & 0xff00) != 0)
+                    {
+                        write(getOffHighByteReg(), (byte)((offValue >> 8) & 0xff));
+                    }
+                    setSent(onValue, offValue);
+                }
+                catch (IOException exception)
+                {
+                    // Registerinhalt nach Fehler unbekannt...
+                    reset();
+                    throw exception;
+                }
+                finally
+                {
+                    releaseBus();
+                }
+            }
+            
+            /**
+             * isSent(int onValue, int offValue)
+             * @return true, wenn genau diese Werte zuletzt gesendet wurden
+             */
+            private boolean isSent(int onValue, int offValue)
+            {
+                return (this.sentOn == onValue) && (this.sentOff == offValue);
+            }
+            
+            /**
+             * setSent(int onValue, int offValue) - Werte wurden gesendet (bzw. gelesen)
+             */
+            private void setSent(int onValue, int offValue)
+            {
+                this.sentOn = onValue;
+                this.sentOff = offValue;
+            }
+            
+            /**
+             * reset() - Registerinhalt unbekannt
+             */
+            private void reset()
+            {
+                this.sentOn = UNKNOWN;
+                this.sentOff = UNKNOWN;
+            }
+            
+            /**
+             * getSentOff()
+             * @return zuletzt gesendeter Off-Wert bzw. UNKNOWN
+             */
+            protected final int getSentOff()
+            {
+                return this.sentOff;
             }
             
             /**
@@ -584,50 +1176,100 @@ public class MotorDriverHAT
             }
             
             /**
-             * 
+             * setPwm(float speed) - Ausgabe des Sollwertes ueber den PWM-Channel
+             * und die beiden InChannel.
+             * <p>
+             * Mit Auto-Increment werden die geaenderten der drei zusammenhaengenden 
+             * Channel in einer Transaktion geschrieben, ohne Auto-Increment nur die
+             * geaenderten Register. Ein unveraenderter Sollwert kostet keinen Busverkehr.
+             * </p>
              * @param speed
              * @throws IOException
              */
             public void setPwm(float speed) throws IOException
             {
-                // speed - Stellgroesse fuer die Ausgangsspannung
-                // speed umfasst den Bereich von -1.0F bis +1.0F
-                label:
+                // Die Ausgabe der drei Channel als eine Transaktion am Bus,
+                // unveraenderte Pegel der InChannel ohne Busverkehr...
+                acquireBus();
+                try
                 {
-                    final int onValue = 0;
-                    // PWM_MAX: Aufloesung der PWM, hier 4095 (12 Bit)
-                    final float value = Math.abs(speed)*PWM_MAX;
-                    final int offValue = (int)value; 
-                    // onValue = 0; offValue = Math.abs(speed)*PWM_MAX (bis max. 4095)
-                    //
-                    // z.B. Motor A: 
-                    // FORWARD: PCA9685_SetLevel(AIN1, 0);
-                    //          PCA9685_SetLevel(AIN2, 1);
-                    // BACKWARD:PCA9685_SetLevel(AIN1, 1);
-                    //          PCA9685_SetLevel(AIN2, 0);
-                    //
-                    // FORWARD:  (speed > 0.0)
-                    // BACKWARD: (speed < 0.0)
-                    //
-                    // 1.) offValue == 0 aussortieren...
-                    if (offValue == 0)
+                    fillFrame(speed, onValues, offValues);
+                    if (autoIncrement)
                     {
-                        // Sollwert ist offfensichtlich 0!
-                        setPwm(0, 0);
-                        getIn1Channel().setLevel(false);
-                        getIn2Channel().setLevel(false);
-                        break label;
+                        writeChanged(getFirstChannel(), 3, onValues, offValues);
+                        return;
                     }
-                    // 2.) offValue != 0, jetzt FORWARD und BACKWARD gemeinsam behandeln.
-                    // Dabei immmer Begrenzung von offValue auf max. PWM_MAX (4095)...
-                    setPwm(onValue, (offValue > PWM_MAX)? PWM_MAX : offValue);
-                    // FORWARD bei (speed > 0.0)
-                    // BACKWARD bei (speed < 0.0)
-                    // Also bei (speed > 0.0) => In1.setLevel(false); In2.setLevel(true);
-                    //      bei (speed < 0.0) => In1.setLevel(true); In2.setLevel(false);
-                    getIn1Channel().setLevel(speed < 0.0);
-                    getIn2Channel().setLevel(speed > 0.0);
-                }    
+                    setPwm(0, offValues[getChannel()]);
+                    getIn1Channel().setLevel(offValues[getIn1Channel().getChannel()] == 0);
+                    getIn2Channel().setLevel(offValues[getIn2Channel().getChannel()] == 0);
+                }
+                finally
+                {
+                    releaseBus();
+                }
+            }
+            
+            /**
+             * fillFrame(float speed, int[] onValues, int[] offValues) - bestimmt die 
+             * On- und Off-Zeitpunkte des PWM-Channels und der beiden InChannel und legt 
+             * sie in onValues bzw. offValues ab (Index ist die Channel-Nummer).
+             * <p>
+             * PWM-Channel: onValue = 0; InChannel: onValue = FULL, offValue = 0 (high)
+             * bzw. FULL (low), vgl. InChannel.setLevel().
+             * </p>
+             * @param speed
+             * @param onValues
+             * @param offValues
+             */
+            private void fillFrame(float speed, int[] onValues, int[] offValues)
+            {
+                onValues[getChannel()] = 0;
+                onValues[getIn1Channel().getChannel()] = FULL;
+                onValues[getIn2Channel().getChannel()] = FULL;
+                // speed - Stellgroesse fuer die Ausgangsspannung
+                // speed umfasst den Bereich von -1.0F bis +1.0F
+                // PWM_MAX: Aufloesung der PWM, hier 4095 (12 Bit)
+                final float value = Math.abs(speed)*PWM_MAX;
+                final int offValue = (int)value; 
+                // onValue = 0; offValue = Math.abs(speed)*PWM_MAX (bis max. 4095)
+                //
+                // z.B. Motor A: 
+                // FORWARD: PCA9685_SetLevel(AIN1, 0);
+                //          PCA9685_SetLevel(AIN2, 1);
+                // BACKWARD:PCA9685_SetLevel(AIN1, 1);
+                //          PCA9685_SetLevel(AIN2, 0);
+                //
+                // FORWARD:  (speed > 0.0)
+                // BACKWARD: (speed < 0.0)
+                //
+                // 1.) offValue == 0 aussortieren...
+                if (offValue == 0)
+                {
+                    // Sollwert ist offfensichtlich 0!
+                    offValues[getChannel()] = 0;
+                    offValues[getIn1Channel().getChannel()] = FULL;
+                    offValues[getIn2Channel().getChannel()] = FULL;
+                    return;
+                }
+                // 2.) offValue != 0, jetzt FORWARD und BACKWARD gemeinsam behandeln.
+                // Dabei immmer Begrenzung von offValue auf max. PWM_MAX (4095)...
+                offValues[getChannel()] = (offValue > PWM_MAX)? PWM_MAX : offValue;
+                // FORWARD bei (speed > 0.0)
+                // BACKWARD bei (speed < 0.0)
+                // Also bei (speed > 0.0) => In1 low; In2 high;
+                //      bei (speed < 0.0) => In1 high; In2 low.
+                offValues[getIn1Channel().getChannel()] = (speed < 0.0)? 0 : FULL;
+                offValues[getIn2Channel().getChannel()] = (speed > 0.0)? 0 : FULL;
+            }
+            
+            /**
+             * getFirstChannel() - kleinste Channel-Nummer der drei Channel 
+             * (Motor A: 0, Motor B: 3)
+             * @return erster Channel des zusammenhaengenden Blocks
+             */
+            private final int getFirstChannel()
+            {
+                return Math.min(getChannel(), Math.min(getIn1Channel().getChannel(), getIn2Channel().getChannel()));
             }
             
             /**
@@ -651,10 +1293,13 @@ public class MotorDriverHAT
         /**
          * Klasse InChannel beschreibt einen "Steuer"-Channel.
          * Dieser spezielle Channel kennt nur die Ausgaben "0" 
-         * oder "1". Diese Ausgaben werden realisiert, indem
-         * setPwm() mit 0 oder PWM_MAX beauftragt wird.
+         * oder "1". Diese Ausgaben werden ueber FULL_ON/FULL_OFF realisiert:
+         * FULL_ON bleibt im On-Wert gesetzt, umgeschaltet wird nur FULL_OFF
+         * in LEDn_OFF_H.
          * <p>
-         * 
+         * Der zuletzt gesendete Pegel wird gemerkt (vgl. Channel.setPwm()), ein 
+         * Pegelwechsel kostet damit ein Byte, ein unveraenderter Pegel keinen 
+         * Busverkehr.
          * </p>
          * @author Detlef Tribius
          *
@@ -677,8 +1322,77 @@ public class MotorDriverHAT
              */
             public void setLevel(boolean isHighLevel) throws IOException
             {
-                setPwm(0, isHighLevel? PWM_MAX : 0);
+                // ON_L, ON_H (FULL_ON) und OFF_L unveraendert => nur LEDn_OFF_H...
+                setPwm(FULL, isHighLevel? 0 : FULL);
             }
+            
+            /**
+             * isHighLevel()
+             * @return true, wenn zuletzt high gesendet wurde
+             */
+            private boolean isHighLevel()
+            {
+                return getSentOff() == 0;
+            }
+        }
+    }
+    
+    /**
+     * Ramp - Zustand des Rampengenerators eines Motors
+     */
+    private final static class Ramp
+    {
+        /**
+         * UNKNOWN - ausgegebener Wert unbekannt
+         */
+        private final static int UNKNOWN = Integer.MIN_VALUE;
+        
+        /**
+         * acceleration - max. Aenderung des Sollwerts je Sekunde
+         */
+        private float acceleration = DEFAULT_ACCELERATION;
+        
+        /**
+         * target - Ziel-Sollwert
+         */
+        private float target = 0.0f;
+        
+        /**
+         * current - aktueller Sollwert der Rampe
+         */
+        private float current = 0.0f;
+        
+        /**
+         * sentDuty - zuletzt ausgegebener 12-Bit-Wert mit Vorzeichen (Drehrichtung)
+         */
+        private int sentDuty = UNKNOWN;
+        
+        /**
+         * advance() - ein Takt in Richtung target, max. acceleration * RAMP_PERIOD_MILLIS
+         */
+        private void advance()
+        {
+            final float step = this.acceleration * RAMP_PERIOD_MILLIS / 1000.0f;
+            final float delta = this.target - this.current;
+            this.current = (Math.abs(delta) <= step)? this.target : this.current + Math.signum(delta) * step;
+        }
+        
+        /**
+         * set(float speed) - Sollwert direkt ausgegeben
+         */
+        private void set(float speed)
+        {
+            this.current = this.target = Math.max(-1.0f, Math.min(1.0f, speed));
+            this.sentDuty = getDuty(speed);
+        }
+        
+        /**
+         * getDuty(float speed) - 12-Bit-Wert mit Vorzeichen wie PwmChannel.fillFrame()
+         */
+        private static int getDuty(float speed)
+        {
+            final int offValue = Math.min((int)(Math.abs(speed) * PCA9685.PWM_MAX), PCA9685.PWM_MAX);
+            return (speed < 0.0f)? -offValue : offValue;
         }
     }
     
@@ -4,9 +4,19 @@
 package raspi.hardware.i2c;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
 
 import com.pi4j.io.i2c.I2CDevice;
 
+import raspi.hardware.i2c.I2CBusScheduler.Priority;
+
 /**
  * @author Detlef Tribius
  *
@@ -16,17 +26,50 @@ import com.pi4j.io.i2c.I2CDevice;
  * 
  *
  * <p>
- * Ausfuehrung als Singleton, vgl. auch <br> 
- * <code>https://www.geeksforgeeks.org/java-singleton-design-pattern-practices-examples/ </code>
+ * Je Bus und Adresse gibt es genau eine Instanz (Registry, vgl. getInstance()),
+ * bis zu MAX_BOARDS Bausteine koennen gleichzeitig betrieben werden. Mit flushAll()
+ * werden die geaenderten Channel aller Bausteine in einem Durchlauf ausgegeben.
  * </p>
  */
 public class PCA9685 extends I2C
 {
 
     /**
-     * instance - Instance fuer Singleton...
+     * MIN_ADDRESS = 0x40 - kleinste Bus-Adresse (A5...A0 = 0)
+     */
+    public final static int MIN_ADDRESS = 0x40;
+
+    /**
+     * MAX_ADDRESS = 0x7f - groesste Bus-Adresse (A5...A0 = 1)
+     */
+    public final static int MAX_ADDRESS = 0x7f;
+
+    /**
+     * ALLCALL_ADDRESS = 0x70 - LED All Call-Adresse nach dem Einschalten,
+     * nicht als Baustein-Adresse verwendbar
+     */
+    public final static int ALLCALL_ADDRESS = 0x70;
+
+    /**
+     * MAX_BOARDS = 62 - max. Anzahl der Bausteine (je Bus)
+     */
+    public final static int MAX_BOARDS = 62;
+
+    /**
+     * boards - Registry der Bausteine, Schluessel (Bus << 8) | Adresse,
+     * sortiert (Reihenfolge in flushAll())
+     */
+    private final static Map<Integer, PCA9685> boards = new TreeMap<>();
+
+    /**
+     * servos - Servo je Channel (bei Bedarf angelegt)
+     */
+    private final PCA9685.Servo[] servos = new PCA9685.Servo[NUMBER_CHANNELS];
+
+    /**
+     * motors - Motor je Channel (bei Bedarf angelegt)
      */
-    private static PCA9685 instance;
+    private final PCA9685.Motor[] motors = new PCA9685.Motor[NUMBER_CHANNELS];
 
     /**
      * RESOLUTION = 4096 - Aufloesung, somit 0 ... (RESOLUTION-1)
@@ -64,6 +107,35 @@ public class PCA9685 extends I2C
      */
     private int frequency;
     
+    /**
+     * autoIncrement - Kennung, ob die LED-Register mit Auto-Increment (MODE1-Bit AI)
+     * als ein Block in einer Transaktion geschrieben werden.
+     */
+    private boolean autoIncrement = false;
+    
+    /**
+     * lastUpdateTransactions - Anzahl der Bus-Transaktionen der letzten
+     * Aktualisierung eines Channels (bzw. aller Channel).
+     */
+    private volatile int lastUpdateTransactions = 0;
+    
+    ////////////////////////////////////////////////////////////////
+    // Schattenregister (double-buffered) fuer alle 16 Channel:
+    // pendingOn/pendingOff - Vorgaben der Aufrufer (noch nicht gesendet),
+    // sentOn/sentOff - zuletzt an den Baustein gesendete Werte.
+    // UNKNOWN in sentOn/sentOff: Registerinhalt des Bausteins unbekannt.
+    ////////////////////////////////////////////////////////////////
+    /** UNKNOWN = -1; Kennung fuer unbekannten Registerinhalt */
+    private final static int UNKNOWN = -1;
+    /** pendingOn - vorgegebene On-Zeitpunkte */
+    private final int[] pendingOn = new int[NUMBER_CHANNELS];
+    /** pendingOff - vorgegebene Off-Zeitpunkte */
+    private final int[] pendingOff = new int[NUMBER_CHANNELS];
+    /** sentOn - gesendete On-Zeitpunkte */
+    private final int[] sentOn = new int[NUMBER_CHANNELS];
+    /** sentOff - gesendete Off-Zeitpunkte */
+    private final int[] sentOff = new int[NUMBER_CHANNELS];
+    
     // Register...
     /** MODE1_REGISTER = 0x00 Mode Register 1 */
     public final static int MODE1_REGISTER = 0x00;
@@ -78,6 +150,18 @@ public class PCA9685 extends I2C
     /** ALLCALLADR = PCA9685 response to LED all call I2C-Bus address */
     public final static int ALLCALLADR = 0x05;    
     
+    /** LED0_ON_L_REGISTER = 0x06; erstes LED-Register (Channel 0, ON_L) */
+    public final static int LED0_ON_L_REGISTER = 0x06;
+    /** LED15_OFF_H_REGISTER = 0x45; letztes LED-Register (Channel 15, OFF_H) */
+    public final static int LED15_OFF_H_REGISTER = 0x45;
+    /** LED_REGISTER_SIZE = 4; Anzahl der Register (ON_L, ON_H, OFF_L, OFF_H) je Channel */
+    public final static int LED_REGISTER_SIZE = 4;
+    /**
+     * FULL = 0x1000 - FULL_ON- bzw. FULL_OFF-Bit (Bit 4 in LEDn_ON_H bzw. LEDn_OFF_H)
+     * im On- bzw. Off-Wert. FULL_OFF hat Vorrang vor FULL_ON.
+     */
+    public final static int FULL = 0x1000;
+
     ////////////////////////////////////////////////////////////////
     // Ablage der 'Zeitpunkte' (0 bis 4095) fuer alle
     // 16 Channel, dabei Ablage Low-Teil und High-Teil getrennt.
@@ -105,6 +189,17 @@ public class PCA9685 extends I2C
      */
     public final static int SLEEP = 0x10;
 
+    /**
+     * AI Bit 5, daher Wert 0x20
+     * wenn Bit gleich 0, dann 'Register Auto-Increment disabled'
+     * wenn Bit gleich 1, dann 'Register Auto-Increment enabled'
+     * <p>
+     * Mit gesetztem AI-Bit werden ON_L, ON_H, OFF_L und OFF_H eines Channels 
+     * in einer Transaktion (writeArray()) geschrieben.
+     * </p>
+     */
+    public final static int AI = 0x20;
+
     /**
      * ALLCALL Bit 0, daher Wert 0x01
      * wenn Bit gleich 0, dann 'PCA9685 does not respond to LED All Call I 2 C-bus address.'
@@ -143,84 +238,541 @@ public class PCA9685 extends I2C
      */
     public final static int OUTDRV = 0x04;
     
+    ////////////////////////////////////////////////////////////////
+    // Bitfelder der Mode-Register...
+    ////////////////////////////////////////////////////////////////
+    /** MODE1_ALLCALL - MODE1 Bit 0 */
+    public final static RegisterField MODE1_ALLCALL = RegisterField.bit(MODE1_REGISTER, 0);
+    /** MODE1_SUB3 - MODE1 Bit 1, Antwort auf SUBADR3 */
+    public final static RegisterField MODE1_SUB3 = RegisterField.bit(MODE1_REGISTER, 1);
+    /** MODE1_SUB2 - MODE1 Bit 2, Antwort auf SUBADR2 */
+    public final static RegisterField MODE1_SUB2 = RegisterField.bit(MODE1_REGISTER, 2);
+    /** MODE1_SUB1 - MODE1 Bit 3, Antwort auf SUBADR1 */
+    public final static RegisterField MODE1_SUB1 = RegisterField.bit(MODE1_REGISTER, 3);
+    /** MODE1_SLEEP - MODE1 Bit 4 */
+    public final static RegisterField MODE1_SLEEP = RegisterField.bit(MODE1_REGISTER, 4);
+    /** MODE1_AI - MODE1 Bit 5 */
+    public final static RegisterField MODE1_AI = RegisterField.bit(MODE1_REGISTER, 5);
+    /** MODE1_RESTART - MODE1 Bit 7 */
+    public final static RegisterField MODE1_RESTART = RegisterField.bit(MODE1_REGISTER, 7);
+    /** MODE2_OUTDRV - MODE2 Bit 2 */
+    public final static RegisterField MODE2_OUTDRV = RegisterField.bit(MODE2_REGISTER, 2);
+    
     /**
      * INTERNAL_FREQUENCY = 25000000; 25 MHz - interne Frequenz...
      */
     public final static long INTERNAL_FREQUENCY = 25000000;
     
+    /**
+     * OSCILLATOR_DELAY_NANOS = 500000 - Einschwingzeit des Oszillators nach dem
+     * Loeschen des SLEEP-Bits (Datenblatt: max. 500 us)
+     */
+    public final static long OSCILLATOR_DELAY_NANOS = 500000L;
+    
+    /**
+     * SERVO_PREFIX = "servo." - Schluessel der Servo-Kalibrierungen, vgl. loadServoCalibrations()
+     */
+    public final static String SERVO_PREFIX = "servo.";
+    
+    /**
+     * MIN_FREQUENCY = 24 - kleinste PWM-Frequenz (PRE_SCALE = 0xff)
+     */
+    public final static int MIN_FREQUENCY = 24;
+    
+    /**
+     * MAX_FREQUENCY = 1526 - groesste PWM-Frequenz (PRE_SCALE = 0x03)
+     */
+    public final static int MAX_FREQUENCY = 1526;
+    
+    /**
+     * PRESCALE_TABLE - Vorteiler je Frequenz MIN_FREQUENCY ... MAX_FREQUENCY
+     * (einmalig ganzzahlig berechnet, vgl. computePrescaleValue())
+     */
+    private final static byte[] PRESCALE_TABLE = new byte[MAX_FREQUENCY - MIN_FREQUENCY + 1];
+    
+    static
+    {
+        for (int index = 0; index < PRESCALE_TABLE.length; index++)
+        {
+            PRESCALE_TABLE[index] = (byte)computePrescaleValue(MIN_FREQUENCY + index);
+        }
+    }
+    
     /**
      * 
-     * @param dev
+     * @param transport
+     * @param scheduler
      */
-    private PCA9685(final I2CDevice dev)
+    private PCA9685(final I2CTransport transport, final I2CBusScheduler scheduler)
     {
-        super(dev); 
+        super(transport, scheduler, Priority.ACTUATOR); 
+        setShadow(UNKNOWN, UNKNOWN);
+        // Die Mode-Register und der Vorteiler werden nur ueber diese Instanz 
+        // geaendert, Read-Modify-Write daher aus dem Schattenregister...
+        setCacheable(MODE1_REGISTER, true);
+        setCacheable(MODE2_REGISTER, true);
+        setCacheable(PRE_SCALE_REGISTER, true);
     }
     
     /**
-     * getInstance(final I2CDevice dev) - Singleton-Implementierung
+     * getInstance(final I2CDevice dev) - Baustein am Standard-Bus zur Adresse des 
+     * Geraetes, vgl. getInstance(I2CTransport, I2CBusScheduler)
      * @param dev
      * @return
      */
-    synchronized public static PCA9685 getInstance(final I2CDevice dev)
+    public static PCA9685 getInstance(final I2CDevice dev)
+    {
+        return getInstance(new Pi4jTransport(dev));
+    }
+    
+    /**
+     * getInstance(final I2CTransport transport) - Baustein am Bus des Transports 
+     * (I2CBusScheduler.getInstance(transport.getBusNumber())), vgl. 
+     * getInstance(I2CTransport, I2CBusScheduler)
+     * @param transport
+     * @return
+     */
+    public static PCA9685 getInstance(final I2CTransport transport)
+    {
+        return getInstance(transport, I2CBusScheduler.getInstance(transport.getBusNumber()));
+    }
+    
+    /**
+     * getInstance(final I2CTransport transport, final I2CBusScheduler scheduler) - 
+     * liefert den Baustein zu Bus und Adresse, beim ersten Aufruf wird er angelegt
+     * und registriert. Weitere Aufrufe zu Bus und Adresse liefern dieselbe Instanz,
+     * sofern sie dasselbe Geraet (Transport bzw. pi4j-I2CDevice) uebergeben.
+     * @param transport Zugriff auf den Baustein
+     * @param scheduler Scheduler des Busses
+     * @return Baustein
+     * @throws IllegalArgumentException Adresse ausserhalb 0x40...0x7f, ALLCALL_ADDRESS,
+     * mehr als MAX_BOARDS Bausteine am Bus bzw. Bus und Adresse bereits mit einem 
+     * anderen Geraet registriert
+     */
+    synchronized public static PCA9685 getInstance(final I2CTransport transport, final I2CBusScheduler scheduler)
+    {
+        final int address = transport.getAddress();
+        final int key = key(scheduler.getBusNumber(), address);
+        PCA9685 board = PCA9685.boards.get(key);
+        if (board == null)
+        {
+            if ((address < MIN_ADDRESS) || (address > MAX_ADDRESS) || (address == ALLCALL_ADDRESS))
+            {
+                throw new IllegalArgumentException("PCA9685: unzulaessige Adresse 0x" + Integer.toHexString(address));
+            }
+            final int bus = scheduler.getBusNumber() << 8;
+            final long count = PCA9685.boards.keySet().stream().filter(other -> (other & ~0xff) == bus).count();
+            if (count >= MAX_BOARDS)
+            {
+                throw new IllegalArgumentException("PCA9685: mehr als " + MAX_BOARDS + " Bausteine an Bus " + scheduler.getBusNumber());
+            }
+            board = new PCA9685(transport, scheduler);
+            PCA9685.boards.put(key, board);
+        }
+        else if (!isSameDevice(board.getTransport(), transport))
+        {
+            // Sonst gingen die Kommandos ueber den Transport des registrierten Bausteins...
+            throw new IllegalArgumentException("PCA9685: Bus " + scheduler.getBusNumber() + ", Adresse 0x" 
+                                               + Integer.toHexString(address) + " ist bereits mit einem anderen Geraet registriert");
+        }
+        return board; 
+    }
+    
+    /**
+     * isSameDevice(I2CTransport registered, I2CTransport transport)
+     * @return true bei demselben Transport bzw. demselben pi4j-I2CDevice 
+     * (getInstance(I2CDevice) legt je Aufruf einen Pi4jTransport an)
+     */
+    private static boolean isSameDevice(I2CTransport registered, I2CTransport transport)
     {
-        if (PCA9685.instance == null)
+        if (registered == transport)
         {
-            PCA9685.instance = new PCA9685(dev);
+            return true;
         }
-        return PCA9685.instance; 
+        return (registered instanceof Pi4jTransport) && (transport instanceof Pi4jTransport)
+            && (((Pi4jTransport)registered).getDevice() == ((Pi4jTransport)transport).getDevice());
     }
     
     /**
-     * 
-     * @param number
-     * @return
+     * getInstance(int busNumber, int address) - registrierter Baustein
+     * @param busNumber Bus-Nummer
+     * @param address Bus-Adresse
+     * @return Baustein, null wenn nicht registriert
      */
-    public PCA9685.Servo getServo(int number)
+    synchronized public static PCA9685 getInstance(int busNumber, int address)
     {
-        return new PCA9685.Servo(this.channels[number]);
+        return PCA9685.boards.get(key(busNumber, address));
     }
     
     /**
-     * 
-     * @param number
-     * @return
+     * getInstances() - alle registrierten Bausteine
+     * @return Bausteine, sortiert nach Bus und Adresse
      */
-    public PCA9685.Motor getMotor(int number)
+    synchronized public static List<PCA9685> getInstances()
     {
-        return new PCA9685.Motor(this.channels[number]); 
+        return new ArrayList<>(PCA9685.boards.values());
     }
     
     /**
-     * 
-     * @param frequency
+     * remove(PCA9685 board) - entfernt den Baustein aus der Registry (z.B. nach
+     * dem Abschalten), der naechste getInstance()-Aufruf legt ihn neu an.
+     * @param board
+     */
+    synchronized public static void remove(PCA9685 board)
+    {
+        PCA9685.boards.remove(key(board.getScheduler().getBusNumber(), board.getTransport().getAddress()), board);
+    }
+    
+    /**
+     * flushAll() - Ausgabe der geaenderten Channel aller registrierten Bausteine
+     * in einem Durchlauf (sortiert nach Bus und Adresse), vgl. flush().
+     * @return Anzahl der Bus-Transaktionen
+     * @throws IOException - Problem bei write()/writeArray().
+     */
+    public static int flushAll() throws IOException
+    {
+        int transactions = 0;
+        for (PCA9685 board : getInstances())
+        {
+            transactions += board.flush();
+        }
+        return transactions;
+    }
+    
+    /**
+     * key(int busNumber, int address)
+     * @return Schluessel der Registry
+     */
+    private static int key(int busNumber, int address)
+    {
+        return (busNumber << 8) | (address & 0xff);
+    }
+    
+    /**
+     * getServo(int number) - Servo zum Channel, beim ersten Aufruf angelegt
+     * @param number Channel (0 ... 15)
+     * @return Servo (je Channel immer dieselbe Instanz)
+     */
+    synchronized public PCA9685.Servo getServo(int number)
+    {
+        if (this.servos[number] == null)
+        {
+            this.servos[number] = new PCA9685.Servo(this.channels[number]);
+        }
+        return this.servos[number];
+    }
+    
+    /**
+     * getMotor(int number) - Motor zum Channel, beim ersten Aufruf angelegt
+     * @param number Channel (0 ... 15)
+     * @return Motor (je Channel immer dieselbe Instanz)
+     */
+    synchronized public PCA9685.Motor getMotor(int number)
+    {
+        if (this.motors[number] == null)
+        {
+            this.motors[number] = new PCA9685.Motor(this.channels[number]);
+        }
+        return this.motors[number]; 
+    }
+    
+    /**
+     * loadServoCalibrations(Path file) - Servo-Kalibrierungen des Roboters aus einer
+     * Properties-Datei, vgl. loadServoCalibrations(Properties)
+     * @param file Properties-Datei
+     * @return Anzahl der kalibrierten Servos
+     * @throws IOException - Problem beim Lesen der Datei
+     */
+    public int loadServoCalibrations(Path file) throws IOException
+    {
+        final Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file))
+        {
+            properties.load(input);
+        }
+        return loadServoCalibrations(properties);
+    }
+    
+    /**
+     * loadServoCalibrations(Properties properties) - Kalibrierung je Channel n aus den
+     * Schluesseln servo.n.minPulse, servo.n.maxPulse, servo.n.minAngle, servo.n.maxAngle
+     * und servo.n.trim (vgl. ServoCalibration.fromProperties()). Channel ohne Schluessel
+     * bleiben unveraendert.
+     * @param properties
+     * @return Anzahl der kalibrierten Servos
+     */
+    synchronized public int loadServoCalibrations(Properties properties)
+    {
+        int count = 0;
+        for (int number = 0; number < NUMBER_CHANNELS; number++)
+        {
+            final String prefix = SERVO_PREFIX + number + ".";
+            if (properties.stringPropertyNames().stream().anyMatch(key -> key.startsWith(prefix)))
+            {
+                getServo(number).setCalibration(ServoCalibration.fromProperties(properties, prefix));
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * initialize() - Kaltstart: alle Channel 0, Oszillator ein, Auto-Increment
+     * entsprechend der Vorgabe.
+     * <p>
+     * Nach dem Loeschen des SLEEP-Bits wird nur die Einschwingzeit des Oszillators
+     * (OSCILLATOR_DELAY_NANOS) abgewartet.
+     * </p>
      * @throws IOException
      */
     synchronized public void initialize() throws IOException
     {
+        // Kaltstart: Schattenregister (MODE1, MODE2, PRE_SCALE) verwerfen, der
+        // Baustein war evtl. zwischenzeitlich ohne Spannung...
+        invalidateAll();
         write(MODE1_REGISTER, (byte) PCA9685.SWRST);
         
         write(ALL_LED_ON_L_REGISTER, (byte) 0);
         write(ALL_LED_ON_H_REGISTER, (byte) 0);
         write(ALL_LED_OFF_L_REGISTER, (byte) 0);
         write(ALL_LED_OFF_H_REGISTER, (byte) 0);
+        // Alle Channel sind jetzt 0...
+        setShadow(0, 0);
         
-        sleep(100);
-
-        configPin(MODE1_REGISTER, 0, PCA9685.SLEEP);        
+        // Auto-Increment entsprechend der Vorgabe this.autoIncrement...
+        update().set(MODE1_SLEEP, false)
+                .set(MODE1_AI, this.autoIncrement)
+                .apply();
         
-        sleep(100);
+        delayNanos(OSCILLATOR_DELAY_NANOS);
     }
     
     /**
-     * setPWMFrequency(int frequency)
-     * @param frequency
+     * initialize(int frequency) - Warmstart, falls moeglich, sonst Kaltstart mit
+     * initialize() und setPWMFrequency(frequency).
+     * <p>
+     * MODE1 und PRE_SCALE werden vom Baustein gelesen. Laeuft der Oszillator
+     * (SLEEP und RESTART nicht gesetzt), stimmt das AI-Bit mit der Vorgabe und der
+     * Vorteiler mit frequency ueberein, bleibt der Baustein unveraendert (kein Reset,
+     * die Ausgaenge laufen ohne Unterbrechung weiter, z.B. nach einem Neustart der
+     * Anwendung). Die LED-Register gelten dann als unbekannt, die naechste Ausgabe
+     * eines Channels wird in jedem Fall gesendet.
+     * </p>
+     * @param frequency PWM-Frequenz
+     * @return true bei Warmstart, false bei Kaltstart
+     * @throws IOException
+     */
+    synchronized public boolean initialize(int frequency) throws IOException
+    {
+        invalidate(MODE1_REGISTER);
+        invalidate(PRE_SCALE_REGISTER);
+        final RegisterSnapshot snapshot = readRegisters(planRead(MODE1_REGISTER, PRE_SCALE_REGISTER));
+        final int mode1 = snapshot.get(MODE1_REGISTER);
+        if (!MODE1_SLEEP.isSet(mode1) 
+            && !MODE1_RESTART.isSet(mode1)
+            && (MODE1_AI.isSet(mode1) == this.autoIncrement)
+            && (snapshot.get(PRE_SCALE_REGISTER) == (getPrescaleValue(frequency) & 0xff)))
+        {
+            setShadow(UNKNOWN, UNKNOWN);
+            this.frequency = frequency;
+            return true;
+        }
+        initialize();
+        setPWMFrequency(frequency);
+        return false;
+    }
+    
+    /**
+     * setAutoIncrement(boolean autoIncrement) - Ein-/Ausschalten des Auto-Increment.
+     * <p>
+     * Bei eingeschaltetem Auto-Increment wird das AI-Bit im MODE1_REGISTER gesetzt
+     * (sofort und bei jedem initialize()) und die vier LED-Register eines Channels 
+     * werden mit einer Transaktion (writeArray()) statt mit vier einzelnen 
+     * write()-Aufrufen geschrieben.
+     * </p>
+     * @param autoIncrement true => Auto-Increment, false => Einzel-Schreibzugriffe
+     * @throws IOException
+     */
+    synchronized public void setAutoIncrement(boolean autoIncrement) throws IOException
+    {
+        update().set(MODE1_AI, autoIncrement).apply();
+        this.autoIncrement = autoIncrement;
+    }
+    
+    /**
+     * isAutoIncrement()
+     * @return true, wenn die LED-Register im Block geschrieben werden
+     */
+    @Override
+    public final boolean isAutoIncrement()
+    {
+        return this.autoIncrement;
+    }
+    
+    /**
+     * readLedRegisters() - liest die LED-Register aller 16 Channel (z.B. zur Kontrolle
+     * des Zustands), mit Auto-Increment als eine Transaktion (64 Byte).
+     * <p>
+     * On-/Off-Zeitpunkt eines Channels: snapshot.getWordLE(LED0_ON_L_REGISTER + 4*channel)
+     * bzw. snapshot.getWordLE(LED0_ON_L_REGISTER + 4*channel + 2).
+     * </p>
+     * @return Momentaufnahme der LED-Register
+     * @throws IOException
+     */
+    public RegisterSnapshot readLedRegisters() throws IOException
+    {
+        final int[] registers = new int[NUMBER_CHANNELS * LED_REGISTER_SIZE];
+        for (int index = 0; index < registers.length; index++)
+        {
+            registers[index] = LED0_ON_L_REGISTER + index;
+        }
+        return readRegisters(planRead(registers));
+    }
+    
+    /**
+     * getLastUpdateTransactions() - liefert die Anzahl der Bus-Transaktionen
+     * der letzten Aktualisierung (Channel.setPWM(), setChannels(), flush() bzw. setAllChannel()).
+     * <p>
+     * Ohne Auto-Increment: 4, mit Auto-Increment: 1.
+     * </p>
+     * @return Anzahl der Transaktionen der letzten Aktualisierung
+     */
+    public final int getLastUpdateTransactions()
+    {
+        return this.lastUpdateTransactions;
+    }
+    
+    /**
+     * writeLedRegisters(int onLowByteReg, int onValue, int offValue) - schreibt
+     * die vier Register ON_L, ON_H, OFF_L, OFF_H beginnend mit onLowByteReg.
+     * <p>
+     * Bei Auto-Increment als eine Transaktion, sonst als vier Einzel-Transaktionen.
+     * </p>
+     * @param onLowByteReg erstes Register (ON_L)
+     * @param onValue On-Zeitpunkt
+     * @param offValue Off-Zeitpunkt
+     * @throws IOException
+     */
+    private void writeLedRegisters(int onLowByteReg, int onValue, int offValue) throws IOException
+    {
+        final long count = getTransactionCount();
+        if (this.autoIncrement)
+        {
+            final byte[] buffer = { (byte)(onValue & 0xff),
+                                    (byte)((onValue >> 8) & 0xff),
+                                    (byte)(offValue & 0xff),
+                                    (byte)((offValue >> 8) & 0xff) };
+            writeArray(onLowByteReg, buffer, buffer.length);
+        }
+        else
+        {
+            // Die vier Einzelzugriffe als eine Transaktion am Bus...
+            acquireBus();
+            try
+            {
+                write(onLowByteReg,   (byte)(onValue & 0xff));
+                write(onLowByteReg+1, (byte)((onValue >> 8) & 0xff));
+                write(onLowByteReg+2, (byte)(offValue & 0xff));
+                write(onLowByteReg+3, (byte)((offValue >> 8) & 0xff));
+            }
+            finally
+            {
+                releaseBus();
+            }
+        }
+        this.lastUpdateTransactions = (int)(getTransactionCount() - count);
+    }
+    
+    /**
+     * setPWMFrequency(int frequency) - PWM-Frequenz, auch zur Laufzeit.
+     * <p>
+     * PRE_SCALE ist nur im SLEEP-Modus beschreibbar, daher: SLEEP setzen, Vorteiler
+     * schreiben, aufwecken, Einschwingzeit des Oszillators abwarten (OSCILLATOR_DELAY_NANOS),
+     * RESTART. Schlief der Baustein bereits, bleibt er im SLEEP-Modus. Ein 
+     * unveraenderter Vorteiler kostet keinen Busverkehr.
+     * </p>
+     * <p>
+     * Das Tastverhaeltnis (Ticks/RESOLUTION) ist unabhaengig von der Frequenz, die 
+     * Motor- bzw. LED-Channel bleiben daher unveraendert. Bei Servo-Channeln (getServo())
+     * zaehlt dagegen die Pulsbreite: deren On-/Off-Werte werden ganzzahlig im Verhaeltnis 
+     * der Vorteiler umgerechnet und noch im SLEEP-Modus mit flushBlock() (bei Auto-Increment
+     * vom ersten bis zum letzten geaenderten Channel in einer Transaktion) gesendet, nach 
+     * RESTART gelten damit sofort die neue Frequenz und die umgerechneten Werte.
+     * </p>
+     * @param frequency PWM-Frequenz (MIN_FREQUENCY ... MAX_FREQUENCY)
      * @throws IOException
      */
     synchronized public void setPWMFrequency(int frequency) throws IOException
     {
-        write(PRE_SCALE_REGISTER, PCA9685.getPrescaleValue(frequency));
-        this.frequency = frequency;
+        final int prescale = PCA9685.getPrescaleValue(frequency) & 0xff;
+        acquireBus();
+        try
+        {
+            final int oldPrescale = read(PRE_SCALE_REGISTER) & 0xff;
+            if (prescale == oldPrescale)
+            {
+                this.frequency = frequency;
+                return;
+            }
+            final int mode1 = read(MODE1_REGISTER) & 0xff & ~RESTART;
+            final boolean awake = !MODE1_SLEEP.isSet(mode1);
+            if (awake)
+            {
+                write(MODE1_REGISTER, (byte)(mode1 | SLEEP));
+            }
+            rescaleServos(oldPrescale, prescale);
+            flushBlock();
+            write(PRE_SCALE_REGISTER, (byte)prescale);
+            if (awake)
+            {
+                write(MODE1_REGISTER, (byte)mode1);
+                delayNanos(OSCILLATOR_DELAY_NANOS);
+                write(MODE1_REGISTER, (byte)(mode1 | RESTART));
+                // RESTART wird vom Baustein selbst geloescht...
+                invalidate(MODE1_REGISTER);
+            }
+            this.frequency = frequency;
+        }
+        finally
+        {
+            releaseBus();
+        }
+    }
+    
+    /**
+     * rescaleServos(int oldPrescale, int prescale) - rechnet die Vorgaben der 
+     * Servo-Channel auf den neuen Vorteiler um (gleiche Pulsbreite), die Ausgabe
+     * erfolgt mit flushBlock().
+     * @param oldPrescale bisheriger Vorteiler
+     * @param prescale neuer Vorteiler
+     */
+    private void rescaleServos(int oldPrescale, int prescale)
+    {
+        for (int channel = 0; channel < NUMBER_CHANNELS; channel++)
+        {
+            if (this.servos[channel] == null)
+            {
+                continue;
+            }
+            this.pendingOn[channel] = rescale(this.pendingOn[channel], oldPrescale, prescale);
+            this.pendingOff[channel] = rescale(this.pendingOff[channel], oldPrescale, prescale);
+        }
+    }
+    
+    /**
+     * rescale(int value, int oldPrescale, int prescale) - Tick-Wert bei gleicher Zeit,
+     * ein Tick dauert (prescale+1)/INTERNAL_FREQUENCY
+     * @return umgerechneter Wert (gerundet, max. RESOLUTION-1), UNKNOWN und Werte
+     * mit FULL-Bit unveraendert
+     */
+    private static int rescale(int value, int oldPrescale, int prescale)
+    {
+        if ((value == UNKNOWN) || ((value & FULL) != 0))
+        {
+            return value;
+        }
+        final int scaled = (value * (oldPrescale + 1) + (prescale + 1) / 2) / (prescale + 1);
+        return Math.min(scaled, RESOLUTION - 1);
     }
     
     /**
@@ -231,56 +783,354 @@ public class PCA9685 extends I2C
      */
     synchronized public void setAllChannel(int onValue, int offValue) throws IOException
     {
-        write(ALL_LED_ON_L_REGISTER, (byte)(onValue & 0xff));
-        write(ALL_LED_ON_H_REGISTER, (byte)((onValue >> 8) & 0xff));
-        write(ALL_LED_OFF_L_REGISTER, (byte)(offValue & 0xff));
-        write(ALL_LED_OFF_H_REGISTER, (byte)((offValue >> 8) & 0xff));
+        writeLedRegisters(ALL_LED_ON_L_REGISTER, onValue, offValue);
+        setShadow(onValue, offValue);
     }
     
     /**
-     * sleep(int millis)
-     * @param millis
+     * setChannel(int channel, int onValue, int offValue) - Vorgabe fuer einen Channel
+     * im Schattenregister, <b>ohne</b> Buszugriff.
+     * <p>
+     * Die Ausgabe erfolgt mit flush(). Bleibt der Wert unveraendert, 
+     * entsteht beim flush() fuer diesen Channel kein Busverkehr.
+     * </p>
+     * @param channel Channel (0 ... 15)
+     * @param onValue On-Zeitpunkt [0..4095], ggf. mit FULL
+     * @param offValue Off-Zeitpunkt [0..4095], ggf. mit FULL
+     * @throws IllegalArgumentException Channel bzw. Wert ausserhalb des Bereichs
      */
-    private final void sleep(int millis)
+    synchronized public void setChannel(int channel, int onValue, int offValue)
     {
-        try
+        if ((channel < 0) || (channel >= NUMBER_CHANNELS))
         {
-            Thread.sleep(millis);
-        } 
-        catch (InterruptedException exception)
+            final String message = new StringBuilder().append("setChannel(): Channel ")
+                                                      .append(channel)
+                                                      .append(" ausserhalb 0 ... ")
+                                                      .append(NUMBER_CHANNELS - 1)
+                                                      .toString();
+            throw new IllegalArgumentException(message);
+        }
+        checkValues("setChannel()", onValue, offValue);
+        this.pendingOn[channel] = onValue;
+        this.pendingOff[channel] = offValue;
+    }
+    
+    /**
+     * checkValues(String method, int onValue, int offValue) - On-/Off-Wert im 
+     * Bereich 0 ... RESOLUTION-1, ggf. mit FULL (Bit 12:0 der LED-Register)
+     * @param method Methode fuer die Meldung
+     * @throws IllegalArgumentException Wert ausserhalb des Bereichs
+     */
+    static void checkValues(String method, int onValue, int offValue)
+    {
+        if (((onValue & ~(FULL | (RESOLUTION - 1))) != 0) || ((offValue & ~(FULL | (RESOLUTION - 1))) != 0))
         {
-            final String message = new StringBuilder().append("Exception Thread.sleep(): ")
-                                                      .append(exception.getMessage())
+            final String message = new StringBuilder().append(method)
+                                                      .append(": onValue=")
+                                                      .append(onValue)
+                                                      .append(", offValue=")
+                                                      .append(offValue)
+                                                      .append(" ausserhalb 0 ... ")
+                                                      .append(RESOLUTION - 1)
                                                       .toString();
-            
-            throw new RuntimeException(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+    
+    /**
+     * setLevel(int channel, boolean isHighLevel) - statischer Pegel eines Channels
+     * ueber FULL_ON/FULL_OFF (sofortige Ausgabe), vgl. Channel.setLevel()
+     * @param channel Channel (0 ... 15)
+     * @param isHighLevel false => low level; true => high level
+     * @throws IOException - Problem bei write().
+     */
+    synchronized public void setLevel(int channel, boolean isHighLevel) throws IOException
+    {
+        this.channels[channel].setLevel(isHighLevel);
+    }
+    
+    /**
+     * flush() - Ausgabe aller geaenderten Channel.
+     * <p>
+     * Geaendert ist ein Channel, wenn die Vorgabe (setChannel(), Channel.setPWM()) vom 
+     * zuletzt gesendeten Wert abweicht. Benachbarte geaenderte Channel werden zu
+     * zusammenhaengenden Bloecken zusammengefasst, bei Auto-Increment wird jeder 
+     * Block mit einer Transaktion geschrieben.
+     * </p>
+     * @return Anzahl der Bus-Transaktionen (0, wenn sich nichts geaendert hat)
+     * @throws IOException - Problem bei write()/writeArray().
+     */
+    synchronized public int flush() throws IOException
+    {
+        final long count = getTransactionCount();
+        int first = 0;
+        while (first < NUMBER_CHANNELS)
+        {
+            if (!isDirty(first))
+            {
+                first++;
+                continue;
+            }
+            // Ende des Blocks benachbarter geaenderter Channel suchen...
+            int last = first;
+            while ((last + 1 < NUMBER_CHANNELS) && isDirty(last + 1))
+            {
+                last++;
+            }
+            final int number = last - first + 1;
+            writeLedBlock(first, this.pendingOn, this.pendingOff, first, number);
+            System.arraycopy(this.pendingOn, first, this.sentOn, first, number);
+            System.arraycopy(this.pendingOff, first, this.sentOff, first, number);
+            first = last + 1;
+        }
+        final int transactions = (int)(getTransactionCount() - count);
+        this.lastUpdateTransactions = transactions;
+        return transactions;
+    }
+    
+    /**
+     * flushBlock() - Ausgabe aller geaenderten Channel mit einer Transaktion.
+     * <p>
+     * Mit Auto-Increment wird der Bereich vom ersten bis zum letzten geaenderten Channel
+     * als ein Block geschrieben, unveraenderte Channel dazwischen mit ihrem gesendeten
+     * Wert. Ist dazwischen ein Channel mit unbekanntem Registerinhalt (bzw. ohne 
+     * Auto-Increment), erfolgt die Ausgabe wie mit flush().
+     * </p>
+     * @return Anzahl der Bus-Transaktionen (0, wenn sich nichts geaendert hat)
+     * @throws IOException - Problem bei write()/writeArray().
+     */
+    synchronized public int flushBlock() throws IOException
+    {
+        int first = 0;
+        while ((first < NUMBER_CHANNELS) && !isDirty(first))
+        {
+            first++;
+        }
+        if (first == NUMBER_CHANNELS)
+        {
+            this.lastUpdateTransactions = 0;
+            return 0;
+        }
+        int last = NUMBER_CHANNELS - 1;
+        while (!isDirty(last))
+        {
+            last--;
+        }
+        if (!this.autoIncrement)
+        {
+            return flush();
+        }
+        for (int channel = first; channel <= last; channel++)
+        {
+            if ((this.pendingOn[channel] == UNKNOWN) || (this.pendingOff[channel] == UNKNOWN))
+            {
+                return flush();
+            }
+        }
+        final int number = last - first + 1;
+        writeLedBlock(first, this.pendingOn, this.pendingOff, first, number);
+        System.arraycopy(this.pendingOn, first, this.sentOn, first, number);
+        System.arraycopy(this.pendingOff, first, this.sentOff, first, number);
+        return this.lastUpdateTransactions;
+    }
+    
+    /**
+     * getChannelOff(int channel)
+     * @param channel Channel (0 ... 15)
+     * @return vorgegebener Off-Zeitpunkt (-1, wenn unbekannt)
+     */
+    synchronized int getChannelOff(int channel)
+    {
+        return this.pendingOff[channel];
+    }
+    
+    /**
+     * isDirty(int channel) 
+     * @param channel
+     * @return true, wenn die Vorgabe vom gesendeten Wert abweicht
+     */
+    private boolean isDirty(int channel)
+    {
+        return (this.pendingOn[channel] != this.sentOn[channel]) 
+            || (this.pendingOff[channel] != this.sentOff[channel]);
+    }
+    
+    /**
+     * setSent(int channel, int onValue, int offValue) - uebernimmt einen ausserhalb
+     * dieser Instanz (Gruppen-Adresse, vgl. PCA9685Group) gesendeten Wert in das
+     * Schattenregister.
+     * @param channel
+     * @param onValue
+     * @param offValue
+     */
+    synchronized void setSent(int channel, int onValue, int offValue)
+    {
+        this.pendingOn[channel] = onValue;
+        this.pendingOff[channel] = offValue;
+        this.sentOn[channel] = onValue;
+        this.sentOff[channel] = offValue;
+    }
+    
+    /**
+     * setSentAll(int onValue, int offValue) - wie setSent(), fuer alle Channel
+     * @param onValue
+     * @param offValue
+     */
+    synchronized void setSentAll(int onValue, int offValue)
+    {
+        setShadow(onValue, offValue);
+    }
+    
+    /**
+     * setShadow(int onValue, int offValue) - setzt das Schattenregister 
+     * aller Channel (Vorgabe und gesendeter Wert).
+     * @param onValue
+     * @param offValue
+     */
+    private void setShadow(int onValue, int offValue)
+    {
+        for (int channel = 0; channel < NUMBER_CHANNELS; channel++)
+        {
+            this.pendingOn[channel] = onValue;
+            this.pendingOff[channel] = offValue;
+            this.sentOn[channel] = onValue;
+            this.sentOff[channel] = offValue;
+        }
+    }
+    
+    /**
+     * setChannels(int firstChannel, int[] onValues, int[] offValues) - Frame-Ausgabe
+     * fuer die Channel firstChannel ... firstChannel+onValues.length-1.
+     * <p>
+     * Bei Auto-Increment werden alle Werte in einem Block ueber das zusammenhaengende
+     * Registerfenster LED0_ON_L ... LED15_OFF_H (0x06 ... 0x45) in einer einzigen
+     * Transaktion geschrieben, eine Ausgabe aller 16 Channel kostet damit eine statt
+     * 64 Transaktionen. Ohne Auto-Increment wird jedes Register einzeln geschrieben.
+     * </p>
+     * @param firstChannel erster Channel (0 ... 15)
+     * @param onValues On-Zeitpunkte [0..4095] ab firstChannel
+     * @param offValues Off-Zeitpunkte [0..4095] ab firstChannel
+     * @throws IOException - Problem bei write()/writeArray().
+     */
+    synchronized public void setChannels(int firstChannel, int[] onValues, int[] offValues) throws IOException
+    {
+        if ((onValues == null) || (offValues == null) || (onValues.length != offValues.length))
+        {
+            throw new IllegalArgumentException("setChannels(): onValues und offValues muessen gleich lang sein!");
+        }
+        final int number = onValues.length;
+        if ((firstChannel < 0) || (firstChannel + number > NUMBER_CHANNELS))
+        {
+            final String message = new StringBuilder().append("setChannels(): Channel ")
+                                                      .append(firstChannel)
+                                                      .append(" bis ")
+                                                      .append(firstChannel + number - 1)
+                                                      .append(" ausserhalb 0 ... ")
+                                                      .append(NUMBER_CHANNELS - 1)
+                                                      .toString();
+            throw new IllegalArgumentException(message);
+        }
+        if (number == 0)
+        {
+            this.lastUpdateTransactions = 0;
+            return;
+        }
+        writeLedBlock(firstChannel, onValues, offValues, 0, number);
+        System.arraycopy(onValues, 0, this.pendingOn, firstChannel, number);
+        System.arraycopy(offValues, 0, this.pendingOff, firstChannel, number);
+        System.arraycopy(onValues, 0, this.sentOn, firstChannel, number);
+        System.arraycopy(offValues, 0, this.sentOff, firstChannel, number);
+    }
+    
+    /**
+     * writeLedBlock(...) - schreibt number Channel ab firstChannel, die Werte 
+     * stammen aus onValues/offValues ab dem Index from.
+     * @param firstChannel erster Channel
+     * @param onValues On-Zeitpunkte
+     * @param offValues Off-Zeitpunkte
+     * @param from erster Index in onValues/offValues
+     * @param number Anzahl der Channel
+     * @throws IOException
+     */
+    private void writeLedBlock(int firstChannel, int[] onValues, int[] offValues, int from, int number) throws IOException
+    {
+        final int firstReg = LED0_ON_L_REGISTER + firstChannel * LED_REGISTER_SIZE;
+        final long count = getTransactionCount();
+        if (this.autoIncrement)
+        {
+            final byte[] buffer = new byte[number * LED_REGISTER_SIZE];
+            for (int index = 0; index < number; index++)
+            {
+                final int onValue = onValues[from + index];
+                final int offValue = offValues[from + index];
+                final int pos = index * LED_REGISTER_SIZE;
+                buffer[pos]   = (byte)(onValue & 0xff);
+                buffer[pos+1] = (byte)((onValue >> 8) & 0xff);
+                buffer[pos+2] = (byte)(offValue & 0xff);
+                buffer[pos+3] = (byte)((offValue >> 8) & 0xff);
+            }
+            writeArray(firstReg, buffer, buffer.length);
+        }
+        else
+        {
+            // Die Einzelzugriffe als eine Transaktion am Bus...
+            acquireBus();
+            try
+            {
+                for (int index = 0; index < number; index++)
+                {
+                    final int onValue = onValues[from + index];
+                    final int offValue = offValues[from + index];
+                    final int reg = firstReg + index * LED_REGISTER_SIZE;
+                    write(reg,   (byte)(onValue & 0xff));
+                    write(reg+1, (byte)((onValue >> 8) & 0xff));
+                    write(reg+2, (byte)(offValue & 0xff));
+                    write(reg+3, (byte)((offValue >> 8) & 0xff));
+                }
+            }
+            finally
+            {
+                releaseBus();
+            }
         }
+        this.lastUpdateTransactions = (int)(getTransactionCount() - count);
     }
     
     /**
      * Anm.:
      * The maximum PWM frequency is 1526 Hz if the PRE_SCALE register is set "0x03h".
      * The minimum PWM frequency is 24 Hz if the PRE_SCALE register is set "0xFFh".
-     * 
+     * <p>
+     * Der Wert stammt aus PRESCALE_TABLE, ausserhalb MIN_FREQUENCY ... MAX_FREQUENCY
+     * wird auf 0xff bzw. 0x03 begrenzt.
+     * </p>
      * @param int frequency (50 Hz...60 Hz)
      * @return prescaleValue (byte)
      */
     public static byte getPrescaleValue(int frequency)
     {
-        //
-        // Am Ende -1+0.5 => -0.5 (Anm.: +0.5 zum Runden...) 
-        final double value =  Math.floor(((double)INTERNAL_FREQUENCY)/(double)(4096*frequency)-0.5);
-        
-        final int prescaleValue = (int)value; 
-        if (prescaleValue < 0x03)
+        if (frequency < MIN_FREQUENCY)
         {
-            return (byte)0x03;
+            return (byte)0xff;
         }
-        if (prescaleValue > 0xff)
+        if (frequency > MAX_FREQUENCY)
         {
-            return (byte)0xff;
+            return (byte)0x03;
         }
-        return (byte)prescaleValue;
+        return PRESCALE_TABLE[frequency - MIN_FREQUENCY];
+    }
+    
+    /**
+     * computePrescaleValue(int frequency) - Vorteiler ganzzahlig, 
+     * floor(INTERNAL_FREQUENCY/(4096*frequency) - 0.5), begrenzt auf 0x03 ... 0xff
+     * @param frequency (frequency > 0)
+     * @return prescaleValue
+     */
+    private static int computePrescaleValue(int frequency)
+    {
+        // Am Ende -1+0.5 => -0.5 (Anm.: +0.5 zum Runden...), mit 2 erweitert...
+        final long value = (2L * INTERNAL_FREQUENCY - 4096L * frequency) / (8192L * frequency);
+        return (int)Math.max(0x03, Math.min(0xff, value));
     }
 
     /**
@@ -325,12 +1175,65 @@ public class PCA9685 extends I2C
          * @param offValue
          * @throws IOException
          */
-        synchronized public void setPWM(int onValue, int offValue) throws IOException
+        public void setPWM(int onValue, int offValue) throws IOException
+        {
+            // Synchronisation ueber den Baustein, damit sich die Schreibzugriffe
+            // verschiedener Channel nicht ueberlagern...
+            synchronized(PCA9685.this)
+            {
+                final int number = this.property.getNumber();
+                pendingOn[number] = onValue;
+                pendingOff[number] = offValue;
+                if (!isDirty(number))
+                {
+                    // Unveraenderter Wert => kein Busverkehr...
+                    lastUpdateTransactions = 0;
+                    return;
+                }
+                writeLedRegisters(this.property.getOnLowByteReg(), onValue, offValue);
+                sentOn[number] = onValue;
+                sentOff[number] = offValue;
+            }
+        }
+
+        /**
+         * setLevel(boolean isHighLevel) - statischer Pegel ueber FULL_ON/FULL_OFF.
+         * <p>
+         * Im On-Wert bleibt FULL_ON stets gesetzt, der Pegel wird allein ueber FULL_OFF
+         * in LEDn_OFF_H umgeschaltet (FULL_OFF hat Vorrang). Steht der Channel bereits
+         * auf FULL_ON, kostet ein Pegelwechsel damit ein Byte (eine Transaktion), ein
+         * unveraenderter Pegel keinen Busverkehr.
+         * </p>
+         * @param isHighLevel false => low level; true => high level
+         * @throws IOException
+         */
+        public void setLevel(boolean isHighLevel) throws IOException
         {
-            write(this.property.getOnLowByteReg(), (byte)(onValue & 0xff));
-            write(this.property.getOnHighByteReg(), (byte)((onValue >> 8) & 0xff));
-            write(this.property.getOffLowByteReg(), (byte)(offValue & 0xff));
-            write(this.property.getOffHighByteReg(), (byte)((offValue >> 8) & 0xff));
+            synchronized(PCA9685.this)
+            {
+                final int number = this.property.getNumber();
+                final int offValue = isHighLevel? 0 : FULL;
+                pendingOn[number] = FULL;
+                pendingOff[number] = offValue;
+                if (!isDirty(number))
+                {
+                    lastUpdateTransactions = 0;
+                    return;
+                }
+                if ((sentOn[number] == FULL) && (sentOff[number] != UNKNOWN) && ((sentOff[number] & 0xff) == 0))
+                {
+                    // ON_L, ON_H und OFF_L unveraendert => nur LEDn_OFF_H...
+                    final long count = getTransactionCount();
+                    write(this.property.getOffHighByteReg(), (byte)((offValue >> 8) & 0xff));
+                    lastUpdateTransactions = (int)(getTransactionCount() - count);
+                }
+                else
+                {
+                    writeLedRegisters(this.property.getOnLowByteReg(), FULL, offValue);
+                }
+                sentOn[number] = FULL;
+                sentOff[number] = offValue;
+            }
         }
     }
     
@@ -368,6 +1271,13 @@ public class PCA9685 extends I2C
         
         private final int number;
         
+        /**
+         * @return int getNumber() - Nummer des Channels
+         */
+        public final int getNumber()
+        {
+            return this.number;
+        }
        
         /**
          * @return int getOnLowByteReg()
@@ -409,6 +1319,11 @@ public class PCA9685 extends I2C
      * T: default 20 ms<br>
      * Td: 2500us/1500us/500us  (us = Mikrosekunde)<br>
      * </p>
+     * <p>
+     * Die Tick-Konstanten (SERVO_MIN_LIMIT...) gelten nur fuer eine PWM-Frequenz,
+     * setMicros() und setAngle() rechnen dagegen ueber die Kalibrierung 
+     * (ServoCalibration) zur aktuellen Frequenz.
+     * </p>
      * @author Detlef Tribius
      */
     public class Servo
@@ -484,6 +1399,94 @@ public class PCA9685 extends I2C
         {
             this.channel = channel;
         }
+        
+        /**
+         * getNumber()
+         * @return Nummer des Channels (0 ... 15)
+         */
+        public final int getNumber()
+        {
+            return this.channel.property.getNumber();
+        }
+        
+        /**
+         * getBoard()
+         * @return Baustein des Servos
+         */
+        public final PCA9685 getBoard()
+        {
+            return PCA9685.this;
+        }
+        
+        /**
+         * calibration - Kalibrierung fuer setMicros()/setAngle()
+         */
+        private volatile ServoCalibration calibration = ServoCalibration.DEFAULT;
+        
+        /**
+         * setCalibration(ServoCalibration calibration)
+         * @param calibration Kalibrierung (null => ServoCalibration.DEFAULT)
+         */
+        public void setCalibration(ServoCalibration calibration)
+        {
+            this.calibration = (calibration != null)? calibration : ServoCalibration.DEFAULT;
+        }
+        
+        /**
+         * getCalibration()
+         * @return Kalibrierung
+         */
+        public ServoCalibration getCalibration()
+        {
+            return this.calibration;
+        }
+        
+        /**
+         * setMicros(int micros) - Pulsbreite in Mikrosekunden (ohne trim), 
+         * begrenzt auf minPulse ... maxPulse der Kalibrierung
+         * @param micros Pulsbreite (us)
+         * @throws IOException
+         */
+        public void setMicros(int micros) throws IOException
+        {
+            channel.setPWM(Servo.SERVO_ON_VALUE, this.calibration.getMicrosTicks(micros, getCalibratedFrequency()));
+        }
+        
+        /**
+         * setAngle(int angle) - Winkel in Grad (mit trim), begrenzt auf 
+         * minAngle ... maxAngle der Kalibrierung
+         * @param angle Winkel (Grad)
+         * @throws IOException
+         */
+        public void setAngle(int angle) throws IOException
+        {
+            channel.setPWM(Servo.SERVO_ON_VALUE, getAngleTicks(angle));
+        }
+        
+        /**
+         * getAngleTicks(int angle) - Off-Zeitpunkt zum Winkel, vgl. setAngle()
+         * @param angle Winkel (Grad)
+         * @return Ticks
+         */
+        public int getAngleTicks(int angle)
+        {
+            return this.calibration.getAngleTicks(angle, getCalibratedFrequency());
+        }
+        
+        /**
+         * getCalibratedFrequency()
+         * @return PWM-Frequenz des Bausteins
+         * @throws IllegalStateException Frequenz nicht gesetzt
+         */
+        private int getCalibratedFrequency()
+        {
+            final int frequency = getFrequency();
+            if (frequency <= 0)
+            {
+                throw new IllegalStateException("PCA9685.Servo: PWM-Frequenz nicht gesetzt (setPWMFrequency())!");
+            }
+            return frequency;
+        }
 
         /**
          * setPWM(int offValue) - Einstellung um den Nullpunkt als
@@ -645,6 +1648,17 @@ public class PCA9685 extends I2C
             channel.setPWM(paramOnValue, paramOffValue);
         }
         
+        /**
+         * setLevel(boolean isHighLevel) - Motor voll ein bzw. aus (FULL_ON/FULL_OFF)
+         * @param isHighLevel
+         * @throws IOException
+         * @see raspi.hardware.i2c.PCA9685.Channel#setLevel(boolean)
+         */
+        public void setLevel(boolean isHighLevel) throws IOException
+        {
+            channel.setLevel(isHighLevel);
+        }
+        
         /**
          * getMotorMaxValue()
          * @return Motor.MOTOR_MAX_VALUE (=> 4095)
@@ -0,0 +1,283 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import raspi.hardware.i2c.I2CBusScheduler.Priority;
+
+/**
+ * PCA9685Group - Gruppe von PCA9685-Bausteinen, die ueber eine gemeinsame
+ * Gruppen-Adresse (SUBADR1...SUBADR3 bzw. ALLCALLADR) angesprochen werden.
+ * <p>
+ * Ein Schreibzugriff an die Gruppen-Adresse erreicht alle Mitglieder gleichzeitig,
+ * setChannel() bzw. setAll() kosten damit unabhaengig von der Anzahl der Bausteine
+ * eine Transaktion (z.B. alle Motoren stoppen, alle Servos in Mittelstellung).
+ * Die Schattenregister der Mitglieder werden nachgefuehrt, ein anschliessendes
+ * flush() bzw. PCA9685.flushAll() sendet diese Werte nicht erneut.
+ * </p>
+ * <p>
+ * Unter der Gruppen-Adresse wird nur geschrieben (es antworten mehrere Bausteine).
+ * Da initialize() MODE1 neu schreibt, werden Bausteine erst nach initialize()
+ * aufgenommen (add()).
+ * </p>
+ * <p><code>
+ * PCA9685Group servos = new PCA9685Group(bus.getDevice(0x71), PCA9685Group.Slot.SUB1);<br>
+ * servos.add(PCA9685.getInstance(bus.getDevice(0x40)));<br>
+ * servos.add(PCA9685.getInstance(bus.getDevice(0x41)));<br>
+ * servos.setChannel(0, 0, 300);<br>
+ * </code></p>
+ * @author Detlef Tribius
+ */
+public class PCA9685Group
+{
+    /**
+     * Slot - Gruppen-Adressregister und zugehoeriges Bit in MODE1
+     */
+    public static enum Slot
+    {
+        SUB1(PCA9685.SUBADR1, PCA9685.MODE1_SUB1),
+        SUB2(PCA9685.SUBADR2, PCA9685.MODE1_SUB2),
+        SUB3(PCA9685.SUBADR3, PCA9685.MODE1_SUB3),
+        ALLCALL(PCA9685.ALLCALLADR, PCA9685.MODE1_ALLCALL);
+
+        /**
+         * register - Adressregister (Adresse in Bit 7:1)
+         */
+        private final int register;
+
+        /**
+         * enable - Bit in MODE1
+         */
+        private final RegisterField enable;
+
+        private Slot(int register, RegisterField enable)
+        {
+            this.register = register;
+            this.enable = enable;
+        }
+
+        /**
+         * getRegister()
+         * @return Adressregister
+         */
+        public final int getRegister()
+        {
+            return this.register;
+        }
+
+        /**
+         * getEnable()
+         * @return Bit in MODE1
+         */
+        public final RegisterField getEnable()
+        {
+            return this.enable;
+        }
+    }
+
+    /**
+     * broadcast - Schreibzugriffe an die Gruppen-Adresse
+     */
+    private final I2C broadcast;
+
+    /**
+     * slot - verwendetes Gruppen-Adressregister
+     */
+    private final Slot slot;
+
+    /**
+     * members - Mitglieder der Gruppe
+     */
+    private final List<PCA9685> members = new ArrayList<>();
+
+    /**
+     * PCA9685Group(I2CTransport transport, Slot slot) - Gruppe am Bus des Transports
+     * @param transport Zugriff unter der Gruppen-Adresse
+     * @param slot Gruppen-Adressregister
+     */
+    public PCA9685Group(I2CTransport transport, Slot slot)
+    {
+        this(transport, I2CBusScheduler.getInstance(transport.getBusNumber()), slot);
+    }
+
+    /**
+     * PCA9685Group(I2CTransport transport, I2CBusScheduler scheduler, Slot slot) - Konstruktor
+     * @param transport Zugriff unter der Gruppen-Adresse
+     * @param scheduler Scheduler des Busses (gemeinsam mit den Mitgliedern)
+     * @param slot Gruppen-Adressregister
+     */
+    public PCA9685Group(I2CTransport transport, I2CBusScheduler scheduler, Slot slot)
+    {
+        this.broadcast = new I2C(transport, scheduler, Priority.ACTUATOR);
+        this.slot = slot;
+    }
+
+    /**
+     * getAddress()
+     * @return Gruppen-Adresse
+     */
+    public int getAddress()
+    {
+        return this.broadcast.getTransport().getAddress();
+    }
+
+    /**
+     * getSlot()
+     * @return Gruppen-Adressregister
+     */
+    public Slot getSlot()
+    {
+        return this.slot;
+    }
+
+    /**
+     * getMembers()
+     * @return Mitglieder der Gruppe
+     */
+    synchronized public List<PCA9685> getMembers()
+    {
+        return new ArrayList<>(this.members);
+    }
+
+    /**
+     * add(PCA9685 board) - nimmt den Baustein in die Gruppe auf: Gruppen-Adresse in das
+     * Adressregister, Bit in MODE1 setzen
+     * @param board Baustein (am Bus der Gruppe, nach initialize())
+     * @throws IOException
+     * @throws IllegalArgumentException Baustein an einem anderen Bus bzw. Gruppen-Adresse
+     * ist die Adresse eines registrierten Bausteins
+     */
+    synchronized public void add(PCA9685 board) throws IOException
+    {
+        if (board.getScheduler() != this.broadcast.getScheduler())
+        {
+            throw new IllegalArgumentException("PCA9685Group: Baustein an einem anderen Bus!");
+        }
+        if (PCA9685.getInstance(this.broadcast.getScheduler().getBusNumber(), getAddress()) != null)
+        {
+            // Der Baustein unter dieser Adresse antwortete zusaetzlich auf jeden Gruppenzugriff...
+            throw new IllegalArgumentException("PCA9685Group: Gruppen-Adresse 0x" + Integer.toHexString(getAddress()) 
+                                               + " ist die Adresse eines registrierten Bausteins!");
+        }
+        if (this.members.contains(board))
+        {
+            return;
+        }
+        board.write(this.slot.getRegister(), (byte)(getAddress() << 1));
+        board.update().set(this.slot.getEnable(), true).apply();
+        this.members.add(board);
+    }
+
+    /**
+     * remove(PCA9685 board) - entfernt den Baustein aus der Gruppe (Bit in MODE1 loeschen)
+     * @param board
+     * @throws IOException
+     */
+    synchronized public void remove(PCA9685 board) throws IOException
+    {
+        if (this.members.remove(board))
+        {
+            board.update().set(this.slot.getEnable(), false).apply();
+        }
+    }
+
+    /**
+     * setChannel(int channel, int onValue, int offValue) - Ausgabe eines Channels auf
+     * allen Mitgliedern mit einer Transaktion (ohne Auto-Increment bei einem der
+     * Mitglieder: vier Einzelzugriffe)
+     * @param channel Channel (0 ... 15)
+     * @param onValue On-Zeitpunkt [0..4095]
+     * @param offValue Off-Zeitpunkt [0..4095]
+     * @throws IOException
+     * @throws IllegalArgumentException Channel bzw. Wert ausserhalb des Bereichs
+     */
+    synchronized public void setChannel(int channel, int onValue, int offValue) throws IOException
+    {
+        if ((channel < 0) || (channel >= PCA9685.NUMBER_CHANNELS))
+        {
+            throw new IllegalArgumentException("PCA9685Group: unzulaessiger Channel " + channel);
+        }
+        PCA9685.checkValues("PCA9685Group.setChannel()", onValue, offValue);
+        writeLedRegisters(PCA9685.LED0_ON_L_REGISTER + PCA9685.LED_REGISTER_SIZE * channel, onValue, offValue);
+        for (PCA9685 board : this.members)
+        {
+            board.setSent(channel, onValue, offValue);
+        }
+    }
+
+    /**
+     * setAll(int onValue, int offValue) - Ausgabe aller Channel aller Mitglieder
+     * mit einer Transaktion (ALL_LED-Register)
+     * @param onValue On-Zeitpunkt [0..4095]
+     * @param offValue Off-Zeitpunkt [0..4095]
+     * @throws IOException
+     * @throws IllegalArgumentException Wert ausserhalb des Bereichs
+     */
+    synchronized public void setAll(int onValue, int offValue) throws IOException
+    {
+        PCA9685.checkValues("PCA9685Group.setAll()", onValue, offValue);
+        writeLedRegisters(PCA9685.ALL_LED_ON_L_REGISTER, onValue, offValue);
+        for (PCA9685 board : this.members)
+        {
+            board.setSentAll(onValue, offValue);
+        }
+    }
+
+    /**
+     * writeLedRegisters(int onLowByteReg, int onValue, int offValue) - ON_L, ON_H,
+     * OFF_L, OFF_H an die Gruppen-Adresse, vgl. PCA9685.writeLedRegisters()
+     */
+    private void writeLedRegisters(int onLowByteReg, int onValue, int offValue) throws IOException
+    {
+        final byte[] buffer = { (byte)(onValue & 0xff),
+                                (byte)((onValue >> 8) & 0xff),
+                                (byte)(offValue & 0xff),
+                                (byte)((offValue >> 8) & 0xff) };
+        if (isAutoIncrement())
+        {
+            this.broadcast.writeArray(onLowByteReg, buffer, buffer.length);
+            return;
+        }
+        this.broadcast.acquireBus();
+        try
+        {
+            for (int index = 0; index < buffer.length; index++)
+            {
+                this.broadcast.write(onLowByteReg + index, buffer[index]);
+            }
+        }
+        finally
+        {
+            this.broadcast.releaseBus();
+        }
+    }
+
+    /**
+     * isAutoIncrement()
+     * @return true, wenn alle Mitglieder Auto-Increment verwenden
+     */
+    private boolean isAutoIncrement()
+    {
+        for (PCA9685 board : this.members)
+        {
+            if (!board.isAutoIncrement())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * getTransactionCount()
+     * @return Anzahl der Transaktionen an die Gruppen-Adresse
+     */
+    public long getTransactionCount()
+    {
+        return this.broadcast.getTransactionCount();
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+
+/**
+ * Pi4jTransport - I2CTransport ueber pi4j (<code>I2CDevice</code>).
+ * <p>
+ * Standard-Transport der Treiber, wenn sie mit einem <code>I2CDevice</code>
+ * instanziiert werden.
+ * </p>
+ * @author Detlef Tribius
+ */
+public class Pi4jTransport implements I2CTransport
+{
+    /**
+     * dev - Referenz auf das I2CDevice
+     */
+    private final I2CDevice dev;
+
+    /**
+     * busNumber - Bus des Geraetes (I2CDevice liefert ihn nicht)
+     */
+    private final int busNumber;
+
+    /**
+     * Pi4jTransport(I2CDevice dev) - Konstruktor, Geraet am Standard-Bus I2CBus.BUS_1
+     * @param dev z.B. <code>I2CFactory.getInstance(I2CBus.BUS_1).getDevice(0x18)</code>
+     */
+    public Pi4jTransport(I2CDevice dev)
+    {
+        this(dev, I2CBus.BUS_1);
+    }
+
+    /**
+     * Pi4jTransport(I2CDevice dev, int busNumber) - Konstruktor
+     * @param dev z.B. <code>I2CFactory.getInstance(I2CBus.BUS_0).getDevice(0x40)</code>
+     * @param busNumber Bus, von dem dev stammt
+     */
+    public Pi4jTransport(I2CDevice dev, int busNumber)
+    {
+        this.dev = dev;
+        this.busNumber = busNumber;
+    }
+
+    /**
+     * getDevice()
+     * @return das zugrundeliegende I2CDevice
+     */
+    public final I2CDevice getDevice()
+    {
+        return this.dev;
+    }
+
+    @Override
+    public int getAddress()
+    {
+        return (this.dev != null)? this.dev.getAddress() : 0;
+    }
+
+    @Override
+    public int getBusNumber()
+    {
+        return this.busNumber;
+    }
+
+    @Override
+    public int read(int reg) throws IOException
+    {
+        return this.dev.read(reg);
+    }
+
+    @Override
+    public int read(int reg, byte[] buffer, int offset, int size) throws IOException
+    {
+        return this.dev.read(reg, buffer, offset, size);
+    }
+
+    @Override
+    public void write(int reg, byte value) throws IOException
+    {
+        this.dev.write(reg, value);
+    }
+
+    @Override
+    public void write(int reg, byte[] buffer, int offset, int size) throws IOException
+    {
+        this.dev.write(reg, buffer, offset, size);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int size) throws IOException
+    {
+        return this.dev.read(buffer, offset, size);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int size) throws IOException
+    {
+        this.dev.write(buffer, offset, size);
+    }
+}
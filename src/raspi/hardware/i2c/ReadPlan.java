@@ -0,0 +1,208 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.util.Arrays;
+
+/**
+ * ReadPlan - Plan zum Lesen mehrerer Register eines I2C-Bausteins mit moeglichst
+ * wenigen Transaktionen (vgl. I2C.planRead(), I2C.readRegisters()).
+ * <p>
+ * Unterstuetzt der Baustein Auto-Increment, werden benachbarte Register (Luecken bis
+ * maxGap Byte werden mitgelesen) zu Bloecken von hoechstens MAX_BLOCK_SIZE Byte
+ * zusammengefasst, jeder Block ist eine Transaktion (readArray()). Ohne Auto-Increment
+ * (z.B. MCP9808) ist jedes Register eine eigene Transaktion.
+ * </p>
+ * <p>
+ * Der Plan ist unveraenderlich und kann wiederverwendet werden (z.B. als Konstante
+ * im Treiber).
+ * </p>
+ * @author Detlef Tribius
+ */
+public final class ReadPlan
+{
+    /**
+     * MAX_BLOCK_SIZE = 64 - max. Anzahl Byte je Transaktion
+     * (alle LED-Register des PCA9685)
+     */
+    public final static int MAX_BLOCK_SIZE = 64;
+
+    /**
+     * DEFAULT_MAX_GAP = 2 - Luecke, die noch mitgelesen wird (eine neue Transaktion
+     * kostet Adresse, Register und Repeated-Start, also ca. 3 Byte am Bus)
+     */
+    public final static int DEFAULT_MAX_GAP = 2;
+
+    /**
+     * registerSize - Registerbreite in Byte
+     */
+    private final int registerSize;
+
+    /**
+     * autoIncrement - Baustein mit Auto-Increment
+     */
+    private final boolean autoIncrement;
+
+    /**
+     * registers - zu lesende Register (aufsteigend, ohne Doppel)
+     */
+    private final int[] registers;
+
+    /**
+     * blockStart - erstes Register je Block
+     */
+    private final int[] blockStart;
+
+    /**
+     * blockSize - Anzahl Byte je Block
+     */
+    private final int[] blockSize;
+
+    /**
+     * blockFirst - Index des ersten Registers (in registers) je Block
+     */
+    private final int[] blockFirst;
+
+    /**
+     * blockCount - Anzahl der Bloecke
+     */
+    private final int blockCount;
+
+    /**
+     * ReadPlan(int registerSize, boolean autoIncrement, int maxGap, int... registers) - Konstruktor
+     * @param registerSize Registerbreite in Byte (1 oder 2)
+     * @param autoIncrement true, wenn der Baustein Auto-Increment unterstuetzt
+     * @param maxGap Luecke in Byte, die noch mitgelesen wird
+     * @param registers zu lesende Register
+     */
+    public ReadPlan(int registerSize, boolean autoIncrement, int maxGap, int... registers)
+    {
+        if ((registerSize < 1) || (registerSize > 2) || (maxGap < 0))
+        {
+            throw new IllegalArgumentException("ReadPlan: registerSize=" + registerSize + ", maxGap=" + maxGap);
+        }
+        this.registerSize = registerSize;
+        this.autoIncrement = autoIncrement;
+        this.registers = Arrays.stream(registers).map(reg -> reg & 0xff).sorted().distinct().toArray();
+        final int length = this.registers.length;
+        final int[] start = new int[length];
+        final int[] size = new int[length];
+        final int[] first = new int[length];
+        int count = 0;
+        for (int index = 0; index < length; index++)
+        {
+            final int reg = this.registers[index];
+            if (autoIncrement && (count > 0))
+            {
+                final int end = start[count - 1] + size[count - 1];
+                final int merged = reg + registerSize - start[count - 1];
+                if ((reg - end <= maxGap) && (merged <= MAX_BLOCK_SIZE))
+                {
+                    size[count - 1] = merged;
+                    continue;
+                }
+            }
+            start[count] = reg;
+            size[count] = registerSize;
+            first[count] = index;
+            count++;
+        }
+        this.blockStart = Arrays.copyOf(start, count);
+        this.blockSize = Arrays.copyOf(size, count);
+        this.blockFirst = Arrays.copyOf(first, count);
+        this.blockCount = count;
+    }
+
+    /**
+     * getRegisterSize()
+     * @return Registerbreite in Byte
+     */
+    public int getRegisterSize()
+    {
+        return this.registerSize;
+    }
+
+    /**
+     * isAutoIncrement()
+     * @return true, wenn Bloecke mit mehreren Registern gelesen werden
+     */
+    public boolean isAutoIncrement()
+    {
+        return this.autoIncrement;
+    }
+
+    /**
+     * getRegisters()
+     * @return zu lesende Register (aufsteigend)
+     */
+    public int[] getRegisters()
+    {
+        return this.registers.clone();
+    }
+
+    /**
+     * getBlockCount()
+     * @return Anzahl der Bloecke (= Transaktionen ohne Schattenregister)
+     */
+    public int getBlockCount()
+    {
+        return this.blockCount;
+    }
+
+    /**
+     * getBlockStart(int block)
+     * @param block Block
+     * @return erstes Register des Blocks
+     */
+    public int getBlockStart(int block)
+    {
+        return this.blockStart[block];
+    }
+
+    /**
+     * getBlockSize(int block)
+     * @param block Block
+     * @return Anzahl Byte des Blocks
+     */
+    public int getBlockSize(int block)
+    {
+        return this.blockSize[block];
+    }
+
+    /**
+     * getBlockRegisterCount(int block)
+     * @param block Block
+     * @return Anzahl der angeforderten Register im Block
+     */
+    int getBlockRegisterCount(int block)
+    {
+        final int next = (block + 1 < this.blockCount)? this.blockFirst[block + 1] : this.registers.length;
+        return next - this.blockFirst[block];
+    }
+
+    /**
+     * getBlockRegister(int block, int index)
+     * @param block Block
+     * @param index laufende Nummer im Block
+     * @return angefordertes Register
+     */
+    int getBlockRegister(int block, int index)
+    {
+        return this.registers[this.blockFirst[block] + index];
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder("ReadPlan[");
+        for (int block = 0; block < this.blockCount; block++)
+        {
+            builder.append((block > 0)? ", 0x" : "0x")
+                   .append(Integer.toHexString(this.blockStart[block]))
+                   .append("+")
+                   .append(this.blockSize[block]);
+        }
+        return builder.append("]").toString();
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+/**
+ * RegisterField - Beschreibung eines Bitfeldes in einem Register eines I2C-Bausteins
+ * (Register, Registerbreite, Lage und Breite des Feldes).
+ * <p>
+ * Register mit 2 Byte (z.B. CONFIG beim MCP9808) werden als 16-Bit-Wert
+ * (byte[0] = hoeherwertiges Byte) betrachtet, die Lage des Feldes bezieht sich
+ * auf diesen Wert.
+ * </p>
+ * <p>
+ * Die Methoden decode() und encode() greifen nicht auf den Baustein zu. Lesen
+ * bzw. Schreiben ueber I2C.getField() und I2C.update(), mehrere Felder werden mit
+ * I2C.update().set(...).set(...).apply() in einem Schreibzugriff je Register geaendert.
+ * </p>
+ * @author Detlef Tribius
+ */
+public final class RegisterField
+{
+    /**
+     * register - Registeradresse
+     */
+    private final int register;
+
+    /**
+     * size - Registerbreite in Byte (1 oder 2)
+     */
+    private final int size;
+
+    /**
+     * shift - Lage des niederwertigsten Bits des Feldes
+     */
+    private final int shift;
+
+    /**
+     * width - Breite des Feldes in Bit
+     */
+    private final int width;
+
+    /**
+     * mask - Maske des Feldes im Registerwert
+     */
+    private final int mask;
+
+    /**
+     * RegisterField(int register, int size, int shift, int width) - Konstruktor
+     * @param register Registeradresse
+     * @param size Registerbreite in Byte (1 oder 2)
+     * @param shift Lage des niederwertigsten Bits
+     * @param width Breite in Bit
+     */
+    public RegisterField(int register, int size, int shift, int width)
+    {
+        if ((size < 1) || (size > 2) || (width < 1) || (shift < 0) || (shift + width > 8 * size))
+        {
+            throw new IllegalArgumentException("RegisterField: Register 0x" + Integer.toHexString(register)
+                                             + ", size=" + size + ", shift=" + shift + ", width=" + width);
+        }
+        this.register = register;
+        this.size = size;
+        this.shift = shift;
+        this.width = width;
+        this.mask = ((1 << width) - 1) << shift;
+    }
+
+    /**
+     * of(int register, int shift, int width) - Feld in einem 1-Byte-Register
+     * @param register Registeradresse
+     * @param shift Lage des niederwertigsten Bits
+     * @param width Breite in Bit
+     * @return RegisterField
+     */
+    public static RegisterField of(int register, int shift, int width)
+    {
+        return new RegisterField(register, 1, shift, width);
+    }
+
+    /**
+     * bit(int register, int bit) - Einzelbit in einem 1-Byte-Register
+     * @param register Registeradresse
+     * @param bit Bitnummer (0...7)
+     * @return RegisterField
+     */
+    public static RegisterField bit(int register, int bit)
+    {
+        return new RegisterField(register, 1, bit, 1);
+    }
+
+    /**
+     * getRegister()
+     * @return Registeradresse
+     */
+    public int getRegister()
+    {
+        return this.register;
+    }
+
+    /**
+     * getSize()
+     * @return Registerbreite in Byte
+     */
+    public int getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * getShift()
+     * @return Lage des niederwertigsten Bits
+     */
+    public int getShift()
+    {
+        return this.shift;
+    }
+
+    /**
+     * getWidth()
+     * @return Breite in Bit
+     */
+    public int getWidth()
+    {
+        return this.width;
+    }
+
+    /**
+     * getMask()
+     * @return Maske des Feldes im Registerwert
+     */
+    public int getMask()
+    {
+        return this.mask;
+    }
+
+    /**
+     * decode(int registerValue) - Feldwert aus dem Registerwert
+     * @param registerValue Registerwert
+     * @return Feldwert (0 ... 2^width-1)
+     */
+    public int decode(int registerValue)
+    {
+        return (registerValue & this.mask) >>> this.shift;
+    }
+
+    /**
+     * isSet(int registerValue)
+     * @param registerValue Registerwert
+     * @return true, wenn der Feldwert ungleich 0 ist
+     */
+    public boolean isSet(int registerValue)
+    {
+        return (registerValue & this.mask) != 0;
+    }
+
+    /**
+     * encode(int registerValue, int value) - setzt den Feldwert im Registerwert,
+     * die uebrigen Bits bleiben erhalten
+     * @param registerValue bisheriger Registerwert
+     * @param value Feldwert (0 ... 2^width-1)
+     * @return neuer Registerwert
+     */
+    public int encode(int registerValue, int value)
+    {
+        return (registerValue & ~this.mask) | position(value);
+    }
+
+    /**
+     * position(int value) - Feldwert an der Lage des Feldes
+     * @param value Feldwert (0 ... 2^width-1)
+     * @return Feldwert, um shift verschoben
+     * @throws IllegalArgumentException Feldwert passt nicht in das Feld
+     */
+    int position(int value)
+    {
+        if ((value < 0) || (value > (this.mask >>> this.shift)))
+        {
+            throw new IllegalArgumentException(this + ": unzulaessiger Wert " + value);
+        }
+        return value << this.shift;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuilder().append("RegisterField[0x")
+                                  .append(Integer.toHexString(this.register))
+                                  .append(", ")
+                                  .append(this.shift + this.width - 1)
+                                  .append(":")
+                                  .append(this.shift)
+                                  .append("]")
+                                  .toString();
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+/**
+ * RegisterSnapshot - Momentaufnahme der mit einem ReadPlan gelesenen Register
+ * (vgl. I2C.readRegisters()).
+ * <p>
+ * Die Zugriffe auf die Werte erfolgen ohne Busverkehr. Bei Bausteinen mit
+ * Auto-Increment liegen die Register wie im Baustein hintereinander (getWord(reg)
+ * liefert reg und reg+1), ohne Auto-Increment hat jedes Register registerSize Byte
+ * (z.B. die 16-Bit-Register des MCP9808).
+ * </p>
+ * @author Detlef Tribius
+ */
+public final class RegisterSnapshot
+{
+    /**
+     * stride - Byte je Registeradresse in data
+     */
+    private final int stride;
+
+    /**
+     * data - gelesene Bytes, Register reg ab reg * stride
+     */
+    private final byte[] data;
+
+    /**
+     * valid - Kennung je Registeradresse, ob gelesen
+     */
+    private final boolean[] valid = new boolean[I2C.REGISTER_COUNT];
+
+    /**
+     * transactionCount - Anzahl der Bus-Transaktionen fuer diese Momentaufnahme
+     */
+    private int transactionCount = 0;
+
+    /**
+     * RegisterSnapshot(ReadPlan plan) - leere Momentaufnahme zum Plan
+     * @param plan
+     */
+    RegisterSnapshot(ReadPlan plan)
+    {
+        this.stride = plan.isAutoIncrement()? 1 : plan.getRegisterSize();
+        this.data = new byte[(I2C.REGISTER_COUNT + 1) * this.stride];
+    }
+
+    /**
+     * offset(int reg) - Index des Registers in data
+     */
+    int offset(int reg)
+    {
+        return reg * this.stride;
+    }
+
+    /**
+     * data() - Ablage fuer I2C.readRegisters()
+     */
+    byte[] data()
+    {
+        return this.data;
+    }
+
+    /**
+     * setValid(int reg, int size) - Register reg ... reg+size-1 (Auto-Increment)
+     * bzw. Register reg als gelesen kennzeichnen
+     */
+    void setValid(int reg, int size)
+    {
+        final int count = (this.stride == 1)? size : 1;
+        for (int index = 0; (index < count) && (reg + index < I2C.REGISTER_COUNT); index++)
+        {
+            this.valid[reg + index] = true;
+        }
+    }
+
+    /**
+     * addTransaction()
+     */
+    void addTransaction()
+    {
+        this.transactionCount++;
+    }
+
+    /**
+     * isValid(int reg)
+     * @param reg Register
+     * @return true, wenn das Register in der Momentaufnahme enthalten ist
+     */
+    public boolean isValid(int reg)
+    {
+        return this.valid[reg & 0xff];
+    }
+
+    /**
+     * get(int reg) - erstes Byte des Registers
+     * @param reg Register
+     * @return Inhalt (0...255)
+     */
+    public int get(int reg)
+    {
+        check(reg);
+        return this.data[offset(reg)] & 0xff;
+    }
+
+    /**
+     * getWord(int reg) - 16-Bit-Wert, hoeherwertiges Byte zuerst (z.B. MCP9808)
+     * @param reg Register
+     * @return Inhalt (0...65535)
+     */
+    public int getWord(int reg)
+    {
+        check(reg);
+        final int offset = offset(reg);
+        return ((this.data[offset] & 0xff) << 8) | (this.data[offset + 1] & 0xff);
+    }
+
+    /**
+     * getWordLE(int reg) - 16-Bit-Wert, niederwertiges Byte zuerst (z.B. ON_L/ON_H des PCA9685)
+     * @param reg Register
+     * @return Inhalt (0...65535)
+     */
+    public int getWordLE(int reg)
+    {
+        check(reg);
+        final int offset = offset(reg);
+        return (this.data[offset] & 0xff) | ((this.data[offset + 1] & 0xff) << 8);
+    }
+
+    /**
+     * getArray(int reg, int size) - Bytes ab Register reg (Kopie)
+     * @param reg Register
+     * @param size Anzahl Byte
+     * @return Bytes
+     */
+    public byte[] getArray(int reg, int size)
+    {
+        check(reg);
+        final byte[] array = new byte[size];
+        System.arraycopy(this.data, offset(reg), array, 0, size);
+        return array;
+    }
+
+    /**
+     * getTransactionCount()
+     * @return Anzahl der Bus-Transaktionen fuer diese Momentaufnahme
+     */
+    public int getTransactionCount()
+    {
+        return this.transactionCount;
+    }
+
+    /**
+     * check(int reg)
+     * @throws IllegalArgumentException Register nicht gelesen
+     */
+    private void check(int reg)
+    {
+        if (!isValid(reg))
+        {
+            throw new IllegalArgumentException("RegisterSnapshot: Register 0x" + Integer.toHexString(reg) + " nicht gelesen!");
+        }
+    }
+}
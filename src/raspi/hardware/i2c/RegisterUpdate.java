@@ -0,0 +1,149 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.IOException;
+
+/**
+ * RegisterUpdate - sammelt Aenderungen an Bitfeldern (RegisterField) und schreibt
+ * jedes betroffene Register mit genau einem Schreibzugriff.
+ * <p>
+ * Der neue Registerwert wird im Speicher berechnet: die Felder werden ueber den
+ * bisherigen Inhalt gelegt (bei cacheable Registern aus dem Schattenregister, sonst
+ * ein Lesezugriff). Decken die Felder das ganze Register ab, entfaellt das Lesen.
+ * Alle Zugriffe von apply() laufen als eine Transaktion am Bus.
+ * </p>
+ * <p><code>
+ * mcp9808.update()<br>
+ * &nbsp;&nbsp;.set(MCP9808.ALERT_CONTROL, true)<br>
+ * &nbsp;&nbsp;.set(MCP9808.ALERT_MODE, false)<br>
+ * &nbsp;&nbsp;.apply();<br>
+ * </code></p>
+ * @author Detlef Tribius
+ */
+public final class RegisterUpdate
+{
+    /**
+     * MAX_REGISTERS = 8 - max. Anzahl verschiedener Register je Aenderung
+     */
+    private final static int MAX_REGISTERS = 8;
+
+    /**
+     * i2c - Baustein
+     */
+    private final I2C i2c;
+
+    /**
+     * registers - betroffene Register (in der Reihenfolge der ersten Aenderung)
+     */
+    private final int[] registers = new int[MAX_REGISTERS];
+
+    /**
+     * sizes - Registerbreite je Register
+     */
+    private final int[] sizes = new int[MAX_REGISTERS];
+
+    /**
+     * masks - geaenderte Bits je Register
+     */
+    private final int[] masks = new int[MAX_REGISTERS];
+
+    /**
+     * values - neue Werte der geaenderten Bits je Register
+     */
+    private final int[] values = new int[MAX_REGISTERS];
+
+    /**
+     * count - Anzahl der betroffenen Register
+     */
+    private int count = 0;
+
+    /**
+     * RegisterUpdate(I2C i2c) - Konstruktor, vgl. I2C.update()
+     * @param i2c Baustein
+     */
+    RegisterUpdate(I2C i2c)
+    {
+        this.i2c = i2c;
+    }
+
+    /**
+     * set(RegisterField field, int value) - Feldwert vormerken, ohne Buszugriff
+     * @param field Feld
+     * @param value Feldwert (0 ... 2^width-1)
+     * @return this
+     */
+    public RegisterUpdate set(RegisterField field, int value)
+    {
+        final int index = indexOf(field);
+        this.masks[index] |= field.getMask();
+        this.values[index] = (this.values[index] & ~field.getMask()) | field.position(value);
+        return this;
+    }
+
+    /**
+     * set(RegisterField field, boolean value) - Einzelbit vormerken, ohne Buszugriff
+     * @param field Feld
+     * @param value true => 1, false => 0
+     * @return this
+     */
+    public RegisterUpdate set(RegisterField field, boolean value)
+    {
+        return set(field, value? 1 : 0);
+    }
+
+    /**
+     * apply() - schreibt je betroffenem Register den neuen Wert (ein Schreibzugriff),
+     * alle Zugriffe als eine Transaktion am Bus
+     * @throws IOException
+     */
+    public void apply() throws IOException
+    {
+        if (this.count == 0)
+        {
+            return;
+        }
+        this.i2c.acquireBus();
+        try
+        {
+            for (int index = 0; index < this.count; index++)
+            {
+                final int register = this.registers[index];
+                final int size = this.sizes[index];
+                final int full = (1 << (8 * size)) - 1;
+                final int current = (this.masks[index] == full)? 0 : this.i2c.readRegister(register, size);
+                this.i2c.writeRegister(register, size, (current & ~this.masks[index]) | this.values[index]);
+            }
+        }
+        finally
+        {
+            this.i2c.releaseBus();
+        }
+    }
+
+    /**
+     * indexOf(RegisterField field) - Index des Registers zum Feld, ggf. neu angelegt
+     */
+    private int indexOf(RegisterField field)
+    {
+        for (int index = 0; index < this.count; index++)
+        {
+            if (this.registers[index] == field.getRegister())
+            {
+                if (this.sizes[index] != field.getSize())
+                {
+                    throw new IllegalArgumentException(field + ": abweichende Registerbreite");
+                }
+                return index;
+            }
+        }
+        if (this.count == MAX_REGISTERS)
+        {
+            throw new IllegalStateException("RegisterUpdate: mehr als " + MAX_REGISTERS + " Register");
+        }
+        this.registers[this.count] = field.getRegister();
+        this.sizes[this.count] = field.getSize();
+        return this.count++;
+    }
+}
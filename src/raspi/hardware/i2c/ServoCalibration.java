@@ -0,0 +1,311 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.util.Properties;
+
+/**
+ * ServoCalibration - Kalibrierung eines Servos: Pulsbreite (Mikrosekunden) bzw.
+ * Winkel (Grad) auf Ticks des PCA9685.
+ * <p>
+ * Die Umrechnung erfolgt ueber ganzzahlige Tabellen, die beim ersten Zugriff zu
+ * einem Vorteiler (PRE_SCALE) aufgebaut und danach gehalten werden. Bausteine mit
+ * unterschiedlicher Frequenz koennen damit dieselbe Kalibrierung (z.B. DEFAULT)
+ * verwenden, ohne die Tabellen wechselseitig neu aufzubauen. Ein Stellbefehl kostet
+ * zwei Tabellenzugriffe, ohne Gleitkomma-Rechnung.
+ * </p>
+ * <p>
+ * Ein Tick dauert (PRE_SCALE+1)/25 MHz, damit gilt
+ * <code>ticks = micros * 25 / (PRE_SCALE+1)</code> (gerundet).
+ * </p>
+ * <p>
+ * Je Roboter koennen die Kalibrierungen in einer Properties-Datei abgelegt werden
+ * (vgl. fromProperties(), PCA9685.loadServoCalibrations()):
+ * <code>
+ * servo.0.minPulse=500<br>
+ * servo.0.maxPulse=2500<br>
+ * servo.0.minAngle=-90<br>
+ * servo.0.maxAngle=90<br>
+ * servo.0.trim=-10<br>
+ * </code>
+ * </p>
+ * @author Detlef Tribius
+ */
+public final class ServoCalibration
+{
+    /**
+     * MIN_PULSE = 500 - Pulsbreite (us) bei minAngle (SF006C)
+     */
+    public final static int MIN_PULSE = 500;
+
+    /**
+     * MAX_PULSE = 2500 - Pulsbreite (us) bei maxAngle (SF006C)
+     */
+    public final static int MAX_PULSE = 2500;
+
+    /**
+     * MIN_ANGLE = -90 - kleinster Winkel (Grad)
+     */
+    public final static int MIN_ANGLE = -90;
+
+    /**
+     * MAX_ANGLE = 90 - groesster Winkel (Grad)
+     */
+    public final static int MAX_ANGLE = 90;
+
+    /**
+     * DEFAULT - Servo SF006C: 500us/1500us/2500us fuer -90/0/+90 Grad
+     */
+    public final static ServoCalibration DEFAULT = new ServoCalibration(MIN_PULSE, MAX_PULSE, MIN_ANGLE, MAX_ANGLE, 0);
+
+    /**
+     * CLOCKS_PER_MICRO = 25 - Oszillatortakte (25 MHz) je Mikrosekunde
+     */
+    private final static int CLOCKS_PER_MICRO = (int)(PCA9685.INTERNAL_FREQUENCY / 1000000L);
+
+    /**
+     * minPulse - kleinste zulaessige Pulsbreite (us)
+     */
+    private final int minPulse;
+
+    /**
+     * maxPulse - groesste zulaessige Pulsbreite (us)
+     */
+    private final int maxPulse;
+
+    /**
+     * minAngle - Winkel bei minPulse (Grad)
+     */
+    private final int minAngle;
+
+    /**
+     * maxAngle - Winkel bei maxPulse (Grad)
+     */
+    private final int maxAngle;
+
+    /**
+     * trim - Korrektur der Pulsbreite (us) fuer die Winkel-Vorgabe
+     */
+    private final int trim;
+
+    /**
+     * tables - Tabellen je Vorteiler (Index PRE_SCALE 0x00...0xff, null => noch 
+     * nicht aufgebaut). Tables ist unveraenderlich, ein doppelter Aufbau bei
+     * gleichzeitigem ersten Zugriff ist unschaedlich.
+     */
+    private final Tables[] tables = new Tables[0x100];
+
+    /**
+     * ServoCalibration(int minPulse, int maxPulse, int minAngle, int maxAngle, int trim) - Konstruktor
+     * @param minPulse kleinste Pulsbreite (us), entspricht minAngle
+     * @param maxPulse groesste Pulsbreite (us), entspricht maxAngle
+     * @param minAngle kleinster Winkel (Grad)
+     * @param maxAngle groesster Winkel (Grad)
+     * @param trim Korrektur der Pulsbreite (us) fuer die Winkel-Vorgabe
+     */
+    public ServoCalibration(int minPulse, int maxPulse, int minAngle, int maxAngle, int trim)
+    {
+        if ((minPulse <= 0) || (maxPulse <= minPulse) || (maxAngle <= minAngle))
+        {
+            final String message = new StringBuilder().append("ServoCalibration: minPulse=")
+                                                      .append(minPulse)
+                                                      .append(", maxPulse=")
+                                                      .append(maxPulse)
+                                                      .append(", minAngle=")
+                                                      .append(minAngle)
+                                                      .append(", maxAngle=")
+                                                      .append(maxAngle)
+                                                      .toString();
+            throw new IllegalArgumentException(message);
+        }
+        this.minPulse = minPulse;
+        this.maxPulse = maxPulse;
+        this.minAngle = minAngle;
+        this.maxAngle = maxAngle;
+        this.trim = trim;
+    }
+
+    /**
+     * fromProperties(Properties properties, String prefix) - Kalibrierung aus den
+     * Schluesseln prefix + minPulse, maxPulse, minAngle, maxAngle, trim (fehlende
+     * Schluessel: Werte von DEFAULT)
+     * @param properties
+     * @param prefix z.B. "servo.0."
+     * @return Kalibrierung
+     * @throws IllegalArgumentException unzulaessiger Wert
+     */
+    public static ServoCalibration fromProperties(Properties properties, String prefix)
+    {
+        return new ServoCalibration(getInt(properties, prefix + "minPulse", MIN_PULSE),
+                                    getInt(properties, prefix + "maxPulse", MAX_PULSE),
+                                    getInt(properties, prefix + "minAngle", MIN_ANGLE),
+                                    getInt(properties, prefix + "maxAngle", MAX_ANGLE),
+                                    getInt(properties, prefix + "trim", 0));
+    }
+
+    /**
+     * getInt(Properties properties, String key, int defaultValue)
+     */
+    private static int getInt(Properties properties, String key, int defaultValue)
+    {
+        final String value = properties.getProperty(key);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException exception)
+        {
+            throw new IllegalArgumentException("ServoCalibration: " + key + "=" + value);
+        }
+    }
+
+    /**
+     * getMicrosTicks(int micros, int frequency) - Ticks zur Pulsbreite (ohne trim)
+     * @param micros Pulsbreite (us), begrenzt auf minPulse ... maxPulse
+     * @param frequency PWM-Frequenz
+     * @return Ticks
+     */
+    public int getMicrosTicks(int micros, int frequency)
+    {
+        final int index = Math.max(this.minPulse, Math.min(this.maxPulse, micros)) - this.minPulse;
+        return getTables(frequency).microsTicks[index];
+    }
+
+    /**
+     * getAngleTicks(int angle, int frequency) - Ticks zum Winkel (mit trim)
+     * @param angle Winkel (Grad), begrenzt auf minAngle ... maxAngle
+     * @param frequency PWM-Frequenz
+     * @return Ticks
+     */
+    public int getAngleTicks(int angle, int frequency)
+    {
+        final int index = Math.max(this.minAngle, Math.min(this.maxAngle, angle)) - this.minAngle;
+        return getTables(frequency).angleTicks[index];
+    }
+
+    /**
+     * getTables(int frequency) - Tabellen zum Vorteiler der Frequenz, beim ersten
+     * Zugriff aufgebaut
+     */
+    private Tables getTables(int frequency)
+    {
+        final int prescale = PCA9685.getPrescaleValue(frequency) & 0xff;
+        final Tables current = this.tables[prescale];
+        if (current != null)
+        {
+            return current;
+        }
+        final Tables built = new Tables(prescale);
+        this.tables[prescale] = built;
+        return built;
+    }
+
+    /**
+     * getMinPulse()
+     * @return kleinste Pulsbreite (us)
+     */
+    public int getMinPulse()
+    {
+        return this.minPulse;
+    }
+
+    /**
+     * getMaxPulse()
+     * @return groesste Pulsbreite (us)
+     */
+    public int getMaxPulse()
+    {
+        return this.maxPulse;
+    }
+
+    /**
+     * getMinAngle()
+     * @return kleinster Winkel (Grad)
+     */
+    public int getMinAngle()
+    {
+        return this.minAngle;
+    }
+
+    /**
+     * getMaxAngle()
+     * @return groesster Winkel (Grad)
+     */
+    public int getMaxAngle()
+    {
+        return this.maxAngle;
+    }
+
+    /**
+     * getTrim()
+     * @return Korrektur der Pulsbreite (us)
+     */
+    public int getTrim()
+    {
+        return this.trim;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new StringBuilder().append("ServoCalibration[")
+                                  .append(this.minPulse)
+                                  .append("...")
+                                  .append(this.maxPulse)
+                                  .append("us, ")
+                                  .append(this.minAngle)
+                                  .append("...")
+                                  .append(this.maxAngle)
+                                  .append(" Grad, trim=")
+                                  .append(this.trim)
+                                  .append("]")
+                                  .toString();
+    }
+
+    /**
+     * Tables - Tabellen Pulsbreite bzw. Winkel => Ticks zu einem Vorteiler
+     */
+    private final class Tables
+    {
+        /**
+         * microsTicks - Ticks je Pulsbreite minPulse ... maxPulse
+         */
+        private final int[] microsTicks;
+
+        /**
+         * angleTicks - Ticks je Winkel minAngle ... maxAngle
+         */
+        private final int[] angleTicks;
+
+        private Tables(int prescale)
+        {
+            final int divisor = prescale + 1;
+            this.microsTicks = new int[maxPulse - minPulse + 1];
+            for (int index = 0; index < this.microsTicks.length; index++)
+            {
+                this.microsTicks[index] = toTicks(minPulse + index, divisor);
+            }
+            final int range = maxAngle - minAngle;
+            this.angleTicks = new int[range + 1];
+            for (int index = 0; index < this.angleTicks.length; index++)
+            {
+                final int micros = minPulse + (index * (maxPulse - minPulse) + range / 2) / range + trim;
+                this.angleTicks[index] = toTicks(Math.max(minPulse, Math.min(maxPulse, micros)), divisor);
+            }
+        }
+
+        /**
+         * toTicks(int micros, int divisor) - gerundet, max. RESOLUTION-1
+         */
+        private int toTicks(int micros, int divisor)
+        {
+            final int ticks = (micros * CLOCKS_PER_MICRO + divisor / 2) / divisor;
+            return Math.min(ticks, PCA9685.RESOLUTION - 1);
+        }
+    }
+}
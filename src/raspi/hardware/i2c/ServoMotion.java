@@ -0,0 +1,390 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ServoMotion - Bewegungsfuehrung fuer PCA9685.Servo.
+ * <p>
+ * Statt direkt auf den Zielwert zu springen (Stromspitzen), faehrt jeder Servo mit
+ * begrenzter Geschwindigkeit und Beschleunigung (Trapez-Profil) bzw. zusaetzlich
+ * begrenztem Ruck (S-Kurve) zum Ziel. Die Zwischenwerte werden von einem Thread mit
+ * festem Takt (periodMillis) berechnet, je Takt und Baustein werden die Werte aller
+ * bewegten Servos mit einer Transaktion geschrieben (PCA9685.flushBlock()).
+ * </p>
+ * <p>
+ * Einheiten: Position in Ticks (Off-Zeitpunkt, 0 ... 4095), Geschwindigkeit in
+ * Ticks/s, Beschleunigung in Ticks/s^2, Ruck in Ticks/s^3. Aenderungen kleiner als
+ * das Totband (setDeadband()) werden nicht geschrieben, der Zielwert immer.
+ * </p>
+ * <p><code>
+ * final ServoMotion motion = new ServoMotion(ServoMotion.DEFAULT_PERIOD_MILLIS);<br>
+ * motion.start();<br>
+ * motion.moveTo(pca9685.getServo(0), 400, 1000, 4000);<br>
+ * </code></p>
+ * @author Detlef Tribius
+ */
+public class ServoMotion implements Closeable
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ServoMotion.class);
+
+    /**
+     * DEFAULT_PERIOD_MILLIS = 20 - Takt (eine PWM-Periode bei 50 Hz)
+     */
+    public final static int DEFAULT_PERIOD_MILLIS = 20;
+
+    /**
+     * DEFAULT_DEADBAND = 1 - jede Aenderung um mindestens einen Tick wird geschrieben
+     */
+    public final static int DEFAULT_DEADBAND = 1;
+
+    /**
+     * periodMillis - Takt in ms
+     */
+    private final int periodMillis;
+
+    /**
+     * dt - Takt in s
+     */
+    private final double dt;
+
+    /**
+     * deadband - Totband in Ticks
+     */
+    private volatile int deadband = DEFAULT_DEADBAND;
+
+    /**
+     * motions - laufende Bewegungen je Servo
+     */
+    private final Map<PCA9685.Servo, Motion> motions = new LinkedHashMap<>();
+
+    /**
+     * executor - Thread mit festem Takt (start())
+     */
+    private ScheduledExecutorService executor = null;
+
+    /**
+     * ServoMotion(int periodMillis) - Konstruktor
+     * @param periodMillis Takt in ms (> 0)
+     */
+    public ServoMotion(int periodMillis)
+    {
+        if (periodMillis <= 0)
+        {
+            throw new IllegalArgumentException("ServoMotion: periodMillis=" + periodMillis);
+        }
+        this.periodMillis = periodMillis;
+        this.dt = periodMillis / 1000.0;
+    }
+
+    /**
+     * start() - startet den Takt-Thread (einmalig)
+     */
+    synchronized public void start()
+    {
+        if (this.executor != null)
+        {
+            return;
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            final Thread thread = new Thread(runnable, "ServoMotion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleAtFixedRate(() ->
+        {
+            try
+            {
+                step();
+            }
+            catch (IOException | RuntimeException exception)
+            {
+                // Der Takt muss weiterlaufen, sonst bleiben alle Servos stehen...
+                logger.error("ServoMotion: " + exception.getMessage(), exception);
+            }
+        }, this.periodMillis, this.periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * close() - beendet den Takt-Thread, laufende Bewegungen bleiben stehen
+     */
+    @Override
+    synchronized public void close()
+    {
+        if (this.executor != null)
+        {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        this.motions.clear();
+    }
+
+    /**
+     * setDeadband(int deadband)
+     * @param deadband Totband in Ticks (>= 1)
+     */
+    public void setDeadband(int deadband)
+    {
+        this.deadband = Math.max(1, deadband);
+    }
+
+    /**
+     * getDeadband()
+     * @return Totband in Ticks
+     */
+    public int getDeadband()
+    {
+        return this.deadband;
+    }
+
+    /**
+     * moveTo(PCA9685.Servo servo, int target, int maxVelocity, int maxAcceleration) -
+     * Bewegung mit Trapez-Profil
+     * @param servo Servo
+     * @param target Ziel (Ticks)
+     * @param maxVelocity max. Geschwindigkeit (Ticks/s)
+     * @param maxAcceleration max. Beschleunigung (Ticks/s^2)
+     */
+    public void moveTo(PCA9685.Servo servo, int target, int maxVelocity, int maxAcceleration)
+    {
+        moveTo(servo, target, maxVelocity, maxAcceleration, 0);
+    }
+
+    /**
+     * moveTo(PCA9685.Servo servo, int target, int maxVelocity, int maxAcceleration, int maxJerk) -
+     * Bewegung mit S-Kurve (maxJerk > 0) bzw. Trapez-Profil (maxJerk == 0).
+     * <p>
+     * Eine laufende Bewegung des Servos wird mit ihrer aktuellen Position und
+     * Geschwindigkeit fortgesetzt. Ist die Position des Servos unbekannt, wird
+     * der Zielwert im naechsten Takt direkt geschrieben.
+     * </p>
+     * @param servo Servo
+     * @param target Ziel (Ticks)
+     * @param maxVelocity max. Geschwindigkeit (Ticks/s)
+     * @param maxAcceleration max. Beschleunigung (Ticks/s^2)
+     * @param maxJerk max. Ruck (Ticks/s^3), 0 => Trapez-Profil
+     */
+    synchronized public void moveTo(PCA9685.Servo servo, int target, int maxVelocity, int maxAcceleration, int maxJerk)
+    {
+        if ((maxVelocity <= 0) || (maxAcceleration <= 0) || (maxJerk < 0))
+        {
+            final String message = new StringBuilder().append("ServoMotion: maxVelocity=")
+                                                      .append(maxVelocity)
+                                                      .append(", maxAcceleration=")
+                                                      .append(maxAcceleration)
+                                                      .append(", maxJerk=")
+                                                      .append(maxJerk)
+                                                      .toString();
+            throw new IllegalArgumentException(message);
+        }
+        Motion motion = this.motions.get(servo);
+        if (motion == null)
+        {
+            motion = new Motion(servo);
+            this.motions.put(servo, motion);
+        }
+        motion.target = Math.max(0, Math.min(PCA9685.RESOLUTION - 1, target));
+        motion.maxVelocity = maxVelocity;
+        motion.maxAcceleration = maxAcceleration;
+        motion.maxJerk = maxJerk;
+    }
+
+    /**
+     * moveToAngle(PCA9685.Servo servo, int angle, int maxVelocity, int maxAcceleration) -
+     * wie moveTo(), Ziel als Winkel ueber die Kalibrierung des Servos
+     * @param servo Servo
+     * @param angle Ziel (Grad)
+     * @param maxVelocity max. Geschwindigkeit (Ticks/s)
+     * @param maxAcceleration max. Beschleunigung (Ticks/s^2)
+     */
+    public void moveToAngle(PCA9685.Servo servo, int angle, int maxVelocity, int maxAcceleration)
+    {
+        moveTo(servo, servo.getAngleTicks(angle), maxVelocity, maxAcceleration, 0);
+    }
+
+    /**
+     * stop(PCA9685.Servo servo) - haelt den Servo an der aktuellen Position an
+     * @param servo
+     */
+    synchronized public void stop(PCA9685.Servo servo)
+    {
+        this.motions.remove(servo);
+    }
+
+    /**
+     * isMoving(PCA9685.Servo servo)
+     * @param servo
+     * @return true, wenn der Servo sein Ziel noch nicht erreicht hat
+     */
+    synchronized public boolean isMoving(PCA9685.Servo servo)
+    {
+        return this.motions.containsKey(servo);
+    }
+
+    /**
+     * isIdle()
+     * @return true, wenn kein Servo bewegt wird
+     */
+    synchronized public boolean isIdle()
+    {
+        return this.motions.isEmpty();
+    }
+
+    /**
+     * step() - ein Takt: neue Sollwerte aller bewegten Servos, danach je Baustein
+     * eine Ausgabe (flushBlock())
+     * @return Anzahl der Bus-Transaktionen
+     * @throws IOException
+     */
+    synchronized int step() throws IOException
+    {
+        final Set<PCA9685> boards = new LinkedHashSet<>();
+        final Iterator<Motion> iterator = this.motions.values().iterator();
+        while (iterator.hasNext())
+        {
+            final Motion motion = iterator.next();
+            final boolean done = motion.advance(this.dt);
+            final int ticks = done? motion.target : (int)Math.round(motion.position);
+            if (done || (Math.abs(ticks - motion.sent) >= this.deadband))
+            {
+                final PCA9685 board = motion.servo.getBoard();
+                board.setChannel(motion.servo.getNumber(), PCA9685.Servo.SERVO_ON_VALUE, ticks);
+                motion.sent = ticks;
+                boards.add(board);
+            }
+            if (done)
+            {
+                iterator.remove();
+            }
+        }
+        int transactions = 0;
+        for (PCA9685 board : boards)
+        {
+            transactions += board.flushBlock();
+        }
+        return transactions;
+    }
+
+    /**
+     * Motion - Zustand der Bewegung eines Servos
+     */
+    private final static class Motion
+    {
+        /**
+         * servo
+         */
+        private final PCA9685.Servo servo;
+
+        /**
+         * target - Ziel (Ticks)
+         */
+        private int target;
+
+        /**
+         * maxVelocity, maxAcceleration, maxJerk - Grenzwerte
+         */
+        private double maxVelocity, maxAcceleration, maxJerk;
+
+        /**
+         * position, velocity, acceleration - aktueller Zustand
+         */
+        private double position, velocity, acceleration;
+
+        /**
+         * sent - zuletzt geschriebener Wert (-1 => unbekannt)
+         */
+        private int sent;
+
+        /**
+         * Motion(PCA9685.Servo servo) - Start an der aktuellen Position des Servos
+         * @param servo
+         */
+        private Motion(PCA9685.Servo servo)
+        {
+            this.servo = servo;
+            this.sent = servo.getBoard().getChannelOff(servo.getNumber());
+            this.position = this.sent;
+        }
+
+        /**
+         * advance(double dt) - Zustand um einen Takt weiterrechnen
+         * @param dt Takt in s
+         * @return true, wenn das Ziel erreicht ist
+         */
+        private boolean advance(double dt)
+        {
+            if (this.sent < 0)
+            {
+                // Position unbekannt => Ziel direkt...
+                return true;
+            }
+            final double distance = this.target - this.position;
+            final double direction = Math.signum(distance);
+            if ((direction == 0.0) && (this.velocity == 0.0))
+            {
+                return true;
+            }
+            // Geschwindigkeit in Richtung Ziel und Bremsweg...
+            final double speed = this.velocity * direction;
+            double brake = (speed > 0.0)? speed * speed / (2.0 * this.maxAcceleration) : 0.0;
+            if ((this.maxJerk > 0.0) && (speed > 0.0))
+            {
+                // Auf- und Abbau der Verzoegerung...
+                brake += speed * this.maxAcceleration / (2.0 * this.maxJerk);
+            }
+            final double desired;
+            if ((speed > 0.0) && (Math.abs(distance) <= brake))
+            {
+                desired = -this.maxAcceleration * direction;
+            }
+            else if (speed < this.maxVelocity)
+            {
+                desired = this.maxAcceleration * direction;
+            }
+            else
+            {
+                desired = 0.0;
+            }
+            if (this.maxJerk > 0.0)
+            {
+                final double change = this.maxJerk * dt;
+                this.acceleration += Math.max(-change, Math.min(change, desired - this.acceleration));
+            }
+            else
+            {
+                this.acceleration = desired;
+            }
+            this.velocity += this.acceleration * dt;
+            this.velocity = Math.max(-this.maxVelocity, Math.min(this.maxVelocity, this.velocity));
+            this.position += this.velocity * dt;
+            if (((this.target - this.position) * direction <= 0.0)
+                || ((Math.abs(this.target - this.position) < 0.5) && (Math.abs(this.velocity) * dt < 0.5)))
+            {
+                // Ziel erreicht bzw. ueberfahren => auf das Ziel setzen...
+                this.position = this.target;
+                this.velocity = 0.0;
+                this.acceleration = 0.0;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TimelinePlayer - spielt eine Choreographie (KeyframeTimeline) auf einem PCA9685 ab.
+ * <p>
+ * Zwischen zwei Keyframes eines Channels wird im festen Takt (periodMillis) linear
+ * interpoliert, je Takt werden alle geaenderten Channel mit einer Transaktion
+ * geschrieben (PCA9685.flushBlock()). Je Channel werden nur der letzte und der
+ * naechste Keyframe gehalten, den folgenden liefert die Verkettung der Datei 
+ * (KeyframeTimeline.getNext()) ohne Suche. Speicherbedarf, Buslast und Aufwand je
+ * Takt sind damit unabhaengig von der Laenge der Choreographie.
+ * </p>
+ * <p>
+ * Ein Channel startet an seinem aktuellen Wert (bzw. am ersten Keyframe, wenn der
+ * Wert unbekannt ist) zur Zeit 0. Channel ohne Keyframes bleiben unveraendert.
+ * </p>
+ * <p><code>
+ * try (KeyframeTimeline timeline = new KeyframeTimeline(Paths.get("dance.pckf")))<br>
+ * {<br>
+ * &nbsp;&nbsp;final TimelinePlayer player = new TimelinePlayer(pca9685, timeline, 20);<br>
+ * &nbsp;&nbsp;player.start();<br>
+ * &nbsp;&nbsp;...<br>
+ * }<br>
+ * </code></p>
+ * @author Detlef Tribius
+ */
+public class TimelinePlayer implements Closeable
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(TimelinePlayer.class);
+
+    /**
+     * NONE - kein (weiterer) Keyframe
+     */
+    private final static int NONE = KeyframeTimeline.NONE;
+
+    /**
+     * board - Baustein
+     */
+    private final PCA9685 board;
+
+    /**
+     * timeline - Keyframes
+     */
+    private final KeyframeTimeline timeline;
+
+    /**
+     * periodMillis - Takt in ms
+     */
+    private final int periodMillis;
+
+    /**
+     * tick - Anzahl der abgespielten Takte
+     */
+    private long tick = 0L;
+
+    /**
+     * used - Channel mit Keyframes
+     */
+    private final boolean[] used = new boolean[PCA9685.NUMBER_CHANNELS];
+
+    /**
+     * prevTime, prevValue - letzter erreichter Keyframe je Channel
+     */
+    private final int[] prevTime = new int[PCA9685.NUMBER_CHANNELS];
+    private final int[] prevValue = new int[PCA9685.NUMBER_CHANNELS];
+
+    /**
+     * next - Index des naechsten Keyframes je Channel (NONE => keiner)
+     */
+    private final int[] next = new int[PCA9685.NUMBER_CHANNELS];
+
+    /**
+     * executor - Thread mit festem Takt (start())
+     */
+    private ScheduledExecutorService executor = null;
+
+    /**
+     * TimelinePlayer(PCA9685 board, KeyframeTimeline timeline, int periodMillis) - Konstruktor
+     * @param board Baustein
+     * @param timeline Keyframes
+     * @param periodMillis Takt in ms (> 0)
+     */
+    public TimelinePlayer(PCA9685 board, KeyframeTimeline timeline, int periodMillis)
+    {
+        if (periodMillis <= 0)
+        {
+            throw new IllegalArgumentException("TimelinePlayer: periodMillis=" + periodMillis);
+        }
+        this.board = board;
+        this.timeline = timeline;
+        this.periodMillis = periodMillis;
+        for (int channel = 0; channel < PCA9685.NUMBER_CHANNELS; channel++)
+        {
+            this.next[channel] = timeline.getFirst(channel);
+            if (this.next[channel] != NONE)
+            {
+                final int current = board.getChannelOff(channel);
+                this.used[channel] = true;
+                this.prevTime[channel] = 0;
+                this.prevValue[channel] = (current >= 0)? current : timeline.getValue(this.next[channel]);
+            }
+        }
+    }
+
+    /**
+     * start() - startet den Takt-Thread (einmalig), nach dem letzten Keyframe
+     * beendet er sich selbst
+     */
+    synchronized public void start()
+    {
+        if (this.executor != null)
+        {
+            return;
+        }
+        final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            final Thread thread = new Thread(runnable, "TimelinePlayer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor = service;
+        service.scheduleAtFixedRate(() ->
+        {
+            try
+            {
+                step();
+                if (isFinished())
+                {
+                    service.shutdown();
+                }
+            }
+            catch (IOException | RuntimeException exception)
+            {
+                logger.error("TimelinePlayer: " + exception.getMessage(), exception);
+            }
+        }, 0L, this.periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * close() - beendet den Takt-Thread
+     */
+    @Override
+    synchronized public void close()
+    {
+        if (this.executor != null)
+        {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * isFinished()
+     * @return true, wenn alle Keyframes abgespielt sind
+     */
+    synchronized public boolean isFinished()
+    {
+        for (int channel = 0; channel < PCA9685.NUMBER_CHANNELS; channel++)
+        {
+            if (this.next[channel] != NONE)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * getTime()
+     * @return Zeit des naechsten Takts (ms)
+     */
+    synchronized public long getTime()
+    {
+        return this.tick * this.periodMillis;
+    }
+
+    /**
+     * step() - ein Takt: Werte aller Channel zur Zeit tick * periodMillis, danach
+     * eine Ausgabe (flushBlock())
+     * @return Anzahl der Bus-Transaktionen
+     * @throws IOException
+     */
+    synchronized int step() throws IOException
+    {
+        final long time = this.tick * this.periodMillis;
+        for (int channel = 0; channel < PCA9685.NUMBER_CHANNELS; channel++)
+        {
+            if (!this.used[channel])
+            {
+                continue;
+            }
+            // Erreichte Keyframes uebernehmen...
+            while ((this.next[channel] != NONE) && (this.timeline.getTime(this.next[channel]) <= time))
+            {
+                this.prevTime[channel] = this.timeline.getTime(this.next[channel]);
+                this.prevValue[channel] = this.timeline.getValue(this.next[channel]);
+                this.next[channel] = this.timeline.getNext(this.next[channel]);
+            }
+            this.board.setChannel(channel, 0, getValue(channel, time));
+        }
+        this.tick++;
+        return this.board.flushBlock();
+    }
+
+    /**
+     * getValue(int channel, long time) - linear zwischen letztem und naechstem Keyframe
+     */
+    private int getValue(int channel, long time)
+    {
+        final int index = this.next[channel];
+        if (index == NONE)
+        {
+            return this.prevValue[channel];
+        }
+        final long span = this.timeline.getTime(index) - this.prevTime[channel];
+        final long delta = this.timeline.getValue(index) - this.prevValue[channel];
+        return (int)(this.prevValue[channel] + delta * (time - this.prevTime[channel]) / span);
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ *
+ */
+package raspi.hardware.i2c.sim;
+
+import java.io.IOException;
+
+/**
+ * ArduinoI2CSimulator - Simulation des Arduino-Slaves zu ArduinoI2C.
+ * <p>
+ * Protokoll: der Raspi schreibt 5 Byte (Token little-endian in Byte 0...3,
+ * Status in Byte 4), der Arduino antwortet beim naechsten Lesen mit 16 Byte:
+ * Token (Byte 0...3), Status (Byte 4), Daten little-endian (Byte 5...8),
+ * Rest 0.
+ * </p>
+ * <p>
+ * Die Antwort enthaelt das zuletzt empfangene Token, den Antwortstatus
+ * (Voreinstellung 'S') und den ueber setValue() bzw. setNumbers() vorgegebenen
+ * Datenwert.
+ * </p>
+ * @author Detlef Tribius
+ */
+public class ArduinoI2CSimulator extends I2CDeviceSimulator
+{
+    /**
+     * REQUEST_SIZE = 5
+     */
+    public final static int REQUEST_SIZE = 5;
+
+    /**
+     * RESPONSE_SIZE = 16
+     */
+    public final static int RESPONSE_SIZE = 16;
+
+    /**
+     * token - zuletzt empfangenes Token (Byte 0...3)
+     */
+    private final byte[] token = new byte[4];
+
+    /**
+     * requestStatus - zuletzt empfangener Status
+     */
+    private byte requestStatus = (byte)'N';
+
+    /**
+     * responseStatus - Status der Antwort
+     */
+    private byte responseStatus = (byte)'S';
+
+    /**
+     * value - Datenwert der Antwort
+     */
+    private int value = 0;
+
+    /**
+     * requestCount - Anzahl der empfangenen Anfragen
+     */
+    private long requestCount = 0L;
+
+    /**
+     * ArduinoI2CSimulator() - Simulation unter der Default-Adresse 0x08
+     */
+    public ArduinoI2CSimulator()
+    {
+        this(0x08);
+    }
+
+    /**
+     * ArduinoI2CSimulator(int address) - Konstruktor
+     * @param address Bus-Adresse
+     */
+    public ArduinoI2CSimulator(int address)
+    {
+        super(address);
+    }
+
+    /**
+     * setValue(int value) - Datenwert der Antwort (Byte 5...8)
+     * @param value Wert
+     */
+    synchronized public void setValue(int value)
+    {
+        this.value = value;
+    }
+
+    /**
+     * setNumbers(int numberMA, int numberMB) - Datenwert als zwei Impulszahlen
+     * @param numberMA Impulszahl Motor A (obere 16 Bit)
+     * @param numberMB Impulszahl Motor B (untere 16 Bit)
+     */
+    synchronized public void setNumbers(int numberMA, int numberMB)
+    {
+        this.value = ((numberMA & 0xffff) << 16) | (numberMB & 0xffff);
+    }
+
+    /**
+     * setResponseStatus(char status) - Status der Antwort ('I', 'S', 'E', 'N')
+     * @param status Status
+     */
+    synchronized public void setResponseStatus(char status)
+    {
+        this.responseStatus = (byte)status;
+    }
+
+    /**
+     * getRequestStatus()
+     * @return zuletzt empfangener Status
+     */
+    synchronized public char getRequestStatus()
+    {
+        return (char)this.requestStatus;
+    }
+
+    /**
+     * getRequestCount()
+     * @return Anzahl der empfangenen Anfragen
+     */
+    synchronized public long getRequestCount()
+    {
+        return this.requestCount;
+    }
+
+    /**
+     * write(byte[] buffer, int offset, int size) - Anfrage des Raspi (5 Byte)
+     */
+    @Override
+    synchronized public void write(byte[] buffer, int offset, int size) throws IOException
+    {
+        transaction();
+        if (size != REQUEST_SIZE)
+        {
+            throw new IOException("Arduino: Anfrage mit " + size + " Byte, erwartet " + REQUEST_SIZE + "!");
+        }
+        System.arraycopy(buffer, offset, this.token, 0, this.token.length);
+        this.requestStatus = buffer[offset + 4];
+        this.requestCount++;
+        written(size);
+    }
+
+    /**
+     * read(byte[] buffer, int offset, int size) - Antwort des Arduino (16 Byte)
+     */
+    @Override
+    synchronized public int read(byte[] buffer, int offset, int size) throws IOException
+    {
+        transaction();
+        final byte[] response = new byte[RESPONSE_SIZE];
+        System.arraycopy(this.token, 0, response, 0, this.token.length);
+        response[4] = this.responseStatus;
+        int data = this.value;
+        for (int index = 5; index <= 8; index++)
+        {
+            response[index] = (byte)(data & 0xff);
+            data >>>= 8;
+        }
+        final int number = Math.min(size, RESPONSE_SIZE);
+        System.arraycopy(response, 0, buffer, offset, number);
+        return number;
+    }
+}
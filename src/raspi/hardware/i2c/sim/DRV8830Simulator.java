@@ -0,0 +1,112 @@
+/**
+ *
+ */
+package raspi.hardware.i2c.sim;
+
+import java.io.IOException;
+
+/**
+ * DRV8830Simulator - Simulation des Motortreibers DRV8830.
+ * <p>
+ * Register 0 (CONTROL): VSET (Bit 7...2), IN2/IN1 (Bit 1...0).<br>
+ * Register 1 (FAULT): Fehlerbits, die bis zum Loeschen mit CLEAR (0x80)
+ * gespeichert bleiben. Bit 0 (FAULT) wird gesetzt, sobald eines der anderen
+ * Fehlerbits gesetzt ist.
+ * </p>
+ * @author Detlef Tribius
+ */
+public class DRV8830Simulator extends I2CDeviceSimulator
+{
+    /**
+     * Registeradressen
+     */
+    public final static int CONTROL = 0x00;
+    public final static int FAULT = 0x01;
+
+    /**
+     * Fehlerbits im FAULT-Register
+     */
+    public final static int FAULT_FLAG = 0x01;
+    public final static int OCP = 0x02;
+    public final static int UVLO = 0x04;
+    public final static int OTS = 0x08;
+    public final static int ILIMIT = 0x10;
+    public final static int CLEAR = 0x80;
+
+    /**
+     * DRV8830Simulator() - Simulation unter der Default-Adresse 0x60
+     */
+    public DRV8830Simulator()
+    {
+        this(0x60);
+    }
+
+    /**
+     * DRV8830Simulator(int address) - Konstruktor
+     * @param address Bus-Adresse
+     */
+    public DRV8830Simulator(int address)
+    {
+        super(address);
+    }
+
+    /**
+     * injectFault(int fault) - simuliert das Auftreten eines Fehlers
+     * @param fault Fehlerbits (OCP, UVLO, OTS, ILIMIT)
+     */
+    synchronized public void injectFault(int fault)
+    {
+        fault &= (OCP | UVLO | OTS | ILIMIT);
+        if (fault != 0)
+        {
+            this.registers[FAULT] = (byte)((this.registers[FAULT] & 0xff) | fault | FAULT_FLAG);
+        }
+    }
+
+    /**
+     * getVoltageSetting()
+     * @return VSET (0...63)
+     */
+    synchronized public int getVoltageSetting()
+    {
+        return (this.registers[CONTROL] & 0xff) >> 2;
+    }
+
+    /**
+     * getDirection()
+     * @return IN2/IN1 (0: Freilauf, 1: Rueckwaerts, 2: Vorwaerts, 3: Bremse)
+     */
+    synchronized public int getDirection()
+    {
+        return this.registers[CONTROL] & 0x03;
+    }
+
+    @Override
+    protected int readRegister(int reg) throws IOException
+    {
+        if (reg > FAULT)
+        {
+            throw new IOException("DRV8830: Register " + reg + " nicht vorhanden!");
+        }
+        return super.readRegister(reg);
+    }
+
+    @Override
+    protected void writeRegister(int reg, int value) throws IOException
+    {
+        if (reg == FAULT)
+        {
+            // Fehlerbits sind nur lesbar, CLEAR loescht die gespeicherten Fehler...
+            if ((value & CLEAR) != 0)
+            {
+                this.registers[FAULT] = 0;
+            }
+            return;
+        }
+        if (reg != CONTROL)
+        {
+            throw new IOException("DRV8830: Register " + reg + " nicht vorhanden!");
+        }
+        super.writeRegister(reg, value);
+    }
+}
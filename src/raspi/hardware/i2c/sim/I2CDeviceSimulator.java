@@ -0,0 +1,330 @@
+/**
+ *
+ */
+package raspi.hardware.i2c.sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+/**
+ * I2CDeviceSimulator ist die Basisklasse der In-Memory-Simulationen einzelner
+ * I2C-Bausteine. Die Simulationen implementieren <code>I2CDevice</code> und koennen
+ * an Stelle von <code>I2CBus.getDevice(address)</code> an die Treiberklassen
+ * (PCA9685, MCP9808, DRV8830, ArduinoI2C...) uebergeben werden. Damit laufen die
+ * Treiber ohne Raspberry Pi (Tests, Benchmarks).
+ * <p>
+ * Die Basisklasse haelt eine Registerdatei mit 256 Byte-Registern und einen
+ * Registerzeiger. Blockzugriffe (write(reg, buffer...), read(reg, buffer...)) laufen
+ * ueber nextRegister(), damit bildet die konkrete Simulation das Auto-Increment
+ * des Bausteins nach. Die konkreten Simulationen ueberschreiben readRegister() und
+ * writeRegister(), um die Semantik einzelner Register abzubilden.
+ * </p>
+ * @author Detlef Tribius
+ */
+public abstract class I2CDeviceSimulator implements I2CDevice
+{
+    /**
+     * REGISTER_COUNT = 256 - Anzahl der Register
+     */
+    public final static int REGISTER_COUNT = 256;
+
+    /**
+     * address - Bus-Adresse des simulierten Bausteins
+     */
+    private final int address;
+
+    /**
+     * registers - Registerdatei
+     */
+    protected final byte[] registers = new byte[REGISTER_COUNT];
+
+    /**
+     * pointer - Registerzeiger (zuletzt adressiertes Register)
+     */
+    protected int pointer = 0;
+
+    /**
+     * transactionCount - Anzahl der Bus-Transaktionen
+     */
+    private long transactionCount = 0L;
+
+    /**
+     * bytesWritten - Anzahl der geschriebenen Datenbytes (ohne Adresse/Register)
+     */
+    private long bytesWritten = 0L;
+
+    /**
+     * I2CDeviceSimulator(int address) - Konstruktor
+     * @param address Bus-Adresse
+     */
+    protected I2CDeviceSimulator(int address)
+    {
+        this.address = address;
+    }
+
+    /**
+     * readRegister(int reg) - Lesen eines Registers (Semantik des Bausteins)
+     * @param reg Register
+     * @return Inhalt (0...255)
+     * @throws IOException Register nicht lesbar
+     */
+    protected int readRegister(int reg) throws IOException
+    {
+        return this.registers[reg & 0xff] & 0xff;
+    }
+
+    /**
+     * writeRegister(int reg, int value) - Schreiben eines Registers (Semantik des Bausteins)
+     * @param reg Register
+     * @param value Wert (0...255)
+     * @throws IOException Register nicht beschreibbar
+     */
+    protected void writeRegister(int reg, int value) throws IOException
+    {
+        this.registers[reg & 0xff] = (byte)value;
+    }
+
+    /**
+     * nextRegister(int reg) - Folgeregister bei Blockzugriffen.
+     * <p>
+     * Voreinstellung: reg+1 (Auto-Increment), Bausteine ohne Auto-Increment
+     * liefern reg zurueck.
+     * </p>
+     * @param reg aktuelles Register
+     * @return naechstes Register
+     */
+    protected int nextRegister(int reg)
+    {
+        return (reg + 1) & 0xff;
+    }
+
+    /**
+     * transaction() - zaehlt eine Bus-Transaktion
+     */
+    protected final void transaction()
+    {
+        this.transactionCount++;
+    }
+
+    /**
+     * written(int count) - zaehlt geschriebene Datenbytes
+     * @param count Anzahl der Bytes
+     */
+    protected final void written(int count)
+    {
+        this.bytesWritten += count;
+    }
+
+    /**
+     * getTransactionCount()
+     * @return Anzahl der Bus-Transaktionen seit Instanziierung bzw. resetCounters()
+     */
+    synchronized public final long getTransactionCount()
+    {
+        return this.transactionCount;
+    }
+
+    /**
+     * getBytesWritten()
+     * @return Anzahl der geschriebenen Datenbytes seit Instanziierung bzw. resetCounters()
+     */
+    synchronized public final long getBytesWritten()
+    {
+        return this.bytesWritten;
+    }
+
+    /**
+     * resetCounters() - setzt die Zaehler zurueck
+     */
+    synchronized public final void resetCounters()
+    {
+        this.transactionCount = 0L;
+        this.bytesWritten = 0L;
+    }
+
+    /**
+     * peek(int reg) - Registerinhalt ohne Semantik und ohne Transaktion (fuer Tests)
+     * @param reg Register
+     * @return Inhalt (0...255)
+     */
+    synchronized public int peek(int reg)
+    {
+        return this.registers[reg & 0xff] & 0xff;
+    }
+
+    @Override
+    public int getAddress()
+    {
+        return this.address;
+    }
+
+    /**
+     * write(byte b) - Schreiben ohne Register: setzt den Registerzeiger
+     */
+    @Override
+    synchronized public void write(byte b) throws IOException
+    {
+        transaction();
+        this.pointer = b & 0xff;
+    }
+
+    /**
+     * write(byte[] buffer, int offset, int size) - Schreiben ohne Register:
+     * das erste Byte setzt den Registerzeiger, die folgenden Bytes werden
+     * ab dem Registerzeiger geschrieben.
+     */
+    @Override
+    synchronized public void write(byte[] buffer, int offset, int size) throws IOException
+    {
+        transaction();
+        if (size <= 0)
+        {
+            return;
+        }
+        writeBlock(buffer[offset] & 0xff, buffer, offset + 1, size - 1);
+    }
+
+    @Override
+    public void write(byte[] buffer) throws IOException
+    {
+        write(buffer, 0, buffer.length);
+    }
+
+    @Override
+    synchronized public void write(int address, byte b) throws IOException
+    {
+        transaction();
+        written(1);
+        this.pointer = address & 0xff;
+        writeRegister(this.pointer, b & 0xff);
+    }
+
+    @Override
+    synchronized public void write(int address, byte[] buffer, int offset, int size) throws IOException
+    {
+        transaction();
+        writeBlock(address & 0xff, buffer, offset, size);
+    }
+
+    @Override
+    public void write(int address, byte[] buffer) throws IOException
+    {
+        write(address, buffer, 0, buffer.length);
+    }
+
+    /**
+     * read() - Lesen ohne Register ab dem Registerzeiger
+     */
+    @Override
+    synchronized public int read() throws IOException
+    {
+        transaction();
+        return readRegister(this.pointer);
+    }
+
+    /**
+     * read(byte[] buffer, int offset, int size) - Lesen ohne Register ab dem Registerzeiger
+     */
+    @Override
+    synchronized public int read(byte[] buffer, int offset, int size) throws IOException
+    {
+        transaction();
+        return readBlock(this.pointer, buffer, offset, size);
+    }
+
+    @Override
+    synchronized public int read(int address) throws IOException
+    {
+        transaction();
+        this.pointer = address & 0xff;
+        return readRegister(this.pointer);
+    }
+
+    @Override
+    synchronized public int read(int address, byte[] buffer, int offset, int size) throws IOException
+    {
+        transaction();
+        return readBlock(address & 0xff, buffer, offset, size);
+    }
+
+    /**
+     * read(byte[] writeBuffer, ...) - kombinierter Zugriff (Schreiben, dann Lesen)
+     */
+    @Override
+    synchronized public int read(byte[] writeBuffer, int writeOffset, int writeSize,
+                                 byte[] readBuffer, int readOffset, int readSize) throws IOException
+    {
+        transaction();
+        if (writeSize > 0)
+        {
+            writeBlock(writeBuffer[writeOffset] & 0xff, writeBuffer, writeOffset + 1, writeSize - 1);
+        }
+        return readBlock(this.pointer, readBuffer, readOffset, readSize);
+    }
+
+    /**
+     * ioctl(long command, int value) - wird nicht simuliert
+     */
+    public void ioctl(long command, int value) throws IOException
+    {
+        throw new IOException("ioctl() wird nicht simuliert!");
+    }
+
+    /**
+     * ioctl(long command, ByteBuffer data, IntBuffer offsets) - wird nicht simuliert
+     */
+    public void ioctl(long command, ByteBuffer data, IntBuffer offsets) throws IOException
+    {
+        throw new IOException("ioctl() wird nicht simuliert!");
+    }
+
+    /**
+     * writeBlock(int reg, byte[] buffer, int offset, int size) - schreibt size Bytes ab
+     * Register reg, Folgeregister ueber nextRegister()
+     * @param reg erstes Register
+     * @param buffer Daten
+     * @param offset Index in buffer
+     * @param size Anzahl der Bytes
+     * @throws IOException
+     */
+    protected void writeBlock(int reg, byte[] buffer, int offset, int size) throws IOException
+    {
+        this.pointer = reg;
+        for (int index = 0; index < size; index++)
+        {
+            writeRegister(this.pointer, buffer[offset + index] & 0xff);
+            written(1);
+            if (index < size - 1)
+            {
+                this.pointer = nextRegister(this.pointer);
+            }
+        }
+    }
+
+    /**
+     * readBlock(int reg, byte[] buffer, int offset, int size) - liest size Bytes ab
+     * Register reg, Folgeregister ueber nextRegister()
+     * @param reg erstes Register
+     * @param buffer Ziel
+     * @param offset Index in buffer
+     * @param size Anzahl der Bytes
+     * @return Anzahl der gelesenen Bytes
+     * @throws IOException
+     */
+    protected int readBlock(int reg, byte[] buffer, int offset, int size) throws IOException
+    {
+        this.pointer = reg;
+        for (int index = 0; index < size; index++)
+        {
+            buffer[offset + index] = (byte)readRegister(this.pointer);
+            if (index < size - 1)
+            {
+                this.pointer = nextRegister(this.pointer);
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,441 @@
+/**
+ *
+ */
+package raspi.hardware.i2c.sim;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * MCP9808Simulator - Simulation des Temperatursensors MCP9808.
+ * <p>
+ * Der MCP9808 kennt 16-Bit-Register (CONFIG, TUPPER, TLOWER, TCRIT, TA,
+ * Manufacturer-ID, Device-ID) und das 8-Bit-Register RESOL. Der Registerzeiger
+ * wird nicht inkrementiert: ein Blockzugriff ueber 2 Byte liefert MSB und LSB
+ * desselben Registers.
+ * </p>
+ * <p>
+ * Abgebildet werden:
+ * </p>
+ * <ul>
+ * <li>Temperatur im Zweierkomplement (13 Bit, 2^-4 °C), quantisiert gemaess RESOL</li>
+ * <li>Wandlungszeit je nach Aufloesung (30/65/130/250 ms): TA zeigt die
+ * Temperatur der letzten abgeschlossenen Wandlung</li>
+ * <li>Flag-Bits in TA: Bit 15 TA &gt;= TCRIT, Bit 14 TA &gt; TUPPER, Bit 13 TA &lt; TLOWER</li>
+ * <li>Alert-Ausgang (Comparator-/Interrupt-Modus) in CONFIG.Bit 4, Interrupt Clear</li>
+ * <li>Shutdown-Modus (keine Wandlung), Window-/Crit-Lock</li>
+ * </ul>
+ * @author Detlef Tribius
+ */
+public class MCP9808Simulator extends I2CDeviceSimulator
+{
+    /**
+     * Registeradressen (vgl. Datenblatt MCP9808)
+     */
+    public final static int CONFIG = 0x01;
+    public final static int TUPPER = 0x02;
+    public final static int TLOWER = 0x03;
+    public final static int TCRIT = 0x04;
+    public final static int TEMPER = 0x05;
+    public final static int MANUFACTURER_ID = 0x06;
+    public final static int DEVICE_ID = 0x07;
+    public final static int RESOL = 0x08;
+
+    /**
+     * Bits im CONFIG-Register (16 Bit)
+     */
+    private final static int ALERT_MODE = 0x0001;
+    private final static int ALERT_POLARITY = 0x0002;
+    private final static int ALERT_SELECT = 0x0004;
+    private final static int ALERT_CONTROL = 0x0008;
+    private final static int ALERT_STATUS = 0x0010;
+    private final static int INTERRUPT_CLEAR = 0x0020;
+    private final static int WINDOW_LOCK = 0x0040;
+    private final static int CRIT_LOCK = 0x0080;
+    private final static int SHUTDOWN = 0x0100;
+
+    /**
+     * Flag-Bits im TA-Register
+     */
+    public final static int FLAG_CRIT = 0x8000;
+    public final static int FLAG_UPPER = 0x4000;
+    public final static int FLAG_LOWER = 0x2000;
+
+    /**
+     * CONVERSION_MILLIS - Wandlungszeiten je Aufloesung (0,5/0,25/0,125/0,0625 °C)
+     */
+    private final static long[] CONVERSION_MILLIS = {30L, 65L, 130L, 250L};
+
+    /**
+     * words - 16-Bit-Register 0x00...0x07
+     */
+    private final int[] words = new int[8];
+
+    /**
+     * clock - Zeitbasis in ns (austauschbar fuer Tests)
+     */
+    private final LongSupplier clock;
+
+    /**
+     * temperature - "wahre" Umgebungstemperatur
+     */
+    private double temperature = 20.0;
+
+    /**
+     * converted - Rohwert (13 Bit, vorzeichenbehaftet) der letzten Wandlung
+     */
+    private int converted = 0;
+
+    /**
+     * conversionStart - Beginn der laufenden Wandlung (ns)
+     */
+    private long conversionStart = 0L;
+
+    /**
+     * interrupt - gespeicherter Interrupt (Interrupt-Modus)
+     */
+    private boolean interrupt = false;
+
+    /**
+     * MCP9808Simulator() - Simulation unter der Default-Adresse 0x18
+     */
+    public MCP9808Simulator()
+    {
+        this(0x18, System::nanoTime);
+    }
+
+    /**
+     * MCP9808Simulator(int address, LongSupplier clock) - Konstruktor
+     * @param address Bus-Adresse
+     * @param clock Zeitbasis in ns
+     */
+    public MCP9808Simulator(int address, LongSupplier clock)
+    {
+        super(address);
+        this.clock = clock;
+        powerOn();
+    }
+
+    /**
+     * powerOn() - Power-On-Zustand herstellen
+     */
+    synchronized public void powerOn()
+    {
+        for (int index = 0; index < this.words.length; index++)
+        {
+            this.words[index] = 0;
+        }
+        this.words[MANUFACTURER_ID] = 0x0054;
+        this.words[DEVICE_ID] = 0x0400;
+        this.registers[RESOL] = (byte)0x03;
+        this.interrupt = false;
+        this.pointer = TEMPER;
+        this.converted = quantize(this.temperature);
+        this.conversionStart = this.clock.getAsLong();
+    }
+
+    /**
+     * setTemperature(double temperature) - setzt die Umgebungstemperatur;
+     * sichtbar wird sie erst nach Abschluss der naechsten Wandlung.
+     * @param temperature Temperatur in °C
+     */
+    synchronized public void setTemperature(double temperature)
+    {
+        update();
+        this.temperature = temperature;
+    }
+
+    /**
+     * getConversionMillis()
+     * @return Wandlungszeit der eingestellten Aufloesung in ms
+     */
+    synchronized public long getConversionMillis()
+    {
+        return CONVERSION_MILLIS[this.registers[RESOL] & 0x03];
+    }
+
+    /**
+     * isShutdown()
+     * @return true im Shutdown-Modus
+     */
+    synchronized public boolean isShutdown()
+    {
+        return (this.words[CONFIG] & SHUTDOWN) != 0;
+    }
+
+    /**
+     * isAlert()
+     * @return true, wenn der Alert-Ausgang aktiv ist (unabhaengig von der Polaritaet)
+     */
+    synchronized public boolean isAlert()
+    {
+        update();
+        return isAlertActive();
+    }
+
+    /**
+     * getWord(int reg) - 16-Bit-Registerinhalt ohne Transaktion (fuer Tests)
+     * @param reg Register 0x01...0x07
+     * @return Inhalt
+     */
+    synchronized public int getWord(int reg)
+    {
+        update();
+        return (reg == TEMPER)? getTemperatureWord() : this.words[reg & 0x07];
+    }
+
+    /**
+     * nextRegister() - kein Auto-Increment beim MCP9808
+     */
+    @Override
+    protected int nextRegister(int reg)
+    {
+        return reg;
+    }
+
+    /**
+     * readRegister() - Einzelbyte: RESOL bzw. MSB eines 16-Bit-Registers
+     */
+    @Override
+    protected int readRegister(int reg) throws IOException
+    {
+        if (reg == RESOL)
+        {
+            return this.registers[RESOL] & 0xff;
+        }
+        return (readWord(reg) >> 8) & 0xff;
+    }
+
+    /**
+     * writeRegister() - Einzelbyte: RESOL bzw. MSB eines 16-Bit-Registers
+     */
+    @Override
+    protected void writeRegister(int reg, int value) throws IOException
+    {
+        if (reg == RESOL)
+        {
+            update();
+            this.registers[RESOL] = (byte)(value & 0x03);
+            return;
+        }
+        writeWord(reg, (value & 0xff) << 8);
+    }
+
+    @Override
+    protected void writeBlock(int reg, byte[] buffer, int offset, int size) throws IOException
+    {
+        this.pointer = reg;
+        if (reg == RESOL || size < 2)
+        {
+            super.writeBlock(reg, buffer, offset, size);
+            return;
+        }
+        writeWord(reg, ((buffer[offset] & 0xff) << 8) | (buffer[offset + 1] & 0xff));
+        written(2);
+    }
+
+    @Override
+    protected int readBlock(int reg, byte[] buffer, int offset, int size) throws IOException
+    {
+        this.pointer = reg;
+        if (reg == RESOL)
+        {
+            return super.readBlock(reg, buffer, offset, size);
+        }
+        final int word = readWord(reg);
+        for (int index = 0; index < size; index++)
+        {
+            // MSB, LSB, danach wieder von vorn...
+            buffer[offset + index] = (byte)(((index & 0x01) == 0)? (word >> 8) : word);
+        }
+        return size;
+    }
+
+    /**
+     * readWord(int reg) - Lesen eines 16-Bit-Registers
+     * @param reg Register
+     * @return Inhalt
+     * @throws IOException unbekanntes Register
+     */
+    private int readWord(int reg) throws IOException
+    {
+        if (reg < CONFIG || reg > DEVICE_ID)
+        {
+            throw new IOException("MCP9808: Register " + reg + " nicht vorhanden!");
+        }
+        update();
+        if (reg == TEMPER)
+        {
+            return getTemperatureWord();
+        }
+        if (reg == CONFIG)
+        {
+            final int config = this.words[CONFIG] & ~(ALERT_STATUS | INTERRUPT_CLEAR);
+            return config | (isAlertActive()? ALERT_STATUS : 0);
+        }
+        return this.words[reg];
+    }
+
+    /**
+     * writeWord(int reg, int value) - Schreiben eines 16-Bit-Registers
+     * @param reg Register
+     * @param value Wert
+     * @throws IOException Register nicht beschreibbar
+     */
+    private void writeWord(int reg, int value) throws IOException
+    {
+        update();
+        final int config = this.words[CONFIG];
+        switch (reg)
+        {
+            case CONFIG:
+            {
+                int next = value & 0x07ff;
+                if ((next & INTERRUPT_CLEAR) != 0)
+                {
+                    this.interrupt = false;
+                }
+                // Lock-Bits lassen sich nur durch Power-On zuruecksetzen...
+                next |= config & (WINDOW_LOCK | CRIT_LOCK);
+                if ((config & (WINDOW_LOCK | CRIT_LOCK)) != 0)
+                {
+                    // ...und sperren Alert-Konfiguration (Bits 0...3)
+                    next = (next & ~0x000f) | (config & 0x000f);
+                }
+                this.words[CONFIG] = next & ~(ALERT_STATUS | INTERRUPT_CLEAR);
+                break;
+            }
+            case TUPPER:
+            case TLOWER:
+            {
+                if ((config & WINDOW_LOCK) == 0)
+                {
+                    this.words[reg] = value & 0x1ffc;
+                }
+                break;
+            }
+            case TCRIT:
+            {
+                if ((config & CRIT_LOCK) == 0)
+                {
+                    this.words[reg] = value & 0x1ffc;
+                }
+                break;
+            }
+            default:
+            {
+                throw new IOException("MCP9808: Register " + reg + " nicht beschreibbar!");
+            }
+        }
+    }
+
+    /**
+     * update() - Abschluss der laufenden Wandlung(en) gemaess Zeitbasis
+     */
+    private void update()
+    {
+        final long now = this.clock.getAsLong();
+        if ((this.words[CONFIG] & SHUTDOWN) != 0)
+        {
+            // Keine Wandlung, naechste Wandlung beginnt mit dem Aufwachen...
+            this.conversionStart = now;
+            return;
+        }
+        final long conversion = CONVERSION_MILLIS[this.registers[RESOL] & 0x03] * 1000000L;
+        final long elapsed = now - this.conversionStart;
+        if (elapsed >= conversion)
+        {
+            this.converted = quantize(this.temperature);
+            this.conversionStart = now - (elapsed % conversion);
+            if ((this.words[CONFIG] & ALERT_MODE) != 0 && isOutOfLimits())
+            {
+                this.interrupt = true;
+            }
+        }
+    }
+
+    /**
+     * quantize(double temperature) - Rohwert gemaess eingestellter Aufloesung
+     * @param temperature Temperatur in °C
+     * @return Rohwert in 2^-4 °C
+     */
+    private int quantize(double temperature)
+    {
+        final int step = 8 >> (this.registers[RESOL] & 0x03);
+        final int raw = (int)Math.floor(temperature * 16.0 / step) * step;
+        return Math.max(-0x1000, Math.min(0x0fff, raw));
+    }
+
+    /**
+     * getTemperatureWord() - TA-Register mit Flag-Bits
+     * @return Inhalt
+     */
+    private int getTemperatureWord()
+    {
+        int word = this.converted & 0x1fff;
+        if (this.converted >= limit(TCRIT))
+        {
+            word |= FLAG_CRIT;
+        }
+        if (this.converted > limit(TUPPER))
+        {
+            word |= FLAG_UPPER;
+        }
+        if (this.converted < limit(TLOWER))
+        {
+            word |= FLAG_LOWER;
+        }
+        return word;
+    }
+
+    /**
+     * limit(int reg) - Grenzwert als vorzeichenbehafteter Rohwert
+     * @param reg TUPPER, TLOWER oder TCRIT
+     * @return Rohwert in 2^-4 °C
+     */
+    private int limit(int reg)
+    {
+        final int raw = this.words[reg] & 0x1ffc;
+        return ((raw & 0x1000) != 0)? raw - 0x2000 : raw;
+    }
+
+    /**
+     * isOutOfLimits()
+     * @return true, wenn eine Alarmbedingung gemaess ALERT_SELECT vorliegt
+     */
+    private boolean isOutOfLimits()
+    {
+        if (this.converted >= limit(TCRIT))
+        {
+            return true;
+        }
+        if ((this.words[CONFIG] & ALERT_SELECT) != 0)
+        {
+            return false;
+        }
+        return (this.converted > limit(TUPPER)) || (this.converted < limit(TLOWER));
+    }
+
+    /**
+     * isAlertActive()
+     * @return true, wenn der Alert-Ausgang aktiv ist
+     */
+    private boolean isAlertActive()
+    {
+        final int config = this.words[CONFIG];
+        if ((config & ALERT_CONTROL) == 0)
+        {
+            return false;
+        }
+        return ((config & ALERT_MODE) != 0)? this.interrupt : isOutOfLimits();
+    }
+
+    /**
+     * isActiveHigh()
+     * @return Polaritaet des Alert-Ausgangs
+     */
+    synchronized public boolean isActiveHigh()
+    {
+        return (this.words[CONFIG] & ALERT_POLARITY) != 0;
+    }
+}
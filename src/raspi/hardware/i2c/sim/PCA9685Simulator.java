@@ -0,0 +1,266 @@
+/**
+ *
+ */
+package raspi.hardware.i2c.sim;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * PCA9685Simulator - Simulation des 16-Kanal-PWM-Bausteins PCA9685.
+ * <p>
+ * Abgebildet werden:
+ * </p>
+ * <ul>
+ * <li>Power-On-Zustand: MODE1 = 0x11 (SLEEP, ALLCALL), MODE2 = 0x04 (OUTDRV),
+ * LEDn_OFF_H = 0x10 (FULL_OFF), PRE_SCALE = 0x1E (200Hz)</li>
+ * <li>Auto-Increment (MODE1.AI): ohne AI landen alle Bytes eines Blockzugriffs
+ * im adressierten Register</li>
+ * <li>PRE_SCALE ist nur im SLEEP-Modus beschreibbar</li>
+ * <li>RESTART: wird gelesen als 1, wenn aus dem SLEEP mit laufenden PWM-Kanaelen
+ * aufgewacht wurde; Schreiben einer 1 loescht das Bit</li>
+ * <li>ALL_LED_xx: Schreiben wirkt auf alle 16 Kanaele, Lesen liefert 0</li>
+ * <li>Gruppen-Adressen SUBADR1...3 und ALLCALLADR (vgl. respondsTo())</li>
+ * </ul>
+ * @author Detlef Tribius
+ */
+public class PCA9685Simulator extends I2CDeviceSimulator
+{
+    /**
+     * Registeradressen (vgl. Datenblatt PCA9685)
+     */
+    public final static int MODE1 = 0x00;
+    public final static int MODE2 = 0x01;
+    public final static int LED0_ON_L = 0x06;
+    public final static int LED15_OFF_H = 0x45;
+    public final static int ALL_LED_ON_L = 0xFA;
+    public final static int ALL_LED_OFF_H = 0xFD;
+    public final static int PRE_SCALE = 0xFE;
+
+    /**
+     * Bits in MODE1
+     */
+    public final static int RESTART = 0x80;
+    public final static int AI = 0x20;
+    public final static int SLEEP = 0x10;
+
+    /**
+     * FULL = 0x10 - Bit 4 in LEDn_ON_H bzw. LEDn_OFF_H
+     */
+    public final static int FULL = 0x10;
+
+    /**
+     * CHANNEL_COUNT = 16
+     */
+    public final static int CHANNEL_COUNT = 16;
+
+    /**
+     * OSC_CLOCK = 25MHz - interner Oszillator
+     */
+    public final static double OSC_CLOCK = 25000000.0;
+
+    /**
+     * PCA9685Simulator() - Simulation unter der Default-Adresse 0x40
+     */
+    public PCA9685Simulator()
+    {
+        this(0x40);
+    }
+
+    /**
+     * PCA9685Simulator(int address) - Konstruktor
+     * @param address Bus-Adresse
+     */
+    public PCA9685Simulator(int address)
+    {
+        super(address);
+        powerOn();
+    }
+
+    /**
+     * powerOn() - Power-On-Zustand herstellen
+     */
+    synchronized public void powerOn()
+    {
+        Arrays.fill(this.registers, (byte)0);
+        this.registers[MODE1] = (byte)0x11;
+        this.registers[MODE2] = (byte)0x04;
+        this.registers[0x02] = (byte)0xE2;
+        this.registers[0x03] = (byte)0xE4;
+        this.registers[0x04] = (byte)0xE8;
+        this.registers[0x05] = (byte)0xE0;
+        for (int channel = 0; channel < CHANNEL_COUNT; channel++)
+        {
+            this.registers[LED0_ON_L + 4 * channel + 3] = (byte)FULL;
+        }
+        this.registers[PRE_SCALE] = (byte)0x1E;
+        this.pointer = 0;
+    }
+
+    /**
+     * respondsTo(int address) - Antwort auf eine Gruppen-Adresse (SUBADR1...3 mit
+     * MODE1.SUB1...3 bzw. ALLCALLADR mit MODE1.ALLCALL) oder die eigene Adresse
+     * @param address 7-Bit-Adresse
+     * @return true, wenn der Baustein unter address angesprochen wird
+     */
+    synchronized public boolean respondsTo(int address)
+    {
+        if (address == getAddress())
+        {
+            return true;
+        }
+        final int mode1 = this.registers[MODE1] & 0xff;
+        final int[] bits = {0x08, 0x04, 0x02, 0x01};
+        for (int index = 0; index < bits.length; index++)
+        {
+            if (((mode1 & bits[index]) != 0) && (((this.registers[0x02 + index] & 0xff) >> 1) == address))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * nextRegister() - Auto-Increment nur bei gesetztem MODE1.AI
+     */
+    @Override
+    protected int nextRegister(int reg)
+    {
+        if ((this.registers[MODE1] & AI) == 0)
+        {
+            return reg;
+        }
+        // Auto-Increment ueberspringt die reservierten Register 0x46...0xF9 nicht,
+        // laeuft aber nach PRE_SCALE (0xFE) bzw. TestMode (0xFF) auf 0x00 um...
+        return (reg + 1) & 0xff;
+    }
+
+    @Override
+    protected int readRegister(int reg) throws IOException
+    {
+        if (reg >= ALL_LED_ON_L && reg <= ALL_LED_OFF_H)
+        {
+            // ALL_LED-Register werden als 0 gelesen...
+            return 0;
+        }
+        return super.readRegister(reg);
+    }
+
+    @Override
+    protected void writeRegister(int reg, int value) throws IOException
+    {
+        value &= 0xff;
+        if (reg == MODE1)
+        {
+            final int old = this.registers[MODE1] & 0xff;
+            int mode1 = value & ~RESTART;
+            // RESTART bleibt erhalten, solange es nicht mit 1 geloescht wird...
+            if ((old & RESTART) != 0 && (value & RESTART) == 0)
+            {
+                mode1 |= RESTART;
+            }
+            // Einschlafen mit aktiven Ausgaengen: RESTART wird gesetzt...
+            if ((old & SLEEP) == 0 && (value & SLEEP) != 0 && isAnyChannelActive())
+            {
+                mode1 |= RESTART;
+            }
+            this.registers[MODE1] = (byte)mode1;
+            return;
+        }
+        if (reg == PRE_SCALE)
+        {
+            if ((this.registers[MODE1] & SLEEP) == 0)
+            {
+                // Schreiben nur im SLEEP-Modus moeglich, sonst ohne Wirkung...
+                return;
+            }
+            this.registers[PRE_SCALE] = (byte)Math.max(3, value);
+            return;
+        }
+        if (reg >= ALL_LED_ON_L && reg <= ALL_LED_OFF_H)
+        {
+            final int offset = reg - ALL_LED_ON_L;
+            for (int channel = 0; channel < CHANNEL_COUNT; channel++)
+            {
+                this.registers[LED0_ON_L + 4 * channel + offset] = (byte)value;
+            }
+            return;
+        }
+        super.writeRegister(reg, value);
+    }
+
+    /**
+     * isAnyChannelActive()
+     * @return true, wenn mindestens ein Kanal nicht FULL_OFF ist
+     */
+    private boolean isAnyChannelActive()
+    {
+        for (int channel = 0; channel < CHANNEL_COUNT; channel++)
+        {
+            if ((this.registers[LED0_ON_L + 4 * channel + 3] & FULL) == 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * getOn(int channel)
+     * @param channel Kanal (0...15)
+     * @return ON-Wert (12 Bit + FULL_ON-Bit 0x1000)
+     */
+    synchronized public int getOn(int channel)
+    {
+        final int reg = LED0_ON_L + 4 * channel;
+        return (this.registers[reg] & 0xff) | ((this.registers[reg + 1] & 0x1f) << 8);
+    }
+
+    /**
+     * getOff(int channel)
+     * @param channel Kanal (0...15)
+     * @return OFF-Wert (12 Bit + FULL_OFF-Bit 0x1000)
+     */
+    synchronized public int getOff(int channel)
+    {
+        final int reg = LED0_ON_L + 4 * channel + 2;
+        return (this.registers[reg] & 0xff) | ((this.registers[reg + 1] & 0x1f) << 8);
+    }
+
+    /**
+     * getPrescale()
+     * @return Inhalt von PRE_SCALE
+     */
+    synchronized public int getPrescale()
+    {
+        return this.registers[PRE_SCALE] & 0xff;
+    }
+
+    /**
+     * getFrequency()
+     * @return PWM-Frequenz in Hz gemaess PRE_SCALE
+     */
+    public double getFrequency()
+    {
+        return OSC_CLOCK / (4096.0 * (getPrescale() + 1));
+    }
+
+    /**
+     * isSleep()
+     * @return true, wenn der Oszillator abgeschaltet ist (MODE1.SLEEP)
+     */
+    synchronized public boolean isSleep()
+    {
+        return (this.registers[MODE1] & SLEEP) != 0;
+    }
+
+    /**
+     * isAutoIncrement()
+     * @return true, wenn MODE1.AI gesetzt ist
+     */
+    synchronized public boolean isAutoIncrement()
+    {
+        return (this.registers[MODE1] & AI) != 0;
+    }
+}
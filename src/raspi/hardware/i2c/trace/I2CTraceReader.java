@@ -0,0 +1,212 @@
+/**
+ *
+ */
+package raspi.hardware.i2c.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * I2CTraceReader - liest eine mit I2CTraceWriter erzeugte Trace-Datei (memory-mapped).
+ * <p>
+ * Beim Oeffnen wird je Geraeteadresse ein Index der Eintraege (Position in der Datei)
+ * aufgebaut, die Nutzdaten werden erst beim Zugriff aus der abgebildeten Datei gelesen.
+ * </p>
+ * @author Detlef Tribius
+ */
+public class I2CTraceReader implements Closeable
+{
+    /**
+     * ADDRESS_COUNT = 128 - 7-Bit-Adressen
+     */
+    private final static int ADDRESS_COUNT = 128;
+
+    /**
+     * channel - FileChannel zur Trace-Datei
+     */
+    private final FileChannel channel;
+
+    /**
+     * buffer - in den Speicher abgebildete Trace-Datei
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * startMillis - Beginn der Aufzeichnung in ms seit 1970
+     */
+    private final long startMillis;
+
+    /**
+     * positions - Position der Eintraege je Adresse
+     */
+    private final int[][] positions = new int[ADDRESS_COUNT][];
+
+    /**
+     * counts - Anzahl der Eintraege je Adresse
+     */
+    private final int[] counts = new int[ADDRESS_COUNT];
+
+    /**
+     * replayStartNanos - Beginn der Wiedergabe (System.nanoTime()), gemeinsam fuer
+     * alle ReplayI2CDevice dieses Readers, 0 = noch nicht begonnen
+     */
+    private long replayStartNanos = 0L;
+
+    /**
+     * I2CTraceReader(Path path) - Trace-Datei oeffnen und indizieren
+     * @param path Trace-Datei
+     * @throws IOException Datei nicht lesbar bzw. keine Trace-Datei
+     */
+    public I2CTraceReader(Path path) throws IOException
+    {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if ((this.buffer.limit() < I2CTraceWriter.HEADER_SIZE)
+         || (this.buffer.getInt(0) != I2CTraceWriter.MAGIC)
+         || (this.buffer.getShort(4) != I2CTraceWriter.VERSION))
+        {
+            this.channel.close();
+            throw new IOException("I2CTraceReader: " + path + " ist keine Trace-Datei!");
+        }
+        this.startMillis = this.buffer.getLong(8);
+        index();
+    }
+
+    /**
+     * index() - Aufbau des Index je Adresse
+     */
+    private void index()
+    {
+        int position = I2CTraceWriter.HEADER_SIZE;
+        while (position + I2CTraceWriter.ENTRY_HEADER_SIZE <= this.buffer.limit())
+        {
+            if (this.buffer.get(position + 8) == I2CTraceWriter.END)
+            {
+                break;
+            }
+            final int address = this.buffer.get(position + 9) & (ADDRESS_COUNT - 1);
+            if (this.positions[address] == null)
+            {
+                this.positions[address] = new int[64];
+            }
+            else if (this.counts[address] == this.positions[address].length)
+            {
+                this.positions[address] = Arrays.copyOf(this.positions[address], 2 * this.counts[address]);
+            }
+            this.positions[address][this.counts[address]++] = position;
+            position += I2CTraceWriter.ENTRY_HEADER_SIZE + getLength(position);
+        }
+    }
+
+    /**
+     * getStartMillis()
+     * @return Beginn der Aufzeichnung in ms seit 1970
+     */
+    public long getStartMillis()
+    {
+        return this.startMillis;
+    }
+
+    /**
+     * getEntryCount(int address)
+     * @param address Geraeteadresse
+     * @return Anzahl der Eintraege zur Adresse
+     */
+    public int getEntryCount(int address)
+    {
+        return this.counts[address & (ADDRESS_COUNT - 1)];
+    }
+
+    /**
+     * getPosition(int address, int index)
+     * @param address Geraeteadresse
+     * @param index laufende Nummer des Eintrages zur Adresse
+     * @return Position des Eintrages in der Datei
+     */
+    int getPosition(int address, int index)
+    {
+        return this.positions[address & (ADDRESS_COUNT - 1)][index];
+    }
+
+    /**
+     * getTimestamp(int position)
+     * @return Zeitstempel des Eintrages in ns seit Beginn der Aufzeichnung
+     */
+    long getTimestamp(int position)
+    {
+        return this.buffer.getLong(position);
+    }
+
+    /**
+     * getOperation(int position)
+     * @return Operation des Eintrages (ggf. mit ERROR)
+     */
+    byte getOperation(int position)
+    {
+        return this.buffer.get(position + 8);
+    }
+
+    /**
+     * getRegister(int position)
+     * @return Register des Eintrages bzw. NO_REGISTER
+     */
+    int getRegister(int position)
+    {
+        return this.buffer.getShort(position + 10) & 0xffff;
+    }
+
+    /**
+     * getLength(int position)
+     * @return Laenge der Nutzdaten des Eintrages
+     */
+    int getLength(int position)
+    {
+        return this.buffer.getShort(position + 12) & 0xffff;
+    }
+
+    /**
+     * getPayload(int position, int from, byte[] data, int offset, int length) - Nutzdaten kopieren
+     * @param position Position des Eintrages
+     * @param from Index in den Nutzdaten
+     * @param data Ziel
+     * @param offset Index in data
+     * @param length Anzahl der Bytes
+     */
+    void getPayload(int position, int from, byte[] data, int offset, int length)
+    {
+        final int start = position + I2CTraceWriter.ENTRY_HEADER_SIZE + from;
+        for (int index = 0; index < length; index++)
+        {
+            data[offset + index] = this.buffer.get(start + index);
+        }
+    }
+
+    /**
+     * getReplayStartNanos() - Beginn der Wiedergabe, wird beim ersten Aufruf festgelegt
+     * @return Beginn der Wiedergabe (System.nanoTime())
+     */
+    synchronized long getReplayStartNanos()
+    {
+        if (this.replayStartNanos == 0L)
+        {
+            this.replayStartNanos = System.nanoTime();
+        }
+        return this.replayStartNanos;
+    }
+
+    /**
+     * close()
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ *
+ */
+package raspi.hardware.i2c.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * I2CTraceWriter - schreibt Bus-Transaktionen in eine Trace-Datei (memory-mapped).
+ * <p>
+ * Aufbau der Datei (little-endian):
+ * </p>
+ * <ul>
+ * <li>Kopf (HEADER_SIZE = 16 Byte): MAGIC (int), VERSION (short), reserviert (short),
+ * Beginn der Aufzeichnung in ms seit 1970 (long)</li>
+ * <li>Eintraege (ENTRY_HEADER_SIZE = 14 Byte + Nutzdaten): Zeitstempel in ns seit
+ * Beginn der Aufzeichnung (long), Operation (byte, ggf. mit ERROR), Adresse (byte),
+ * Register (short, NO_REGISTER ohne Register), Laenge der Nutzdaten (short), Nutzdaten</li>
+ * <li>Ende: Dateiende (close() kuerzt die Datei auf die geschriebenen Eintraege) bzw.
+ * Operation 0 (die Datei ist mit 0 vorbelegt, z.B. nach einem Absturz)</li>
+ * </ul>
+ * <p>
+ * Nutzdaten sind bei Schreiboperationen die geschriebenen, bei Leseoperationen die
+ * gelesenen Bytes. Bei READ_WRITE stehen vorn 2 Byte mit der Anzahl der geschriebenen
+ * Bytes, dann die geschriebenen und danach die gelesenen Bytes.
+ * </p>
+ * <p>
+ * Mehrere RecordingI2CDevice koennen denselben Writer verwenden, die Eintraege
+ * aller Geraete stehen dann in zeitlicher Reihenfolge in einer Datei.
+ * </p>
+ * @author Detlef Tribius
+ */
+public class I2CTraceWriter implements Closeable
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(I2CTraceWriter.class);
+
+    /**
+     * MAGIC = 'I2CT'
+     */
+    public final static int MAGIC = 0x54433249;
+
+    /**
+     * VERSION = 1
+     */
+    public final static short VERSION = 1;
+
+    /**
+     * HEADER_SIZE = 16 - Groesse des Dateikopfes
+     */
+    public final static int HEADER_SIZE = 16;
+
+    /**
+     * ENTRY_HEADER_SIZE = 14 - Groesse eines Eintrages ohne Nutzdaten
+     */
+    public final static int ENTRY_HEADER_SIZE = 14;
+
+    /**
+     * NO_REGISTER = 0xffff - Kennung fuer Zugriffe ohne Register
+     */
+    public final static int NO_REGISTER = 0xffff;
+
+    /**
+     * MAX_PAYLOAD = 0xffff - max. Laenge der Nutzdaten
+     */
+    public final static int MAX_PAYLOAD = 0xffff;
+
+    /**
+     * Operationen (entsprechend den Methoden von I2CDevice)
+     */
+    public final static byte END = 0;
+    public final static byte WRITE = 1;
+    public final static byte WRITE_BUFFER = 2;
+    public final static byte WRITE_REGISTER = 3;
+    public final static byte WRITE_REGISTER_BUFFER = 4;
+    public final static byte READ = 5;
+    public final static byte READ_BUFFER = 6;
+    public final static byte READ_REGISTER = 7;
+    public final static byte READ_REGISTER_BUFFER = 8;
+    public final static byte READ_WRITE = 9;
+
+    /**
+     * ERROR = 0x80 - Kennung: die Operation endete mit IOException
+     */
+    public final static byte ERROR = (byte)0x80;
+
+    /**
+     * DEFAULT_CAPACITY = 16MB
+     */
+    public final static int DEFAULT_CAPACITY = 16 * 1024 * 1024;
+
+    /**
+     * channel - FileChannel zur Trace-Datei
+     */
+    private final FileChannel channel;
+
+    /**
+     * buffer - in den Speicher abgebildete Trace-Datei
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * startNanos - Beginn der Aufzeichnung (System.nanoTime())
+     */
+    private final long startNanos;
+
+    /**
+     * entryCount - Anzahl der geschriebenen Eintraege
+     */
+    private long entryCount = 0L;
+
+    /**
+     * droppedCount - Anzahl der verworfenen Eintraege (Datei voll)
+     */
+    private long droppedCount = 0L;
+
+    /**
+     * I2CTraceWriter(Path path) - Trace-Datei mit DEFAULT_CAPACITY anlegen
+     * @param path Trace-Datei (wird ueberschrieben)
+     * @throws IOException
+     */
+    public I2CTraceWriter(Path path) throws IOException
+    {
+        this(path, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * I2CTraceWriter(Path path, int capacity) - Trace-Datei anlegen
+     * @param path Trace-Datei (wird ueberschrieben)
+     * @param capacity Groesse der Datei in Byte
+     * @throws IOException
+     */
+    public I2CTraceWriter(Path path, int capacity) throws IOException
+    {
+        this.channel = FileChannel.open(path,
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.TRUNCATE_EXISTING,
+                                        StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.putInt(MAGIC);
+        this.buffer.putShort(VERSION);
+        this.buffer.putShort((short)0);
+        this.buffer.putLong(System.currentTimeMillis());
+        this.startNanos = System.nanoTime();
+        logger.debug("I2CTraceWriter: " + path + " angelegt...");
+    }
+
+    /**
+     * append(...) - Eintrag anhaengen
+     * @param operation Operation (ggf. mit ERROR)
+     * @param address Geraeteadresse
+     * @param reg Register bzw. NO_REGISTER
+     * @param data Nutzdaten
+     * @param offset Index in data
+     * @param length Laenge der Nutzdaten
+     */
+    public synchronized void append(byte operation, int address, int reg, byte[] data, int offset, int length)
+    {
+        append(operation, address, reg, data, offset, length, null, 0, 0);
+    }
+
+    /**
+     * append(...) - Eintrag mit Nutzdaten aus zwei Abschnitten anhaengen (READ_WRITE)
+     */
+    synchronized void append(byte operation, int address, int reg,
+                             byte[] data, int offset, int length,
+                             byte[] data2, int offset2, int length2)
+    {
+        final long timestamp = System.nanoTime() - this.startNanos;
+        final int payload = length + length2;
+        if ((payload > MAX_PAYLOAD) || (this.buffer.remaining() < ENTRY_HEADER_SIZE + payload + 1))
+        {
+            if (this.droppedCount++ == 0)
+            {
+                logger.warn("I2CTraceWriter: Trace-Datei voll bzw. Eintrag zu gross, weitere Eintraege werden verworfen!");
+            }
+            return;
+        }
+        this.buffer.putLong(timestamp);
+        this.buffer.put(operation);
+        this.buffer.put((byte)address);
+        this.buffer.putShort((short)reg);
+        this.buffer.putShort((short)payload);
+        if (length > 0)
+        {
+            this.buffer.put(data, offset, length);
+        }
+        if (length2 > 0)
+        {
+            this.buffer.put(data2, offset2, length2);
+        }
+        this.entryCount++;
+    }
+
+    /**
+     * getEntryCount()
+     * @return Anzahl der geschriebenen Eintraege
+     */
+    public synchronized long getEntryCount()
+    {
+        return this.entryCount;
+    }
+
+    /**
+     * getDroppedCount()
+     * @return Anzahl der verworfenen Eintraege
+     */
+    public synchronized long getDroppedCount()
+    {
+        return this.droppedCount;
+    }
+
+    /**
+     * close() - Trace-Datei auf das Speichermedium schreiben, auf die geschriebenen
+     * Eintraege kuerzen und schliessen
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        try
+        {
+            this.buffer.force();
+            // Sonst bliebe jede Trace-Datei in voller Groesse (capacity)...
+            this.channel.truncate(this.buffer.position());
+        }
+        finally
+        {
+            this.channel.close();
+        }
+        logger.debug("I2CTraceWriter: " + this.entryCount + " Eintraege geschrieben, "
+                                        + this.droppedCount + " verworfen.");
+    }
+}
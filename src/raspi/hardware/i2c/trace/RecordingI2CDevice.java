@@ -0,0 +1,245 @@
+/**
+ *
+ */
+package raspi.hardware.i2c.trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+/**
+ * RecordingI2CDevice - I2CDevice-Decorator, der jede Transaktion des
+ * zugrundeliegenden Geraetes ueber einen I2CTraceWriter aufzeichnet.
+ * <p>
+ * Verwendung (statt <code>bus.getDevice(0x18)</code>):
+ * </p>
+ * <p><code>
+ * I2CTraceWriter writer = new I2CTraceWriter(Paths.get("session.i2ct"));<br>
+ * MCP9808 mcp9808 = new MCP9808(new RecordingI2CDevice(bus.getDevice(0x18), writer));<br>
+ * </code></p>
+ * <p>
+ * ioctl() wird nicht unterstuetzt (die Treiber verwenden es nicht).
+ * </p>
+ * @author Detlef Tribius
+ */
+public class RecordingI2CDevice implements I2CDevice
+{
+    /**
+     * NO_DATA - leere Nutzdaten
+     */
+    private final static byte[] NO_DATA = new byte[0];
+
+    /**
+     * dev - zugrundeliegendes Geraet
+     */
+    private final I2CDevice dev;
+
+    /**
+     * writer - Ziel der Aufzeichnung
+     */
+    private final I2CTraceWriter writer;
+
+    /**
+     * RecordingI2CDevice(I2CDevice dev, I2CTraceWriter writer) - Konstruktor
+     * @param dev zugrundeliegendes Geraet
+     * @param writer Ziel der Aufzeichnung
+     */
+    public RecordingI2CDevice(I2CDevice dev, I2CTraceWriter writer)
+    {
+        this.dev = dev;
+        this.writer = writer;
+    }
+
+    @Override
+    public int getAddress()
+    {
+        return this.dev.getAddress();
+    }
+
+    @Override
+    public void write(byte b) throws IOException
+    {
+        try
+        {
+            this.dev.write(b);
+            this.writer.append(I2CTraceWriter.WRITE, getAddress(), I2CTraceWriter.NO_REGISTER, new byte[] {b}, 0, 1);
+        }
+        catch (IOException exception)
+        {
+            error(I2CTraceWriter.WRITE, I2CTraceWriter.NO_REGISTER);
+            throw exception;
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int size) throws IOException
+    {
+        try
+        {
+            this.dev.write(buffer, offset, size);
+            this.writer.append(I2CTraceWriter.WRITE_BUFFER, getAddress(), I2CTraceWriter.NO_REGISTER, buffer, offset, size);
+        }
+        catch (IOException exception)
+        {
+            error(I2CTraceWriter.WRITE_BUFFER, I2CTraceWriter.NO_REGISTER);
+            throw exception;
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer) throws IOException
+    {
+        write(buffer, 0, buffer.length);
+    }
+
+    @Override
+    public void write(int address, byte b) throws IOException
+    {
+        try
+        {
+            this.dev.write(address, b);
+            this.writer.append(I2CTraceWriter.WRITE_REGISTER, getAddress(), address, new byte[] {b}, 0, 1);
+        }
+        catch (IOException exception)
+        {
+            error(I2CTraceWriter.WRITE_REGISTER, address);
+            throw exception;
+        }
+    }
+
+    @Override
+    public void write(int address, byte[] buffer, int offset, int size) throws IOException
+    {
+        try
+        {
+            this.dev.write(address, buffer, offset, size);
+            this.writer.append(I2CTraceWriter.WRITE_REGISTER_BUFFER, getAddress(), address, buffer, offset, size);
+        }
+        catch (IOException exception)
+        {
+            error(I2CTraceWriter.WRITE_REGISTER_BUFFER, address);
+            throw exception;
+        }
+    }
+
+    @Override
+    public void write(int address, byte[] buffer) throws IOException
+    {
+        write(address, buffer, 0, buffer.length);
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        try
+        {
+            final int value = this.dev.read();
+            this.writer.append(I2CTraceWriter.READ, getAddress(), I2CTraceWriter.NO_REGISTER, new byte[] {(byte)value}, 0, 1);
+            return value;
+        }
+        catch (IOException exception)
+        {
+            error(I2CTraceWriter.READ, I2CTraceWriter.NO_REGISTER);
+            throw exception;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int size) throws IOException
+    {
+        try
+        {
+            final int count = this.dev.read(buffer, offset, size);
+            this.writer.append(I2CTraceWriter.READ_BUFFER, getAddress(), I2CTraceWriter.NO_REGISTER, buffer, offset, Math.max(count, 0));
+            return count;
+        }
+        catch (IOException exception)
+        {
+            error(I2CTraceWriter.READ_BUFFER, I2CTraceWriter.NO_REGISTER);
+            throw exception;
+        }
+    }
+
+    @Override
+    public int read(int address) throws IOException
+    {
+        try
+        {
+            final int value = this.dev.read(address);
+            this.writer.append(I2CTraceWriter.READ_REGISTER, getAddress(), address, new byte[] {(byte)value}, 0, 1);
+            return value;
+        }
+        catch (IOException exception)
+        {
+            error(I2CTraceWriter.READ_REGISTER, address);
+            throw exception;
+        }
+    }
+
+    @Override
+    public int read(int address, byte[] buffer, int offset, int size) throws IOException
+    {
+        try
+        {
+            final int count = this.dev.read(address, buffer, offset, size);
+            this.writer.append(I2CTraceWriter.READ_REGISTER_BUFFER, getAddress(), address, buffer, offset, Math.max(count, 0));
+            return count;
+        }
+        catch (IOException exception)
+        {
+            error(I2CTraceWriter.READ_REGISTER_BUFFER, address);
+            throw exception;
+        }
+    }
+
+    @Override
+    public int read(byte[] writeBuffer, int writeOffset, int writeSize,
+                    byte[] readBuffer, int readOffset, int readSize) throws IOException
+    {
+        try
+        {
+            final int count = this.dev.read(writeBuffer, writeOffset, writeSize, readBuffer, readOffset, readSize);
+            final byte[] writeLength = {(byte)(writeSize & 0xff), (byte)((writeSize >> 8) & 0xff)};
+            final byte[] payload = new byte[2 + writeSize];
+            System.arraycopy(writeLength, 0, payload, 0, 2);
+            System.arraycopy(writeBuffer, writeOffset, payload, 2, writeSize);
+            this.writer.append(I2CTraceWriter.READ_WRITE, getAddress(), I2CTraceWriter.NO_REGISTER,
+                               payload, 0, payload.length,
+                               readBuffer, readOffset, Math.max(count, 0));
+            return count;
+        }
+        catch (IOException exception)
+        {
+            error(I2CTraceWriter.READ_WRITE, I2CTraceWriter.NO_REGISTER);
+            throw exception;
+        }
+    }
+
+    /**
+     * ioctl(long command, int value) - wird nicht aufgezeichnet
+     */
+    public void ioctl(long command, int value) throws IOException
+    {
+        throw new IOException("ioctl() wird bei der Aufzeichnung nicht unterstuetzt!");
+    }
+
+    /**
+     * ioctl(long command, ByteBuffer data, IntBuffer offsets) - wird nicht aufgezeichnet
+     */
+    public void ioctl(long command, ByteBuffer data, IntBuffer offsets) throws IOException
+    {
+        throw new IOException("ioctl() wird bei der Aufzeichnung nicht unterstuetzt!");
+    }
+
+    /**
+     * error(byte operation, int reg) - Aufzeichnung einer fehlgeschlagenen Operation
+     * @param operation
+     * @param reg
+     */
+    private void error(byte operation, int reg)
+    {
+        this.writer.append((byte)(operation | I2CTraceWriter.ERROR), getAddress(), reg, NO_DATA, 0, 0);
+    }
+}
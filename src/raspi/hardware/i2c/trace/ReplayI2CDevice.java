@@ -0,0 +1,293 @@
+/**
+ *
+ */
+package raspi.hardware.i2c.trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+/**
+ * ReplayI2CDevice - I2CDevice, das die aufgezeichneten Transaktionen einer
+ * Geraeteadresse aus einer Trace-Datei wiedergibt.
+ * <p>
+ * Jeder Aufruf verbraucht den naechsten Eintrag zur Adresse. Operation und Register
+ * muessen mit der Aufzeichnung uebereinstimmen, sonst wird eine IOException geworfen.
+ * Leseoperationen liefern die aufgezeichneten Daten, aufgezeichnete Fehler werden als
+ * IOException wiedergegeben. Weichen bei Schreiboperationen die Daten ab, wird das
+ * gezaehlt (getMismatchCount()), die Wiedergabe laeuft weiter.
+ * </p>
+ * <p>
+ * Mit Timing.ORIGINAL wartet jeder Aufruf bis zum aufgezeichneten Zeitpunkt (relativ
+ * zum Beginn der Wiedergabe), mit Timing.FAST laeuft die Wiedergabe so schnell wie moeglich.
+ * </p>
+ * @author Detlef Tribius
+ */
+public class ReplayI2CDevice implements I2CDevice
+{
+    /**
+     * Timing - Zeitverhalten der Wiedergabe
+     */
+    public static enum Timing
+    {
+        /**
+         * ORIGINAL - mit den aufgezeichneten Zeitabstaenden
+         */
+        ORIGINAL,
+        /**
+         * FAST - so schnell wie moeglich
+         */
+        FAST;
+    }
+
+    /**
+     * reader - Trace-Datei
+     */
+    private final I2CTraceReader reader;
+
+    /**
+     * address - Geraeteadresse
+     */
+    private final int address;
+
+    /**
+     * timing - Zeitverhalten
+     */
+    private final Timing timing;
+
+    /**
+     * cursor - laufende Nummer des naechsten Eintrages
+     */
+    private int cursor = 0;
+
+    /**
+     * mismatchCount - Anzahl der Schreiboperationen mit abweichenden Daten
+     */
+    private long mismatchCount = 0L;
+
+    /**
+     * ReplayI2CDevice(I2CTraceReader reader, int address, Timing timing) - Konstruktor
+     * @param reader Trace-Datei
+     * @param address Geraeteadresse
+     * @param timing Zeitverhalten
+     */
+    public ReplayI2CDevice(I2CTraceReader reader, int address, Timing timing)
+    {
+        this.reader = reader;
+        this.address = address;
+        this.timing = timing;
+    }
+
+    /**
+     * getMismatchCount()
+     * @return Anzahl der Schreiboperationen mit abweichenden Daten
+     */
+    synchronized public long getMismatchCount()
+    {
+        return this.mismatchCount;
+    }
+
+    /**
+     * getRemaining()
+     * @return Anzahl der noch nicht wiedergegebenen Eintraege
+     */
+    synchronized public int getRemaining()
+    {
+        return this.reader.getEntryCount(this.address) - this.cursor;
+    }
+
+    @Override
+    public int getAddress()
+    {
+        return this.address;
+    }
+
+    @Override
+    synchronized public void write(byte b) throws IOException
+    {
+        final int position = next(I2CTraceWriter.WRITE, I2CTraceWriter.NO_REGISTER);
+        compare(position, 0, this.reader.getLength(position), new byte[] {b}, 0, 1);
+    }
+
+    @Override
+    synchronized public void write(byte[] buffer, int offset, int size) throws IOException
+    {
+        final int position = next(I2CTraceWriter.WRITE_BUFFER, I2CTraceWriter.NO_REGISTER);
+        compare(position, 0, this.reader.getLength(position), buffer, offset, size);
+    }
+
+    @Override
+    public void write(byte[] buffer) throws IOException
+    {
+        write(buffer, 0, buffer.length);
+    }
+
+    @Override
+    synchronized public void write(int address, byte b) throws IOException
+    {
+        final int position = next(I2CTraceWriter.WRITE_REGISTER, address);
+        compare(position, 0, this.reader.getLength(position), new byte[] {b}, 0, 1);
+    }
+
+    @Override
+    synchronized public void write(int address, byte[] buffer, int offset, int size) throws IOException
+    {
+        final int position = next(I2CTraceWriter.WRITE_REGISTER_BUFFER, address);
+        compare(position, 0, this.reader.getLength(position), buffer, offset, size);
+    }
+
+    @Override
+    public void write(int address, byte[] buffer) throws IOException
+    {
+        write(address, buffer, 0, buffer.length);
+    }
+
+    @Override
+    synchronized public int read() throws IOException
+    {
+        final int position = next(I2CTraceWriter.READ, I2CTraceWriter.NO_REGISTER);
+        final byte[] value = new byte[1];
+        this.reader.getPayload(position, 0, value, 0, 1);
+        return value[0] & 0xff;
+    }
+
+    @Override
+    synchronized public int read(byte[] buffer, int offset, int size) throws IOException
+    {
+        final int position = next(I2CTraceWriter.READ_BUFFER, I2CTraceWriter.NO_REGISTER);
+        return copy(position, 0, this.reader.getLength(position), buffer, offset, size);
+    }
+
+    @Override
+    synchronized public int read(int address) throws IOException
+    {
+        final int position = next(I2CTraceWriter.READ_REGISTER, address);
+        final byte[] value = new byte[1];
+        this.reader.getPayload(position, 0, value, 0, 1);
+        return value[0] & 0xff;
+    }
+
+    @Override
+    synchronized public int read(int address, byte[] buffer, int offset, int size) throws IOException
+    {
+        final int position = next(I2CTraceWriter.READ_REGISTER_BUFFER, address);
+        return copy(position, 0, this.reader.getLength(position), buffer, offset, size);
+    }
+
+    @Override
+    synchronized public int read(byte[] writeBuffer, int writeOffset, int writeSize,
+                                 byte[] readBuffer, int readOffset, int readSize) throws IOException
+    {
+        final int position = next(I2CTraceWriter.READ_WRITE, I2CTraceWriter.NO_REGISTER);
+        final byte[] writeLength = new byte[2];
+        this.reader.getPayload(position, 0, writeLength, 0, 2);
+        final int recorded = (writeLength[0] & 0xff) | ((writeLength[1] & 0xff) << 8);
+        compare(position, 2, recorded, writeBuffer, writeOffset, writeSize);
+        final int from = 2 + recorded;
+        return copy(position, from, this.reader.getLength(position) - from, readBuffer, readOffset, readSize);
+    }
+
+    /**
+     * ioctl(long command, int value) - wird nicht wiedergegeben
+     */
+    public void ioctl(long command, int value) throws IOException
+    {
+        throw new IOException("ioctl() wird bei der Wiedergabe nicht unterstuetzt!");
+    }
+
+    /**
+     * ioctl(long command, ByteBuffer data, IntBuffer offsets) - wird nicht wiedergegeben
+     */
+    public void ioctl(long command, ByteBuffer data, IntBuffer offsets) throws IOException
+    {
+        throw new IOException("ioctl() wird bei der Wiedergabe nicht unterstuetzt!");
+    }
+
+    /**
+     * next(byte operation, int reg) - naechster Eintrag, prueft Operation und Register,
+     * wartet ggf. bis zum aufgezeichneten Zeitpunkt
+     * @param operation erwartete Operation
+     * @param reg erwartetes Register
+     * @return Position des Eintrages
+     * @throws IOException Trace-Ende, Abweichung oder aufgezeichneter Fehler
+     */
+    private int next(byte operation, int reg) throws IOException
+    {
+        if (this.cursor >= this.reader.getEntryCount(this.address))
+        {
+            throw new IOException("ReplayI2CDevice 0x" + Integer.toHexString(this.address) + ": Trace-Ende erreicht!");
+        }
+        final int position = this.reader.getPosition(this.address, this.cursor++);
+        final byte recorded = this.reader.getOperation(position);
+        final int recordedReg = this.reader.getRegister(position);
+        if (((recorded & ~I2CTraceWriter.ERROR) != operation) || (recordedReg != (reg & 0xffff)))
+        {
+            final String msg = new StringBuilder().append("ReplayI2CDevice 0x")
+                                                  .append(Integer.toHexString(this.address))
+                                                  .append(": Eintrag ")
+                                                  .append(this.cursor - 1)
+                                                  .append(" weicht ab, aufgezeichnet ")
+                                                  .append(recorded & ~I2CTraceWriter.ERROR)
+                                                  .append("/")
+                                                  .append(recordedReg)
+                                                  .append(", aufgerufen ")
+                                                  .append(operation)
+                                                  .append("/")
+                                                  .append(reg)
+                                                  .toString();
+            throw new IOException(msg);
+        }
+        if (this.timing == Timing.ORIGINAL)
+        {
+            final long due = this.reader.getReplayStartNanos() + this.reader.getTimestamp(position);
+            long remaining;
+            while ((remaining = due - System.nanoTime()) > 0L)
+            {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+        if ((recorded & I2CTraceWriter.ERROR) != 0)
+        {
+            throw new IOException("ReplayI2CDevice 0x" + Integer.toHexString(this.address) + ": aufgezeichneter Fehler");
+        }
+        return position;
+    }
+
+    /**
+     * compare(...) - vergleicht geschriebene mit aufgezeichneten Daten (recordedLength
+     * Byte ab from), abweichende Laenge (laenger bzw. kuerzer als aufgezeichnet) zaehlt 
+     * als Abweichung
+     */
+    private void compare(int position, int from, int recordedLength, byte[] data, int offset, int length)
+    {
+        if (recordedLength != length)
+        {
+            this.mismatchCount++;
+            return;
+        }
+        final byte[] recorded = new byte[length];
+        this.reader.getPayload(position, from, recorded, 0, length);
+        for (int index = 0; index < length; index++)
+        {
+            if (recorded[index] != data[offset + index])
+            {
+                this.mismatchCount++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * copy(...) - aufgezeichnete Lesedaten in den Puffer des Aufrufers
+     * @return Anzahl der gelieferten Bytes
+     */
+    private int copy(int position, int from, int recorded, byte[] buffer, int offset, int size)
+    {
+        final int count = Math.min(recorded, size);
+        this.reader.getPayload(position, from, buffer, offset, count);
+        return count;
+    }
+}
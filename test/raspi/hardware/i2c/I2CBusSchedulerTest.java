@@ -0,0 +1,190 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import raspi.hardware.i2c.I2CBusScheduler.Priority;
+
+/**
+ * Test des I2CBusScheduler (ohne Hardware).
+ *
+ * @author Detlef Tribius
+ */
+class I2CBusSchedulerTest
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(I2CBusSchedulerTest.class);
+
+    /**
+     * TEST_BUS = 99 - Bus-Nummer nur fuer den Test...
+     */
+    public final static int TEST_BUS = 99;
+
+    /**
+     * scheduler - Referenz auf den Scheduler zum TEST_BUS
+     */
+    private I2CBusScheduler scheduler = null;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        logger.info("setUp()...");
+        this.scheduler = I2CBusScheduler.getInstance(TEST_BUS);
+        this.scheduler.resetStatistics();
+    }
+
+    /**
+     * testReentrant() - geschachtelte Transaktionen im selben Thread
+     */
+    @Test
+    void testReentrant()
+    {
+        logger.info("testReentrant()...");
+        try
+        {
+            final Integer result = this.scheduler.execute(Priority.ACTUATOR, () ->
+            {
+                return this.scheduler.execute(Priority.TELEMETRY, () -> Integer.valueOf(42));
+            });
+            assertEquals(42, result.intValue());
+            assertEquals(1L, this.scheduler.getStatistics(Priority.ACTUATOR).getCount());
+            assertEquals(0L, this.scheduler.getStatistics(Priority.TELEMETRY).getCount());
+        }
+        catch (IOException exception)
+        {
+            fail("IOException in testReentrant()", exception);
+        }
+    }
+
+    /**
+     * testPriority() - bei belegtem Bus erhaelt eine wartende ACTUATOR-Transaktion
+     * den Bus vor einer (frueher) wartenden TELEMETRY-Transaktion.
+     */
+    @Test
+    void testPriority() throws Exception
+    {
+        logger.info("testPriority()...");
+        final List<Priority> order = Collections.synchronizedList(new ArrayList<Priority>());
+        final CountDownLatch started = new CountDownLatch(1);
+
+        // Bus belegen, dann zuerst TELEMETRY, danach ACTUATOR warten lassen...
+        this.scheduler.acquire(Priority.TELEMETRY);
+        final Thread telemetry = new Thread(() -> run(Priority.TELEMETRY, order, started));
+        telemetry.start();
+        started.await();
+        waitForWaiting(telemetry);
+
+        final Thread actuator = new Thread(() -> run(Priority.ACTUATOR, order, null));
+        actuator.start();
+        waitForWaiting(actuator);
+
+        this.scheduler.release();
+        telemetry.join(1000);
+        actuator.join(1000);
+        assertEquals(2, order.size());
+        assertEquals(Priority.ACTUATOR, order.get(0));
+        assertEquals(Priority.TELEMETRY, order.get(1));
+        assertTrue(this.scheduler.getStatistics(Priority.TELEMETRY).getMaxWaitNanos() > 0L);
+    }
+
+    /**
+     * testSubmit() - asynchrone Transaktionen ueber den Bus-Thread
+     */
+    @Test
+    void testSubmit() throws Exception
+    {
+        logger.info("testSubmit()...");
+        final CompletableFuture<String> success = this.scheduler.submit(Priority.TELEMETRY, () -> "OK");
+        final CompletableFuture<String> failure = this.scheduler.submit(Priority.ACTUATOR, () ->
+        {
+            throw new IOException("Testfehler");
+        });
+        assertEquals("OK", success.get(1, TimeUnit.SECONDS));
+        final ExecutionException exception = assertThrows(ExecutionException.class, 
+                                                           () -> failure.get(1, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof IOException);
+    }
+
+    /**
+     * testSubmitWhileOwner() - submit() bei belegtem Bus wird im aufrufenden Thread
+     * ausgefuehrt (kein Deadlock mit dem Bus-Thread)
+     */
+    @Test
+    void testSubmitWhileOwner() throws Exception
+    {
+        logger.info("testSubmitWhileOwner()...");
+        this.scheduler.acquire(Priority.ACTUATOR);
+        try
+        {
+            final Thread caller = Thread.currentThread();
+            final CompletableFuture<Thread> future = this.scheduler.submit(Priority.TELEMETRY, () -> Thread.currentThread());
+            assertTrue(future.isDone());
+            assertSame(caller, future.get(1, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            this.scheduler.release();
+        }
+        assertFalse(this.scheduler.isOwner());
+    }
+
+    /**
+     * run() - Transaktion in einem eigenen Thread, protokolliert die Reihenfolge
+     * @param priority
+     * @param order
+     * @param started
+     */
+    private void run(Priority priority, List<Priority> order, CountDownLatch started)
+    {
+        if (started != null)
+        {
+            started.countDown();
+        }
+        try
+        {
+            this.scheduler.execute(priority, () ->
+            {
+                order.add(priority);
+                return null;
+            });
+        }
+        catch (IOException exception)
+        {
+            logger.error("IOException in run()", exception);
+        }
+    }
+
+    /**
+     * waitForWaiting() - wartet, bis der Thread im Scheduler blockiert ist
+     * @param thread
+     * @throws InterruptedException
+     */
+    private static void waitForWaiting(Thread thread) throws InterruptedException
+    {
+        while (thread.getState() != Thread.State.WAITING)
+        {
+            Thread.sleep(1);
+        }
+    }
+}
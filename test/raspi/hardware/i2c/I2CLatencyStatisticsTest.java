@@ -0,0 +1,117 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import raspi.hardware.i2c.I2CBusScheduler.Priority;
+import raspi.hardware.i2c.sim.DRV8830Simulator;
+
+/**
+ * Test der Laufzeitstatistik I2CLatencyStatistics (ohne Hardware).
+ *
+ * @author Detlef Tribius
+ */
+class I2CLatencyStatisticsTest
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(I2CLatencyStatisticsTest.class);
+
+    /**
+     * TEST_BUS = 98 - Bus-Nummer nur fuer den Test...
+     */
+    public final static int TEST_BUS = 98;
+
+    /**
+     * statistics - Laufzeitstatistik zum TEST_BUS
+     */
+    private I2CLatencyStatistics statistics = null;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        logger.info("setUp()...");
+        this.statistics = I2CBusScheduler.getInstance(TEST_BUS).getLatencyStatistics();
+        this.statistics.reset();
+    }
+
+    /**
+     * testRecord() - Anzahl, Bytes und Fehler je Register
+     */
+    @Test
+    void testRecord()
+    {
+        logger.info("testRecord()...");
+        final DRV8830Simulator simulator = new DRV8830Simulator();
+        final I2C i2c = new I2C(simulator, I2CBusScheduler.getInstance(TEST_BUS), Priority.ACTUATOR);
+        try
+        {
+            for (int count = 0; count < 10; count++)
+            {
+                i2c.write(DRV8830Simulator.CONTROL, (byte)count);
+            }
+            i2c.read(DRV8830Simulator.FAULT);
+        }
+        catch (IOException exception)
+        {
+            fail("IOException in testRecord()", exception);
+        }
+        assertThrows(IOException.class, () -> i2c.read(0x05));
+
+        final I2CLatencyStatistics.Snapshot control = i2c.getLatencyStatistics(DRV8830Simulator.CONTROL);
+        assertEquals(simulator.getAddress(), control.getAddress());
+        assertEquals(10L, control.getCount());
+        assertEquals(10L, control.getBytes());
+        assertEquals(0L, control.getErrors());
+        assertTrue(control.getPercentileNanos(50.0) <= control.getPercentileNanos(99.0));
+        assertTrue(control.getPercentileNanos(99.0) <= control.getMaxNanos());
+        assertTrue(control.getTransactionsPerSecond() > 0.0);
+
+        final I2CLatencyStatistics.Snapshot error = i2c.getLatencyStatistics(0x05);
+        assertEquals(1L, error.getCount());
+        assertEquals(1L, error.getErrors());
+        assertEquals(0L, error.getBytes());
+
+        assertNull(i2c.getLatencyStatistics(0x10));
+        assertEquals(3, this.statistics.getSnapshots().size());
+    }
+
+    /**
+     * testPercentile() - Perzentile aus den logarithmischen Klassen
+     */
+    @Test
+    void testPercentile()
+    {
+        logger.info("testPercentile()...");
+        for (int count = 0; count < 99; count++)
+        {
+            this.statistics.record(0x40, 0x06, 1000L, 4, false);
+        }
+        this.statistics.record(0x40, 0x06, 100000L, 4, false);
+        final I2CLatencyStatistics.Snapshot snapshot = this.statistics.getSnapshot(0x40, 0x06);
+        assertEquals(100L, snapshot.getCount());
+        assertEquals(400L, snapshot.getBytes());
+        // 1000 ns liegt in der Klasse 512 ... 1023 ns...
+        assertEquals(1023L, snapshot.getPercentileNanos(50.0));
+        assertEquals(1023L, snapshot.getPercentileNanos(99.0));
+        assertEquals(100000L, snapshot.getPercentileNanos(100.0));
+
+        this.statistics.setEnabled(false);
+        this.statistics.record(0x40, 0x06, 1000L, 4, false);
+        this.statistics.setEnabled(true);
+        assertEquals(100L, this.statistics.getSnapshot(0x40, 0x06).getCount());
+    }
+}
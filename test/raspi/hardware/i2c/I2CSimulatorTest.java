@@ -0,0 +1,462 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import raspi.hardware.i2c.sim.ArduinoI2CSimulator;
+import raspi.hardware.i2c.sim.DRV8830Simulator;
+import raspi.hardware.i2c.sim.MCP9808Simulator;
+import raspi.hardware.i2c.sim.PCA9685Simulator;
+
+/**
+ * Test der Treiber MCP9808, DRV8830, ArduinoI2C und MotorDriverHAT gegen die
+ * Simulationen aus raspi.hardware.i2c.sim (ohne Hardware).
+ *
+ * @author Detlef Tribius
+ */
+class I2CSimulatorTest
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(I2CSimulatorTest.class);
+
+    /**
+     * testMCP9808() - Temperatur, Wandlungszeit und Flag-Bits
+     */
+    @Test
+    void testMCP9808() throws IOException
+    {
+        logger.info("testMCP9808()...");
+        final AtomicLong clock = new AtomicLong(0L);
+        final MCP9808Simulator simulator = new MCP9808Simulator(0x18, clock::get);
+        final MCP9808 mcp9808 = new MCP9808(simulator);
+
+        mcp9808.setResultion(MCP9808.RES05);
+        simulator.setTemperature(25.3);
+        // Wandlung noch nicht abgeschlossen...
+        assertEquals(20.0, mcp9808.getAmbientTemp(), 0.0);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(25.0, mcp9808.getAmbientTemp(), 0.0);
+
+        mcp9808.setResultion(MCP9808.RES00625);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        assertEquals(25.25, mcp9808.getAmbientTemp(), 0.0);
+
+        mcp9808.setUpperTemp(30.0);
+        mcp9808.setCritTemp(40.0);
+        mcp9808.setLowerTemp(10.0);
+        assertEquals(30.0, mcp9808.getUpperTemp(), 0.0);
+        assertFalse(mcp9808.isAmbientGreaterUpperBoundary());
+        assertFalse(mcp9808.isAmbientLessLowerBoundary());
+
+        simulator.setTemperature(41.0);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        assertTrue(mcp9808.isAmbientGreaterUpperBoundary());
+        assertTrue(mcp9808.isAmbientGreaterEqualCrit());
+
+        // Im Shutdown-Modus keine Wandlung...
+        mcp9808.setShutdownMode();
+        simulator.setTemperature(5.0);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(41.0, mcp9808.getAmbientTemp(), 0.0);
+        mcp9808.setActiveMode();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        assertTrue(mcp9808.isAmbientLessLowerBoundary());
+    }
+
+    /**
+     * testMCP9808Fields() - Bitfelder in CONFIG/RESOL, ein Schreibzugriff je Aenderung
+     */
+    @Test
+    void testMCP9808Fields() throws IOException
+    {
+        logger.info("testMCP9808Fields()...");
+        final AtomicLong clock = new AtomicLong(0L);
+        final MCP9808Simulator simulator = new MCP9808Simulator(0x18, clock::get);
+        final MCP9808 mcp9808 = new MCP9808(simulator);
+
+        mcp9808.setHysteresis(MCP9808.HYST30);
+        assertEquals(0x0400, simulator.getWord(MCP9808Simulator.CONFIG));
+        assertEquals(MCP9808.HYST30, mcp9808.getHysteresis());
+
+        // CONFIG ist jetzt im Schattenregister => vier Felder, ein Schreibzugriff...
+        simulator.resetCounters();
+        mcp9808.configComparatorMode(true, false);
+        assertEquals(1, simulator.getTransactionCount());
+        assertEquals(0x040a, simulator.getWord(MCP9808Simulator.CONFIG));
+
+        mcp9808.setResultion(MCP9808.RES0125);
+        assertEquals(2, simulator.peek(MCP9808Simulator.RESOL));
+        assertFalse(mcp9808.isShutdownMode());
+        mcp9808.setShutdownMode();
+        assertTrue(mcp9808.isShutdownMode());
+        assertEquals(0x050a, simulator.getWord(MCP9808Simulator.CONFIG));
+
+        // Alert-Status (Komparator, activ-high) ueber TUPPER...
+        mcp9808.setActiveMode();
+        mcp9808.setUpperTemp(30.0);
+        mcp9808.setCritTemp(40.0);
+        assertFalse(mcp9808.isAlertOutputStatus());
+        simulator.setTemperature(35.0);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        mcp9808.getAmbientTemp();
+        assertTrue(mcp9808.isAlertOutputStatus());
+
+        final RegisterField field = new RegisterField(0x01, 2, 9, 2);
+        assertEquals(0x0600, field.getMask());
+        assertEquals(3, field.decode(0x0601));
+        assertEquals(0x0201, field.encode(0x0601, 1));
+        assertThrows(IllegalArgumentException.class, () -> field.encode(0, 4));
+    }
+
+    /**
+     * testMCP9808Locks() - Grenzwerte werden vom Baustein gelesen (Bit 12:2, Lock-Bits),
+     * CONFIG mit Lock-Bits nicht mehr aus dem Schattenregister
+     */
+    @Test
+    void testMCP9808Locks() throws IOException
+    {
+        logger.info("testMCP9808Locks()...");
+        final AtomicLong clock = new AtomicLong(0L);
+        final MCP9808Simulator simulator = new MCP9808Simulator(0x18, clock::get);
+        final MCP9808 mcp9808 = new MCP9808(simulator);
+
+        // Der Baustein haelt nur Bit 12:2 (0,25 Grad)...
+        mcp9808.setUpperTemp(25.1);
+        assertEquals(25.0, mcp9808.getUpperTemp(), 0.0);
+
+        // WINDOW_LOCK: TUPPER bleibt unveraendert, auch reset() loescht das Lock-Bit nicht...
+        mcp9808.update().set(MCP9808.WINDOW_LOCK, true).apply();
+        mcp9808.setUpperTemp(40.0);
+        assertEquals(25.0, mcp9808.getUpperTemp(), 0.0);
+        mcp9808.reset();
+        assertEquals(1, mcp9808.getField(MCP9808.WINDOW_LOCK));
+        // CONFIG mit Lock-Bit: Read-Modify-Write vom Baustein...
+        mcp9808.setHysteresis(MCP9808.HYST15);
+        assertEquals(1, mcp9808.getField(MCP9808.WINDOW_LOCK));
+    }
+
+    /**
+     * testReadPlan() - Zusammenfassung zu Bloecken, MCP9808 ohne Auto-Increment
+     */
+    @Test
+    void testReadPlan() throws IOException
+    {
+        logger.info("testReadPlan()...");
+        final ReadPlan plan = new ReadPlan(1, true, ReadPlan.DEFAULT_MAX_GAP, 0x10, 0x02, 0x03, 0x05, 0x11, 0x30);
+        assertEquals(3, plan.getBlockCount());
+        assertEquals(0x02, plan.getBlockStart(0));
+        assertEquals(4, plan.getBlockSize(0));
+        assertEquals(0x10, plan.getBlockStart(1));
+        assertEquals(2, plan.getBlockSize(1));
+        assertEquals(4, new ReadPlan(2, false, 0, 0x02, 0x03, 0x04, 0x05).getBlockCount());
+
+        final AtomicLong clock = new AtomicLong(0L);
+        final MCP9808Simulator simulator = new MCP9808Simulator(0x18, clock::get);
+        final MCP9808 mcp9808 = new MCP9808(simulator);
+        mcp9808.setUpperTemp(30.0);
+        mcp9808.setLowerTemp(10.0);
+        mcp9808.setCritTemp(40.0);
+        simulator.setTemperature(21.5);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        simulator.resetCounters();
+        final RegisterSnapshot snapshot = mcp9808.readTemperatures();
+        // Grenzwerte vom Baustein (volatile), ohne Auto-Increment je Register ein Zugriff...
+        assertEquals(4, snapshot.getTransactionCount());
+        assertEquals(4L, simulator.getTransactionCount());
+        assertEquals(30.0, mcp9808.convertTemp(snapshot.getArray(MCP9808.TUPPER, 2)), 0.0);
+        assertEquals(10.0, mcp9808.convertTemp(snapshot.getArray(MCP9808.TLOWER, 2)), 0.0);
+        assertEquals(40.0, mcp9808.convertTemp(snapshot.getArray(MCP9808.TCRIT, 2)), 0.0);
+        assertEquals(21.5, mcp9808.convertTemp(snapshot.getArray(MCP9808.TEMPER, 2)), 0.0);
+        assertThrows(IllegalArgumentException.class, () -> snapshot.get(MCP9808.CONFIG));
+    }
+
+    /**
+     * testDRV8830() - Ausgabe und gespeicherte Fehler
+     */
+    @Test
+    void testDRV8830() throws IOException
+    {
+        logger.info("testDRV8830()...");
+        final DRV8830Simulator simulator = new DRV8830Simulator();
+        final DRV8830 drv8830 = new DRV8830(simulator);
+
+        drv8830.drive(DRV8830.Direction.MAX_VALUE);
+        assertEquals(DRV8830.Direction.MAX_VALUE, simulator.getVoltageSetting());
+        assertEquals(DRV8830.Direction.FORWARD.getDirection(), simulator.getDirection());
+        drv8830.brake();
+        assertEquals(DRV8830.Direction.BRAKE.getDirection(), simulator.getDirection());
+
+        assertEquals(0, drv8830.getFault());
+        simulator.injectFault(DRV8830Simulator.OCP);
+        assertEquals(DRV8830Simulator.OCP | DRV8830Simulator.FAULT_FLAG, drv8830.getFault());
+        // getFault() hat den Fehler geloescht...
+        assertEquals(0, drv8830.getFault());
+    }
+
+    /**
+     * testMotorDriverHAT() - Drehrichtung ueber FULL_ON/FULL_OFF der InChannel,
+     * unveraenderte Drehrichtung ohne Busverkehr
+     */
+    @Test
+    void testMotorDriverHAT() throws IOException
+    {
+        logger.info("testMotorDriverHAT()...");
+        final PCA9685Simulator simulator = new PCA9685Simulator();
+        final MotorDriverHAT hat = new MotorDriverHAT(simulator, 100, false);
+        final int ain1 = MotorDriverHAT.PCA9685.IN1A_CHANNEL;
+        final int ain2 = MotorDriverHAT.PCA9685.IN2A_CHANNEL;
+        assertFalse(simulator.isSleep());
+        assertEquals(100.0, simulator.getFrequency(), 2.0);
+
+        hat.setPwmMA(0.5f);
+        assertEquals(2047, simulator.getOff(MotorDriverHAT.PCA9685.PWMA_CHANNEL));
+        assertEquals(MotorDriverHAT.PCA9685.FULL, simulator.getOff(ain1));
+        assertEquals(0, simulator.getOff(ain2));
+        assertEquals(MotorDriverHAT.PCA9685.FULL, simulator.getOn(ain2));
+
+        // Nur der Sollwert aendert sich: 2047 => 1023, nur LEDn_OFF_H des PWM-Channels...
+        simulator.resetCounters();
+        hat.setPwmMA(0.25f);
+        assertEquals(1L, simulator.getBytesWritten());
+        assertEquals(1023, simulator.getOff(MotorDriverHAT.PCA9685.PWMA_CHANNEL));
+
+        // Drehrichtungswechsel: je InChannel ein Byte (LEDn_OFF_H), PWM-Channel unveraendert...
+        simulator.resetCounters();
+        hat.setPwmMA(-0.25f);
+        assertEquals(2L, simulator.getBytesWritten());
+        assertEquals(0, simulator.getOff(ain1));
+        assertEquals(MotorDriverHAT.PCA9685.FULL, simulator.getOff(ain2));
+    }
+
+    /**
+     * testMotorDriverHATResync() - nur Aenderungen werden geschrieben, resync() liest
+     * den Zustand nach einem Reset von aussen in einem Block
+     */
+    @Test
+    void testMotorDriverHATResync() throws IOException
+    {
+        logger.info("testMotorDriverHATResync()...");
+        final PCA9685Simulator simulator = new PCA9685Simulator();
+        final MotorDriverHAT hat = new MotorDriverHAT(simulator, 100, true);
+        final int pwma = MotorDriverHAT.PCA9685.PWMA_CHANNEL;
+        final int pwmb = MotorDriverHAT.PCA9685.PMWB_CHANNEL;
+
+        hat.setPwm(0.5f, -0.5f);
+        // Unveraenderte Sollwerte: kein Busverkehr...
+        simulator.resetCounters();
+        hat.setPwm(0.5f, -0.5f);
+        hat.setPwmMA(0.5f);
+        assertEquals(0L, simulator.getTransactionCount());
+        // Nur Motor B (Sollwert, gleiche Drehrichtung): nur der PWM-Channel 5...
+        simulator.resetCounters();
+        hat.setPwm(0.5f, -0.25f);
+        assertEquals(1L, simulator.getTransactionCount());
+        assertEquals(4L, simulator.getBytesWritten());
+        assertEquals(1023, simulator.getOff(pwmb));
+
+        // Reset von aussen (z.B. Stromausfall des HAT): Power-On-Zustand (FULL_OFF)...
+        // MODE1 = 0x11: SLEEP gesetzt, Auto-Increment aus...
+        simulator.powerOn();
+        assertTrue(simulator.isSleep());
+        assertFalse(simulator.isAutoIncrement());
+        simulator.resetCounters();
+        hat.resync();
+        // MODE1 lesen, Aufwecken mit AI, RESTART, LED-Register als ein Block...
+        assertEquals(4L, simulator.getTransactionCount());
+        assertFalse(simulator.isSleep());
+        assertTrue(simulator.isAutoIncrement());
+        // Der gemerkte Zustand stimmt wieder, die Motoren laufen wieder an...
+        hat.setPwm(0.5f, -0.25f);
+        assertEquals(2047, simulator.getOff(pwma));
+        assertEquals(1023, simulator.getOff(pwmb));
+        assertEquals(0, simulator.getOff(MotorDriverHAT.PCA9685.IN1B_CHANNEL));
+        assertEquals(MotorDriverHAT.PCA9685.FULL, simulator.getOff(MotorDriverHAT.PCA9685.IN2B_CHANNEL));
+    }
+
+    /**
+     * testMotorDriverHATRamp() - begrenzte Beschleunigung, beide Motoren in einer
+     * Transaktion, Ausgabe nur bei geaendertem 12-Bit-Wert
+     */
+    @Test
+    void testMotorDriverHATRamp() throws IOException
+    {
+        logger.info("testMotorDriverHATRamp()...");
+        final PCA9685Simulator simulator = new PCA9685Simulator();
+        final MotorDriverHAT hat = new MotorDriverHAT(simulator, 100, true);
+        final int pwma = MotorDriverHAT.PCA9685.PWMA_CHANNEL;
+        final int pwmb = MotorDriverHAT.PCA9685.PMWB_CHANNEL;
+        // Motor A: 0.1 je Takt (10 ms), Motor B: 0.02 je Takt...
+        hat.setAcceleration(MotorDriverHAT.Motor.MOTOR_A, 10.0f);
+        hat.rampTo(1.0f, -0.5f);
+        int steps = 0;
+        while (hat.isRamping() && (steps < 100))
+        {
+            simulator.resetCounters();
+            assertEquals(1, hat.stepRamp());
+            assertEquals(1L, simulator.getTransactionCount());
+            if (steps == 4)
+            {
+                assertEquals(2047, simulator.getOff(pwma), 1);
+                assertEquals(409, simulator.getOff(pwmb), 1);
+            }
+            steps++;
+        }
+        assertEquals(25, steps);
+        assertEquals(MotorDriverHAT.PCA9685.PWM_MAX, simulator.getOff(pwma));
+        assertEquals(2047, simulator.getOff(pwmb));
+        assertEquals(0, simulator.getOff(MotorDriverHAT.PCA9685.IN1B_CHANNEL));
+        // Sollwert erreicht => kein Busverkehr...
+        simulator.resetCounters();
+        assertEquals(0, hat.stepRamp());
+        assertEquals(0L, simulator.getTransactionCount());
+
+        // Kleine Aenderung: nicht jeder Takt aendert den 12-Bit-Wert...
+        hat.setAcceleration(MotorDriverHAT.Motor.MOTOR_B, 0.01f);
+        hat.rampTo(MotorDriverHAT.Motor.MOTOR_B, -0.499f);
+        int writes = 0;
+        steps = 0;
+        while (hat.isRamping() && (steps < 100))
+        {
+            writes += hat.stepRamp();
+            steps++;
+        }
+        assertEquals(2043, simulator.getOff(pwmb), 1);
+        assertTrue(writes < steps, "writes=" + writes + ", steps=" + steps);
+    }
+
+    /**
+     * testMotorDriverHATSetDuringRamp() - ein Takt des Rampengenerators waehrend der
+     * direkten Ausgabe (setPwmMA()) darf den direkt ausgegebenen Sollwert nicht 
+     * ueberschreiben
+     */
+    @Test
+    void testMotorDriverHATSetDuringRamp() throws Exception
+    {
+        logger.info("testMotorDriverHATSetDuringRamp()...");
+        final AtomicReference<MotorDriverHAT> reference = new AtomicReference<>();
+        final AtomicReference<Thread> tick = new AtomicReference<>();
+        final PCA9685Simulator simulator = new PCA9685Simulator()
+        {
+            @Override
+            protected void writeRegister(int reg, int value) throws IOException
+            {
+                super.writeRegister(reg, value);
+                final MotorDriverHAT hat = reference.getAndSet(null);
+                if (hat == null)
+                {
+                    return;
+                }
+                // Takt aus dem Thread des Rampengenerators mitten in der Ausgabe...
+                final Thread thread = new Thread(() ->
+                {
+                    try
+                    {
+                        hat.stepRamp();
+                    }
+                    catch (IOException exception)
+                    {
+                        logger.error(exception.getMessage(), exception);
+                    }
+                }, "tick");
+                tick.set(thread);
+                thread.start();
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1L);
+                while ((thread.getState() == Thread.State.NEW || thread.getState() == Thread.State.RUNNABLE)
+                       && (System.nanoTime() < deadline))
+                {
+                    Thread.yield();
+                }
+            }
+        };
+        final MotorDriverHAT hat = new MotorDriverHAT(simulator, 100, false);
+        final int pwma = MotorDriverHAT.PCA9685.PWMA_CHANNEL;
+        hat.setAcceleration(MotorDriverHAT.Motor.MOTOR_A, 10.0f);
+        hat.rampTo(MotorDriverHAT.Motor.MOTOR_A, 1.0f);
+        for (int step = 0; step < 3; step++)
+        {
+            hat.stepRamp();
+        }
+        assertTrue(simulator.getOff(pwma) > 0);
+        // Direkt ausgegeben: Motor A steht...
+        reference.set(hat);
+        hat.setPwmMA(0.0f);
+        tick.get().join(TimeUnit.SECONDS.toMillis(1L));
+        assertFalse(tick.get().isAlive());
+        assertEquals(0, simulator.getOff(pwma));
+        assertFalse(hat.isRamping());
+        assertEquals(0, hat.stepRamp());
+        assertEquals(0, simulator.getOff(pwma));
+    }
+
+    /**
+     * testRegisterCache() - Schattenregister: Lesen ohne Busverkehr, ein Blockzugriff
+     * mit Auto-Increment aktualisiert alle ueberdeckten Register
+     */
+    @Test
+    void testRegisterCache() throws IOException
+    {
+        logger.info("testRegisterCache()...");
+        final PCA9685Simulator simulator = new PCA9685Simulator();
+        final I2C i2c = new I2C(simulator, I2CBusScheduler.Priority.TELEMETRY);
+        i2c.setCacheable(PCA9685Simulator.MODE1, true);
+        i2c.setCacheable(PCA9685Simulator.MODE2, true);
+        i2c.write(PCA9685Simulator.MODE1, (byte)PCA9685Simulator.AI);
+        assertEquals(0x04, i2c.read(PCA9685Simulator.MODE2));
+
+        // Aus dem Schattenregister, ohne Busverkehr...
+        simulator.resetCounters();
+        assertEquals(PCA9685Simulator.AI, i2c.read(PCA9685Simulator.MODE1));
+        assertEquals(0x04, i2c.read(PCA9685Simulator.MODE2));
+        assertEquals(0L, simulator.getTransactionCount());
+
+        // Block ab MODE1 (Auto-Increment): MODE2 darf nicht veraltet bleiben...
+        i2c.writeArray(PCA9685Simulator.MODE1, new byte[] {(byte)PCA9685Simulator.AI, (byte)0x10}, 2);
+        assertEquals(0x10, simulator.peek(PCA9685Simulator.MODE2));
+        simulator.resetCounters();
+        assertEquals(0x10, i2c.read(PCA9685Simulator.MODE2));
+        final byte[] block = i2c.readArray(PCA9685Simulator.MODE1, new byte[2], 2);
+        assertEquals(PCA9685Simulator.AI, block[0] & 0xff);
+        assertEquals(0x10, block[1] & 0xff);
+        assertEquals(0L, simulator.getTransactionCount());
+
+        // Einzelzugriff auf MODE2 nach dem Block...
+        i2c.write(PCA9685Simulator.MODE2, (byte)0x04);
+        assertEquals(0x04, i2c.readArray(PCA9685Simulator.MODE1, new byte[2], 2)[1] & 0xff);
+    }
+
+    /**
+     * testArduinoI2C() - 5-Byte-Anfrage, 16-Byte-Antwort
+     */
+    @Test
+    void testArduinoI2C() throws IOException
+    {
+        logger.info("testArduinoI2C()...");
+        final ArduinoI2CSimulator simulator = new ArduinoI2CSimulator();
+        final ArduinoI2C arduino = new ArduinoI2C(simulator);
+
+        simulator.setNumbers(1234, 567);
+        arduino.write(0xfedcba98L, ArduinoI2C.Status.INITIAL);
+        assertEquals('I', simulator.getRequestStatus());
+        final ArduinoI2C.DataRequest data = arduino.read();
+        assertEquals(0xfedcba98L, data.getToken());
+        assertEquals(ArduinoI2C.Status.SUCCESS, data.getStatus());
+        assertEquals(1234, data.getNumberMA());
+        assertEquals(567, data.getNumberMB());
+
+        simulator.setValue(-42);
+        assertEquals(-42, arduino.read().getValue());
+    }
+}
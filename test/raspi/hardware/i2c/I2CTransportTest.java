@@ -0,0 +1,108 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import raspi.hardware.i2c.I2CBusScheduler.Priority;
+import raspi.hardware.i2c.sim.DRV8830Simulator;
+
+/**
+ * Test der Transportschicht I2CTransport (ohne Hardware).
+ *
+ * @author Detlef Tribius
+ */
+class I2CTransportTest
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(I2CTransportTest.class);
+
+    /**
+     * testInMemory() - Register- und Blockzugriffe ueber I2C auf den InMemoryTransport
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    void testInMemory()
+    {
+        logger.info("testInMemory()...");
+        final InMemoryTransport transport = new InMemoryTransport(0x20);
+        final I2C i2c = new I2C(transport, Priority.TELEMETRY);
+        assertNull(i2c.dev);
+        assertSame(transport, i2c.getTransport());
+        try
+        {
+            i2c.write(0x10, (byte)0x5a);
+            assertEquals(0x5a, transport.peek(0x10));
+            assertEquals(0x5a, i2c.read(0x10));
+            i2c.writeArray(0x20, new byte[] {1, 2, 3}, 3);
+            assertEquals(3, transport.peek(0x22));
+            transport.poke(0x21, 0x7f);
+            final byte[] data = i2c.readArray(0x20, new byte[3], 3);
+            assertArrayEquals(new byte[] {1, 0x7f, 3}, data);
+        }
+        catch (IOException exception)
+        {
+            fail("IOException in testInMemory()", exception);
+        }
+    }
+
+    /**
+     * testDriver() - Treiber mit Pi4jTransport auf eine Simulation
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    void testDriver()
+    {
+        logger.info("testDriver()...");
+        final DRV8830Simulator simulator = new DRV8830Simulator();
+        final DRV8830 drv8830 = new DRV8830(I2CTransports.pi4j(simulator));
+        assertSame(simulator, drv8830.dev);
+        try
+        {
+            drv8830.write(DRV8830Simulator.CONTROL, (byte)0x29);
+            assertEquals(0x29, simulator.peek(DRV8830Simulator.CONTROL));
+        }
+        catch (IOException exception)
+        {
+            fail("IOException in testDriver()", exception);
+        }
+    }
+
+    /**
+     * testBusNumber() - ohne Vorgabe des Schedulers gilt der Bus des Transports
+     */
+    @Test
+    void testBusNumber()
+    {
+        logger.info("testBusNumber()...");
+        final I2CTransport bus0 = new InMemoryTransport(0x20)
+        {
+            @Override
+            public int getBusNumber()
+            {
+                return 0;
+            }
+        };
+        assertSame(I2CBusScheduler.getInstance(0), new I2C(bus0, Priority.TELEMETRY).getScheduler());
+        assertSame(I2CBusScheduler.getInstance(), new I2C(new InMemoryTransport(0x20), Priority.TELEMETRY).getScheduler());
+    }
+
+    /**
+     * testOpenLinux() - ohne src-ffm bzw. ohne Geraetedatei eine IOException
+     */
+    @Test
+    void testOpenLinux()
+    {
+        logger.info("testOpenLinux()...");
+        assertThrows(IOException.class, () -> I2CTransports.openLinux(99, 0x40));
+    }
+}
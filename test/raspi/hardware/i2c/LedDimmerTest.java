@@ -0,0 +1,112 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import raspi.hardware.i2c.sim.PCA9685Simulator;
+
+/**
+ * Test LedDimmer gegen den PCA9685Simulator (ohne Hardware), der Takt wird
+ * ueber step() vorgegeben.
+ *
+ * @author Detlef Tribius
+ */
+class LedDimmerTest
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(LedDimmerTest.class);
+
+    /**
+     * simulator - simulierter Baustein (eigene Adresse, vgl. PCA9685Test)
+     */
+    private final PCA9685Simulator simulator = new PCA9685Simulator(0x44);
+
+    /**
+     * pca9685
+     */
+    private PCA9685 pca9685 = null;
+
+    /**
+     * dimmer
+     */
+    private LedDimmer dimmer = null;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.pca9685 = PCA9685.getInstance(this.simulator);
+        this.pca9685.setAutoIncrement(true);
+        this.pca9685.initialize();
+        this.pca9685.setPWMFrequency(1000);
+        this.dimmer = new LedDimmer(this.pca9685, 20);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        this.dimmer.close();
+        PCA9685.remove(this.pca9685);
+    }
+
+    /**
+     * testGamma() - Tabelle monoton, Endpunkte exakt
+     */
+    @Test
+    void testGamma()
+    {
+        logger.info("testGamma()...");
+        assertEquals(0, LedDimmer.getGammaValue(0));
+        assertEquals(LedDimmer.MAX_BRIGHTNESS, LedDimmer.getGammaValue(LedDimmer.MAX_BRIGHTNESS));
+        assertEquals(LedDimmer.MAX_BRIGHTNESS, LedDimmer.getGammaValue(10000));
+        // Mitte deutlich dunkler als linear...
+        assertTrue(LedDimmer.getGammaValue(2048) < 1024);
+        for (int brightness = 1; brightness <= LedDimmer.MAX_BRIGHTNESS; brightness++)
+        {
+            assertTrue(LedDimmer.getGammaValue(brightness) >= LedDimmer.getGammaValue(brightness - 1));
+        }
+    }
+
+    /**
+     * testFadeAndBlink() - Effekte auf zwei Channel, eine Transaktion je Takt
+     */
+    @Test
+    void testFadeAndBlink() throws IOException
+    {
+        logger.info("testFadeAndBlink()...");
+        this.dimmer.fade(4, LedDimmer.MAX_BRIGHTNESS, 200);
+        this.dimmer.blink(9, 0, 2000, 40, 60);
+        for (int step = 0; step < 10; step++)
+        {
+            this.simulator.resetCounters();
+            assertEquals(1, this.dimmer.step());
+            assertEquals(1L, this.simulator.getTransactionCount());
+            assertEquals(LedDimmer.getGammaValue(this.dimmer.getBrightness(4)), this.simulator.getOff(4));
+            // an: 2 Takte, aus: 3 Takte...
+            final int expected = ((step % 5) < 2)? LedDimmer.getGammaValue(2000) : 0;
+            assertEquals(expected, this.simulator.getOff(9), "step " + step);
+        }
+        // Fade beendet...
+        this.dimmer.step();
+        assertFalse(this.dimmer.isActive(4));
+        assertEquals(LedDimmer.MAX_BRIGHTNESS, this.simulator.getOff(4));
+        // ohne Aenderung kein Buszugriff...
+        this.dimmer.stop(9);
+        this.simulator.resetCounters();
+        assertEquals(0, this.dimmer.step());
+        assertEquals(0L, this.simulator.getTransactionCount());
+        // nicht verwendete Channel bleiben unveraendert...
+        assertEquals(-1, this.dimmer.getBrightness(0));
+    }
+}
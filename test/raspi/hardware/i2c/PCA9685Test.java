@@ -0,0 +1,507 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import raspi.hardware.i2c.sim.PCA9685Simulator;
+
+/**
+ * Test PCA9685 gegen den PCA9685Simulator (ohne Hardware).
+ *
+ * @author Detlef Tribius
+ */
+class PCA9685Test
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(PCA9685Test.class);
+
+    /**
+     * simulator - simulierter Baustein, je Test neu (Registry: ein Baustein je 
+     * Bus und Adresse, vgl. tearDown())
+     */
+    private PCA9685Simulator simulator = null;
+
+    /**
+     * pca9685 - Referenz auf den Treiber
+     */
+    private PCA9685 pca9685 = null;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        logger.info("setUp()...");
+        this.simulator = new PCA9685Simulator();
+        this.pca9685 = PCA9685.getInstance(this.simulator);
+        this.pca9685.setAutoIncrement(false);
+        this.pca9685.initialize();
+        this.simulator.resetCounters();
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        PCA9685.remove(this.pca9685);
+    }
+
+    /**
+     * testInitialize() - nach initialize() ist der Oszillator aktiv, alle Channel 0
+     */
+    @Test
+    void testInitialize()
+    {
+        logger.info("testInitialize()...");
+        assertFalse(simulator.isSleep());
+        for (int channel = 0; channel < PCA9685.NUMBER_CHANNELS; channel++)
+        {
+            assertEquals(0, simulator.getOn(channel));
+            assertEquals(0, simulator.getOff(channel));
+        }
+    }
+
+    /**
+     * testWarmStart() - passend konfigurierter Baustein: nur MODE1 und PRE_SCALE lesen,
+     * kein Reset
+     */
+    @Test
+    void testWarmStart() throws IOException
+    {
+        logger.info("testWarmStart()...");
+        // Vorteiler fuer 50 Hz direkt im Simulator (wie von einem frueheren Prozess)...
+        final int mode1 = simulator.peek(PCA9685.MODE1_REGISTER);
+        simulator.write(PCA9685.MODE1_REGISTER, (byte)(mode1 | PCA9685.SLEEP));
+        simulator.write(PCA9685.PRE_SCALE_REGISTER, PCA9685.getPrescaleValue(50));
+        simulator.write(PCA9685.MODE1_REGISTER, (byte)mode1);
+        simulator.write(PCA9685.MODE1_REGISTER, (byte)(mode1 | PCA9685.RESTART));
+        simulator.write(PCA9685.LED0_ON_L_REGISTER + 2, (byte)100);
+        simulator.resetCounters();
+
+        assertTrue(pca9685.initialize(50));
+        assertEquals(2L, simulator.getTransactionCount());
+        assertEquals(50, pca9685.getFrequency());
+        assertEquals(100, simulator.getOff(0));
+
+        // Anderer Vorteiler => Kaltstart...
+        assertFalse(pca9685.initialize(100));
+        assertFalse(simulator.isSleep());
+        assertEquals(0, simulator.getOff(0));
+    }
+
+    /**
+     * testSetPWMFrequency() - Vorteiler im SLEEP-Modus, Servo-Channel mit gleicher
+     * Pulsbreite, Motor-Channel mit gleichem Tastverhaeltnis
+     */
+    @Test
+    void testSetPWMFrequency() throws IOException
+    {
+        logger.info("testSetPWMFrequency()...");
+        pca9685.setAutoIncrement(true);
+        pca9685.getServo(0).setPWM(0);
+        pca9685.getMotor(7).setPWM(2000);
+        final int servoOff = simulator.getOff(0);
+        final int oldPrescale = simulator.getPrescale();
+
+        pca9685.setPWMFrequency(50);
+        assertEquals(121, simulator.getPrescale());
+        assertEquals(50, pca9685.getFrequency());
+        assertFalse(simulator.isSleep());
+        assertEquals(0, simulator.peek(PCA9685.MODE1_REGISTER) & PCA9685.RESTART);
+        assertEquals((servoOff * (oldPrescale + 1) + 61) / 122, simulator.getOff(0));
+        assertEquals(2000, simulator.getOff(7));
+
+        // Unveraenderter Vorteiler => kein Busverkehr...
+        simulator.resetCounters();
+        pca9685.setPWMFrequency(50);
+        assertEquals(0L, simulator.getTransactionCount());
+
+        // Nicht benachbarte Servo-Channel: ein Block im SLEEP-Modus (flushBlock())...
+        pca9685.getServo(3).setPWM(0);
+        final int servo0Off = simulator.getOff(0);
+        final int servo3Off = simulator.getOff(3);
+        simulator.resetCounters();
+        pca9685.setPWMFrequency(60);
+        assertEquals(101, simulator.getPrescale());
+        assertEquals((servo0Off * 122 + 51) / 102, simulator.getOff(0));
+        assertEquals((servo3Off * 122 + 51) / 102, simulator.getOff(3));
+        // SLEEP, Block 0...3, PRE_SCALE, Aufwecken, RESTART und Lesen PRE_SCALE...
+        assertEquals(6L, simulator.getTransactionCount());
+
+        // Tabelle entspricht der Berechnung mit Gleitkomma...
+        for (int frequency = PCA9685.MIN_FREQUENCY; frequency <= PCA9685.MAX_FREQUENCY; frequency++)
+        {
+            final int expected = (int)Math.floor(PCA9685.INTERNAL_FREQUENCY / (4096.0 * frequency) - 0.5);
+            assertEquals(Math.max(3, Math.min(255, expected)), PCA9685.getPrescaleValue(frequency) & 0xff);
+        }
+    }
+
+    /**
+     * testServoCalibration() - Pulsbreite/Winkel ueber die Tabellen, Neuaufbau
+     * bei Frequenzwechsel, Kalibrierung aus Properties
+     */
+    @Test
+    void testServoCalibration() throws IOException
+    {
+        logger.info("testServoCalibration()...");
+        pca9685.setPWMFrequency(50);
+        final PCA9685.Servo servo = pca9685.getServo(8);
+        // 50 Hz => PRE_SCALE 121, ein Tick dauert 122/25 us...
+        servo.setMicros(1500);
+        assertEquals((1500 * 25 + 61) / 122, simulator.getOff(8));
+        servo.setAngle(90);
+        assertEquals((2500 * 25 + 61) / 122, simulator.getOff(8));
+        servo.setAngle(180);
+        assertEquals((2500 * 25 + 61) / 122, simulator.getOff(8));
+
+        final Properties properties = new Properties();
+        properties.setProperty("servo.9.minPulse", "1000");
+        properties.setProperty("servo.9.maxPulse", "2000");
+        properties.setProperty("servo.9.trim", "20");
+        assertEquals(1, pca9685.loadServoCalibrations(properties));
+        assertEquals(20, pca9685.getServo(9).getCalibration().getTrim());
+        pca9685.getServo(9).setAngle(0);
+        assertEquals((1520 * 25 + 61) / 122, simulator.getOff(9));
+
+        // 100 Hz => PRE_SCALE 60, eigene Tabellen...
+        pca9685.setPWMFrequency(100);
+        servo.setMicros(1500);
+        assertEquals((1500 * 25 + 30) / 61, simulator.getOff(8));
+        // Zwei Bausteine mit unterschiedlicher Frequenz an derselben Kalibrierung...
+        final ServoCalibration calibration = ServoCalibration.DEFAULT;
+        for (int count = 0; count < 2; count++)
+        {
+            assertEquals((1500 * 25 + 61) / 122, calibration.getMicrosTicks(1500, 50));
+            assertEquals((1500 * 25 + 30) / 61, calibration.getMicrosTicks(1500, 100));
+        }
+
+        properties.setProperty("servo.10.maxPulse", "x");
+        assertThrows(IllegalArgumentException.class, () -> pca9685.loadServoCalibrations(properties));
+    }
+
+    /**
+     * testSetPwm() - Channel-Ausgabe mit und ohne Auto-Increment
+     */
+    @Test
+    void testSetPwm() throws IOException
+    {
+        logger.info("testSetPwm()...");
+        pca9685.getMotor(3).setPWM(1000);
+        assertEquals(0, simulator.getOn(3));
+        assertEquals(1000, simulator.getOff(3));
+        assertEquals(4L, simulator.getTransactionCount());
+
+        pca9685.setAutoIncrement(true);
+        assertTrue(simulator.isAutoIncrement());
+        simulator.resetCounters();
+        pca9685.getMotor(4).setPWM(2000);
+        assertEquals(2000, simulator.getOff(4));
+        assertEquals(1L, simulator.getTransactionCount());
+
+        // Unveraenderter Wert => kein Busverkehr...
+        simulator.resetCounters();
+        pca9685.getMotor(4).setPWM(2000);
+        assertEquals(0L, simulator.getTransactionCount());
+    }
+
+    /**
+     * testSetLevel() - Pegelwechsel ueber FULL_OFF mit einem Byte, unveraenderter
+     * Pegel ohne Busverkehr
+     */
+    @Test
+    void testSetLevel() throws IOException
+    {
+        logger.info("testSetLevel()...");
+        // Erster Aufruf: alle vier Register (FULL_ON, Off-Wert)...
+        pca9685.getMotor(6).setLevel(true);
+        assertEquals(PCA9685.FULL, simulator.getOn(6));
+        assertEquals(0, simulator.getOff(6));
+        assertEquals(4L, simulator.getBytesWritten());
+
+        simulator.resetCounters();
+        pca9685.getMotor(6).setLevel(false);
+        assertEquals(PCA9685.FULL, simulator.getOff(6));
+        assertEquals(1L, simulator.getTransactionCount());
+        assertEquals(1L, simulator.getBytesWritten());
+
+        simulator.resetCounters();
+        pca9685.setLevel(6, false);
+        assertEquals(0L, simulator.getTransactionCount());
+
+        pca9685.setLevel(6, true);
+        assertEquals(0, simulator.getOff(6));
+        assertEquals(1L, simulator.getBytesWritten());
+
+        // PWM-Ausgabe und danach wieder ein Pegel: vier Register...
+        pca9685.getMotor(6).setPWM(1000);
+        assertEquals(0, simulator.getOn(6));
+        simulator.resetCounters();
+        pca9685.setLevel(6, true);
+        assertEquals(PCA9685.FULL, simulator.getOn(6));
+        assertEquals(4L, simulator.getBytesWritten());
+    }
+
+    /**
+     * testReadLedRegisters() - alle LED-Register mit einer Transaktion (Auto-Increment)
+     */
+    @Test
+    void testReadLedRegisters() throws IOException
+    {
+        logger.info("testReadLedRegisters()...");
+        pca9685.setAutoIncrement(true);
+        pca9685.getMotor(2).setPWM(1234);
+        pca9685.getMotor(15).setPWM(4000);
+        simulator.resetCounters();
+        final RegisterSnapshot snapshot = pca9685.readLedRegisters();
+        assertEquals(1L, simulator.getTransactionCount());
+        assertEquals(1, snapshot.getTransactionCount());
+        assertEquals(1234, snapshot.getWordLE(PCA9685.LED0_ON_L_REGISTER + 4*2 + 2));
+        assertEquals(4000, snapshot.getWordLE(PCA9685.LED0_ON_L_REGISTER + 4*15 + 2));
+        assertEquals(0, snapshot.getWordLE(PCA9685.LED0_ON_L_REGISTER + 4*15));
+
+        // Ohne Auto-Increment jedes Register einzeln...
+        pca9685.setAutoIncrement(false);
+        simulator.resetCounters();
+        assertEquals(1234, pca9685.readLedRegisters().getWordLE(PCA9685.LED0_ON_L_REGISTER + 4*2 + 2));
+        assertEquals(64L, simulator.getTransactionCount());
+    }
+
+    /**
+     * testRegistry() - mehrere Bausteine je Bus und Adresse, flushAll()
+     */
+    @Test
+    void testRegistry() throws IOException
+    {
+        logger.info("testRegistry()...");
+        assertSame(pca9685, PCA9685.getInstance(simulator));
+        assertSame(pca9685, PCA9685.getInstance(I2CBusScheduler.getInstance().getBusNumber(), 0x40));
+        // Anderes Geraet unter Bus und Adresse eines registrierten Bausteins...
+        assertThrows(IllegalArgumentException.class, () -> PCA9685.getInstance(new PCA9685Simulator()));
+        assertSame(pca9685.getServo(1), pca9685.getServo(1));
+        assertSame(pca9685.getMotor(1), pca9685.getMotor(1));
+
+        final PCA9685Simulator second = new PCA9685Simulator(0x41);
+        final PCA9685 board = PCA9685.getInstance(second);
+        try
+        {
+            assertNotSame(pca9685, board);
+            board.initialize();
+            second.resetCounters();
+            pca9685.setChannel(0, 0, 100);
+            board.setChannel(7, 0, 200);
+            board.setChannel(8, 0, 300);
+            // je Baustein ein Block (ohne Auto-Increment 4 Register je Channel)...
+            assertEquals(4 + 8, PCA9685.flushAll());
+            assertEquals(100, simulator.getOff(0));
+            assertEquals(200, second.getOff(7));
+            assertEquals(300, second.getOff(8));
+            assertEquals(0, PCA9685.flushAll());
+        }
+        finally
+        {
+            PCA9685.remove(board);
+        }
+        assertNull(PCA9685.getInstance(I2CBusScheduler.getInstance().getBusNumber(), 0x41));
+        assertThrows(IllegalArgumentException.class, () -> PCA9685.getInstance(new PCA9685Simulator(PCA9685.ALLCALL_ADDRESS)));
+    }
+
+    /**
+     * testGroup() - Ausgabe an eine Gruppen-Adresse erreicht alle Mitglieder mit einer Transaktion
+     */
+    @Test
+    void testGroup() throws IOException
+    {
+        logger.info("testGroup()...");
+        final PCA9685Simulator second = new PCA9685Simulator(0x41);
+        final PCA9685 board = PCA9685.getInstance(second);
+        try
+        {
+            board.initialize();
+            board.setAutoIncrement(true);
+            pca9685.setAutoIncrement(true);
+            final PCA9685Group group = new PCA9685Group(new BroadcastTransport(0x71, simulator, second), PCA9685Group.Slot.SUB1);
+            group.add(pca9685);
+            group.add(board);
+            assertTrue(simulator.respondsTo(0x71));
+            assertTrue(second.respondsTo(0x71));
+
+            group.setChannel(5, 0, 307);
+            assertEquals(1L, group.getTransactionCount());
+            assertEquals(307, simulator.getOff(5));
+            assertEquals(307, second.getOff(5));
+            // Schattenregister nachgefuehrt => kein erneutes Senden...
+            assertEquals(0, PCA9685.flushAll());
+
+            // Ungueltige Werte: kein Busverkehr, Schattenregister unveraendert...
+            assertThrows(IllegalArgumentException.class, () -> group.setChannel(5, 0, 0x2000));
+            assertThrows(IllegalArgumentException.class, () -> group.setAll(-1, 0));
+            assertEquals(1L, group.getTransactionCount());
+            assertEquals(0, PCA9685.flushAll());
+
+            group.setAll(0, 0);
+            assertEquals(2L, group.getTransactionCount());
+            assertEquals(0, simulator.getOff(5));
+            assertEquals(0, second.getOff(5));
+
+            // Gruppen-Adresse eines registrierten Bausteins...
+            final PCA9685Group conflict = new PCA9685Group(new BroadcastTransport(0x41, simulator, second), PCA9685Group.Slot.SUB2);
+            assertThrows(IllegalArgumentException.class, () -> conflict.add(pca9685));
+
+            group.remove(board);
+            assertFalse(second.respondsTo(0x71));
+            group.setChannel(1, 0, 100);
+            assertEquals(100, simulator.getOff(1));
+            assertEquals(0, second.getOff(1));
+        }
+        finally
+        {
+            PCA9685.remove(board);
+        }
+    }
+
+    /**
+     * BroadcastTransport - Schreibzugriffe an eine Gruppen-Adresse, verteilt auf alle
+     * Simulationen, die unter der Adresse antworten
+     */
+    private static class BroadcastTransport implements I2CTransport
+    {
+        private final int address;
+        private final PCA9685Simulator[] simulators;
+
+        BroadcastTransport(int address, PCA9685Simulator... simulators)
+        {
+            this.address = address;
+            this.simulators = simulators;
+        }
+
+        @Override
+        public int getAddress()
+        {
+            return this.address;
+        }
+
+        @Override
+        public int read(int reg) throws IOException
+        {
+            throw new IOException("Lesen unter der Gruppen-Adresse!");
+        }
+
+        @Override
+        public int read(int reg, byte[] buffer, int offset, int size) throws IOException
+        {
+            throw new IOException("Lesen unter der Gruppen-Adresse!");
+        }
+
+        @Override
+        public void write(int reg, byte value) throws IOException
+        {
+            for (PCA9685Simulator simulator : this.simulators)
+            {
+                if (simulator.respondsTo(this.address))
+                {
+                    simulator.write(reg, value);
+                }
+            }
+        }
+
+        @Override
+        public void write(int reg, byte[] buffer, int offset, int size) throws IOException
+        {
+            for (PCA9685Simulator simulator : this.simulators)
+            {
+                if (simulator.respondsTo(this.address))
+                {
+                    simulator.write(reg, buffer, offset, size);
+                }
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int size) throws IOException
+        {
+            throw new IOException("Lesen unter der Gruppen-Adresse!");
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int size) throws IOException
+        {
+            throw new IOException("Nicht unterstuetzt!");
+        }
+    }
+
+    /**
+     * testFlush() - benachbarte geaenderte Channel werden als ein Block geschrieben
+     */
+    @Test
+    void testFlush() throws IOException
+    {
+        logger.info("testFlush()...");
+        pca9685.setAutoIncrement(true);
+        simulator.resetCounters();
+        pca9685.setChannel(0, 0, 100);
+        pca9685.setChannel(1, 0, 200);
+        pca9685.setChannel(2, 0, 300);
+        pca9685.setChannel(10, 10, 400);
+        assertEquals(2, pca9685.flush());
+        assertEquals(2L, simulator.getTransactionCount());
+        assertEquals(100, simulator.getOff(0));
+        assertEquals(200, simulator.getOff(1));
+        assertEquals(300, simulator.getOff(2));
+        assertEquals(10, simulator.getOn(10));
+        assertEquals(400, simulator.getOff(10));
+        assertEquals(0, pca9685.flush());
+        // Ungueltige Vorgaben, ohne Aenderung des Schattenregisters...
+        assertThrows(IllegalArgumentException.class, () -> pca9685.setChannel(16, 0, 100));
+        assertThrows(IllegalArgumentException.class, () -> pca9685.setChannel(-1, 0, 100));
+        assertThrows(IllegalArgumentException.class, () -> pca9685.setChannel(0, 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> pca9685.setChannel(0, 0x2000, 100));
+        assertEquals(0, pca9685.flush());
+        pca9685.setChannel(0, 0, PCA9685.FULL);
+        assertEquals(1, pca9685.flush());
+    }
+
+    /**
+     * testWithoutAutoIncrement() - ohne AI landen alle Bytes eines Blocks
+     * im adressierten Register
+     */
+    @Test
+    void testWithoutAutoIncrement() throws IOException
+    {
+        logger.info("testWithoutAutoIncrement()...");
+        final byte[] buffer = {(byte)0x11, (byte)0x02, (byte)0x33, (byte)0x04};
+        simulator.write(PCA9685.LED0_ON_L_REGISTER, buffer, 0, buffer.length);
+        assertEquals(0x04, simulator.peek(PCA9685.LED0_ON_L_REGISTER));
+        assertEquals(0x00, simulator.peek(PCA9685.LED0_ON_L_REGISTER + 1));
+    }
+
+    /**
+     * testPrescale() - PRE_SCALE ist nur im SLEEP-Modus beschreibbar
+     */
+    @Test
+    void testPrescale() throws IOException
+    {
+        logger.info("testPrescale()...");
+        simulator.powerOn();
+        assertTrue(simulator.isSleep());
+        simulator.write(PCA9685.PRE_SCALE_REGISTER, PCA9685.getPrescaleValue(50));
+        assertEquals(121, simulator.getPrescale());
+        assertEquals(50.0, simulator.getFrequency(), 1.0);
+
+        simulator.write(PCA9685.MODE1_REGISTER, (byte)0x00);
+        simulator.write(PCA9685.PRE_SCALE_REGISTER, PCA9685.getPrescaleValue(1000));
+        assertEquals(121, simulator.getPrescale());
+    }
+}
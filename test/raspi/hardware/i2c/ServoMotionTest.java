@@ -0,0 +1,122 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import raspi.hardware.i2c.sim.PCA9685Simulator;
+
+/**
+ * Test ServoMotion gegen den PCA9685Simulator (ohne Hardware), der Takt wird
+ * ueber step() vorgegeben.
+ *
+ * @author Detlef Tribius
+ */
+class ServoMotionTest
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ServoMotionTest.class);
+
+    /**
+     * MAX_STEPS - Begrenzung der Takte je Bewegung
+     */
+    private final static int MAX_STEPS = 1000;
+
+    /**
+     * simulator - simulierter Baustein (eigene Adresse, vgl. PCA9685Test)
+     */
+    private final PCA9685Simulator simulator = new PCA9685Simulator(0x42);
+
+    /**
+     * pca9685
+     */
+    private PCA9685 pca9685 = null;
+
+    /**
+     * motion
+     */
+    private ServoMotion motion = null;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.pca9685 = PCA9685.getInstance(this.simulator);
+        this.pca9685.setAutoIncrement(true);
+        this.pca9685.initialize();
+        this.pca9685.setPWMFrequency(50);
+        this.pca9685.setChannel(0, 0, 300);
+        this.pca9685.setChannel(3, 0, 300);
+        this.pca9685.flush();
+        this.motion = new ServoMotion(ServoMotion.DEFAULT_PERIOD_MILLIS);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        this.motion.close();
+        PCA9685.remove(this.pca9685);
+    }
+
+    /**
+     * testTrapezoid() - Geschwindigkeitsgrenze, eine Transaktion je Takt fuer beide Servos
+     */
+    @Test
+    void testTrapezoid() throws IOException
+    {
+        logger.info("testTrapezoid()...");
+        this.motion.moveTo(this.pca9685.getServo(0), 500, 1000, 5000);
+        this.motion.moveTo(this.pca9685.getServo(3), 400, 1000, 5000, 50000);
+        int steps = 0;
+        int last = this.simulator.getOff(0);
+        while (!this.motion.isIdle() && (steps < MAX_STEPS))
+        {
+            this.simulator.resetCounters();
+            assertTrue(this.motion.step() <= 1);
+            assertTrue(this.simulator.getTransactionCount() <= 1L);
+            // max. 1000 Ticks/s * 0.02 s je Takt...
+            final int off = this.simulator.getOff(0);
+            assertTrue(Math.abs(off - last) <= 21, "Schritt " + (off - last));
+            last = off;
+            steps++;
+        }
+        assertTrue(this.motion.isIdle());
+        assertEquals(500, this.simulator.getOff(0));
+        assertEquals(400, this.simulator.getOff(3));
+        // 200 Ticks mit 1000 Ticks/s dauern mindestens 10 Takte...
+        assertTrue(steps > 10);
+        assertEquals(0, this.motion.step());
+    }
+
+    /**
+     * testDeadband() - Aenderungen unterhalb des Totbands werden nicht geschrieben
+     */
+    @Test
+    void testDeadband() throws IOException
+    {
+        logger.info("testDeadband()...");
+        this.motion.setDeadband(10);
+        this.motion.moveTo(this.pca9685.getServo(0), 340, 200, 2000);
+        int writes = 0;
+        int steps = 0;
+        while (!this.motion.isIdle() && (steps < MAX_STEPS))
+        {
+            writes += this.motion.step();
+            steps++;
+        }
+        assertEquals(340, this.simulator.getOff(0));
+        // 40 Ticks bei Totband 10 => hoechstens 4 Schreibzugriffe, weniger als Takte...
+        assertTrue(writes <= 4, "writes=" + writes);
+        assertTrue(writes < steps);
+    }
+}
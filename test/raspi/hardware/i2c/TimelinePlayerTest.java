@@ -0,0 +1,134 @@
+/**
+ *
+ */
+package raspi.hardware.i2c;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import raspi.hardware.i2c.sim.PCA9685Simulator;
+
+/**
+ * Test KeyframeTimeline/TimelinePlayer gegen den PCA9685Simulator (ohne Hardware),
+ * der Takt wird ueber step() vorgegeben.
+ *
+ * @author Detlef Tribius
+ */
+class TimelinePlayerTest
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(TimelinePlayerTest.class);
+
+    /**
+     * PERIOD_MILLIS - Takt
+     */
+    private final static int PERIOD_MILLIS = 20;
+
+    /**
+     * simulator - simulierter Baustein (eigene Adresse, vgl. PCA9685Test)
+     */
+    private final PCA9685Simulator simulator = new PCA9685Simulator(0x43);
+
+    /**
+     * pca9685
+     */
+    private PCA9685 pca9685 = null;
+
+    /**
+     * file - Keyframe-Datei
+     */
+    private Path file = null;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        this.pca9685 = PCA9685.getInstance(this.simulator);
+        this.pca9685.setAutoIncrement(true);
+        this.pca9685.initialize();
+        this.pca9685.setPWMFrequency(50);
+        this.pca9685.setChannel(2, 0, 300);
+        this.pca9685.flush();
+        this.file = Files.createTempFile("timeline", ".pckf");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException
+    {
+        PCA9685.remove(this.pca9685);
+        Files.deleteIfExists(this.file);
+    }
+
+    /**
+     * testPlay() - Interpolation, eine Transaktion je Takt, Endwerte
+     */
+    @Test
+    void testPlay() throws IOException
+    {
+        logger.info("testPlay()...");
+        // Channel 2: 300 => 400 (100 ms) => 200 (200 ms), Channel 5: 100 (0 ms) => 500 (200 ms)...
+        KeyframeTimeline.write(this.file, new int[] {   0, 100, 200, 200 },
+                                          new int[] {   5,   2,   5,   2 },
+                                          new int[] { 100, 400, 500, 200 });
+        try (KeyframeTimeline timeline = new KeyframeTimeline(this.file))
+        {
+            assertEquals(4, timeline.size());
+            assertEquals(200, timeline.getDuration());
+            // Verkettung je Channel...
+            assertEquals(1, timeline.getFirst(2));
+            assertEquals(3, timeline.getNext(1));
+            assertEquals(KeyframeTimeline.NONE, timeline.getNext(3));
+            assertEquals(KeyframeTimeline.NONE, timeline.getFirst(0));
+            final TimelinePlayer player = new TimelinePlayer(this.pca9685, timeline, PERIOD_MILLIS);
+            int steps = 0;
+            while (!player.isFinished())
+            {
+                final long time = player.getTime();
+                this.simulator.resetCounters();
+                assertTrue(player.step() <= 1);
+                assertTrue(this.simulator.getTransactionCount() <= 1L);
+                if (time == 60L)
+                {
+                    assertEquals(360, this.simulator.getOff(2));
+                    assertEquals(220, this.simulator.getOff(5));
+                }
+                if (time == 140L)
+                {
+                    assertEquals(320, this.simulator.getOff(2));
+                    assertEquals(380, this.simulator.getOff(5));
+                }
+                steps++;
+            }
+            assertEquals(11, steps);
+            assertEquals(200, this.simulator.getOff(2));
+            assertEquals(500, this.simulator.getOff(5));
+            // danach keine Ausgabe mehr...
+            assertEquals(0, player.step());
+        }
+    }
+
+    /**
+     * testInvalidFile() - falsches Format wird abgewiesen
+     */
+    @Test
+    void testInvalidFile() throws IOException
+    {
+        logger.info("testInvalidFile()...");
+        Files.write(this.file, new byte[] { 1, 2, 3, 4, 0, 0, 0, 0 });
+        assertThrows(IOException.class, () -> new KeyframeTimeline(this.file));
+        assertThrows(IllegalArgumentException.class,
+                     () -> KeyframeTimeline.write(this.file, new int[] { 100, 0 }, new int[] { 0, 0 }, new int[] { 0, 0 }));
+        assertThrows(IllegalArgumentException.class,
+                     () -> KeyframeTimeline.write(this.file, new int[] { 0 }, new int[] { 16 }, new int[] { 0 }));
+    }
+}
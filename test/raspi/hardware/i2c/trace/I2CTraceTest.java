@@ -0,0 +1,155 @@
+/**
+ *
+ */
+package raspi.hardware.i2c.trace;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import raspi.hardware.i2c.ArduinoI2C;
+import raspi.hardware.i2c.DRV8830;
+import raspi.hardware.i2c.MCP9808;
+import raspi.hardware.i2c.sim.ArduinoI2CSimulator;
+import raspi.hardware.i2c.sim.DRV8830Simulator;
+import raspi.hardware.i2c.sim.MCP9808Simulator;
+import raspi.hardware.i2c.sim.PCA9685Simulator;
+
+/**
+ * Test Aufzeichnung (RecordingI2CDevice) und Wiedergabe (ReplayI2CDevice)
+ * gegen die Simulationen aus raspi.hardware.i2c.sim.
+ *
+ * @author Detlef Tribius
+ */
+class I2CTraceTest
+{
+    /**
+     * logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(I2CTraceTest.class);
+
+    /**
+     * directory - temporaeres Verzeichnis fuer die Trace-Datei
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * testRecordReplay() - eine Sitzung mit drei Geraeten aufzeichnen und wiedergeben
+     */
+    @Test
+    void testRecordReplay() throws IOException
+    {
+        logger.info("testRecordReplay()...");
+        final Path path = this.directory.resolve("session.i2ct");
+
+        final MCP9808Simulator mcp9808Simulator = new MCP9808Simulator();
+        mcp9808Simulator.setTemperature(22.5);
+        final DRV8830Simulator drv8830Simulator = new DRV8830Simulator();
+        final ArduinoI2CSimulator arduinoSimulator = new ArduinoI2CSimulator();
+        arduinoSimulator.setValue(4711);
+
+        final double temperature;
+        final int fault;
+        try (I2CTraceWriter writer = new I2CTraceWriter(path, 64 * 1024))
+        {
+            final MCP9808 mcp9808 = new MCP9808(new RecordingI2CDevice(mcp9808Simulator, writer));
+            final DRV8830 drv8830 = new DRV8830(new RecordingI2CDevice(drv8830Simulator, writer));
+            final ArduinoI2C arduino = new ArduinoI2C(new RecordingI2CDevice(arduinoSimulator, writer));
+            temperature = mcp9808.getAmbientTemp();
+            drv8830.drive(30);
+            drv8830Simulator.injectFault(DRV8830Simulator.UVLO);
+            fault = drv8830.getFault();
+            arduino.write(17L, ArduinoI2C.Status.INITIAL);
+            assertEquals(4711, arduino.read().getValue());
+            assertEquals(6L, writer.getEntryCount());
+        }
+
+        try (I2CTraceReader reader = new I2CTraceReader(path))
+        {
+            assertEquals(1, reader.getEntryCount(mcp9808Simulator.getAddress()));
+            assertEquals(3, reader.getEntryCount(drv8830Simulator.getAddress()));
+            assertEquals(2, reader.getEntryCount(arduinoSimulator.getAddress()));
+
+            final ReplayI2CDevice mcp9808Replay = new ReplayI2CDevice(reader, mcp9808Simulator.getAddress(), ReplayI2CDevice.Timing.FAST);
+            final ReplayI2CDevice drv8830Replay = new ReplayI2CDevice(reader, drv8830Simulator.getAddress(), ReplayI2CDevice.Timing.ORIGINAL);
+            final ReplayI2CDevice arduinoReplay = new ReplayI2CDevice(reader, arduinoSimulator.getAddress(), ReplayI2CDevice.Timing.FAST);
+            final MCP9808 mcp9808 = new MCP9808(mcp9808Replay);
+            final DRV8830 drv8830 = new DRV8830(drv8830Replay);
+            final ArduinoI2C arduino = new ArduinoI2C(arduinoReplay);
+
+            assertEquals(temperature, mcp9808.getAmbientTemp(), 0.0);
+            // Abweichende Schreibdaten werden gezaehlt...
+            drv8830.drive(31);
+            assertEquals(1L, drv8830Replay.getMismatchCount());
+            assertEquals(fault, drv8830.getFault());
+            arduino.write(17L, ArduinoI2C.Status.INITIAL);
+            assertEquals(4711, arduino.read().getValue());
+            assertEquals(0L, arduinoReplay.getMismatchCount());
+            assertEquals(0, drv8830Replay.getRemaining());
+
+            // Trace-Ende...
+            assertThrows(IOException.class, () -> mcp9808.getAmbientTemp());
+        }
+    }
+
+    /**
+     * testWriteLength() - Trace-Datei nur so gross wie die Eintraege, abweichende
+     * Laenge der Schreibdaten (kuerzer bzw. laenger) zaehlt als Abweichung
+     */
+    @Test
+    void testWriteLength() throws IOException
+    {
+        logger.info("testWriteLength()...");
+        final Path path = this.directory.resolve("length.i2ct");
+        final PCA9685Simulator simulator = new PCA9685Simulator();
+        try (I2CTraceWriter writer = new I2CTraceWriter(path, 64 * 1024))
+        {
+            final RecordingI2CDevice device = new RecordingI2CDevice(simulator, writer);
+            for (int count = 0; count < 3; count++)
+            {
+                device.write(PCA9685Simulator.LED0_ON_L, new byte[] {1, 2});
+            }
+        }
+        assertEquals(I2CTraceWriter.HEADER_SIZE + 3 * (I2CTraceWriter.ENTRY_HEADER_SIZE + 2), Files.size(path));
+        try (I2CTraceReader reader = new I2CTraceReader(path))
+        {
+            final ReplayI2CDevice replay = new ReplayI2CDevice(reader, simulator.getAddress(), ReplayI2CDevice.Timing.FAST);
+            replay.write(PCA9685Simulator.LED0_ON_L, new byte[] {1, 2});
+            assertEquals(0L, replay.getMismatchCount());
+            // Kuerzer als aufgezeichnet (gleiches Praefix)...
+            replay.write(PCA9685Simulator.LED0_ON_L, new byte[] {1});
+            assertEquals(1L, replay.getMismatchCount());
+            // Laenger als aufgezeichnet...
+            replay.write(PCA9685Simulator.LED0_ON_L, new byte[] {1, 2, 3});
+            assertEquals(2L, replay.getMismatchCount());
+        }
+    }
+
+    /**
+     * testMismatch() - abweichende Operation wird als IOException gemeldet
+     */
+    @Test
+    void testMismatch() throws IOException
+    {
+        logger.info("testMismatch()...");
+        final Path path = this.directory.resolve("mismatch.i2ct");
+        final DRV8830Simulator simulator = new DRV8830Simulator();
+        try (I2CTraceWriter writer = new I2CTraceWriter(path, 4096))
+        {
+            new DRV8830(new RecordingI2CDevice(simulator, writer)).brake();
+        }
+        try (I2CTraceReader reader = new I2CTraceReader(path))
+        {
+            final DRV8830 drv8830 = new DRV8830(new ReplayI2CDevice(reader, simulator.getAddress(), ReplayI2CDevice.Timing.FAST));
+            assertThrows(IOException.class, () -> drv8830.getFault());
+        }
+    }
+}